@@ -2,6 +2,7 @@ package elements;
 
 import primitives.Point3D;
 import primitives.Ray;
+import primitives.Sampler;
 import primitives.Vector;
 
 import static primitives.Util.isZero;
@@ -25,6 +26,11 @@ public class Camera {
     private double height;
     private double distance;
 
+    /**
+     * center of the view plane, kept up to date with the distance
+     */
+    private Point3D viewPlaneCenter;
+
     /**
      * Constructor for Camera
      * 
@@ -42,6 +48,43 @@ public class Camera {
         vUp = newVUp.normalized();
         vTo = newVTo.normalized();
         vRight = newVTo.crossProduct(newVUp).normalize();
+        viewPlaneCenter = origin;
+    }
+
+    /**
+     * getter for origin
+     * 
+     * @return origin
+     */
+    public Point3D getOrigin() {
+        return origin;
+    }
+
+    /**
+     * getter for vTo
+     * 
+     * @return vTo
+     */
+    public Vector getVTo() {
+        return vTo;
+    }
+
+    /**
+     * getter for vUp
+     * 
+     * @return vUp
+     */
+    public Vector getVUp() {
+        return vUp;
+    }
+
+    /**
+     * getter for distance
+     * 
+     * @return distance
+     */
+    public double getDistance() {
+        return distance;
     }
 
     /**
@@ -83,9 +126,22 @@ public class Camera {
      */
     public Camera setDistance(double newDistance) {
         distance = newDistance;
+        viewPlaneCenter = isZero(distance) ? origin : origin.add(vTo.scale(distance));
         return this;
     }
 
+    /**
+     * Get a generator of the rays through the pixels of a view plane matrix, with
+     * the pixel steps calculated once for the whole image
+     * 
+     * @param nX Number of pixels in x axis
+     * @param nY Number of pixels in y axis
+     * @return the ray generator
+     */
+    public PixelRayGenerator getRayGenerator(int nX, int nY) {
+        return new PixelRayGenerator(origin, viewPlaneCenter, vRight, vUp, width / nX, height / nY, nX, nY);
+    }
+
     /**
      * Gets parameters that define the view plane matrix, and the index of the pixel
      * on it, and returns a ray from the place point of the camera through the pixel
@@ -97,7 +153,7 @@ public class Camera {
      * @return Ray from the camera through the pixel i,j
      */
     public Ray constructRayThroughPixel(int nX, int nY, int j, int i) {
-        Point3D pc = origin.add(vTo.scale(distance));
+        Point3D pc = viewPlaneCenter;
         double pixelHeight = height / nY;
         double pixelWidth = width / nX;
         double xj = (j - ((nX - 1) / 2.0)) * pixelWidth;
@@ -143,6 +199,59 @@ public class Camera {
         return constructGridOfRays(topLeft, gridSize, spacingVertical, spacingHorizontal);
     }
 
+    /**
+     * construct rays through sample points of a pixel given by a sampler
+     * 
+     * @param center      ray for original pixel location
+     * @param count       number of rays
+     * @param pixelWidth  width of pixel
+     * @param pixelHeight height of pixel
+     * @param sampler     pattern of the sample points
+     * @param pixel       index of the pixel for decorrelating the patterns
+     * @return rays
+     */
+    public List<Ray> constructSupersamplingRays(Ray center, int count, double pixelWidth, double pixelHeight,
+            Sampler sampler, long pixel) {
+        double[] point = new double[2];
+        List<Ray> rays = new ArrayList<>(count);
+        for (int i = 0; i < count; ++i) {
+            sampler.sample(pixel, i, count, point);
+            rays.add(constructRayThroughSample(center, pixelWidth, pixelHeight, point));
+        }
+        return rays;
+    }
+
+    /**
+     * construct a ray through a sample point of a pixel
+     * 
+     * @param center      ray for original pixel location
+     * @param pixelWidth  width of pixel
+     * @param pixelHeight height of pixel
+     * @param point       x and y of the sample in the unit square of the pixel
+     * @return Ray from the camera through the sample point
+     */
+    public Ray constructRayThroughSample(Ray center, double pixelWidth, double pixelHeight, double[] point) {
+        // center of the pixel on the view plane
+        Point3D pixelCenter = center.getPoint(distance / center.getDirection().dotProduct(vTo));
+        return constructRayThroughPoint(pixelCenter, (point[0] - 0.5) * pixelWidth, (0.5 - point[1]) * pixelHeight);
+    }
+
+    /**
+     * construct a ray through a point of the view plane moved from a given point
+     * 
+     * @param point  point on the view plane
+     * @param right  distance to move to the right
+     * @param up     distance to move up
+     * @return Ray from the camera through the moved point
+     */
+    public Ray constructRayThroughPoint(Point3D point, double right, double up) {
+        if (!isZero(right))
+            point = point.add(vRight.scale(right));
+        if (!isZero(up))
+            point = point.add(vUp.scale(up));
+        return constructRayThroughPoint(point);
+    }
+
     /**
      * construct rays through each of four quadrants of a cell
      * 
@@ -169,19 +278,34 @@ public class Camera {
      */
     public List<Ray> constructGridOfRays(Point3D topLeft, int gridSize, double spacingVertical,
             double spacingHorizontal) {
-        List<Ray> rays = new ArrayList<>();
+        List<Ray> rays = new ArrayList<>(gridSize * gridSize);
+        Point3D right = vRight.getHead();
+        Point3D up = vUp.getHead();
+        // steps between neighbouring rays on the view plane
+        double colX = right.getX() * spacingHorizontal;
+        double colY = right.getY() * spacingHorizontal;
+        double colZ = right.getZ() * spacingHorizontal;
+        double rowX = -up.getX() * spacingVertical;
+        double rowY = -up.getY() * spacingVertical;
+        double rowZ = -up.getZ() * spacingVertical;
+        // vector from the camera to the top left ray intersection
+        double startX = topLeft.getX() - origin.getX();
+        double startY = topLeft.getY() - origin.getY();
+        double startZ = topLeft.getZ() - origin.getZ();
         // create grid of rays for supersampling
         for (int row = 0; row < gridSize; row++) {
+            double x = startX;
+            double y = startY;
+            double z = startZ;
             for (int col = 0; col < gridSize; col++) {
-                Point3D newPoint = topLeft;
-                if (row > 0) {
-                    newPoint = newPoint.add(vUp.scale(-row * spacingVertical));
-                }
-                if (col > 0) {
-                    newPoint = newPoint.add(vRight.scale(col * spacingHorizontal));
-                }
-                rays.add(constructRayThroughPoint(newPoint));
+                rays.add(new Ray(origin, new Vector(x, y, z)));
+                x += colX;
+                y += colY;
+                z += colZ;
             }
+            startX += rowX;
+            startY += rowY;
+            startZ += rowZ;
         }
         return rays;
     }
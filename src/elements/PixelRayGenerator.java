@@ -0,0 +1,137 @@
+package elements;
+
+import primitives.Point3D;
+import primitives.Ray;
+import primitives.Vector;
+
+/**
+ * Generator of the rays through the pixels of a view plane matrix. The vectors
+ * from one pixel to the next are calculated once for the whole image, and the
+ * directions of a scanline are generated incrementally into a primitive array
+ * 
+ * @author Jonah Lawrence
+ * @author Elad Harizy
+ */
+public class PixelRayGenerator {
+    private final Point3D origin;
+    private final int nX;
+    private final int nY;
+
+    /**
+     * vector from the camera to the center of the top left pixel
+     */
+    private final double startX, startY, startZ;
+
+    /**
+     * vector from a pixel to the pixel on its right
+     */
+    private final double colX, colY, colZ;
+
+    /**
+     * vector from a pixel to the pixel below it
+     */
+    private final double rowX, rowY, rowZ;
+
+    /**
+     * Constructor - called by {@link Camera#getRayGenerator(int, int)}
+     * 
+     * @param origin          location of the camera
+     * @param viewPlaneCenter center of the view plane
+     * @param vRight          right direction of the camera
+     * @param vUp             up direction of the camera
+     * @param pixelWidth      width of a pixel
+     * @param pixelHeight     height of a pixel
+     * @param nX              Number of pixels in x axis
+     * @param nY              Number of pixels in y axis
+     */
+    PixelRayGenerator(Point3D origin, Point3D viewPlaneCenter, Vector vRight, Vector vUp, double pixelWidth,
+            double pixelHeight, int nX, int nY) {
+        this.origin = origin;
+        this.nX = nX;
+        this.nY = nY;
+        Point3D right = vRight.getHead();
+        Point3D up = vUp.getHead();
+        colX = right.getX() * pixelWidth;
+        colY = right.getY() * pixelWidth;
+        colZ = right.getZ() * pixelWidth;
+        rowX = -up.getX() * pixelHeight;
+        rowY = -up.getY() * pixelHeight;
+        rowZ = -up.getZ() * pixelHeight;
+        // the top left pixel is half a matrix left and up from the center
+        double left = -(nX - 1) / 2.0;
+        double top = -(nY - 1) / 2.0;
+        startX = viewPlaneCenter.getX() - origin.getX() + left * colX + top * rowX;
+        startY = viewPlaneCenter.getY() - origin.getY() + left * colY + top * rowY;
+        startZ = viewPlaneCenter.getZ() - origin.getZ() + left * colZ + top * rowZ;
+    }
+
+    /**
+     * @return Number of pixels in x axis
+     */
+    public int getNx() {
+        return nX;
+    }
+
+    /**
+     * @return Number of pixels in y axis
+     */
+    public int getNy() {
+        return nY;
+    }
+
+    /**
+     * Construct the ray from the camera through the center of a pixel
+     * 
+     * @param j Column of the pixel in the matrix
+     * @param i Row of the pixel in the matrix
+     * @return Ray from the camera through the pixel i,j
+     */
+    public Ray constructRay(int j, int i) {
+        double x = startX + j * colX + i * rowX;
+        double y = startY + j * colY + i * rowY;
+        double z = startZ + j * colZ + i * rowZ;
+        double length = Math.sqrt(x * x + y * y + z * z);
+        return new Ray(origin, new Vector(x / length, y / length, z / length));
+    }
+
+    /**
+     * Write the normalized directions of the rays through a range of pixels of a
+     * row, stepping from each pixel to the next without allocating
+     * 
+     * @param i          Row of the pixels in the matrix
+     * @param fromJ      first column
+     * @param toJ        column after the last one
+     * @param directions receives x, y and z of every direction, from index 0
+     */
+    public void constructRowDirections(int i, int fromJ, int toJ, double[] directions) {
+        double x = startX + fromJ * colX + i * rowX;
+        double y = startY + fromJ * colY + i * rowY;
+        double z = startZ + fromJ * colZ + i * rowZ;
+        for (int index = 0, j = fromJ; j < toJ; ++j, index += 3) {
+            double scale = 1 / Math.sqrt(x * x + y * y + z * z);
+            directions[index] = x * scale;
+            directions[index + 1] = y * scale;
+            directions[index + 2] = z * scale;
+            x += colX;
+            y += colY;
+            z += colZ;
+        }
+    }
+
+    /**
+     * Construct the rays of a range of pixels of a row
+     * 
+     * @param i     Row of the pixels in the matrix
+     * @param fromJ first column
+     * @param toJ   column after the last one
+     * @param rays  receives the rays, from index 0
+     */
+    public void constructRowRays(int i, int fromJ, int toJ, Ray[] rays) {
+        double[] directions = new double[3 * (toJ - fromJ)];
+        constructRowDirections(i, fromJ, toJ, directions);
+        for (int index = 0; index < toJ - fromJ; ++index) {
+            rays[index] = new Ray(origin,
+                    new Vector(directions[3 * index], directions[3 * index + 1], directions[3 * index + 2]));
+        }
+    }
+}
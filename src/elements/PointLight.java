@@ -52,6 +52,42 @@ public class PointLight extends Light implements LightSource {
     this(intensity, position, 1, 0, 0);
   }
 
+  /**
+   * position getter
+   * 
+   * @return position
+   */
+  public Point3D getPosition() {
+    return position;
+  }
+
+  /**
+   * constant attenuation getter
+   * 
+   * @return kC
+   */
+  public double getKC() {
+    return kC;
+  }
+
+  /**
+   * linear attenuation getter
+   * 
+   * @return kL
+   */
+  public double getKL() {
+    return kL;
+  }
+
+  /**
+   * quadratic attenuation getter
+   * 
+   * @return kQ
+   */
+  public double getKQ() {
+    return kQ;
+  }
+
   /**
    * kC getter
    * 
@@ -53,6 +53,24 @@ public class SpotLight extends PointLight {
     this(intensity, position, direction, 1, 0, 0, 1);
   }
 
+  /**
+   * direction getter
+   * 
+   * @return direction
+   */
+  public Vector getDirection() {
+    return direction;
+  }
+
+  /**
+   * concentration getter
+   * 
+   * @return concentration
+   */
+  public double getConcentration() {
+    return concentration;
+  }
+
   @Override
   public Color getIntensity(Point3D p) {
     double projection = direction.dotProduct(getL(p));
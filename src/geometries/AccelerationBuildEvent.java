@@ -0,0 +1,31 @@
+package geometries;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event of building or refitting a bounding volume hierarchy
+ *
+ * @author Jonah Lawrence
+ * @author Elad Harizy
+ */
+@Name("raytracer.AccelerationBuild")
+@Label("Acceleration Build")
+@Category({ "Ray Tracer", "Scene" })
+@Description("Build or refit of a bounding volume hierarchy")
+@StackTrace(false)
+class AccelerationBuildEvent extends Event {
+
+  @Label("Primitives")
+  int primitives;
+
+  @Label("Nodes")
+  int nodes;
+
+  @Label("Refit")
+  boolean refit;
+}
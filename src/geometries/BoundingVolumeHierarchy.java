@@ -0,0 +1,642 @@
+package geometries;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+import primitives.Point3D;
+import primitives.Ray;
+
+/**
+ * Flat bounding volume hierarchy over the primitives of a geometry, built with
+ * the binned surface area heuristic. The nodes are stored depth first in two
+ * buffers, so a hierarchy can be kept in heap arrays or in a memory mapped file
+ * alike:
+ * <ul>
+ * <li>bounds - 6 floats per node: minimum x, y, z and maximum x, y, z</li>
+ * <li>links - 2 ints per node: the right child and 0 for an inner node, whose
+ * left child is the next node, or the first primitive and the number of
+ * primitives for a leaf</li>
+ * </ul>
+ *
+ * @author Jonah Lawrence
+ * @author Elad Harizy
+ */
+public class BoundingVolumeHierarchy {
+
+  private static final int BINS = 16;
+  private static final int MAX_LEAF_SIZE = 8;
+  private static final double TRAVERSAL_COST = 1.0;
+
+  /**
+   * Primitives the hierarchy is built over
+   */
+  public interface Primitives {
+    /**
+     * @return number of primitives
+     */
+    int size();
+
+    /**
+     * Get the bounding box of a primitive
+     *
+     * @param primitive index of the primitive
+     * @param box       receives minimum x, y, z and maximum x, y, z
+     */
+    void getBounds(int primitive, double[] box);
+  }
+
+  /**
+   * Receives the leaves whose bounding boxes a ray passes through
+   */
+  public interface LeafVisitor {
+    /**
+     * Visit the primitives of a leaf
+     *
+     * @param first index of the first primitive in the hierarchy order
+     * @param count number of primitives
+     */
+    void visit(int first, int count);
+  }
+
+  /**
+   * Receives the builds and refits of hierarchies, such as to show them on a
+   * timeline of the render
+   */
+  public interface BuildListener {
+    /**
+     * A hierarchy was built or refitted by the current thread
+     *
+     * @param startNanos value of {@link System#nanoTime()} when it started
+     * @param endNanos   value of {@link System#nanoTime()} when it ended
+     * @param primitives number of primitives
+     * @param refit      true for a refit, false for a build
+     */
+    void built(long startNanos, long endNanos, int primitives, boolean refit);
+  }
+
+  /**
+   * receives the builds of all the hierarchies, or null
+   */
+  private static volatile BuildListener buildListener = null;
+
+  /**
+   * bounds of the nodes
+   */
+  private final FloatBuffer bounds;
+
+  /**
+   * children or primitives of the nodes
+   */
+  private final IntBuffer links;
+
+  /**
+   * number of nodes
+   */
+  private final int nodeCount;
+
+  /**
+   * Constructor of a hierarchy that is already built
+   *
+   * @param bounds bounds of the nodes, 6 floats per node
+   * @param links  links of the nodes, 2 ints per node
+   */
+  public BoundingVolumeHierarchy(FloatBuffer bounds, IntBuffer links) {
+    if (bounds.limit() * 2 != links.limit() * 6)
+      throw new IllegalArgumentException("Bounds and links of the hierarchy do not match");
+    this.bounds = bounds;
+    this.links = links;
+    this.nodeCount = links.limit() / 2;
+  }
+
+  /**
+   * Build a hierarchy over primitives
+   *
+   * @param primitives the primitives
+   * @param order      receives the primitives in the order of the leaves, its
+   *                   length must be the number of primitives
+   * @return the hierarchy
+   */
+  public static BoundingVolumeHierarchy build(Primitives primitives, int[] order) {
+    BuildListener listener = buildListener;
+    long start = listener == null ? 0 : System.nanoTime();
+    AccelerationBuildEvent event = new AccelerationBuildEvent();
+    event.begin();
+    Builder builder = new Builder(primitives, order);
+    if (order.length > 0)
+      builder.build(0, order.length, builder.bounds(0, order.length));
+    if (event.shouldCommit()) {
+      event.primitives = order.length;
+      event.nodes = builder.nodeCount;
+      event.commit();
+    }
+    if (listener != null)
+      listener.built(start, System.nanoTime(), order.length, false);
+    return new BoundingVolumeHierarchy(FloatBuffer.wrap(Arrays.copyOf(builder.nodeBounds, 6 * builder.nodeCount)),
+        IntBuffer.wrap(Arrays.copyOf(builder.nodeLinks, 2 * builder.nodeCount)));
+  }
+
+  /**
+   * Set the listener of the builds and refits of all the hierarchies
+   *
+   * @param listener the listener, null to stop listening
+   */
+  public static void setBuildListener(BuildListener listener) {
+    buildListener = listener;
+  }
+
+  /**
+   * @return the listener of the builds and refits of all the hierarchies, or
+   *         null
+   */
+  public static BuildListener getBuildListener() {
+    return buildListener;
+  }
+
+  /**
+   * @return number of nodes
+   */
+  public int getNodeCount() {
+    return nodeCount;
+  }
+
+  /**
+   * @return bounds of the nodes, 6 floats per node
+   */
+  public FloatBuffer getBounds() {
+    return bounds.duplicate();
+  }
+
+  /**
+   * @return links of the nodes, 2 ints per node
+   */
+  public IntBuffer getLinks() {
+    return links.duplicate();
+  }
+
+  /**
+   * Get a bound of the whole hierarchy
+   *
+   * @param index 0 to 2 for minimum x, y, z and 3 to 5 for maximum x, y, z
+   * @return the bound
+   */
+  public double getRootBound(int index) {
+    return nodeCount == 0 ? Double.NaN : bounds.get(index);
+  }
+
+  /**
+   * Refit the hierarchy to primitives that moved, keeping its tree. Every node
+   * comes before its children, so the nodes are refitted in reverse order in a
+   * single pass
+   *
+   * @param primitives the primitives the hierarchy was built over
+   * @param order      the order of the primitives returned by the build
+   * @return hierarchy with the links of this one and the new bounds
+   */
+  public BoundingVolumeHierarchy refit(Primitives primitives, int[] order) {
+    if (order.length != primitives.size())
+      throw new IllegalArgumentException("Order must have a place for every primitive");
+    BuildListener listener = buildListener;
+    long start = listener == null ? 0 : System.nanoTime();
+    AccelerationBuildEvent event = new AccelerationBuildEvent();
+    event.begin();
+    float[] refitted = new float[6 * nodeCount];
+    double[] box = new double[6];
+    double[] nodeBox = new double[6];
+    for (int node = nodeCount - 1; node >= 0; --node) {
+      int count = links.get(2 * node + 1);
+      if (count > 0) {
+        int first = links.get(2 * node);
+        System.arraycopy(emptyBox(), 0, nodeBox, 0, 6);
+        for (int i = first; i < first + count; ++i) {
+          primitives.getBounds(order[i], box);
+          grow(nodeBox, box);
+        }
+        // float bounds are rounded outwards so they still contain the primitives
+        for (int axis = 0; axis < 3; ++axis) {
+          refitted[6 * node + axis] = Math.nextDown((float) nodeBox[axis]);
+          refitted[6 * node + axis + 3] = Math.nextUp((float) nodeBox[axis + 3]);
+        }
+      } else {
+        int left = 6 * (node + 1);
+        int right = 6 * links.get(2 * node);
+        for (int axis = 0; axis < 3; ++axis) {
+          refitted[6 * node + axis] = Math.min(refitted[left + axis], refitted[right + axis]);
+          refitted[6 * node + axis + 3] = Math.max(refitted[left + axis + 3], refitted[right + axis + 3]);
+        }
+      }
+    }
+    if (event.shouldCommit()) {
+      event.primitives = order.length;
+      event.nodes = nodeCount;
+      event.refit = true;
+      event.commit();
+    }
+    if (listener != null)
+      listener.built(start, System.nanoTime(), order.length, true);
+    return new BoundingVolumeHierarchy(FloatBuffer.wrap(refitted), links.duplicate());
+  }
+
+  /**
+   * Expected cost of a ray through the hierarchy by the surface area heuristic,
+   * in tests of a primitive, for a ray that hits the root box. Refitting moving
+   * primitives makes boxes overlap and the cost grow
+   *
+   * @return the cost, 0 for an empty hierarchy or one without area
+   */
+  public double getCost() {
+    if (nodeCount == 0)
+      return 0;
+    double[] box = new double[6];
+    double rootArea = 0;
+    double cost = 0;
+    for (int node = 0; node < nodeCount; ++node) {
+      for (int k = 0; k < 6; ++k)
+        box[k] = bounds.get(6 * node + k);
+      double nodeArea = area(box);
+      if (node == 0)
+        rootArea = nodeArea;
+      int count = links.get(2 * node + 1);
+      cost += nodeArea * (count > 0 ? count : TRAVERSAL_COST);
+    }
+    return rootArea > 0 ? cost / rootArea : 0;
+  }
+
+  /**
+   * Visit the leaves whose bounding boxes a ray passes through
+   *
+   * @param ray         the ray
+   * @param maxDistance maximum distance along the ray
+   * @param visitor     receives the leaves
+   */
+  public void traverse(Ray ray, double maxDistance, LeafVisitor visitor) {
+    if (nodeCount == 0)
+      return;
+    Point3D origin = ray.getOrigin();
+    Point3D direction = ray.getDirection().getHead();
+    double ox = origin.getX();
+    double oy = origin.getY();
+    double oz = origin.getZ();
+    double invX = 1 / direction.getX();
+    double invY = 1 / direction.getY();
+    double invZ = 1 / direction.getZ();
+    int[] stack = new int[64];
+    int top = 0;
+    int node = 0;
+    int visited = 0;
+    while (true) {
+      ++visited;
+      if (hits(node, ox, oy, oz, invX, invY, invZ, maxDistance)) {
+        int count = links.get(2 * node + 1);
+        if (count > 0) {
+          visitor.visit(links.get(2 * node), count);
+        } else {
+          // visit the left child now and the right child later
+          if (top == stack.length)
+            stack = Arrays.copyOf(stack, 2 * top);
+          stack[top++] = links.get(2 * node);
+          ++node;
+          continue;
+        }
+      }
+      if (top == 0)
+        break;
+      node = stack[--top];
+    }
+    IntersectionCounter counter = IntersectionCounter.current();
+    if (counter != null)
+      counter.nodesVisited(visited);
+  }
+
+  /**
+   * Visit the leaves whose bounding boxes, grown by a margin, contain a point
+   *
+   * @param point   the point
+   * @param margin  distance the boxes are grown by on every side
+   * @param visitor receives the leaves
+   */
+  public void locate(Point3D point, double margin, LeafVisitor visitor) {
+    if (nodeCount == 0)
+      return;
+    double x = point.getX();
+    double y = point.getY();
+    double z = point.getZ();
+    int[] stack = new int[64];
+    int top = 0;
+    int node = 0;
+    while (true) {
+      int base = 6 * node;
+      if (x >= bounds.get(base) - margin && y >= bounds.get(base + 1) - margin && z >= bounds.get(base + 2) - margin
+          && x <= bounds.get(base + 3) + margin && y <= bounds.get(base + 4) + margin
+          && z <= bounds.get(base + 5) + margin) {
+        int count = links.get(2 * node + 1);
+        if (count > 0) {
+          visitor.visit(links.get(2 * node), count);
+        } else {
+          if (top == stack.length)
+            stack = Arrays.copyOf(stack, 2 * top);
+          stack[top++] = links.get(2 * node);
+          ++node;
+          continue;
+        }
+      }
+      if (top == 0)
+        break;
+      node = stack[--top];
+    }
+  }
+
+  /**
+   * Check whether a ray passes through the bounding box of a node with the slab
+   * test. Undefined products of an axis parallel ray on a slab are ignored
+   *
+   * @return true if the ray passes through the box within the maximum distance
+   */
+  private boolean hits(int node, double ox, double oy, double oz, double invX, double invY, double invZ,
+      double maxDistance) {
+    int base = 6 * node;
+    double tMin = 0;
+    double tMax = maxDistance;
+    double t1 = (bounds.get(base) - ox) * invX;
+    double t2 = (bounds.get(base + 3) - ox) * invX;
+    double near = t1 < t2 ? t1 : t2;
+    double far = t1 < t2 ? t2 : t1;
+    if (near > tMin)
+      tMin = near;
+    if (far < tMax)
+      tMax = far;
+    t1 = (bounds.get(base + 1) - oy) * invY;
+    t2 = (bounds.get(base + 4) - oy) * invY;
+    near = t1 < t2 ? t1 : t2;
+    far = t1 < t2 ? t2 : t1;
+    if (near > tMin)
+      tMin = near;
+    if (far < tMax)
+      tMax = far;
+    t1 = (bounds.get(base + 2) - oz) * invZ;
+    t2 = (bounds.get(base + 5) - oz) * invZ;
+    near = t1 < t2 ? t1 : t2;
+    far = t1 < t2 ? t2 : t1;
+    if (near > tMin)
+      tMin = near;
+    if (far < tMax)
+      tMax = far;
+    return tMin <= tMax;
+  }
+
+  /**
+   * Builder of the nodes with the binned surface area heuristic
+   */
+  private static final class Builder {
+    private final Primitives primitives;
+    private final int[] order;
+    private final float[] centroids;
+    private final double[] box = new double[6];
+    private final double[] sweep = new double[6];
+    private final double[] binBoxes = new double[6 * BINS];
+    private final int[] binCounts = new int[BINS];
+    private final double[] rightArea = new double[BINS];
+    private final int[] rightCount = new int[BINS];
+    private float[] nodeBounds = new float[6 * 64];
+    private int[] nodeLinks = new int[2 * 64];
+    private int nodeCount = 0;
+
+    private Builder(Primitives primitives, int[] order) {
+      this.primitives = primitives;
+      this.order = order;
+      int size = primitives.size();
+      if (order.length != size)
+        throw new IllegalArgumentException("Order must have a place for every primitive");
+      centroids = new float[3 * size];
+      for (int i = 0; i < size; ++i) {
+        order[i] = i;
+        primitives.getBounds(i, box);
+        for (int axis = 0; axis < 3; ++axis)
+          centroids[3 * i + axis] = (float) ((box[axis] + box[axis + 3]) / 2);
+      }
+    }
+
+    /**
+     * Build the node of a range of primitives and its descendants
+     *
+     * @param start   first primitive in the order
+     * @param end     primitive after the last one
+     * @param nodeBox bounding box of the primitives
+     * @return index of the node
+     */
+    private int build(int start, int end, double[] nodeBox) {
+      int node = nodeCount++;
+      if (6 * nodeCount > nodeBounds.length) {
+        nodeBounds = Arrays.copyOf(nodeBounds, 2 * nodeBounds.length);
+        nodeLinks = Arrays.copyOf(nodeLinks, 2 * nodeLinks.length);
+      }
+      // float bounds are rounded outwards so they still contain the primitives
+      for (int axis = 0; axis < 3; ++axis) {
+        nodeBounds[6 * node + axis] = Math.nextDown((float) nodeBox[axis]);
+        nodeBounds[6 * node + axis + 3] = Math.nextUp((float) nodeBox[axis + 3]);
+      }
+
+      int count = end - start;
+      if (count == 1)
+        return leaf(node, start, count);
+      double[] centroidBox = emptyBox();
+      for (int i = start; i < end; ++i) {
+        for (int axis = 0; axis < 3; ++axis) {
+          double c = centroids[3 * order[i] + axis];
+          if (c < centroidBox[axis])
+            centroidBox[axis] = c;
+          if (c > centroidBox[axis + 3])
+            centroidBox[axis + 3] = c;
+        }
+      }
+      int axis = 0;
+      for (int a = 1; a < 3; ++a)
+        if (centroidBox[a + 3] - centroidBox[a] > centroidBox[axis + 3] - centroidBox[axis])
+          axis = a;
+      double low = centroidBox[axis];
+      double extent = centroidBox[axis + 3] - low;
+      if (extent <= 0 && count <= MAX_LEAF_SIZE)
+        return leaf(node, start, count);
+
+      int mid = -1;
+      double[] leftBox = emptyBox();
+      double[] rightBox = emptyBox();
+      if (extent > 0) {
+        int split = bestSplit(start, end, axis, low, extent, area(nodeBox), leftBox, rightBox);
+        if (split < 0)
+          return leaf(node, start, count);
+        mid = partition(start, end, axis, low, extent, split);
+      }
+      if (mid <= start || mid >= end) {
+        // identical centroids cannot be told apart, split them in half
+        mid = (start + end) >>> 1;
+        leftBox = bounds(start, mid);
+        rightBox = bounds(mid, end);
+      }
+      build(start, mid, leftBox);
+      // the arrays may grow while the children are built
+      int right = build(mid, end, rightBox);
+      nodeLinks[2 * node] = right;
+      nodeLinks[2 * node + 1] = 0;
+      return node;
+    }
+
+    /**
+     * Bounding box of a range of primitives
+     *
+     * @param start first primitive in the order
+     * @param end   primitive after the last one
+     * @return the box
+     */
+    private double[] bounds(int start, int end) {
+      double[] result = emptyBox();
+      for (int i = start; i < end; ++i) {
+        primitives.getBounds(order[i], box);
+        grow(result, box);
+      }
+      return result;
+    }
+
+    /**
+     * Find the bin boundary with the lowest surface area heuristic cost
+     *
+     * @param leftBox  receives the bounding box of the left side
+     * @param rightBox receives the bounding box of the right side
+     * @return the first bin of the right side, or -1 if a leaf is cheaper
+     */
+    private int bestSplit(int start, int end, int axis, double low, double extent, double nodeArea,
+        double[] leftBox, double[] rightBox) {
+      Arrays.fill(binCounts, 0);
+      for (int b = 0; b < BINS; ++b)
+        empty(binBoxes, 6 * b);
+      for (int i = start; i < end; ++i) {
+        int b = bin(order[i], axis, low, extent);
+        ++binCounts[b];
+        primitives.getBounds(order[i], box);
+        for (int k = 0; k < 3; ++k) {
+          if (box[k] < binBoxes[6 * b + k])
+            binBoxes[6 * b + k] = box[k];
+          if (box[k + 3] > binBoxes[6 * b + k + 3])
+            binBoxes[6 * b + k + 3] = box[k + 3];
+        }
+      }
+      // areas and counts of the right side of every boundary
+      empty(sweep, 0);
+      int sum = 0;
+      for (int b = BINS - 1; b > 0; --b) {
+        growBin(sweep, b);
+        sum += binCounts[b];
+        rightArea[b] = area(sweep);
+        rightCount[b] = sum;
+      }
+      double bestCost = Double.POSITIVE_INFINITY;
+      int best = -1;
+      empty(sweep, 0);
+      sum = 0;
+      for (int b = 1; b < BINS; ++b) {
+        growBin(sweep, b - 1);
+        sum += binCounts[b - 1];
+        if (sum == 0 || rightCount[b] == 0)
+          continue;
+        double cost = area(sweep) * sum + rightArea[b] * rightCount[b];
+        if (cost < bestCost) {
+          bestCost = cost;
+          best = b;
+        }
+      }
+      int count = end - start;
+      double splitCost = TRAVERSAL_COST + bestCost / nodeArea;
+      if (best < 0 || count <= MAX_LEAF_SIZE && splitCost >= count)
+        return -1;
+      for (int b = 0; b < BINS; ++b)
+        growBin(b < best ? leftBox : rightBox, b);
+      return best;
+    }
+
+    /**
+     * Grow a box to contain the box of a bin
+     */
+    private void growBin(double[] target, int b) {
+      for (int k = 0; k < 3; ++k) {
+        if (binBoxes[6 * b + k] < target[k])
+          target[k] = binBoxes[6 * b + k];
+        if (binBoxes[6 * b + k + 3] > target[k + 3])
+          target[k + 3] = binBoxes[6 * b + k + 3];
+      }
+    }
+
+    private static void empty(double[] boxes, int index) {
+      Arrays.fill(boxes, index, index + 3, Double.POSITIVE_INFINITY);
+      Arrays.fill(boxes, index + 3, index + 6, Double.NEGATIVE_INFINITY);
+    }
+
+    /**
+     * Move the primitives of the bins before the split before the others
+     *
+     * @return index of the first primitive of the right side
+     */
+    private int partition(int start, int end, int axis, double low, double extent, int split) {
+      int i = start;
+      int j = end - 1;
+      while (i <= j) {
+        if (bin(order[i], axis, low, extent) < split) {
+          ++i;
+        } else {
+          int swap = order[i];
+          order[i] = order[j];
+          order[j--] = swap;
+        }
+      }
+      return i;
+    }
+
+    private int bin(int primitive, int axis, double low, double extent) {
+      int b = (int) (BINS * (centroids[3 * primitive + axis] - low) / extent);
+      return b < 0 ? 0 : b >= BINS ? BINS - 1 : b;
+    }
+
+    private int leaf(int node, int start, int count) {
+      nodeLinks[2 * node] = start;
+      nodeLinks[2 * node + 1] = count;
+      return node;
+    }
+  }
+
+  /**
+   * @return a box that contains nothing
+   */
+  static double[] emptyBox() {
+    double inf = Double.POSITIVE_INFINITY;
+    return new double[] { inf, inf, inf, -inf, -inf, -inf };
+  }
+
+  /**
+   * Grow a box to contain another box
+   *
+   * @param box   the box to grow
+   * @param other the box to contain
+   */
+  static void grow(double[] box, double[] other) {
+    for (int axis = 0; axis < 3; ++axis) {
+      if (other[axis] < box[axis])
+        box[axis] = other[axis];
+      if (other[axis + 3] > box[axis + 3])
+        box[axis + 3] = other[axis + 3];
+    }
+  }
+
+  /**
+   * Surface area of a box
+   *
+   * @param box the box
+   * @return the area, 0 for an empty box
+   */
+  static double area(double[] box) {
+    double x = box[3] - box[0];
+    double y = box[4] - box[1];
+    double z = box[5] - box[2];
+    if (x < 0 || y < 0 || z < 0)
+      return 0;
+    return 2 * (x * y + y * z + z * x);
+  }
+}
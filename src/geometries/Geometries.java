@@ -1,9 +1,10 @@
 package geometries;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.Iterator;
 import java.util.List;
+import java.util.function.IntConsumer;
 
 import primitives.Ray;
 
@@ -19,6 +20,23 @@ public class Geometries implements Intersectable {
      */
     List<Intersectable> geometryList;
 
+    /**
+     * Number of bounded geometries from which a hierarchy is built over them
+     */
+    private static final int MIN_HIERARCHY_SIZE = 4;
+
+    /**
+     * Hierarchy over the geometries, built by the first intersection after a
+     * change of the list
+     */
+    private volatile Accelerator accelerator = null;
+
+    /**
+     * Ratio of the cost of a refitted hierarchy to the cost it was built with
+     * above which it is rebuilt
+     */
+    private static final double REBUILD_RATIO = 2;
+
     /**
      * Default constructor
      */
@@ -35,6 +53,12 @@ public class Geometries implements Intersectable {
         geometryList = new ArrayList<>(List.of(geometries));
     }
 
+    /**
+     * Get the list of geometries, changes to it must be made by
+     * {@link #add(Intersectable...)} so the hierarchy is rebuilt
+     * 
+     * @return the list, or null if there are no geometries
+     */
     public List<Intersectable> getGeometryList() {
         return this.geometryList;
     }
@@ -45,6 +69,7 @@ public class Geometries implements Intersectable {
      * @param geometries list of geometries to add
      */
     public void add(Intersectable... geometries) {
+        accelerator = null;
         // initialize list if empty
         if (geometryList == null) {
             geometryList = new ArrayList<>(List.of(geometries));
@@ -54,28 +79,258 @@ public class Geometries implements Intersectable {
         Collections.addAll(geometryList, geometries);
     }
 
+    @Override
+    public double[] getBounds() {
+        if (geometryList == null || geometryList.isEmpty()) {
+            return null;
+        }
+        double[] bounds = BoundingVolumeHierarchy.emptyBox();
+        for (Intersectable geometry : geometryList) {
+            double[] box = geometry.getBounds();
+            // one unbounded geometry makes the whole collection unbounded
+            if (box == null) {
+                return null;
+            }
+            BoundingVolumeHierarchy.grow(bounds, box);
+        }
+        return bounds;
+    }
+
     @Override
     public List<GeoPoint> findGeoIntersections(Ray ray, double maxDistance) {
         // return null if no geometries
         if (geometryList == null) {
             return null;
         }
-        // initialize intersection list to null
-        List<GeoPoint> intersections = null;
-        Iterator<Intersectable> iterator = geometryList.iterator();
-        while (iterator.hasNext()) {
-            List<GeoPoint> newPoints = iterator.next().findGeoIntersections(ray, maxDistance);
-            // make sure there are points
-            if (newPoints != null) {
-                // otherwise, initialize with a list when first intersection found
-                if (intersections == null) {
-                    intersections = new ArrayList<>(newPoints);
-                    continue;
+        return accelerator().findGeoIntersections(ray, maxDistance, null);
+    }
+
+    /**
+     * Find the intersections of a ray and tell which geometries it intersected
+     * 
+     * @param ray         the ray
+     * @param maxDistance maximum distance along the ray
+     * @param intersected receives the index in the list of every geometry that
+     *                    the ray intersected
+     * @return the intersections, or null if there are none
+     */
+    public List<GeoPoint> findGeoIntersections(Ray ray, double maxDistance, IntConsumer intersected) {
+        if (geometryList == null) {
+            return null;
+        }
+        return accelerator().findGeoIntersections(ray, maxDistance, intersected);
+    }
+
+    /**
+     * Get the hierarchy of the geometries, building it on the first intersection
+     * after a change
+     * 
+     * @return the hierarchy
+     */
+    private Accelerator accelerator() {
+        Accelerator result = accelerator;
+        if (result == null) {
+            synchronized (this) {
+                result = accelerator;
+                if (result == null) {
+                    accelerator = result = new Accelerator(geometryList);
                 }
-                // add points if list exists already
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Refit the hierarchy to geometries that moved, such as instances with a new
+     * transformation, in time linear in the number of geometries. Nested
+     * collections are refitted first, and a hierarchy that the moves made much
+     * slower than a new one is rebuilt, which only rebuilds the top level since the
+     * hierarchies of the geometries themselves do not change
+     */
+    public void refit() {
+        refit(this);
+    }
+
+    /**
+     * Take the hierarchy of another collection of the same geometries in the same
+     * order, such as an earlier snapshot of an animated scene, and refit it to the
+     * geometries of this one
+     * 
+     * @param previous the other collection
+     */
+    public void refit(Geometries previous) {
+        if (geometryList == null) {
+            return;
+        }
+        for (Intersectable geometry : geometryList) {
+            if (geometry instanceof Geometries) {
+                ((Geometries) geometry).refit();
+            }
+        }
+        Accelerator current = previous.accelerator;
+        if (current == null) {
+            // built by the first intersection
+            accelerator = null;
+            return;
+        }
+        Accelerator refitted = current.refit(geometryList);
+        accelerator = refitted != null ? refitted : new Accelerator(geometryList);
+    }
+
+    /**
+     * Two-level acceleration: a hierarchy over the bounding boxes of the bounded
+     * geometries, each of which may have a hierarchy of its own, and a list of the
+     * unbounded ones that every ray is tested against
+     */
+    private static final class Accelerator {
+        /**
+         * the geometries in the order of the list
+         */
+        private final Intersectable[] geometries;
+
+        /**
+         * indices of the unbounded geometries in the list
+         */
+        private final int[] unbounded;
+
+        /**
+         * indices of the bounded geometries in the list, in the order of the
+         * hierarchy
+         */
+        private final int[] bounded;
+
+        private final BoundingVolumeHierarchy hierarchy;
+
+        /**
+         * cost of the hierarchy when it was built
+         */
+        private final double builtCost;
+
+        private Accelerator(List<Intersectable> list) {
+            geometries = list.toArray(new Intersectable[0]);
+            List<double[]> boxes = new ArrayList<>();
+            int[] boundedIndices = new int[geometries.length];
+            int[] unboundedIndices = new int[geometries.length];
+            int u = 0;
+            for (int i = 0; i < geometries.length; ++i) {
+                double[] box = geometries[i].getBounds();
+                if (box == null) {
+                    unboundedIndices[u++] = i;
+                } else {
+                    boundedIndices[boxes.size()] = i;
+                    boxes.add(box);
+                }
+            }
+            unbounded = Arrays.copyOf(unboundedIndices, u);
+            if (boxes.size() < MIN_HIERARCHY_SIZE) {
+                bounded = Arrays.copyOf(boundedIndices, boxes.size());
+                hierarchy = null;
+                builtCost = 0;
+                return;
+            }
+            int[] order = new int[boxes.size()];
+            hierarchy = BoundingVolumeHierarchy.build(primitives(boxes), order);
+            builtCost = hierarchy.getCost();
+            bounded = new int[order.length];
+            for (int i = 0; i < order.length; ++i) {
+                bounded[i] = boundedIndices[order[i]];
+            }
+        }
+
+        private Accelerator(Intersectable[] geometries, int[] unbounded, int[] bounded,
+                BoundingVolumeHierarchy hierarchy, double builtCost) {
+            this.geometries = geometries;
+            this.unbounded = unbounded;
+            this.bounded = bounded;
+            this.hierarchy = hierarchy;
+            this.builtCost = builtCost;
+        }
+
+        /**
+         * Refit the hierarchy to the geometries in their new places
+         * 
+         * @param list geometries in the order the hierarchy was built over
+         * @return the refitted hierarchy, or null if it must be rebuilt
+         */
+        private Accelerator refit(List<Intersectable> list) {
+            if (list.size() != geometries.length) {
+                return null;
+            }
+            Intersectable[] newGeometries = list.toArray(new Intersectable[0]);
+            for (int i : unbounded) {
+                if (newGeometries[i].getBounds() != null) {
+                    return null;
+                }
+            }
+            // the boxes in the order of the hierarchy
+            List<double[]> boxes = new ArrayList<>(bounded.length);
+            for (int i : bounded) {
+                double[] box = newGeometries[i].getBounds();
+                if (box == null) {
+                    return null;
+                }
+                boxes.add(box);
+            }
+            if (hierarchy == null) {
+                return new Accelerator(newGeometries, unbounded, bounded, null, 0);
+            }
+            int[] identity = new int[bounded.length];
+            for (int i = 0; i < identity.length; ++i) {
+                identity[i] = i;
+            }
+            BoundingVolumeHierarchy refitted = hierarchy.refit(primitives(boxes), identity);
+            if (refitted.getCost() > REBUILD_RATIO * builtCost) {
+                return null;
+            }
+            return new Accelerator(newGeometries, unbounded, bounded, refitted, builtCost);
+        }
+
+        private static BoundingVolumeHierarchy.Primitives primitives(List<double[]> boxes) {
+            return new BoundingVolumeHierarchy.Primitives() {
+                @Override
+                public int size() {
+                    return boxes.size();
+                }
+
+                @Override
+                public void getBounds(int primitive, double[] box) {
+                    System.arraycopy(boxes.get(primitive), 0, box, 0, 6);
+                }
+            };
+        }
+
+        private List<GeoPoint> findGeoIntersections(Ray ray, double maxDistance, IntConsumer intersected) {
+            List<GeoPoint> intersections = new ArrayList<>();
+            IntersectionCounter counter = IntersectionCounter.current();
+            for (int i : unbounded) {
+                addIntersections(intersections, i, ray, maxDistance, intersected, counter);
+            }
+            if (hierarchy == null) {
+                for (int i : bounded) {
+                    addIntersections(intersections, i, ray, maxDistance, intersected, counter);
+                }
+            } else {
+                hierarchy.traverse(ray, maxDistance, (first, count) -> {
+                    for (int i = first; i < first + count; ++i) {
+                        addIntersections(intersections, bounded[i], ray, maxDistance, intersected, counter);
+                    }
+                });
+            }
+            return intersections.isEmpty() ? null : intersections;
+        }
+
+        private void addIntersections(List<GeoPoint> intersections, int index, Ray ray, double maxDistance,
+                IntConsumer intersected, IntersectionCounter counter) {
+            if (counter != null) {
+                counter.tested(geometries[index].getClass(), 1);
+            }
+            List<GeoPoint> newPoints = geometries[index].findGeoIntersections(ray, maxDistance);
+            if (newPoints != null) {
                 intersections.addAll(newPoints);
+                if (intersected != null) {
+                    intersected.accept(index);
+                }
             }
         }
-        return intersections;
     }
-}
\ No newline at end of file
+}
@@ -12,7 +12,7 @@ import primitives.Vector;
  * @author Jonah Lawrence
  * @author Elad Harizy
  */
-public abstract class Geometry implements Intersectable {
+public abstract class Geometry implements Intersectable, Cloneable {
 
   /**
    * Emission color
@@ -73,6 +73,25 @@ public abstract class Geometry implements Intersectable {
     return this;
   }
 
+  /**
+   * Copy of the geometry with its own emission and material that shares the
+   * shape, which never changes after construction
+   * 
+   * @param newEmission emission color of the copy
+   * @param newMaterial material of the copy
+   * @return the copy
+   */
+  public Geometry copy(Color newEmission, Material newMaterial) {
+    try {
+      Geometry copy = (Geometry) clone();
+      copy.emission = newEmission;
+      copy.material = newMaterial;
+      return copy;
+    } catch (CloneNotSupportedException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
   /**
    * Get the normal vector of the geometry
    * 
@@ -0,0 +1,261 @@
+package geometries;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Directory of the hierarchies of meshes, keyed by a hash of the vertices and
+ * triangles they were built over. A mesh whose hierarchy is in the cache maps
+ * its triangles and nodes from the file instead of building them, and a changed
+ * mesh has another hash, so a stale hierarchy is never used. Files are written
+ * to a temporary name and moved into place, so concurrent renders never read a
+ * partial file, and the triangles and node links of a file are checked when it
+ * is mapped, so a damaged file is built again like a missing one.
+ *
+ * @author Jonah Lawrence
+ * @author Elad Harizy
+ */
+public class HierarchyCache {
+
+  /**
+   * version of the files and of the builder, part of the hash so files of an
+   * older builder are not used
+   */
+  private static final int VERSION = 1;
+
+  private static final byte[] MAGIC = "JRTBVH\0\0".getBytes(StandardCharsets.US_ASCII);
+  private static final int HEADER_BYTES = 32;
+
+  /**
+   * directory of the files
+   */
+  private final Path directory;
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final Logger logger = Logger.getLogger("HierarchyCache");
+
+  /**
+   * Constructor of a cache in a directory, created if it is missing
+   *
+   * @param directory the directory
+   * @throws IOException if the directory cannot be created
+   */
+  public HierarchyCache(Path directory) throws IOException {
+    this.directory = Files.createDirectories(directory);
+  }
+
+  /**
+   * @return number of meshes whose hierarchy was mapped from the cache
+   */
+  public long getHits() {
+    return hits.get();
+  }
+
+  /**
+   * @return number of meshes whose hierarchy was built
+   */
+  public long getMisses() {
+    return misses.get();
+  }
+
+  /**
+   * Create a mesh with the hierarchy of the cache, building and storing it if it
+   * is not there yet. A cache that cannot be read or written only costs the
+   * build, the mesh is created anyway
+   *
+   * @param vertices x, y, z of every vertex
+   * @param indices  indices of the vertices of every triangle
+   * @return the mesh
+   */
+  public Mesh getMesh(FloatBuffer vertices, IntBuffer indices) {
+    Path file = directory.resolve(hash(vertices, indices) + ".bvh");
+    if (Files.exists(file)) {
+      try {
+        Mesh mesh = read(file, vertices, indices.limit() / 3);
+        if (mesh != null) {
+          hits.incrementAndGet();
+          return mesh;
+        }
+      } catch (IOException e) {
+        logger.log(Level.WARNING, "Hierarchy cannot be read from " + file, e);
+      }
+    }
+    misses.incrementAndGet();
+    Mesh mesh = new Mesh(vertices, indices);
+    try {
+      write(file, mesh);
+    } catch (IOException e) {
+      // the mesh is built, only the next load builds it again
+      logger.log(Level.WARNING, "Hierarchy cannot be written to " + file, e);
+    }
+    return mesh;
+  }
+
+  /**
+   * Content hash of the vertices and triangles of a mesh
+   *
+   * @param vertices x, y, z of every vertex
+   * @param indices  indices of the vertices of every triangle
+   * @return SHA-256 of the version, the counts and the contents in hex
+   */
+  public static String hash(FloatBuffer vertices, IntBuffer indices) {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is not available", e);
+    }
+    ByteBuffer chunk = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+    chunk.putInt(VERSION).putInt(vertices.limit()).putInt(indices.limit()).flip();
+    digest.update(chunk);
+    FloatBuffer floats = vertices.duplicate().clear();
+    while (floats.hasRemaining()) {
+      chunk.clear();
+      int count = Math.min(chunk.capacity() / 4, floats.remaining());
+      chunk.asFloatBuffer().put(floats.slice().limit(count));
+      floats.position(floats.position() + count);
+      digest.update(chunk.limit(4 * count));
+    }
+    IntBuffer ints = indices.duplicate().clear();
+    while (ints.hasRemaining()) {
+      chunk.clear();
+      int count = Math.min(chunk.capacity() / 4, ints.remaining());
+      chunk.asIntBuffer().put(ints.slice().limit(count));
+      ints.position(ints.position() + count);
+      digest.update(chunk.limit(4 * count));
+    }
+    StringBuilder hex = new StringBuilder();
+    for (byte b : digest.digest())
+      hex.append(String.format("%02x", b));
+    return hex.toString();
+  }
+
+  /**
+   * Map the triangles and hierarchy of a mesh from a file of the cache
+   *
+   * @return the mesh, or null if the file does not fit the mesh
+   */
+  private static Mesh read(Path file, FloatBuffer vertices, int triangleCount) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      if (channel.size() < HEADER_BYTES)
+        return null;
+      ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())
+          .order(ByteOrder.LITTLE_ENDIAN);
+      byte[] magic = new byte[MAGIC.length];
+      buffer.get(magic);
+      int version = buffer.getInt();
+      int triangles = buffer.getInt();
+      int nodes = buffer.getInt();
+      if (!Arrays.equals(magic, MAGIC) || version != VERSION || triangles != triangleCount || nodes < 0
+          || channel.size() != HEADER_BYTES + padded(12L * triangles) + padded(24L * nodes) + 8L * nodes)
+        return null;
+      buffer.position(HEADER_BYTES);
+      IntBuffer indices = slice(buffer, 12 * triangles).asIntBuffer();
+      FloatBuffer bounds = slice(buffer, 24 * nodes).asFloatBuffer();
+      IntBuffer links = slice(buffer, 8 * nodes).asIntBuffer();
+      if (!isValid(indices, links, vertices.limit() / 3, triangles))
+        return null;
+      return new Mesh(vertices, indices, new BoundingVolumeHierarchy(bounds, links));
+    }
+  }
+
+  /**
+   * Check that the triangles of a file are of the vertices of the mesh, and that
+   * its nodes are a hierarchy stored depth first whose leaves take the triangles
+   * in order, each once, as the builder stores them
+   *
+   * @param indices       indices of the vertices of every triangle
+   * @param links         links of the nodes, 2 ints per node
+   * @param vertexCount   number of vertices of the mesh
+   * @param triangleCount number of triangles
+   * @return true if the triangles and hierarchy can be traced
+   */
+  private static boolean isValid(IntBuffer indices, IntBuffer links, int vertexCount, int triangleCount) {
+    for (int i = 0; i < indices.limit(); ++i)
+      if (indices.get(i) < 0 || indices.get(i) >= vertexCount)
+        return false;
+    int nodes = links.limit() / 2;
+    if (nodes == 0)
+      return triangleCount == 0;
+    // right children of the inner nodes whose left subtree is being walked
+    int[] rights = new int[nodes];
+    int top = 0;
+    int covered = 0;
+    boolean afterLeaf = false;
+    for (int node = 0; node < nodes; ++node) {
+      // after a leaf the walk goes on with the right child of the nearest inner
+      // node, otherwise with the left child of the node before
+      if (afterLeaf && (top == 0 || rights[--top] != node))
+        return false;
+      int link = links.get(2 * node);
+      int count = links.get(2 * node + 1);
+      if (count < 0)
+        return false;
+      if (count == 0) {
+        if (link <= node + 1 || link >= nodes)
+          return false;
+        rights[top++] = link;
+        afterLeaf = false;
+      } else {
+        if (link != covered || count > triangleCount - covered)
+          return false;
+        covered += count;
+        afterLeaf = true;
+      }
+    }
+    return afterLeaf && top == 0 && covered == triangleCount;
+  }
+
+  /**
+   * Write the triangles and hierarchy of a mesh to a file of the cache
+   */
+  private void write(Path file, Mesh mesh) throws IOException {
+    BoundingVolumeHierarchy hierarchy = mesh.getHierarchy();
+    int triangles = mesh.getTriangleCount();
+    int nodes = hierarchy.getNodeCount();
+    long size = HEADER_BYTES + padded(12L * triangles) + padded(24L * nodes) + 8L * nodes;
+    Path temporary = Files.createTempFile(directory, "bvh", ".tmp");
+    try {
+      try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+        ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put(MAGIC).putInt(VERSION).putInt(triangles).putInt(nodes);
+        buffer.position(HEADER_BYTES);
+        slice(buffer, 12 * triangles).asIntBuffer().put(mesh.getIndices());
+        slice(buffer, 24 * nodes).asFloatBuffer().put(hierarchy.getBounds());
+        slice(buffer, 8 * nodes).asIntBuffer().put(hierarchy.getLinks());
+      }
+      Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(temporary);
+    }
+  }
+
+  /**
+   * Take a view of the next bytes of a buffer and skip them with their padding
+   */
+  private static ByteBuffer slice(ByteBuffer buffer, int length) {
+    ByteBuffer view = buffer.slice().limit(length).order(ByteOrder.LITTLE_ENDIAN);
+    buffer.position((int) Math.min(buffer.limit(), buffer.position() + padded(length)));
+    return view;
+  }
+
+  private static long padded(long length) {
+    return length + 7 & ~7L;
+  }
+}
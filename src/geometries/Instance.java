@@ -0,0 +1,155 @@
+package geometries;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import primitives.Color;
+import primitives.Material;
+import primitives.Point3D;
+import primitives.Ray;
+import primitives.Transform;
+import primitives.Vector;
+
+/**
+ * Class Instance places a shared geometry in the scene through an affine
+ * transformation. Rays are transformed into the space of the geometry and its
+ * intersections and normals back out, so any number of instances of a mesh
+ * cost the memory of the mesh once
+ *
+ * @author Jonah Lawrence
+ * @author Elad Harizy
+ */
+public class Instance implements Intersectable {
+
+  /**
+   * the shared geometry
+   */
+  private final Intersectable geometry;
+
+  /**
+   * transformation from the space of the geometry to the scene, replaced as a
+   * whole so a ray never sees half of a change
+   */
+  private volatile Transform transform;
+
+  /**
+   * Constructor
+   *
+   * @param geometry  the shared geometry
+   * @param transform transformation from the space of the geometry to the scene
+   */
+  public Instance(Intersectable geometry, Transform transform) {
+    this.geometry = geometry;
+    this.transform = transform;
+  }
+
+  /**
+   * @return the shared geometry
+   */
+  public Intersectable getGeometry() {
+    return geometry;
+  }
+
+  /**
+   * @return transformation from the space of the geometry to the scene
+   */
+  public Transform getTransform() {
+    return transform;
+  }
+
+  /**
+   * Move the instance, the hierarchies of the collections it is in must then be
+   * refitted by {@link Geometries#refit()}
+   *
+   * @param transform transformation from the space of the geometry to the scene
+   * @return the instance itself
+   */
+  public Instance setTransform(Transform transform) {
+    this.transform = transform;
+    return this;
+  }
+
+  @Override
+  public double[] getBounds() {
+    Transform transform = this.transform;
+    double[] bounds = geometry.getBounds();
+    return bounds == null ? null : transform.applyToBounds(bounds);
+  }
+
+  @Override
+  public List<GeoPoint> findGeoIntersections(Ray ray, double maxDistance) {
+    Transform transform = this.transform;
+    Transform inverse = transform.inverse();
+    Vector direction = inverse.applyToVector(ray.getDirection());
+    // distances grow by the length of the transformed unit direction
+    double scale = direction.length();
+    Ray objectRay = new Ray(inverse.applyToPoint(ray.getOrigin()), direction.normalize());
+    List<GeoPoint> objectPoints = geometry.findGeoIntersections(objectRay, maxDistance * scale);
+    if (objectPoints == null)
+      return null;
+    List<GeoPoint> points = new ArrayList<>(objectPoints.size());
+    for (GeoPoint objectPoint : objectPoints)
+      points.add(new GeoPoint(new Hit(this, transform, objectPoint), transform.applyToPoint(objectPoint.point)));
+    return points;
+  }
+
+  /**
+   * Intersection with an instance, it answers for the geometry that was hit with
+   * its normal turned into the scene
+   */
+  private static final class Hit extends Geometry {
+    private final Instance instance;
+    private final Transform transform;
+    private final GeoPoint objectPoint;
+
+    private Hit(Instance instance, Transform transform, GeoPoint objectPoint) {
+      this.instance = instance;
+      this.transform = transform;
+      this.objectPoint = objectPoint;
+    }
+
+    @Override
+    public Color getEmission() {
+      return objectPoint.geometry.getEmission();
+    }
+
+    @Override
+    public Material getMaterial() {
+      return objectPoint.geometry.getMaterial();
+    }
+
+    @Override
+    public int getShininess() {
+      return objectPoint.geometry.getShininess();
+    }
+
+    @Override
+    public Vector getNormal(Point3D point) {
+      return transform.applyToNormal(objectPoint.geometry.getNormal(objectPoint.point)).normalize();
+    }
+
+    @Override
+    public List<GeoPoint> findGeoIntersections(Ray ray, double maxDistance) {
+      List<GeoPoint> points = instance.findGeoIntersections(ray, maxDistance);
+      if (points == null)
+        return null;
+      points.removeIf(p -> !equals(p.geometry));
+      return points.isEmpty() ? null : points;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (o == this)
+        return true;
+      if (!(o instanceof Hit))
+        return false;
+      Hit other = (Hit) o;
+      return other.instance == instance && other.objectPoint.geometry.equals(objectPoint.geometry);
+    }
+
+    @Override
+    public int hashCode() {
+      return System.identityHashCode(instance) * 31 + objectPoint.geometry.hashCode();
+    }
+  }
+}
@@ -57,6 +57,17 @@ public interface Intersectable {
         return geoList == null ? null : geoList.stream().map(gp -> gp.point).collect(Collectors.toList());
     }
 
+    /**
+     * Get the axis aligned bounding box of the geometry, for the acceleration of
+     * composites
+     * 
+     * @return minimum x, y, z and maximum x, y, z, or null if the geometry is
+     *         unbounded
+     */
+    default double[] getBounds() {
+        return null;
+    }
+
     /**
      * Method to find intersection points of a ray to the current geometric shape
      * 
@@ -0,0 +1,52 @@
+package geometries;
+
+/**
+ * Receives the work of intersecting rays with geometries in the threads it is
+ * set for, such as to collect the statistics of a render. The geometries report
+ * the hierarchy nodes a ray visits and the geometries it is tested against once
+ * per intersection, so nothing is counted while no counter is set
+ *
+ * @author Jonah Lawrence
+ * @author Elad Harizy
+ */
+public abstract class IntersectionCounter {
+
+  /**
+   * counter of every thread
+   */
+  private static final ThreadLocal<IntersectionCounter> COUNTERS = new ThreadLocal<>();
+
+  /**
+   * Set the counter of the intersections of the current thread
+   *
+   * @param counter the counter, null to stop counting
+   */
+  public static void setCurrent(IntersectionCounter counter) {
+    if (counter == null)
+      COUNTERS.remove();
+    else
+      COUNTERS.set(counter);
+  }
+
+  /**
+   * @return the counter of the current thread, or null
+   */
+  static IntersectionCounter current() {
+    return COUNTERS.get();
+  }
+
+  /**
+   * A ray visited nodes of a bounding volume hierarchy
+   *
+   * @param count number of nodes
+   */
+  public abstract void nodesVisited(int count);
+
+  /**
+   * A ray was tested against geometries of a type
+   *
+   * @param type  type of the geometries
+   * @param count number of tests
+   */
+  public abstract void tested(Class<? extends Intersectable> type, int count);
+}
@@ -0,0 +1,383 @@
+package geometries;
+
+import static primitives.Util.alignZero;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import primitives.Color;
+import primitives.Material;
+import primitives.Point3D;
+import primitives.Ray;
+import primitives.Vector;
+
+/**
+ * Class Mesh is a triangle mesh kept in compact buffers - 3 floats for every
+ * vertex and 3 vertex indices for every triangle - with a bounding volume
+ * hierarchy over its triangles. Intersections refer to lightweight faces of the
+ * mesh that share its emission and material
+ *
+ * @author Jonah Lawrence
+ * @author Elad Harizy
+ */
+public class Mesh extends Geometry {
+
+  /**
+   * determinant under which a ray is parallel to a triangle
+   */
+  private static final double PARALLEL = 1e-12;
+
+  /**
+   * relative distance within which a point is on the mesh
+   */
+  private static final double ON_SURFACE = 1e-5;
+
+  /**
+   * x, y, z of every vertex
+   */
+  private final FloatBuffer vertices;
+
+  /**
+   * indices of the vertices of every triangle, in the order of the hierarchy
+   */
+  private final IntBuffer indices;
+
+  /**
+   * hierarchy over the triangles
+   */
+  private final BoundingVolumeHierarchy hierarchy;
+
+  /**
+   * Constructor that builds the hierarchy over the triangles
+   *
+   * @param vertices x, y, z of every vertex
+   * @param indices  indices of the vertices of every triangle
+   *
+   * @throws IllegalArgumentException if the buffers are not made of whole
+   *                                  vertices and triangles or an index is out
+   *                                  of range
+   */
+  public Mesh(FloatBuffer vertices, IntBuffer indices) {
+    this.vertices = checkVertices(vertices);
+    int vertexCount = vertices.limit() / 3;
+    IntBuffer source = checkIndices(indices);
+    for (int i = 0; i < source.limit(); ++i)
+      if (source.get(i) < 0 || source.get(i) >= vertexCount)
+        throw new IllegalArgumentException("Vertex index " + source.get(i) + " is out of range");
+
+    int[] order = new int[source.limit() / 3];
+    this.hierarchy = BoundingVolumeHierarchy.build(new BoundingVolumeHierarchy.Primitives() {
+      @Override
+      public int size() {
+        return order.length;
+      }
+
+      @Override
+      public void getBounds(int primitive, double[] box) {
+        triangleBounds(source, primitive, box);
+      }
+    }, order);
+
+    // keep the triangles of a leaf next to each other
+    int[] reordered = new int[source.limit()];
+    for (int i = 0; i < order.length; ++i)
+      for (int k = 0; k < 3; ++k)
+        reordered[3 * i + k] = source.get(3 * order[i] + k);
+    this.indices = IntBuffer.wrap(reordered);
+  }
+
+  /**
+   * Constructor that builds the hierarchy over the triangles
+   *
+   * @param vertices x, y, z of every vertex
+   * @param indices  indices of the vertices of every triangle
+   */
+  public Mesh(float[] vertices, int[] indices) {
+    this(FloatBuffer.wrap(vertices), IntBuffer.wrap(indices));
+  }
+
+  /**
+   * Constructor of a mesh whose hierarchy is already built
+   *
+   * @param vertices  x, y, z of every vertex
+   * @param indices   indices of the vertices of every triangle, in the order of
+   *                  the hierarchy
+   * @param hierarchy hierarchy over the triangles
+   */
+  public Mesh(FloatBuffer vertices, IntBuffer indices, BoundingVolumeHierarchy hierarchy) {
+    this.vertices = checkVertices(vertices);
+    this.indices = checkIndices(indices);
+    this.hierarchy = hierarchy;
+  }
+
+  private static FloatBuffer checkVertices(FloatBuffer vertices) {
+    if (vertices.limit() % 3 != 0)
+      throw new IllegalArgumentException("Vertices must have 3 coordinates");
+    return vertices;
+  }
+
+  private static IntBuffer checkIndices(IntBuffer indices) {
+    if (indices.limit() % 3 != 0)
+      throw new IllegalArgumentException("Triangles must have 3 vertices");
+    return indices;
+  }
+
+  /**
+   * @return number of vertices
+   */
+  public int getVertexCount() {
+    return vertices.limit() / 3;
+  }
+
+  /**
+   * @return number of triangles
+   */
+  public int getTriangleCount() {
+    return indices.limit() / 3;
+  }
+
+  /**
+   * @return x, y, z of every vertex
+   */
+  public FloatBuffer getVertices() {
+    return vertices.duplicate();
+  }
+
+  /**
+   * @return indices of the vertices of every triangle, in the order of the
+   *         hierarchy
+   */
+  public IntBuffer getIndices() {
+    return indices.duplicate();
+  }
+
+  /**
+   * @return hierarchy over the triangles
+   */
+  public BoundingVolumeHierarchy getHierarchy() {
+    return hierarchy;
+  }
+
+  /**
+   * Get a vertex of a triangle
+   *
+   * @param triangle index of the triangle
+   * @param corner   0, 1 or 2
+   * @return the vertex
+   */
+  public Point3D getVertex(int triangle, int corner) {
+    int v = 3 * indices.get(3 * triangle + corner);
+    return new Point3D(vertices.get(v), vertices.get(v + 1), vertices.get(v + 2));
+  }
+
+  @Override
+  public double[] getBounds() {
+    if (hierarchy.getNodeCount() == 0)
+      return null;
+    double[] box = new double[6];
+    for (int k = 0; k < 6; ++k)
+      box[k] = hierarchy.getRootBound(k);
+    return box;
+  }
+
+  /**
+   * Get the normal of the triangle a point is on, which is found through the
+   * hierarchy - the geometries of the intersections of the mesh give the normal
+   * without the search
+   *
+   * @throws IllegalArgumentException if the point is not on the mesh
+   */
+  @Override
+  public Vector getNormal(Point3D point) {
+    double[] box = getBounds();
+    if (box == null)
+      throw new IllegalArgumentException("Point is not on the mesh");
+    // the vertices are floats, so points on the mesh are only that close to it
+    double margin = ON_SURFACE * Math.max(1, Math.max(box[3] - box[0], Math.max(box[4] - box[1], box[5] - box[2])));
+    int[] nearest = { -1 };
+    double[] nearestDistance = { margin };
+    hierarchy.locate(point, margin, (first, count) -> {
+      for (int triangle = first; triangle < first + count; ++triangle) {
+        double distance = planeDistance(triangle, point);
+        if (distance <= nearestDistance[0]) {
+          nearestDistance[0] = distance;
+          nearest[0] = triangle;
+        }
+      }
+    });
+    if (nearest[0] < 0)
+      throw new IllegalArgumentException("Point is not on the mesh");
+    return getNormal(nearest[0]);
+  }
+
+  /**
+   * Get the distance of a point from the plane of a triangle, if the point is
+   * over the triangle
+   *
+   * @param triangle index of the triangle
+   * @param point    the point
+   * @return the distance, or infinity if the point is beside the triangle
+   */
+  private double planeDistance(int triangle, Point3D point) {
+    int a = 3 * indices.get(3 * triangle);
+    int b = 3 * indices.get(3 * triangle + 1);
+    int c = 3 * indices.get(3 * triangle + 2);
+    double ax = vertices.get(a), ay = vertices.get(a + 1), az = vertices.get(a + 2);
+    double e1x = vertices.get(b) - ax, e1y = vertices.get(b + 1) - ay, e1z = vertices.get(b + 2) - az;
+    double e2x = vertices.get(c) - ax, e2y = vertices.get(c + 1) - ay, e2z = vertices.get(c + 2) - az;
+    double px = point.getX() - ax, py = point.getY() - ay, pz = point.getZ() - az;
+    // barycentric coordinates of the projection of the point on the plane
+    double d11 = e1x * e1x + e1y * e1y + e1z * e1z;
+    double d12 = e1x * e2x + e1y * e2y + e1z * e2z;
+    double d22 = e2x * e2x + e2y * e2y + e2z * e2z;
+    double d1p = e1x * px + e1y * py + e1z * pz;
+    double d2p = e2x * px + e2y * py + e2z * pz;
+    double det = d11 * d22 - d12 * d12;
+    if (det < PARALLEL)
+      return Double.POSITIVE_INFINITY;
+    double u = (d22 * d1p - d12 * d2p) / det;
+    double v = (d11 * d2p - d12 * d1p) / det;
+    if (u < -ON_SURFACE || v < -ON_SURFACE || u + v > 1 + ON_SURFACE)
+      return Double.POSITIVE_INFINITY;
+    double nx = e1y * e2z - e1z * e2y, ny = e1z * e2x - e1x * e2z, nz = e1x * e2y - e1y * e2x;
+    return Math.abs(nx * px + ny * py + nz * pz) / Math.sqrt(nx * nx + ny * ny + nz * nz);
+  }
+
+  /**
+   * Get the normal of a triangle
+   *
+   * @param triangle index of the triangle
+   * @return normal by the order of its vertices
+   */
+  public Vector getNormal(int triangle) {
+    Point3D p0 = getVertex(triangle, 0);
+    return getVertex(triangle, 1).subtract(p0).crossProduct(getVertex(triangle, 2).subtract(p0)).normalize();
+  }
+
+  @Override
+  public List<GeoPoint> findGeoIntersections(Ray ray, double maxDistance) {
+    List<GeoPoint> intersections = new ArrayList<>(2);
+    int[] tests = new int[1];
+    hierarchy.traverse(ray, maxDistance, (first, count) -> {
+      tests[0] += count;
+      for (int triangle = first; triangle < first + count; ++triangle) {
+        GeoPoint intersection = intersect(triangle, ray, maxDistance);
+        if (intersection != null)
+          intersections.add(intersection);
+      }
+    });
+    IntersectionCounter counter = IntersectionCounter.current();
+    if (counter != null)
+      counter.tested(Triangle.class, tests[0]);
+    return intersections.isEmpty() ? null : intersections;
+  }
+
+  /**
+   * Intersect a ray with a triangle by the Moller-Trumbore algorithm. Edges are
+   * included so rays do not pass between neighbouring triangles
+   *
+   * @param triangle    index of the triangle
+   * @param ray         the ray
+   * @param maxDistance maximum distance
+   * @return the intersection or null if there is none
+   */
+  private GeoPoint intersect(int triangle, Ray ray, double maxDistance) {
+    int a = 3 * indices.get(3 * triangle);
+    int b = 3 * indices.get(3 * triangle + 1);
+    int c = 3 * indices.get(3 * triangle + 2);
+    double ax = vertices.get(a), ay = vertices.get(a + 1), az = vertices.get(a + 2);
+    double e1x = vertices.get(b) - ax, e1y = vertices.get(b + 1) - ay, e1z = vertices.get(b + 2) - az;
+    double e2x = vertices.get(c) - ax, e2y = vertices.get(c + 1) - ay, e2z = vertices.get(c + 2) - az;
+    Point3D direction = ray.getDirection().getHead();
+    double dx = direction.getX(), dy = direction.getY(), dz = direction.getZ();
+    // p = d x e2
+    double px = dy * e2z - dz * e2y, py = dz * e2x - dx * e2z, pz = dx * e2y - dy * e2x;
+    double det = e1x * px + e1y * py + e1z * pz;
+    if (Math.abs(det) < PARALLEL)
+      return null;
+    double inv = 1 / det;
+    Point3D origin = ray.getOrigin();
+    double sx = origin.getX() - ax, sy = origin.getY() - ay, sz = origin.getZ() - az;
+    double u = (sx * px + sy * py + sz * pz) * inv;
+    if (u < 0 || u > 1)
+      return null;
+    // q = s x e1
+    double qx = sy * e1z - sz * e1y, qy = sz * e1x - sx * e1z, qz = sx * e1y - sy * e1x;
+    double v = (dx * qx + dy * qy + dz * qz) * inv;
+    if (v < 0 || u + v > 1)
+      return null;
+    double t = alignZero((e2x * qx + e2y * qy + e2z * qz) * inv);
+    if (t <= 0 || alignZero(maxDistance - t) < 0)
+      return null;
+    return new GeoPoint(new Face(this, triangle), ray.getPoint(t));
+  }
+
+  private void triangleBounds(IntBuffer source, int triangle, double[] box) {
+    box[0] = box[1] = box[2] = Double.POSITIVE_INFINITY;
+    box[3] = box[4] = box[5] = Double.NEGATIVE_INFINITY;
+    for (int corner = 0; corner < 3; ++corner) {
+      int v = 3 * source.get(3 * triangle + corner);
+      for (int axis = 0; axis < 3; ++axis) {
+        float coordinate = vertices.get(v + axis);
+        box[axis] = Math.min(box[axis], coordinate);
+        box[axis + 3] = Math.max(box[axis + 3], coordinate);
+      }
+    }
+  }
+
+  /**
+   * Triangle of a mesh returned as the geometry of its intersections
+   */
+  private static final class Face extends Geometry {
+    private final Mesh mesh;
+    private final int triangle;
+
+    private Face(Mesh mesh, int triangle) {
+      this.mesh = mesh;
+      this.triangle = triangle;
+    }
+
+    @Override
+    public Color getEmission() {
+      return mesh.getEmission();
+    }
+
+    @Override
+    public Material getMaterial() {
+      return mesh.getMaterial();
+    }
+
+    @Override
+    public int getShininess() {
+      return mesh.getShininess();
+    }
+
+    @Override
+    public Vector getNormal(Point3D point) {
+      return mesh.getNormal(triangle);
+    }
+
+    @Override
+    public List<GeoPoint> findGeoIntersections(Ray ray, double maxDistance) {
+      GeoPoint intersection = mesh.intersect(triangle, ray, maxDistance);
+      return intersection == null ? null : List.of(intersection);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (o == this)
+        return true;
+      if (!(o instanceof Face))
+        return false;
+      Face other = (Face) o;
+      return other.mesh == mesh && other.triangle == triangle;
+    }
+
+    @Override
+    public int hashCode() {
+      return System.identityHashCode(mesh) * 31 + triangle;
+    }
+  }
+}
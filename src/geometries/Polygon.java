@@ -81,6 +81,28 @@ public class Polygon extends Geometry {
 		}
 	}
 
+	/**
+	 * Getter of the vertices
+	 * 
+	 * @return vertices in the order of the edge path
+	 */
+	public List<Point3D> getVertices() {
+		return vertices;
+	}
+
+	@Override
+	public double[] getBounds() {
+		double[] box = BoundingVolumeHierarchy.emptyBox();
+		for (Point3D vertex : vertices) {
+			double[] xyz = { vertex.getX(), vertex.getY(), vertex.getZ() };
+			for (int axis = 0; axis < 3; ++axis) {
+				box[axis] = Math.min(box[axis], xyz[axis]);
+				box[axis + 3] = Math.max(box[axis + 3], xyz[axis]);
+			}
+		}
+		return box;
+	}
+
 	@Override
 	public Vector getNormal(Point3D point) {
 		return plane.getNormal();
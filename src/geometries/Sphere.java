@@ -54,6 +54,12 @@ public class Sphere extends Geometry {
     return point.subtract(center).normalize();
   }
 
+  @Override
+  public double[] getBounds() {
+    return new double[] { center.getX() - radius, center.getY() - radius, center.getZ() - radius,
+        center.getX() + radius, center.getY() + radius, center.getZ() + radius };
+  }
+
   @Override
   public String toString() {
     return String.format("{ Center: %s, Radius: %d }", this.center.toString(), this.radius);
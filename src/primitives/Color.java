@@ -82,6 +82,33 @@ public class Color {
 		return new java.awt.Color(ir > 255 ? 255 : ir, ig > 255 ? 255 : ig, ib > 255 ? 255 : ib);
 	}
 
+	/**
+	 * Red component getter
+	 * 
+	 * @return red component
+	 */
+	public double getRed() {
+		return r;
+	}
+
+	/**
+	 * Green component getter
+	 * 
+	 * @return green component
+	 */
+	public double getGreen() {
+		return g;
+	}
+
+	/**
+	 * Blue component getter
+	 * 
+	 * @return blue component
+	 */
+	public double getBlue() {
+		return b;
+	}
+
 	/**
 	 * Operation of adding this and one or more other colors (by component)
 	 *
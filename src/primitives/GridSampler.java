@@ -0,0 +1,20 @@
+package primitives;
+
+/**
+ * Regular grid of samples, equidistant from each other and from the pixel
+ * borders - the pattern of the original supersampling, which aliases on
+ * regular features of the scene
+ * 
+ * @author Jonah Lawrence
+ * @author Elad Harizy
+ */
+public class GridSampler implements Sampler {
+
+  @Override
+  public void sample(long pixel, int index, int count, double[] point) {
+    int cols = (int) Math.ceil(Math.sqrt(count));
+    int rows = (count + cols - 1) / cols;
+    point[0] = (index % cols + 1) / (cols + 1.0);
+    point[1] = (index / cols + 1) / (rows + 1.0);
+  }
+}
@@ -0,0 +1,51 @@
+package primitives;
+
+/**
+ * Halton low-discrepancy sequence in bases 2 and 3, shifted by a random offset
+ * per pixel (Cranley-Patterson rotation) so neighbouring pixels do not share
+ * the same pattern
+ * 
+ * @author Jonah Lawrence
+ * @author Elad Harizy
+ */
+public class HaltonSampler implements Sampler {
+
+  private static final double TWO_TO_MINUS_53 = 0x1.0p-53;
+
+  @Override
+  public void sample(long pixel, int index, int count, double[] point) {
+    long bits = Sampler.scramble(pixel);
+    double offsetX = (bits >>> 11) * TWO_TO_MINUS_53;
+    double offsetY = (Sampler.scramble(bits) >>> 11) * TWO_TO_MINUS_53;
+    point[0] = wrap(radicalInverse(index + 1, 2) + offsetX);
+    point[1] = wrap(radicalInverse(index + 1, 3) + offsetY);
+  }
+
+  /**
+   * Mirror the digits of a number in a base around the radix point
+   * 
+   * @param n    the number
+   * @param base the base
+   * @return the radical inverse in [0, 1)
+   */
+  static double radicalInverse(int n, int base) {
+    double inverse = 0;
+    double factor = 1.0 / base;
+    while (n > 0) {
+      inverse += (n % base) * factor;
+      n /= base;
+      factor /= base;
+    }
+    return inverse;
+  }
+
+  /**
+   * Wrap a number in [0, 2) into [0, 1)
+   * 
+   * @param x the number
+   * @return the wrapped number
+   */
+  private static double wrap(double x) {
+    return x >= 1 ? x - 1 : x;
+  }
+}
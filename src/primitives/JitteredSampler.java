@@ -0,0 +1,21 @@
+package primitives;
+
+import static primitives.Util.random;
+
+/**
+ * Stratified jitter - the pixel is divided into a grid of strata and every
+ * sample is placed randomly inside its own stratum
+ * 
+ * @author Jonah Lawrence
+ * @author Elad Harizy
+ */
+public class JitteredSampler implements Sampler {
+
+  @Override
+  public void sample(long pixel, int index, int count, double[] point) {
+    int cols = (int) Math.ceil(Math.sqrt(count));
+    int rows = (count + cols - 1) / cols;
+    point[0] = (index % cols + random(0, 1)) / cols;
+    point[1] = (index / cols + random(0, 1)) / rows;
+  }
+}
@@ -33,6 +33,16 @@ public class Material {
    */
   public int nShininess;
 
+  /**
+   * glossiness - roughness of reflection, 0 for a perfect mirror
+   */
+  public double kGlossiness;
+
+  /**
+   * blurriness - roughness of transparency, 0 for clear glass
+   */
+  public double kBlurriness;
+
   /**
    * constructor
    * 
@@ -57,6 +67,17 @@ public class Material {
     this(0, 0, 0, 0, 0);
   }
 
+  /**
+   * copy constructor
+   * 
+   * @param other material to copy
+   */
+  public Material(Material other) {
+    this(other.kD, other.kS, other.kR, other.kT, other.nShininess);
+    this.kGlossiness = other.kGlossiness;
+    this.kBlurriness = other.kBlurriness;
+  }
+
   /**
    * set kd
    * 
@@ -106,4 +127,28 @@ public class Material {
     this.nShininess = shininess;
     return this;
   }
+
+  /**
+   * set glossiness - radius of the cone of reflected rays at unit distance
+   * 
+   * @param glossiness
+   */
+  public Material setGlossiness(double glossiness) {
+    if (glossiness < 0)
+      throw new IllegalArgumentException("Glossiness cannot be negative");
+    this.kGlossiness = glossiness;
+    return this;
+  }
+
+  /**
+   * set blurriness - radius of the cone of refracted rays at unit distance
+   * 
+   * @param blurriness
+   */
+  public Material setBlurriness(double blurriness) {
+    if (blurriness < 0)
+      throw new IllegalArgumentException("Blurriness cannot be negative");
+    this.kBlurriness = blurriness;
+    return this;
+  }
 }
@@ -0,0 +1,18 @@
+package primitives;
+
+import static primitives.Util.random;
+
+/**
+ * Independent uniform random samples from the generator of the current thread
+ * 
+ * @author Jonah Lawrence
+ * @author Elad Harizy
+ */
+public class RandomSampler implements Sampler {
+
+  @Override
+  public void sample(long pixel, int index, int count, double[] point) {
+    point[0] = random(0, 1);
+    point[1] = random(0, 1);
+  }
+}
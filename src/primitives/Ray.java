@@ -34,7 +34,8 @@ public class Ray {
    */
   public Ray(Point3D origin, Vector direction) {
     this.origin = origin;
-    this.direction = direction.normalized();
+    // unit vectors are kept as they are - normalizing them again is a no-op
+    this.direction = Util.isZero(direction.lengthSquared() - 1) ? direction : direction.normalized();
   }
 
   /**
@@ -0,0 +1,37 @@
+package primitives;
+
+/**
+ * Sampler generates the pattern of sample points of a pixel in the unit square.
+ * Samplers are stateless per call, so one sampler is shared by all the
+ * rendering threads
+ * 
+ * @author Jonah Lawrence
+ * @author Elad Harizy
+ */
+public interface Sampler {
+
+  /**
+   * Get a sample point of a pixel in the unit square
+   * 
+   * @param pixel index of the pixel, decorrelates the patterns of different
+   *              pixels
+   * @param index index of the sample in the pixel, from 0 to count - 1
+   * @param count number of samples in the pixel
+   * @param point array of two receiving the x and y coordinates in [0, 1)
+   */
+  public void sample(long pixel, int index, int count, double[] point);
+
+  /**
+   * Scramble a pixel index into well distributed 64 random-looking bits
+   * (SplitMix64 finalizer)
+   * 
+   * @param pixel index of the pixel
+   * @return the scrambled bits
+   */
+  public static long scramble(long pixel) {
+    long z = pixel * 0x9E3779B97F4A7C15L + 0x632BE59BD9B4E019L;
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    return z ^ (z >>> 31);
+  }
+}
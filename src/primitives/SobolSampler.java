@@ -0,0 +1,40 @@
+package primitives;
+
+/**
+ * The first two dimensions of the Sobol low-discrepancy sequence, scrambled by
+ * random digits per pixel. Every power of two of samples is perfectly
+ * stratified in both dimensions
+ * 
+ * @author Jonah Lawrence
+ * @author Elad Harizy
+ */
+public class SobolSampler implements Sampler {
+
+  private static final double TWO_TO_MINUS_32 = 0x1.0p-32;
+
+  @Override
+  public void sample(long pixel, int index, int count, double[] point) {
+    long bits = Sampler.scramble(pixel);
+    int x = Integer.reverse(index) ^ (int) bits;
+    int y = sobol(index) ^ (int) (bits >>> 32);
+    point[0] = Integer.toUnsignedLong(x) * TWO_TO_MINUS_32;
+    point[1] = Integer.toUnsignedLong(y) * TWO_TO_MINUS_32;
+  }
+
+  /**
+   * Second dimension of the Sobol sequence, generated by the primitive
+   * polynomial x + 1
+   * 
+   * @param index index of the sample
+   * @return the sample as 32 fractional bits
+   */
+  private static int sobol(int index) {
+    int result = 0;
+    for (int v = 1 << 31; index != 0; index >>>= 1, v ^= v >>> 1) {
+      if ((index & 1) != 0) {
+        result ^= v;
+      }
+    }
+    return result;
+  }
+}
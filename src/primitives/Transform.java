@@ -0,0 +1,425 @@
+package primitives;
+
+import static primitives.Util.isZero;
+
+/**
+ * Class Transform is an affine transformation of Cartesian 3-Dimensional
+ * space: a 3x3 linear part followed by a translation, kept together with its
+ * inverse
+ *
+ * @author Jonah Lawrence
+ * @author Elad Harizy
+ */
+public final class Transform {
+
+  /**
+   * the transformation that changes nothing
+   */
+  public static final Transform IDENTITY = new Transform(new double[] { 1, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1, 0 });
+
+  /**
+   * rows of the matrix: 3 linear coefficients and the translation of each axis
+   */
+  private final double[] m;
+
+  /**
+   * rows of the inverse matrix
+   */
+  private final double[] inv;
+
+  /**
+   * the inverse transformation, made on first use
+   */
+  private Transform inverse;
+
+  /**
+   * Constructor from the rows of a matrix
+   *
+   * @param m 12 numbers, 3 linear coefficients and the translation of x, y, z
+   * @throws IllegalArgumentException if the matrix cannot be inverted
+   */
+  private Transform(double[] m) {
+    this.m = m;
+    this.inv = invert(m);
+  }
+
+  private Transform(double[] m, double[] inv) {
+    this.m = m;
+    this.inv = inv;
+  }
+
+  /**
+   * Translation
+   *
+   * @param offset the offset
+   * @return the transformation
+   */
+  public static Transform translation(Vector offset) {
+    Point3D p = offset.getHead();
+    return new Transform(new double[] { 1, 0, 0, p.getX(), 0, 1, 0, p.getY(), 0, 0, 1, p.getZ() });
+  }
+
+  /**
+   * Scaling along the axes
+   *
+   * @param x scale of x
+   * @param y scale of y
+   * @param z scale of z
+   * @return the transformation
+   * @throws IllegalArgumentException if a scale is zero
+   */
+  public static Transform scaling(double x, double y, double z) {
+    return new Transform(new double[] { x, 0, 0, 0, 0, y, 0, 0, 0, 0, z, 0 });
+  }
+
+  /**
+   * Uniform scaling
+   *
+   * @param scale the scale
+   * @return the transformation
+   * @throws IllegalArgumentException if the scale is zero
+   */
+  public static Transform scaling(double scale) {
+    return scaling(scale, scale, scale);
+  }
+
+  /**
+   * Rotation around an axis through the origin, counterclockwise when the axis
+   * points at the viewer
+   *
+   * @param axis  the axis
+   * @param angle the angle in radians
+   * @return the transformation
+   */
+  public static Transform rotation(Vector axis, double angle) {
+    Point3D u = axis.normalized().getHead();
+    double x = u.getX(), y = u.getY(), z = u.getZ();
+    double c = Math.cos(angle), s = Math.sin(angle), t = 1 - c;
+    double[] r = { t * x * x + c, t * x * y - s * z, t * x * z + s * y, 0, //
+        t * x * y + s * z, t * y * y + c, t * y * z - s * x, 0, //
+        t * x * z - s * y, t * y * z + s * x, t * z * z + c, 0 };
+    // the inverse of a rotation is its transpose
+    double[] rInv = { r[0], r[4], r[8], 0, r[1], r[5], r[9], 0, r[2], r[6], r[10], 0 };
+    return new Transform(r, rInv);
+  }
+
+  /**
+   * Transformation of the rows of a matrix and of its inverse, as returned by
+   * {@link #getRows()} of both, such as a transformation read back from a file
+   * exactly as it was written
+   *
+   * @param rows        12 numbers, 3 linear coefficients and the translation of
+   *                    x, y, z
+   * @param inverseRows the rows of the inverse matrix
+   * @return the transformation
+   * @throws IllegalArgumentException if the rows are not 12 numbers or are not
+   *                                  inverse to each other
+   */
+  public static Transform of(double[] rows, double[] inverseRows) {
+    if (rows.length != 12 || inverseRows.length != 12)
+      throw new IllegalArgumentException("A transformation has 12 numbers");
+    double[] product = multiply(rows, inverseRows);
+    for (int k = 0; k < 12; ++k)
+      if (Math.abs(product[k] - IDENTITY.m[k]) > 1e-6)
+        throw new IllegalArgumentException("Rows are not inverse to each other");
+    return new Transform(rows.clone(), inverseRows.clone());
+  }
+
+  /**
+   * @return the rows of the matrix: 3 linear coefficients and the translation of
+   *         x, y, z
+   */
+  public double[] getRows() {
+    return m.clone();
+  }
+
+  /**
+   * Compose with a transformation applied after this one
+   *
+   * @param next the transformation applied second
+   * @return the composed transformation
+   */
+  public Transform then(Transform next) {
+    return new Transform(multiply(next.m, m), multiply(inv, next.inv));
+  }
+
+  /**
+   * @return the inverse transformation
+   */
+  public Transform inverse() {
+    Transform result = inverse;
+    if (result == null) {
+      result = new Transform(inv, m);
+      result.inverse = this;
+      inverse = result;
+    }
+    return result;
+  }
+
+  /**
+   * Interpolate between this transformation and another for keyframe animation.
+   * The linear parts are split into a rotation and a stretch, the rotations are
+   * interpolated along the shortest arc and the stretches and translations
+   * linearly, so a turning object keeps its size between keyframes. Mirroring
+   * transformations are interpolated linearly
+   *
+   * @param other  the transformation at weight 1
+   * @param weight 0 for this transformation, 1 for the other
+   * @return the interpolated transformation
+   * @throws IllegalArgumentException if the interpolated transformation cannot be
+   *                                  inverted
+   */
+  public Transform interpolate(Transform other, double weight) {
+    double[] r = new double[12];
+    double[][] a = polar(m);
+    double[][] b = polar(other.m);
+    if (a == null || b == null) {
+      for (int k = 0; k < 12; ++k)
+        r[k] = m[k] + (other.m[k] - m[k]) * weight;
+      return new Transform(r);
+    }
+    double[] rotation = rotationMatrix(slerp(quaternion(a[0]), quaternion(b[0]), weight));
+    double[] stretch = new double[9];
+    for (int k = 0; k < 9; ++k)
+      stretch[k] = a[1][k] + (b[1][k] - a[1][k]) * weight;
+    for (int row = 0; row < 3; ++row) {
+      for (int col = 0; col < 3; ++col) {
+        double sum = 0;
+        for (int k = 0; k < 3; ++k)
+          sum += rotation[3 * row + k] * stretch[3 * k + col];
+        r[4 * row + col] = sum;
+      }
+      r[4 * row + 3] = m[4 * row + 3] + (other.m[4 * row + 3] - m[4 * row + 3]) * weight;
+    }
+    return new Transform(r);
+  }
+
+  /**
+   * Transform a point
+   *
+   * @param point the point
+   * @return the transformed point
+   */
+  public Point3D applyToPoint(Point3D point) {
+    return apply(m, point.getX(), point.getY(), point.getZ(), true);
+  }
+
+  /**
+   * Transform a direction, which the translation does not move
+   *
+   * @param vector the direction
+   * @return the transformed direction, not normalized
+   */
+  public Vector applyToVector(Vector vector) {
+    Point3D p = vector.getHead();
+    return new Vector(apply(m, p.getX(), p.getY(), p.getZ(), false));
+  }
+
+  /**
+   * Transform a normal by the inverse transpose, so it stays perpendicular to the
+   * transformed surface
+   *
+   * @param normal the normal
+   * @return the transformed normal, not normalized
+   */
+  public Vector applyToNormal(Vector normal) {
+    Point3D p = normal.getHead();
+    double x = p.getX(), y = p.getY(), z = p.getZ();
+    return new Vector(inv[0] * x + inv[4] * y + inv[8] * z, //
+        inv[1] * x + inv[5] * y + inv[9] * z, //
+        inv[2] * x + inv[6] * y + inv[10] * z);
+  }
+
+  /**
+   * Transform an axis aligned bounding box into the box of its transformed
+   * corners
+   *
+   * @param box minimum x, y, z and maximum x, y, z
+   * @return the transformed box
+   */
+  public double[] applyToBounds(double[] box) {
+    double[] result = new double[6];
+    for (int axis = 0; axis < 3; ++axis) {
+      // the extremes of a linear function over a box are at its corners
+      double low = m[4 * axis + 3];
+      double high = low;
+      for (int k = 0; k < 3; ++k) {
+        double a = m[4 * axis + k] * box[k];
+        double b = m[4 * axis + k] * box[k + 3];
+        low += Math.min(a, b);
+        high += Math.max(a, b);
+      }
+      result[axis] = low;
+      result[axis + 3] = high;
+    }
+    return result;
+  }
+
+  private static Point3D apply(double[] m, double x, double y, double z, boolean translate) {
+    double w = translate ? 1 : 0;
+    return new Point3D(m[0] * x + m[1] * y + m[2] * z + m[3] * w, //
+        m[4] * x + m[5] * y + m[6] * z + m[7] * w, //
+        m[8] * x + m[9] * y + m[10] * z + m[11] * w);
+  }
+
+  /**
+   * Multiply affine matrices
+   *
+   * @return a * b, the transformation of b followed by a
+   */
+  private static double[] multiply(double[] a, double[] b) {
+    double[] r = new double[12];
+    for (int row = 0; row < 3; ++row) {
+      for (int col = 0; col < 4; ++col) {
+        double sum = col == 3 ? a[4 * row + 3] : 0;
+        for (int k = 0; k < 3; ++k)
+          sum += a[4 * row + k] * b[4 * k + col];
+        r[4 * row + col] = sum;
+      }
+    }
+    return r;
+  }
+
+  /**
+   * Split the linear part of a matrix into a rotation followed by a stretch by
+   * averaging it with its inverse transpose until it is orthogonal
+   *
+   * @param m the matrix
+   * @return the rotation and the stretch, 3x3 each, or null if the matrix mirrors
+   */
+  private static double[][] polar(double[] m) {
+    double[] rotation = { m[0], m[1], m[2], 0, m[4], m[5], m[6], 0, m[8], m[9], m[10], 0 };
+    for (int iteration = 0; iteration < 32; ++iteration) {
+      double[] inverse = invert(rotation);
+      double change = 0;
+      for (int row = 0; row < 3; ++row) {
+        for (int col = 0; col < 3; ++col) {
+          double next = (rotation[4 * row + col] + inverse[4 * col + row]) / 2;
+          change = Math.max(change, Math.abs(next - rotation[4 * row + col]));
+          rotation[4 * row + col] = next;
+        }
+      }
+      if (change < 1e-12)
+        break;
+    }
+    double[] r = { rotation[0], rotation[1], rotation[2], rotation[4], rotation[5], rotation[6], rotation[8],
+        rotation[9], rotation[10] };
+    double det = r[0] * (r[4] * r[8] - r[5] * r[7]) - r[1] * (r[3] * r[8] - r[5] * r[6])
+        + r[2] * (r[3] * r[7] - r[4] * r[6]);
+    if (det < 0)
+      return null;
+    // the stretch is the transposed rotation times the matrix
+    double[] stretch = new double[9];
+    for (int row = 0; row < 3; ++row)
+      for (int col = 0; col < 3; ++col)
+        stretch[3 * row + col] = r[row] * m[col] + r[3 + row] * m[4 + col] + r[6 + row] * m[8 + col];
+    return new double[][] { r, stretch };
+  }
+
+  /**
+   * @param r rotation matrix, 3x3
+   * @return unit quaternion w, x, y, z of the rotation
+   */
+  private static double[] quaternion(double[] r) {
+    double trace = r[0] + r[4] + r[8];
+    double w, x, y, z;
+    if (trace > 0) {
+      double s = 2 * Math.sqrt(trace + 1);
+      w = s / 4;
+      x = (r[7] - r[5]) / s;
+      y = (r[2] - r[6]) / s;
+      z = (r[3] - r[1]) / s;
+    } else if (r[0] > r[4] && r[0] > r[8]) {
+      double s = 2 * Math.sqrt(1 + r[0] - r[4] - r[8]);
+      w = (r[7] - r[5]) / s;
+      x = s / 4;
+      y = (r[1] + r[3]) / s;
+      z = (r[2] + r[6]) / s;
+    } else if (r[4] > r[8]) {
+      double s = 2 * Math.sqrt(1 + r[4] - r[0] - r[8]);
+      w = (r[2] - r[6]) / s;
+      x = (r[1] + r[3]) / s;
+      y = s / 4;
+      z = (r[5] + r[7]) / s;
+    } else {
+      double s = 2 * Math.sqrt(1 + r[8] - r[0] - r[4]);
+      w = (r[3] - r[1]) / s;
+      x = (r[2] + r[6]) / s;
+      y = (r[5] + r[7]) / s;
+      z = s / 4;
+    }
+    return new double[] { w, x, y, z };
+  }
+
+  /**
+   * Spherical interpolation of unit quaternions along the shortest arc
+   */
+  private static double[] slerp(double[] a, double[] b, double weight) {
+    double dot = a[0] * b[0] + a[1] * b[1] + a[2] * b[2] + a[3] * b[3];
+    double sign = 1;
+    if (dot < 0) {
+      // q and -q are the same rotation
+      sign = -1;
+      dot = -dot;
+    }
+    double wa;
+    double wb;
+    if (dot > 0.9995) {
+      wa = 1 - weight;
+      wb = weight;
+    } else {
+      double angle = Math.acos(dot);
+      wa = Math.sin((1 - weight) * angle) / Math.sin(angle);
+      wb = Math.sin(weight * angle) / Math.sin(angle);
+    }
+    double[] q = new double[4];
+    double length = 0;
+    for (int k = 0; k < 4; ++k) {
+      q[k] = wa * a[k] + sign * wb * b[k];
+      length += q[k] * q[k];
+    }
+    length = Math.sqrt(length);
+    for (int k = 0; k < 4; ++k)
+      q[k] /= length;
+    return q;
+  }
+
+  /**
+   * @param q unit quaternion w, x, y, z
+   * @return rotation matrix, 3x3
+   */
+  private static double[] rotationMatrix(double[] q) {
+    double w = q[0], x = q[1], y = q[2], z = q[3];
+    return new double[] { 1 - 2 * (y * y + z * z), 2 * (x * y - w * z), 2 * (x * z + w * y), //
+        2 * (x * y + w * z), 1 - 2 * (x * x + z * z), 2 * (y * z - w * x), //
+        2 * (x * z - w * y), 2 * (y * z + w * x), 1 - 2 * (x * x + y * y) };
+  }
+
+  /**
+   * Invert an affine matrix
+   *
+   * @param m the matrix
+   * @return the inverse
+   * @throws IllegalArgumentException if the linear part is singular
+   */
+  private static double[] invert(double[] m) {
+    double a = m[0], b = m[1], c = m[2], d = m[4], e = m[5], f = m[6], g = m[8], h = m[9], i = m[10];
+    double c00 = e * i - f * h, c01 = c * h - b * i, c02 = b * f - c * e;
+    double det = a * c00 + d * c01 + g * c02;
+    if (isZero(det))
+      throw new IllegalArgumentException("Transformation cannot be inverted");
+    double[] r = new double[12];
+    r[0] = c00 / det;
+    r[1] = c01 / det;
+    r[2] = c02 / det;
+    r[4] = (f * g - d * i) / det;
+    r[5] = (a * i - c * g) / det;
+    r[6] = (c * d - a * f) / det;
+    r[8] = (d * h - e * g) / det;
+    r[9] = (b * g - a * h) / det;
+    r[10] = (a * e - b * d) / det;
+    for (int row = 0; row < 3; ++row)
+      r[4 * row + 3] = -(r[4 * row] * m[3] + r[4 * row + 1] * m[7] + r[4 * row + 2] * m[11]);
+    return r;
+  }
+}
@@ -1,5 +1,7 @@
 package primitives;
 
+import java.util.concurrent.ThreadLocalRandom;
+
 /**
  * Util class is used for some internal utilities, e.g. controlling accuracy
  * 
@@ -58,13 +60,14 @@ public abstract class Util {
 	}
 	
 	/**
-	 * Provide a real random number in range between min and max
+	 * Provide a real random number in range between min and max, from the
+	 * generator of the current thread so threads never contend on it
 	 * @param min
 	 * @param max
 	 * @return the random value
 	 */
 	public static double random(double min, double max) {
-		return Math.random() * (max - min) + min;
+		return ThreadLocalRandom.current().nextDouble() * (max - min) + min;
 	}
 	
 }
@@ -0,0 +1,326 @@
+package renderer;
+
+import static primitives.Util.isZero;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.MissingResourceException;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+import elements.Camera;
+import geometries.Instance;
+import primitives.Point3D;
+import primitives.Transform;
+import primitives.Vector;
+import scene.CompiledScene;
+import scene.Scene;
+
+/**
+ * Renders a sequence of frames of one long-lived scene. The camera and the
+ * instances of the scene follow keyframes, every frame is compiled from the
+ * previous one so the hierarchies are refitted instead of built, and each frame
+ * is written to its file while the next one is traced
+ *
+ * @author Jonah Lawrence
+ * @author Elad Harizy
+ */
+public class Animation {
+
+  /**
+   * Timing of a rendered frame
+   */
+  public static final class FrameTime {
+    private final int frame;
+    private final long setupMillis;
+    private final long traceMillis;
+    private final long reusedPixels;
+    private volatile long writeMillis = -1;
+
+    private FrameTime(int frame, long setupMillis, long traceMillis, long reusedPixels) {
+      this.frame = frame;
+      this.setupMillis = setupMillis;
+      this.traceMillis = traceMillis;
+      this.reusedPixels = reusedPixels;
+    }
+
+    /**
+     * @return number of the frame
+     */
+    public int getFrame() {
+      return frame;
+    }
+
+    /**
+     * @return time of placing the camera and instances and compiling the scene
+     */
+    public long getSetupMillis() {
+      return setupMillis;
+    }
+
+    /**
+     * @return time of tracing the rays of the frame
+     */
+    public long getTraceMillis() {
+      return traceMillis;
+    }
+
+    /**
+     * @return number of pixels that took their color from the previous frame
+     */
+    public long getReusedPixels() {
+      return reusedPixels;
+    }
+
+    /**
+     * @return time of writing the image, overlapped with the next frame, or -1
+     *         while it is being written
+     */
+    public long getWriteMillis() {
+      return writeMillis;
+    }
+
+    @Override
+    public String toString() {
+      return String.format("frame %d: setup %d ms, trace %d ms, write %d ms, %d pixels reused", frame, setupMillis,
+          traceMillis, writeMillis, reusedPixels);
+    }
+  }
+
+  private final Scene scene;
+  private final Render render;
+  private final Function<CompiledScene, RayTracerBase> rayTracerFactory;
+
+  /**
+   * keyframes of the camera by frame number
+   */
+  private final TreeMap<Integer, Camera> cameraKeyframes = new TreeMap<>();
+
+  /**
+   * keyframes of the instances by frame number
+   */
+  private final Map<Instance, TreeMap<Integer, Transform>> instanceKeyframes = new LinkedHashMap<>();
+
+  private String imageName = "animation";
+  private int nX = 500;
+  private int nY = 500;
+
+  /**
+   * whether frames reuse the colors of the previous frame
+   */
+  private boolean reprojection = false;
+
+  /**
+   * timings of the frames of the last render
+   */
+  private final List<FrameTime> frameTimes = new ArrayList<>();
+
+  /**
+   * Constructor
+   *
+   * @param scene            the scene, whose camera and instances are moved to
+   *                         their place in every frame
+   * @param render           the renderer, with its sampling and threads set,
+   *                         that renders every frame
+   * @param rayTracerFactory creates the ray tracer of a frame, such as
+   *                         BasicRayTracer::new
+   */
+  public Animation(Scene scene, Render render, Function<CompiledScene, RayTracerBase> rayTracerFactory) {
+    this.scene = scene;
+    this.render = render;
+    this.rayTracerFactory = rayTracerFactory;
+  }
+
+  /**
+   * set the images of the frames
+   *
+   * @param name name of the images, followed by the number of the frame
+   * @param nX   amount of pixels by width
+   * @param nY   amount of pixels by height
+   * @return the Animation object itself
+   */
+  public Animation setImage(String name, int nX, int nY) {
+    this.imageName = name;
+    this.nX = nX;
+    this.nY = nY;
+    return this;
+  }
+
+  /**
+   * set whether pixels of a frame take the colors of the previous frame where it
+   * saw the same diffuse points, for camera paths through static scenes. It is
+   * not used while instances move, since their shadows change the colors of the
+   * points that stay in place
+   *
+   * @param reprojection true to reuse colors
+   * @return the Animation object itself
+   */
+  public Animation setReprojection(boolean reprojection) {
+    this.reprojection = reprojection;
+    return this;
+  }
+
+  /**
+   * Add a keyframe of the camera - between keyframes its location, direction and
+   * view plane are interpolated
+   *
+   * @param frame  number of the frame
+   * @param camera the camera in the frame
+   * @return the Animation object itself
+   */
+  public Animation addCameraKeyframe(int frame, Camera camera) {
+    cameraKeyframes.put(frame, camera);
+    return this;
+  }
+
+  /**
+   * Add a keyframe of an instance of the scene - between keyframes its
+   * transformation is interpolated
+   *
+   * @param instance  the instance
+   * @param frame     number of the frame
+   * @param transform transformation of the instance in the frame
+   * @return the Animation object itself
+   */
+  public Animation addKeyframe(Instance instance, int frame, Transform transform) {
+    instanceKeyframes.computeIfAbsent(instance, i -> new TreeMap<>()).put(frame, transform);
+    return this;
+  }
+
+  /**
+   * @return timings of the frames of the last render
+   */
+  public List<FrameTime> getFrameTimes() {
+    return Collections.unmodifiableList(frameTimes);
+  }
+
+  /**
+   * Render frames back to back, writing each one while the next is traced. The
+   * camera of the scene, the transformations of its animated instances and the
+   * reprojection of the render are restored when the frames are done
+   *
+   * @param first number of the first frame
+   * @param last  number of the last frame
+   * @return the image files of the frames
+   * @throws MissingResourceException if there is no camera
+   * @throws InterruptedException     if the thread is interrupted while a frame
+   *                                  is written, the frames after it are not
+   *                                  rendered
+   */
+  public List<File> renderFrames(int first, int last) throws InterruptedException {
+    if (cameraKeyframes.isEmpty() && scene.getCamera() == null)
+      throw new MissingResourceException("Renderer resource not set", "Animation", "Camera");
+    frameTimes.clear();
+    List<File> files = new ArrayList<>();
+    ExecutorService writer = Executors.newSingleThreadExecutor(r -> {
+      Thread thread = new Thread(r, "frame writer");
+      thread.setDaemon(true);
+      return thread;
+    });
+    // the frames leave the scene and the render as they were
+    Camera camera = scene.getCamera();
+    Map<Instance, Transform> transforms = new LinkedHashMap<>();
+    for (Instance instance : instanceKeyframes.keySet())
+      transforms.put(instance, instance.getTransform());
+    Reprojection callerReprojection = render.getReprojection();
+    Reprojection reuse = reprojection && instanceKeyframes.isEmpty() ? new Reprojection(nX, nY) : null;
+    render.setReprojection(reuse);
+    try {
+      CompiledScene previous = null;
+      Future<File> pending = null;
+      for (int frame = first; frame <= last; ++frame) {
+        long start = System.nanoTime();
+        if (!cameraKeyframes.isEmpty())
+          scene.setCamera(cameraAt(frame));
+        for (Map.Entry<Instance, TreeMap<Integer, Transform>> entry : instanceKeyframes.entrySet())
+          entry.getKey().setTransform(transformAt(entry.getValue(), frame));
+        CompiledScene compiled = previous == null ? scene.compile() : scene.compile(previous);
+        ImageWriter imageWriter = new ImageWriter(String.format("%s %04d", imageName, frame), nX, nY);
+        render.setImageWriter(imageWriter).setRayTracer(rayTracerFactory.apply(compiled));
+        long traced = System.nanoTime();
+        render.renderImage();
+        long end = System.nanoTime();
+        FrameTime time = new FrameTime(frame, (traced - start) / 1000000, (end - traced) / 1000000,
+            reuse == null ? 0 : reuse.getReusedPixels());
+        frameTimes.add(time);
+
+        // one image is written at a time, while the next frame is traced
+        if (pending != null)
+          files.add(pending.get());
+        pending = writer.submit(() -> {
+          long writeStart = System.nanoTime();
+          File file = imageWriter.writeToImage();
+          time.writeMillis = (System.nanoTime() - writeStart) / 1000000;
+          return file;
+        });
+        previous = compiled;
+      }
+      if (pending != null)
+        files.add(pending.get());
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("Frame could not be written", e.getCause());
+    } finally {
+      writer.shutdown();
+      scene.setCamera(camera);
+      for (Map.Entry<Instance, Transform> entry : transforms.entrySet())
+        entry.getKey().setTransform(entry.getValue());
+      render.setReprojection(callerReprojection);
+    }
+    return files;
+  }
+
+  /**
+   * Interpolate the camera of a frame between its keyframes
+   */
+  private Camera cameraAt(int frame) {
+    Map.Entry<Integer, Camera> before = cameraKeyframes.floorEntry(frame);
+    Map.Entry<Integer, Camera> after = cameraKeyframes.ceilingEntry(frame);
+    if (before == null)
+      return after.getValue();
+    if (after == null || before.getKey().equals(after.getKey()))
+      return before.getValue();
+    double weight = (double) (frame - before.getKey()) / (after.getKey() - before.getKey());
+    Camera a = before.getValue();
+    Camera b = after.getValue();
+    Point3D origin = lerp(a.getOrigin(), b.getOrigin(), weight);
+    Vector vTo = new Vector(lerp(a.getVTo().getHead(), b.getVTo().getHead(), weight)).normalize();
+    // the up direction is made orthogonal to the interpolated direction
+    Vector vUp = new Vector(lerp(a.getVUp().getHead(), b.getVUp().getHead(), weight));
+    double along = vUp.dotProduct(vTo);
+    if (!isZero(along))
+      vUp = vUp.subtract(vTo.scale(along));
+    vUp.normalize();
+    return new Camera(origin, vTo, vUp) //
+        .setDistance(a.getDistance() + (b.getDistance() - a.getDistance()) * weight) //
+        .setViewPlaneSize(a.getWidth() + (b.getWidth() - a.getWidth()) * weight,
+            a.getHeight() + (b.getHeight() - a.getHeight()) * weight);
+  }
+
+  /**
+   * Interpolate the transformation of an instance in a frame between its
+   * keyframes
+   */
+  private static Transform transformAt(TreeMap<Integer, Transform> keyframes, int frame) {
+    Map.Entry<Integer, Transform> before = keyframes.floorEntry(frame);
+    Map.Entry<Integer, Transform> after = keyframes.ceilingEntry(frame);
+    if (before == null)
+      return after.getValue();
+    if (after == null || before.getKey().equals(after.getKey()))
+      return before.getValue();
+    double weight = (double) (frame - before.getKey()) / (after.getKey() - before.getKey());
+    return before.getValue().interpolate(after.getValue(), weight);
+  }
+
+  private static Point3D lerp(Point3D a, Point3D b, double weight) {
+    return new Point3D(a.getX() + (b.getX() - a.getX()) * weight, a.getY() + (b.getY() - a.getY()) * weight,
+        a.getZ() + (b.getZ() - a.getZ()) * weight);
+  }
+}
@@ -5,8 +5,12 @@ import primitives.Material;
 import primitives.Point3D;
 import primitives.Ray;
 import primitives.Vector;
+import scene.CompiledScene;
 import scene.Scene;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.List;
 
 import elements.LightSource;
@@ -22,8 +26,29 @@ import static primitives.Util.*;
  */
 public class BasicRayTracer extends RayTracerBase {
 
-  private static final int MAX_CALC_COLOR_LEVEL = 5;
-  private static final double MIN_CALC_COLOR_K = 0.05;
+  /**
+   * number of cone rays traced before checking their variance in adaptive glossy
+   * sampling
+   */
+  private static final int GLOSSY_INITIAL_SAMPLES = 4;
+
+  /**
+   * Choices for sampling reflection and refraction of rough materials
+   */
+  public enum GLOSSY_SAMPLING_TYPE {
+    NONE, CONE, ADAPTIVE
+  }
+
+  /**
+   * how glossy reflection and blurry transparency are sampled - with NONE every
+   * material behaves like a perfect mirror / clear glass
+   */
+  private GLOSSY_SAMPLING_TYPE glossySamplingType = GLOSSY_SAMPLING_TYPE.NONE;
+
+  /**
+   * maximum number of rays in the cone of a rough reflection or refraction
+   */
+  private int glossySampleCount = 16;
 
   /**
    * constructor
@@ -34,6 +59,72 @@ public class BasicRayTracer extends RayTracerBase {
     super(scene);
   }
 
+  /**
+   * constructor that shares a compiled scene
+   * 
+   * @param scene
+   */
+  public BasicRayTracer(CompiledScene scene) {
+    super(scene);
+  }
+
+  /**
+   * set glossy sampling to NONE, CONE, or ADAPTIVE
+   * 
+   * @param type glossy sampling type
+   * @return the ray tracer
+   */
+  public BasicRayTracer setGlossySamplingType(GLOSSY_SAMPLING_TYPE type) {
+    this.glossySamplingType = type;
+    return this;
+  }
+
+  /**
+   * set maximum number of rays in a cone of glossy reflection or blurry
+   * refraction
+   * 
+   * @param count number of rays
+   * @return the ray tracer
+   */
+  public BasicRayTracer setGlossySampleCount(int count) {
+    if (count < 1)
+      throw new IllegalArgumentException("Glossy sample count must be positive");
+    this.glossySampleCount = count;
+    return this;
+  }
+
+  @Override
+  public BasicRayTracer setTerminationType(TERMINATION_TYPE type) {
+    super.setTerminationType(type);
+    return this;
+  }
+
+  @Override
+  public BasicRayTracer setFixedTermination(int level, double k) {
+    super.setFixedTermination(level, k);
+    return this;
+  }
+
+  @Override
+  public BasicRayTracer setRouletteTermination(int startDepth, double threshold, int maxLevel) {
+    super.setRouletteTermination(startDepth, threshold, maxLevel);
+    return this;
+  }
+
+  @Override
+  void writeSettings(DataOutput out) throws IOException {
+    super.writeSettings(out);
+    out.writeInt(glossySamplingType.ordinal());
+    out.writeInt(glossySampleCount);
+  }
+
+  @Override
+  void readSettings(DataInput in) throws IOException {
+    super.readSettings(in);
+    glossySamplingType = GLOSSY_SAMPLING_TYPE.values()[in.readInt()];
+    glossySampleCount = in.readInt();
+  }
+
   /**
    * Finds the color at the closest intersection point or returns the background
    * color if no intersection points are found
@@ -43,13 +134,18 @@ public class BasicRayTracer extends RayTracerBase {
    */
   @Override
   public Color traceRay(Ray ray) {
-    List<GeoPoint> intersections = scene.geometries.findGeoIntersections(ray);
+    List<GeoPoint> intersections = scene.findGeoIntersections(ray);
     if (intersections != null) {
       GeoPoint closestPoint = ray.findClosestGeoPoint(intersections);
       return calcColor(closestPoint, ray);
     }
     // no intersections
-    return scene.background;
+    return scene.getBackground();
+  }
+
+  @Override
+  public Color traceRay(Ray ray, GeoPoint closest) {
+    return closest == null ? scene.getBackground() : calcColor(closest, ray);
   }
 
   /**
@@ -62,18 +158,21 @@ public class BasicRayTracer extends RayTracerBase {
    * @return the color for the pixel
    */
   private Color calcColor(GeoPoint geopoint, Ray ray, int level, double k) {
-    if (level <= 1 || k < MIN_CALC_COLOR_K) {
+    if (level <= 1 || isNegligible(k)) {
       return Color.BLACK;
     }
     // diffuse, specular, shadow rays
     Color result = geopoint.geometry.getEmission().add(calcLocalEffects(geopoint, ray, k));
+    Material material = geopoint.geometry.getMaterial();
     // reflection rays
     Vector n = geopoint.geometry.getNormal(geopoint.point);
     Ray reflectedRay = constructReflectedRay(geopoint.point, ray, n);
-    result = result.add(calcGlobalEffect(geopoint.geometry.getMaterial().kR, reflectedRay, k, level));
+    result = result.add(calcGlobalEffect(material.kR, reflectedRay, material.kGlossiness, n, k, level,
+        RenderStatistics.RAY_TYPE.REFLECTION));
     // transparency (refraction rays)
     Ray refractedRay = constructRefractedRay(geopoint.point, ray, n);
-    result = result.add(calcGlobalEffect(geopoint.geometry.getMaterial().kT, refractedRay, k, level));
+    result = result.add(calcGlobalEffect(material.kT, refractedRay, material.kBlurriness, n, k, level,
+        RenderStatistics.RAY_TYPE.REFRACTION));
     return result;
   }
 
@@ -85,23 +184,81 @@ public class BasicRayTracer extends RayTracerBase {
    * @return the color for the pixel
    */
   private Color calcColor(GeoPoint geopoint, Ray ray) {
-    return calcColor(geopoint, ray, MAX_CALC_COLOR_LEVEL, 1.0).add(scene.ambientLight.getIntensity());
+    return calcColor(geopoint, ray, getStartLevel(), 1.0).add(scene.getAmbientIntensity());
   }
 
-  private Color calcGlobalEffect(double effect, Ray angledRay, double k, int level) {
+  /**
+   * Calculate the color added by reflection or refraction, sampling a cone of
+   * rays around the ideal direction when the material is rough
+   * 
+   * @param effect    reflection or transparency factor of the material
+   * @param angledRay ideal reflected or refracted ray
+   * @param roughness glossiness or blurriness of the material
+   * @param n         normal at the point the ray leaves from
+   * @param k         effect factor
+   * @param level     recursion level
+   * @param type      reflection or refraction, for the statistics
+   * @return the color to add
+   */
+  private Color calcGlobalEffect(double effect, Ray angledRay, double roughness, Vector n, double k, int level,
+      RenderStatistics.RAY_TYPE type) {
     double scaledEffect = k * effect;
-    if (scaledEffect > MIN_CALC_COLOR_K && angledRay != null) {
-      List<GeoPoint> intersections = scene.geometries.findGeoIntersections(angledRay);
-      GeoPoint closest = angledRay.findClosestGeoPoint(intersections);
-      // calculate color in direction of reflection or refraction
-      if (closest != null) {
-        return calcColor(closest, angledRay, level - 1, scaledEffect).scale(effect);
+    double weight = angledRay == null ? 0 : survivalWeight(level, scaledEffect);
+    if (weight == 0) {
+      // no ray to cast
+      return Color.BLACK;
+    }
+    if (glossySamplingType == GLOSSY_SAMPLING_TYPE.NONE || isZero(roughness)) {
+      return calcGlobalEffect(effect, angledRay, scaledEffect, level, type).scale(weight);
+    }
+    // the ray budget shrinks with the weight of the effect in the pixel
+    int sampleCount = glossySampleCount;
+    if (glossySamplingType == GLOSSY_SAMPLING_TYPE.ADAPTIVE) {
+      sampleCount = Math.max(Math.min(GLOSSY_INITIAL_SAMPLES, glossySampleCount),
+          (int) Math.ceil(glossySampleCount * scaledEffect));
+    }
+    Color first = null;
+    boolean varied = false;
+    Color sum = Color.BLACK;
+    int traced = 0;
+    while (traced < sampleCount) {
+      // stop early when the first samples agree on the color
+      if (glossySamplingType == GLOSSY_SAMPLING_TYPE.ADAPTIVE && traced == GLOSSY_INITIAL_SAMPLES && !varied) {
+        break;
       }
-      // no intersection with geometries
-      return scene.background;
+      Color color = calcGlobalEffect(effect, constructConeRay(angledRay, roughness, n), scaledEffect, level, type);
+      if (first == null) {
+        first = color;
+      } else if (!varied && !first.same(color)) {
+        varied = true;
+      }
+      sum = sum.add(color);
+      ++traced;
+    }
+    return sum.scale(weight / traced);
+  }
+
+  /**
+   * Calculate the color seen along a single reflected or refracted ray
+   * 
+   * @param effect       reflection or transparency factor of the material
+   * @param angledRay    reflected or refracted ray
+   * @param scaledEffect effect factor of the ray
+   * @param level        recursion level
+   * @param type         reflection or refraction, for the statistics
+   * @return the color to add
+   */
+  private Color calcGlobalEffect(double effect, Ray angledRay, double scaledEffect, int level,
+      RenderStatistics.RAY_TYPE type) {
+    countRay(type);
+    List<GeoPoint> intersections = scene.findGeoIntersections(angledRay);
+    GeoPoint closest = angledRay.findClosestGeoPoint(intersections);
+    // calculate color in direction of reflection or refraction
+    if (closest != null) {
+      return calcColor(closest, angledRay, level - 1, scaledEffect).scale(effect);
     }
-    // no ray to cast
-    return Color.BLACK;
+    // no intersection with geometries
+    return scene.getBackground();
   }
 
   /**
@@ -132,12 +289,12 @@ public class BasicRayTracer extends RayTracerBase {
     double ks = material.kS;
     // add lights
     Color color = Color.BLACK;
-    for (LightSource lightSource : scene.lights) {
+    for (LightSource lightSource : scene.getLights()) {
       Vector l = lightSource.getL(geopoint.point);
       double nl = alignZero(n.dotProduct(l));
       if ((nl > 0 && nv > 0 || nl < 0 && nv < 0)) {
         double ktr = transparency(l, n, geopoint, lightSource);
-        if (ktr * k > MIN_CALC_COLOR_K) {
+        if (!isNegligible(ktr * k)) {
           Color lightIntensity = lightSource.getIntensity(geopoint.point).scale(ktr);
           color = color.add(calcDiffusive(kd, l, n, lightIntensity),
               calcSpecular(ks, l, n, v, nShininess, lightIntensity));
@@ -178,33 +335,6 @@ public class BasicRayTracer extends RayTracerBase {
     return lightIntensity.scale(kd * factor);
   }
 
-  /**
-   * get transparency of light intersection
-   * 
-   * @param l           light direction
-   * @param n           normal
-   * @param geopoint    intersection point
-   * @param lightSource light source
-   * @return transparency
-   */
-  private double transparency(Vector l, Vector n, GeoPoint geopoint, LightSource lightSource) {
-    Vector lightDirection = l.scale(-1);
-    Ray lightRay = new Ray(geopoint.point, lightDirection, n);
-    double lightDistance = lightSource.getDistance(geopoint.point);
-    var intersections = scene.geometries.findGeoIntersections(lightRay);
-    if (intersections == null)
-      return 1.0;
-    double ktr = 1.0;
-    for (GeoPoint gp : intersections) {
-      if (alignZero(gp.point.distance(geopoint.point) - lightDistance) <= 0) {
-        ktr *= gp.geometry.getMaterial().kT;
-        if (ktr < MIN_CALC_COLOR_K)
-          return 0.0;
-      }
-    }
-    return ktr;
-  }
-
   /**
    * construct reflected ray
    * 
@@ -234,4 +364,39 @@ public class BasicRayTracer extends RayTracerBase {
   private Ray constructRefractedRay(Point3D point, Ray ray, Vector n) {
     return new Ray(point, ray.getDirection(), n);
   }
+
+  /**
+   * construct a random ray in a cone around a reflected or refracted ray, the
+   * cone has a radius of roughness at unit distance from the origin
+   * 
+   * @param angledRay ideal reflected or refracted ray
+   * @param roughness radius of the cone at unit distance
+   * @param n         normal at the origin of the ray
+   * @return ray in the cone on the same side of the surface as the ideal ray
+   */
+  private Ray constructConeRay(Ray angledRay, double roughness, Vector n) {
+    Vector direction = angledRay.getDirection();
+    double side = direction.dotProduct(n);
+    // two vectors orthogonal to the direction
+    Vector helper = Math.abs(direction.getHead().getX()) < 0.9 ? new Vector(1, 0, 0) : new Vector(0, 1, 0);
+    Vector u = direction.crossProduct(helper).normalize();
+    Vector v = direction.crossProduct(u);
+    for (int attempt = 0; attempt < 4; ++attempt) {
+      // uniform point on the disk at the base of the cone
+      double radius = roughness * Math.sqrt(random(0, 1));
+      double angle = random(0, 2 * Math.PI);
+      double x = alignZero(radius * Math.cos(angle));
+      double y = alignZero(radius * Math.sin(angle));
+      Vector sample = direction;
+      if (x != 0)
+        sample = sample.add(u.scale(x));
+      if (y != 0)
+        sample = sample.add(v.scale(y));
+      // keep rays from crossing to the other side of the surface
+      if (checkSign(sample.dotProduct(n), side)) {
+        return new Ray(angledRay.getOrigin(), sample);
+      }
+    }
+    return angledRay;
+  }
 }
\ No newline at end of file
@@ -0,0 +1,434 @@
+package renderer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.BitSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import primitives.Color;
+import scene.Scene;
+import scene.SceneFile;
+
+/**
+ * Periodic snapshot of a render on disk, so a render that was stopped resumes
+ * where it was. The image is rendered tile by tile and pass by pass, a finished
+ * tile adds its samples to the accumulated sums of its pixels, and every
+ * interval a copy of the sums, the current pass and its finished tiles is
+ * written by a background thread to a temporary file that then replaces the
+ * checkpoint file, so the file is always whole. A render with a checkpoint file
+ * of the same image size, passes, tile size, scene and settings starts from it
+ * and skips its finished tiles, and a render that finishes deletes the file.
+ * <p>
+ * The file is deflated: the magic number, the version, the width, height,
+ * passes and tile size, the SHA-256 fingerprint of the scene file of the scene
+ * and of the settings of the render, the current pass, the words of the set of
+ * its finished tiles, and the red, green and blue sums of every pixel as
+ * floats. The sample counts follow from the pass and the finished tiles.
+ *
+ * @author Jonah Lawrence
+ * @author Elad Harizy
+ */
+public class Checkpoint {
+
+  private static final int MAGIC = 0x4A52544B;
+  private static final int VERSION = 2;
+  private static final int FINGERPRINT_BYTES = 32;
+
+  private final Path file;
+  private final Scene scene;
+  private int tileSize = 32;
+  private long interval = 60000;
+
+  private ImageWriter imageWriter;
+  private int nX;
+  private int nY;
+  private int passes;
+  private int tilesX;
+  private int tileCount;
+  private byte[] fingerprint;
+
+  /**
+   * current pass and its finished tiles
+   */
+  private int pass;
+  private BitSet done;
+
+  /**
+   * sums and counts of the finished samples
+   */
+  private FrameBuffer frameBuffer;
+
+  private int resumedTiles;
+  private ScheduledExecutorService writer;
+  private final Logger logger = Logger.getLogger("Checkpoint");
+
+  /**
+   * samples of the tile a thread renders
+   */
+  private final ThreadLocal<TileSamples> samples = new ThreadLocal<>();
+
+  /**
+   * Colors of the pixels of a tile until the tile is finished
+   */
+  private static final class TileSamples {
+    private final int[] bounds;
+    private final double[] colors;
+
+    private TileSamples(int[] bounds) {
+      this.bounds = bounds;
+      colors = new double[3 * (bounds[2] - bounds[0]) * (bounds[3] - bounds[1])];
+    }
+  }
+
+  /**
+   * Constructor
+   *
+   * @param file  the checkpoint file, which a render resumes from if it exists
+   * @param scene the scene the render traces, whose scene file is part of the
+   *              fingerprint of the render
+   */
+  public Checkpoint(Path file, Scene scene) {
+    if (scene == null)
+      throw new IllegalArgumentException("Scene cannot be null");
+    this.file = file;
+    this.scene = scene;
+  }
+
+  /**
+   * set the width and height of the tiles, the unit of finished work
+   *
+   * @param tileSize tile size in pixels
+   * @return the Checkpoint object itself
+   */
+  public Checkpoint setTileSize(int tileSize) {
+    if (tileSize < 1)
+      throw new IllegalArgumentException("Tile size must be positive");
+    this.tileSize = tileSize;
+    return this;
+  }
+
+  /**
+   * set the time between snapshots
+   *
+   * @param millis milliseconds
+   * @return the Checkpoint object itself
+   */
+  public Checkpoint setInterval(long millis) {
+    if (millis < 1)
+      throw new IllegalArgumentException("Interval must be positive");
+    this.interval = millis;
+    return this;
+  }
+
+  /**
+   * @return the checkpoint file
+   */
+  public Path getFile() {
+    return file;
+  }
+
+  /**
+   * @return number of tiles of all the passes the last render found finished in
+   *         the checkpoint file
+   */
+  public int getResumedTiles() {
+    return resumedTiles;
+  }
+
+  /**
+   * Start a render, from the checkpoint file if there is one, and start writing
+   * snapshots - called by the renderer
+   *
+   * @param imageWriter the image, which receives the colors of finished pixels
+   * @param passes      number of passes over the image
+   * @param settings    the settings of the render that change its samples
+   * @throws IllegalArgumentException if the checkpoint file is of another render
+   *                                  or the scene cannot be written to a scene
+   *                                  file
+   * @throws UncheckedIOException     if the checkpoint file cannot be read
+   */
+  void begin(ImageWriter imageWriter, int passes, byte[] settings) {
+    this.imageWriter = imageWriter;
+    this.nX = imageWriter.getNx();
+    this.nY = imageWriter.getNy();
+    this.passes = passes;
+    tilesX = (nX + tileSize - 1) / tileSize;
+    tileCount = tilesX * ((nY + tileSize - 1) / tileSize);
+    frameBuffer = new FrameBuffer(nX, nY);
+    pass = 0;
+    done = new BitSet(tileCount);
+    resumedTiles = 0;
+    try {
+      fingerprint = fingerprint(settings);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Scene cannot be fingerprinted", e);
+    }
+    if (Files.exists(file)) {
+      try {
+        read();
+      } catch (IOException e) {
+        throw new UncheckedIOException("Checkpoint cannot be read: " + file, e);
+      }
+      resumedTiles = pass * tileCount + done.cardinality();
+      for (int i = 0; i < nY; ++i)
+        for (int j = 0; j < nX; ++j)
+          if (frameBuffer.getCount(j, i) > 0)
+            imageWriter.writePixel(j, i, frameBuffer.getColor(j, i));
+    }
+    writer = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread thread = new Thread(r, "checkpoint writer");
+      thread.setDaemon(true);
+      return thread;
+    });
+    writer.scheduleWithFixedDelay(this::writeQuietly, interval, interval, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * @param settings the settings of the render
+   * @return SHA-256 of the scene file of the scene followed by the settings
+   */
+  private byte[] fingerprint(byte[] settings) throws IOException {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is not available", e);
+    }
+    Path sceneFile = Files.createTempFile("checkpoint", ".jrts");
+    try {
+      SceneFile.write(scene, sceneFile);
+      digest.update(Files.readAllBytes(sceneFile));
+    } finally {
+      Files.deleteIfExists(sceneFile);
+    }
+    return digest.digest(settings);
+  }
+
+  /**
+   * @return the accumulated samples, which progressive passes show the average of
+   */
+  FrameBuffer getFrameBuffer() {
+    return frameBuffer;
+  }
+
+  /**
+   * @return the current pass
+   */
+  int getPass() {
+    return pass;
+  }
+
+  /**
+   * @return the tiles of the current pass that are not finished
+   */
+  synchronized int[] pendingTiles() {
+    int[] tiles = new int[tileCount - done.cardinality()];
+    int count = 0;
+    for (int tile = done.nextClearBit(0); tile < tileCount; tile = done.nextClearBit(tile + 1))
+      tiles[count++] = tile;
+    return tiles;
+  }
+
+  /**
+   * @param tile index of a tile
+   * @return first column, first row, column after the last and row after the
+   *         last of the tile
+   */
+  int[] getTileBounds(int tile) {
+    int col = (tile % tilesX) * tileSize;
+    int row = (tile / tilesX) * tileSize;
+    return new int[] { col, row, Math.min(col + tileSize, nX), Math.min(row + tileSize, nY) };
+  }
+
+  /**
+   * Start keeping the samples of a tile the current thread renders
+   *
+   * @param tile index of the tile
+   * @return the bounds of the tile
+   */
+  int[] beginTile(int tile) {
+    int[] bounds = getTileBounds(tile);
+    samples.set(new TileSamples(bounds));
+    return bounds;
+  }
+
+  /**
+   * Keep the sample of a pixel of the tile of the current thread
+   *
+   * @param col   pixel's column number
+   * @param row   pixel's row number
+   * @param color the sample
+   */
+  void sample(int col, int row, Color color) {
+    TileSamples tile = samples.get();
+    int index = 3 * ((row - tile.bounds[1]) * (tile.bounds[2] - tile.bounds[0]) + col - tile.bounds[0]);
+    tile.colors[index] = color.getRed();
+    tile.colors[index + 1] = color.getGreen();
+    tile.colors[index + 2] = color.getBlue();
+  }
+
+  /**
+   * Add the samples of the tile of the current thread to its pixels and show
+   * them in the image
+   *
+   * @param tile index of the tile
+   */
+  void commitTile(int tile) {
+    TileSamples tileSamples = samples.get();
+    samples.remove();
+    int[] bounds = tileSamples.bounds;
+    int width = bounds[2] - bounds[0];
+    float[] sums = frameBuffer.getSums();
+    int[] counts = frameBuffer.getCounts();
+    // a snapshot sees a tile with all its samples or with none
+    synchronized (this) {
+      for (int i = bounds[1]; i < bounds[3]; ++i)
+        for (int j = bounds[0]; j < bounds[2]; ++j) {
+          int pixel = i * nX + j;
+          int index = 3 * ((i - bounds[1]) * width + j - bounds[0]);
+          sums[3 * pixel] += (float) tileSamples.colors[index];
+          sums[3 * pixel + 1] += (float) tileSamples.colors[index + 1];
+          sums[3 * pixel + 2] += (float) tileSamples.colors[index + 2];
+          ++counts[pixel];
+        }
+      done.set(tile);
+    }
+    for (int i = bounds[1]; i < bounds[3]; ++i)
+      for (int j = bounds[0]; j < bounds[2]; ++j) {
+        int index = 3 * ((i - bounds[1]) * width + j - bounds[0]);
+        // one sample is shown as it was traced
+        imageWriter.writePixel(j, i, passes == 1 ? new Color(tileSamples.colors[index],
+            tileSamples.colors[index + 1], tileSamples.colors[index + 2]) : frameBuffer.getColor(j, i));
+      }
+  }
+
+  /**
+   * Start the next pass, after all the tiles of the current one are finished
+   */
+  synchronized void endPass() {
+    ++pass;
+    done.clear();
+  }
+
+  /**
+   * Stop writing snapshots, and delete the checkpoint file of a finished render
+   * or write the last snapshot of a stopped one
+   *
+   * @param finished true if all the passes are finished
+   * @throws UncheckedIOException if the checkpoint file cannot be written or
+   *                              deleted
+   */
+  void end(boolean finished) {
+    writer.shutdown();
+    try {
+      writer.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    try {
+      if (finished)
+        Files.deleteIfExists(file);
+      else
+        write();
+    } catch (IOException e) {
+      throw new UncheckedIOException("Checkpoint cannot be " + (finished ? "deleted: " : "written: ") + file, e);
+    }
+  }
+
+  private void writeQuietly() {
+    try {
+      write();
+    } catch (IOException e) {
+      // the render goes on, the next snapshot may succeed
+      logger.log(Level.WARNING, "Checkpoint cannot be written", e);
+    }
+  }
+
+  /**
+   * Write a snapshot to a temporary file that replaces the checkpoint file
+   */
+  private void write() throws IOException {
+    TraceRecorder tracer = TraceRecorder.current();
+    long start = tracer == null ? 0 : System.nanoTime();
+    int snapshotPass;
+    long[] snapshotDone;
+    float[] sums;
+    synchronized (this) {
+      snapshotPass = pass;
+      snapshotDone = done.toLongArray();
+      sums = frameBuffer.getSums().clone();
+    }
+    Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+    Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    try (DataOutputStream out = new DataOutputStream(
+        new BufferedOutputStream(new DeflaterOutputStream(Files.newOutputStream(temporary), deflater, 1 << 16)))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(nX);
+      out.writeInt(nY);
+      out.writeInt(passes);
+      out.writeInt(tileSize);
+      out.write(fingerprint);
+      out.writeInt(snapshotPass);
+      out.writeInt(snapshotDone.length);
+      for (long word : snapshotDone)
+        out.writeLong(word);
+      for (float sum : sums)
+        out.writeFloat(sum);
+    } finally {
+      deflater.end();
+    }
+    Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    if (tracer != null)
+      tracer.record("checkpoint write", "io", start, System.nanoTime(), file.getFileName().toString());
+  }
+
+  private void read() throws IOException {
+    try (DataInputStream in = new DataInputStream(
+        new BufferedInputStream(new InflaterInputStream(Files.newInputStream(file)), 1 << 16))) {
+      if (in.readInt() != MAGIC)
+        throw new IllegalArgumentException("Not a checkpoint file: " + file);
+      if (in.readInt() != VERSION)
+        throw new IllegalArgumentException("Checkpoint file of another version: " + file);
+      if (in.readInt() != nX || in.readInt() != nY || in.readInt() != passes || in.readInt() != tileSize)
+        throw new IllegalArgumentException("Checkpoint file of another render: " + file);
+      byte[] fileFingerprint = new byte[FINGERPRINT_BYTES];
+      in.readFully(fileFingerprint);
+      if (!MessageDigest.isEqual(fileFingerprint, fingerprint))
+        throw new IllegalArgumentException("Checkpoint file of another scene or settings: " + file);
+      pass = in.readInt();
+      long[] words = new long[in.readInt()];
+      for (int i = 0; i < words.length; ++i)
+        words[i] = in.readLong();
+      done = BitSet.valueOf(words);
+      float[] sums = frameBuffer.getSums();
+      for (int i = 0; i < sums.length; ++i)
+        sums[i] = in.readFloat();
+    }
+    // every pixel has a sample of every finished pass and of its finished tile
+    int[] counts = frameBuffer.getCounts();
+    for (int tile = 0; tile < tileCount; ++tile) {
+      int[] bounds = getTileBounds(tile);
+      int count = Math.min(pass + (done.get(tile) ? 1 : 0), passes);
+      for (int i = bounds[1]; i < bounds[3]; ++i)
+        for (int j = bounds[0]; j < bounds[2]; ++j)
+          counts[i * nX + j] = count;
+    }
+  }
+}
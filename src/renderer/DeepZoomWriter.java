@@ -0,0 +1,281 @@
+package renderer;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.imageio.ImageIO;
+
+import primitives.Color;
+
+/**
+ * Image writer of a Deep Zoom (DZI) pyramid of tiles, for viewers that load
+ * only the tiles and the resolution they show. The tiles of the full
+ * resolution are written as soon as all their pixels are, and every written
+ * tile is shrunk into a quarter of its tile of the level above, which is
+ * written when all its children are, so the pyramid is done with the render
+ * and only tiles that are not finished are kept in memory. Every pixel is
+ * expected once, as a render of one pass writes it; a pixel written again after
+ * its tile was written, such as by {@link Render#renderChanges} or
+ * {@link Render#printGrid}, reopens the tile from its file, and
+ * {@link #writeToImage()} writes the reopened tiles and the tiles above them
+ * again.
+ * <p>
+ * The tiles of level L, at column C and row R, are in
+ * images/name_files/L/C_R.png and the descriptor in images/name.dzi, level 0
+ * being a single pixel and each level twice the size of the one above up to
+ * the size of the image.
+ *
+ * @author Jonah Lawrence
+ * @author Elad Harizy
+ */
+public class DeepZoomWriter extends ImageWriter {
+
+  private final int tileSize;
+  private final int maxLevel;
+
+  /**
+   * width and height of every level
+   */
+  private final int[] widths;
+  private final int[] heights;
+
+  /**
+   * tiles of every level that are not finished, by row and column
+   */
+  private final List<ConcurrentHashMap<Long, Tile>> tiles = new ArrayList<>();
+
+  /**
+   * tiles of every level whose files are written, by row and column
+   */
+  private final List<Set<Long>> finishedTiles = new ArrayList<>();
+
+  private final File directory;
+  private final AtomicInteger written = new AtomicInteger();
+  private final Logger logger = Logger.getLogger("DeepZoomWriter");
+
+  /**
+   * A tile of a level whose pixels or children are written
+   */
+  private final class Tile {
+    private final int level;
+    private final int col;
+    private final int row;
+    private final int width;
+    private final int height;
+    private final int[] rgb;
+
+    /**
+     * pixels, or tiles of the level below, that are not written yet
+     */
+    private final AtomicInteger remaining;
+    private final AtomicBoolean finished = new AtomicBoolean();
+
+    private Tile(int level, int col, int row) {
+      this.level = level;
+      this.col = col;
+      this.row = row;
+      width = Math.min(tileSize, widths[level] - col * tileSize);
+      height = Math.min(tileSize, heights[level] - row * tileSize);
+      rgb = new int[width * height];
+      if (level == maxLevel) {
+        remaining = new AtomicInteger(width * height);
+      } else {
+        // the children of the tile that are inside the level below
+        int children = 0;
+        for (int y = 2 * row; y <= 2 * row + 1; ++y)
+          for (int x = 2 * col; x <= 2 * col + 1; ++x)
+            if (x * tileSize < widths[level + 1] && y * tileSize < heights[level + 1])
+              ++children;
+        remaining = new AtomicInteger(children);
+      }
+    }
+  }
+
+  /**
+   * Constructor
+   *
+   * @param imageName the name of the pyramid
+   * @param nX        amount of pixels by width
+   * @param nY        amount of pixels by height
+   * @param tileSize  width and height of the tiles, an even number such as 256
+   */
+  public DeepZoomWriter(String imageName, int nX, int nY, int tileSize) {
+    super(imageName, nX, nY, null);
+    if (tileSize < 2 || tileSize % 2 != 0)
+      throw new IllegalArgumentException("Tile size must be a positive even number");
+    this.tileSize = tileSize;
+    int levels = 0;
+    while ((1 << levels) < Math.max(nX, nY))
+      ++levels;
+    maxLevel = levels;
+    widths = new int[maxLevel + 1];
+    heights = new int[maxLevel + 1];
+    widths[maxLevel] = nX;
+    heights[maxLevel] = nY;
+    for (int level = maxLevel - 1; level >= 0; --level) {
+      widths[level] = (widths[level + 1] + 1) / 2;
+      heights[level] = (heights[level + 1] + 1) / 2;
+    }
+    for (int level = 0; level <= maxLevel; ++level) {
+      tiles.add(new ConcurrentHashMap<>());
+      finishedTiles.add(ConcurrentHashMap.newKeySet());
+    }
+    directory = getFile("_files");
+  }
+
+  /**
+   * @return the level of the full resolution
+   */
+  public int getMaxLevel() {
+    return maxLevel;
+  }
+
+  /**
+   * @return number of tiles written so far
+   */
+  public int getWrittenTiles() {
+    return written.get();
+  }
+
+  @Override
+  public void writePixel(int xIndex, int yIndex, Color color) {
+    Tile tile = getTile(maxLevel, xIndex / tileSize, yIndex / tileSize);
+    tile.rgb[(yIndex % tileSize) * tile.width + xIndex % tileSize] = color.getColor().getRGB();
+    // the thread that writes the last pixel sees the pixels of the others
+    if (tile.remaining.decrementAndGet() == 0)
+      finish(tile);
+  }
+
+  /**
+   * Write the tiles that are not finished, such as after a render that was
+   * stopped, and the descriptor of the pyramid
+   *
+   * @return the descriptor file, or null if it cannot be written
+   */
+  @Override
+  public File writeToImage() {
+    try {
+      // a level is finished before the one above, which receives its tiles
+      for (int level = maxLevel; level >= 0; --level)
+        for (Tile tile : tiles.get(level).values())
+          finish(tile);
+      File descriptor = getFile(".dzi");
+      String xml = String.format("<?xml version=\"1.0\" encoding=\"UTF-8\"?>%n"
+          + "<Image xmlns=\"http://schemas.microsoft.com/deepzoom/2008\" Format=\"png\" Overlap=\"0\" TileSize=\"%d\">%n"
+          + "  <Size Width=\"%d\" Height=\"%d\"/>%n</Image>%n", tileSize, getNx(), getNy());
+      Files.write(descriptor.toPath(), xml.getBytes(StandardCharsets.UTF_8));
+      return descriptor;
+    } catch (IOException | UncheckedIOException e) {
+      logger.log(Level.SEVERE, "I/O error", e);
+      return null;
+    }
+  }
+
+  private Tile getTile(int level, int col, int row) {
+    return tiles.get(level).computeIfAbsent(tileKey(level, col, row),
+        k -> finishedTiles.get(level).contains(k) ? reopen(level, col, row) : new Tile(level, col, row));
+  }
+
+  private long tileKey(int level, int col, int row) {
+    return (long) row * ((widths[level] + tileSize - 1) / tileSize) + col;
+  }
+
+  /**
+   * Read a tile whose file was written, so pixels written again update it - it
+   * is only finished again by {@link #writeToImage()}
+   *
+   * @return the tile
+   */
+  private Tile reopen(int level, int col, int row) {
+    Tile tile = new Tile(level, col, row);
+    tile.remaining.set(Integer.MAX_VALUE);
+    File file = new File(new File(directory, Integer.toString(level)), col + "_" + row + ".png");
+    try {
+      BufferedImage image = ImageIO.read(file);
+      if (image == null || image.getWidth() != tile.width || image.getHeight() != tile.height)
+        throw new IOException("Not a tile of the pyramid: " + file);
+      image.getRGB(0, 0, tile.width, tile.height, tile.rgb, 0, tile.width);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Tile cannot be read again", e);
+    }
+    return tile;
+  }
+
+  /**
+   * Write a tile and shrink it into its tile of the level above, which is
+   * finished too if it was the last of its children
+   *
+   * @param tile the tile
+   */
+  private void finish(Tile tile) {
+    if (!tile.finished.compareAndSet(false, true))
+      return;
+    BufferedImage image = new BufferedImage(tile.width, tile.height, BufferedImage.TYPE_INT_RGB);
+    image.setRGB(0, 0, tile.width, tile.height, tile.rgb, 0, tile.width);
+    File levelDirectory = new File(directory, Integer.toString(tile.level));
+    levelDirectory.mkdirs();
+    try {
+      File file = new File(levelDirectory, tile.col + "_" + tile.row + ".png");
+      TraceRecorder tracer = TraceRecorder.current();
+      long start = tracer == null ? 0 : System.nanoTime();
+      ImageEncodeEvent event = new ImageEncodeEvent();
+      event.begin();
+      ImageIO.write(image, "png", file);
+      if (event.shouldCommit()) {
+        event.image = getImageName() + " " + tile.level + "/" + tile.col + "_" + tile.row;
+        event.format = "png";
+        event.width = tile.width;
+        event.height = tile.height;
+        event.bytes = file.length();
+        event.commit();
+      }
+      if (tracer != null)
+        tracer.record("encode", "encode", start, System.nanoTime(), tile.level + "/" + file.getName());
+    } catch (IOException e) {
+      throw new UncheckedIOException("Tile cannot be written", e);
+    }
+    // a pixel written from now on reopens the tile from its file
+    long key = tileKey(tile.level, tile.col, tile.row);
+    finishedTiles.get(tile.level).add(key);
+    tiles.get(tile.level).remove(key);
+    written.incrementAndGet();
+    if (tile.level == 0)
+      return;
+
+    // every pixel of the parent is the average of up to 2x2 pixels of the tile
+    Tile parent = getTile(tile.level - 1, tile.col / 2, tile.row / 2);
+    int offsetX = (tile.col % 2) * tileSize / 2;
+    int offsetY = (tile.row % 2) * tileSize / 2;
+    for (int y = 0; y < (tile.height + 1) / 2; ++y)
+      for (int x = 0; x < (tile.width + 1) / 2; ++x) {
+        int red = 0;
+        int green = 0;
+        int blue = 0;
+        int count = 0;
+        for (int dy = 0; dy < 2 && 2 * y + dy < tile.height; ++dy)
+          for (int dx = 0; dx < 2 && 2 * x + dx < tile.width; ++dx) {
+            int rgb = tile.rgb[(2 * y + dy) * tile.width + 2 * x + dx];
+            red += (rgb >> 16) & 0xFF;
+            green += (rgb >> 8) & 0xFF;
+            blue += rgb & 0xFF;
+            ++count;
+          }
+        parent.rgb[(offsetY + y) * parent.width + offsetX + x] = (red + count / 2) / count << 16
+            | (green + count / 2) / count << 8 | (blue + count / 2) / count;
+      }
+    if (parent.remaining.decrementAndGet() == 0)
+      finish(parent);
+  }
+}
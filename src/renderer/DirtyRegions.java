@@ -0,0 +1,348 @@
+package renderer;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import elements.Camera;
+import geometries.Intersectable;
+import primitives.Point3D;
+import primitives.Ray;
+import scene.CompiledScene;
+
+/**
+ * Record of what the rays of every tile of an image reached, so an edit of some
+ * geometries only re-traces the tiles it can change. A tile keeps the
+ * geometries its rays intersected - primary, shadow, reflected and refracted
+ * rays alike - the box of its rays of limited length, such as shadow rays to
+ * point lights, and for every octant of directions the box of the origins and
+ * directions of its rays of unlimited length. A geometry that changes in place
+ * changes the tiles that intersected it, and a geometry that moves also changes
+ * the tiles whose rays can reach its new bounds
+ *
+ * @author Jonah Lawrence
+ * @author Elad Harizy
+ */
+public class DirtyRegions {
+
+  private final int tileSize;
+  private int nX;
+  private int nY;
+  private int tilesX;
+  private Tile[] tiles = new Tile[0];
+
+  /**
+   * number of tiles the last edit changed
+   */
+  private int dirtyCount = 0;
+
+  /**
+   * the scene the tiles were traced in
+   */
+  private CompiledScene scene;
+
+  /**
+   * recorder of the thread that traces a pixel
+   */
+  private final ThreadLocal<TileRecorder> recorders = ThreadLocal.withInitial(TileRecorder::new);
+
+  /**
+   * What the rays of a tile reached
+   */
+  private static final class Tile {
+    private final BitSet geometries = new BitSet();
+
+    /**
+     * box of the rays of limited length
+     */
+    private final double[] segments = emptyBox();
+
+    /**
+     * for every octant of directions the box of the origins and the box of the
+     * directions of the rays of unlimited length, null if there are none
+     */
+    private final double[][] origins = new double[8][];
+    private final double[][] directions = new double[8][];
+
+    private void clear() {
+      geometries.clear();
+      System.arraycopy(emptyBox(), 0, segments, 0, 6);
+      Arrays.fill(origins, null);
+      Arrays.fill(directions, null);
+    }
+
+    /**
+     * Add the record of a pixel
+     */
+    private synchronized void merge(TileRecorder recorder) {
+      geometries.or(recorder.tile.geometries);
+      grow(segments, recorder.tile.segments);
+      for (int octant = 0; octant < 8; ++octant) {
+        if (recorder.tile.origins[octant] == null)
+          continue;
+        if (origins[octant] == null) {
+          origins[octant] = emptyBox();
+          directions[octant] = emptyBox();
+        }
+        grow(origins[octant], recorder.tile.origins[octant]);
+        grow(directions[octant], recorder.tile.directions[octant]);
+      }
+    }
+
+    /**
+     * Check whether a ray of the tile can reach a box
+     */
+    private synchronized boolean reaches(double[] box) {
+      if (overlaps(segments, box))
+        return true;
+      for (int octant = 0; octant < 8; ++octant)
+        if (origins[octant] != null && sweepReaches(origins[octant], directions[octant], box))
+          return true;
+      return false;
+    }
+  }
+
+  /**
+   * Recorder of the rays of the pixel a thread traces
+   */
+  private static final class TileRecorder implements CompiledScene.Recorder {
+    private final Tile tile = new Tile();
+
+    @Override
+    public void ray(Ray ray, double maxDistance) {
+      Point3D o = ray.getOrigin();
+      Point3D d = ray.getDirection().getHead();
+      if (maxDistance < Double.POSITIVE_INFINITY) {
+        add(tile.segments, o.getX(), o.getY(), o.getZ());
+        add(tile.segments, o.getX() + d.getX() * maxDistance, o.getY() + d.getY() * maxDistance,
+            o.getZ() + d.getZ() * maxDistance);
+        return;
+      }
+      int octant = (d.getX() < 0 ? 1 : 0) | (d.getY() < 0 ? 2 : 0) | (d.getZ() < 0 ? 4 : 0);
+      if (tile.origins[octant] == null) {
+        tile.origins[octant] = emptyBox();
+        tile.directions[octant] = emptyBox();
+      }
+      add(tile.origins[octant], o.getX(), o.getY(), o.getZ());
+      add(tile.directions[octant], d.getX(), d.getY(), d.getZ());
+    }
+
+    @Override
+    public void geometry(int index) {
+      tile.geometries.set(index);
+    }
+  }
+
+  /**
+   * Constructor
+   *
+   * @param tileSize width and height of the tiles in pixels
+   */
+  public DirtyRegions(int tileSize) {
+    if (tileSize < 1)
+      throw new IllegalArgumentException("Tile size must be positive");
+    this.tileSize = tileSize;
+  }
+
+  /**
+   * @return width and height of the tiles in pixels
+   */
+  public int getTileSize() {
+    return tileSize;
+  }
+
+  /**
+   * @return number of tiles of the image
+   */
+  public int getTileCount() {
+    return tiles.length;
+  }
+
+  /**
+   * @return number of tiles rendered again after the last edit, all the tiles if
+   *         the whole image was rendered
+   */
+  public int getDirtyTileCount() {
+    return dirtyCount;
+  }
+
+  /**
+   * Forget the tiles of the last render and start recording a new one - called
+   * by the renderer
+   *
+   * @param scene the scene
+   * @param nX    amount of pixels by width
+   * @param nY    amount of pixels by height
+   */
+  void begin(CompiledScene scene, int nX, int nY) {
+    this.scene = scene;
+    this.nX = nX;
+    this.nY = nY;
+    tilesX = (nX + tileSize - 1) / tileSize;
+    int count = tilesX * ((nY + tileSize - 1) / tileSize);
+    tiles = new Tile[count];
+    dirtyCount = count;
+    for (int i = 0; i < count; ++i)
+      tiles[i] = new Tile();
+  }
+
+  /**
+   * Start recording the rays of a pixel in the current thread - called by the
+   * renderer
+   */
+  void beginPixel() {
+    TileRecorder recorder = recorders.get();
+    recorder.tile.clear();
+    scene.setRecorder(recorder);
+  }
+
+  /**
+   * Keep the rays of the pixel the current thread traced in its tile - called by
+   * the renderer
+   *
+   * @param col pixel's column number
+   * @param row pixel's row number
+   */
+  void endPixel(int col, int row) {
+    scene.setRecorder(null);
+    tiles[(row / tileSize) * tilesX + col / tileSize].merge(recorders.get());
+  }
+
+  /**
+   * Find the tiles that changes of geometries change, and forget what their rays
+   * reached - called by the renderer before it traces them in the edited scene
+   *
+   * @param edited  the edited scene
+   * @param nX      amount of pixels by width
+   * @param nY      amount of pixels by height
+   * @param changed geometries of the scene that were changed, added or removed
+   * @return the indices of the tiles, or null if the whole image must be traced
+   */
+  int[] dirtyTiles(CompiledScene edited, int nX, int nY, Intersectable... changed) {
+    if (scene == null || nX != this.nX || nY != this.nY || edited.getGeometryCount() != scene.getGeometryCount()
+        || !sameView(scene.getCamera(), edited.getCamera()))
+      return null;
+    boolean[] dirty = new boolean[tiles.length];
+    // the tiles keep the indices of the geometries they intersected, so a geometry
+    // may only be replaced by one in its place of the list
+    BitSet replaced = new BitSet();
+    for (Intersectable geometry : changed) {
+      int before = scene.indexOf(geometry);
+      int after = edited.indexOf(geometry);
+      // a geometry inside another one, such as the shared geometry of instances
+      if (before < 0 && after < 0 || before >= 0 && after >= 0 && before != after)
+        return null;
+      if (after < 0)
+        replaced.flip(before);
+      else if (before < 0)
+        replaced.flip(after);
+      if (before >= 0)
+        for (int i = 0; i < tiles.length; ++i)
+          dirty[i] |= tiles[i].geometries.get(before);
+      if (after >= 0) {
+        double[] box = edited.getGeometry(after).getBounds();
+        if (box == null)
+          return null;
+        // a geometry that kept its place, such as one of another emission, only
+        // changes the rays that intersected it
+        if (before >= 0 && Arrays.equals(box, scene.getGeometry(before).getBounds()))
+          continue;
+        for (int i = 0; i < tiles.length; ++i)
+          dirty[i] |= tiles[i].reaches(box);
+      }
+    }
+    if (!replaced.isEmpty())
+      return null;
+    int count = 0;
+    int[] result = new int[tiles.length];
+    for (int i = 0; i < tiles.length; ++i) {
+      if (dirty[i]) {
+        result[count++] = i;
+        tiles[i].clear();
+      }
+    }
+    scene = edited;
+    dirtyCount = count;
+    return Arrays.copyOf(result, count);
+  }
+
+  /**
+   * @param tile index of a tile
+   * @return first column, first row, column after the last and row after the
+   *         last of the tile
+   */
+  int[] getTileBounds(int tile) {
+    int col = (tile % tilesX) * tileSize;
+    int row = (tile / tilesX) * tileSize;
+    return new int[] { col, row, Math.min(col + tileSize, nX), Math.min(row + tileSize, nY) };
+  }
+
+  /**
+   * Check whether a ray with an origin and a direction in two boxes can reach a
+   * third box - on every axis the points of the rays at distance t lie between
+   * the lowest origin plus t times the lowest direction and the highest origin
+   * plus t times the highest direction, which bounds t from below or above
+   *
+   * @param origins    box of the origins
+   * @param directions box of the directions
+   * @param box        the box
+   * @return false if no such ray reaches the box
+   */
+  private static boolean sweepReaches(double[] origins, double[] directions, double[] box) {
+    double tMin = 0;
+    double tMax = Double.POSITIVE_INFINITY;
+    for (int axis = 0; axis < 3; ++axis) {
+      // lowest point up to the top of the box
+      double low = directions[axis];
+      double gap = box[axis + 3] - origins[axis];
+      if (low > 0)
+        tMax = Math.min(tMax, gap / low);
+      else if (low < 0)
+        tMin = Math.max(tMin, gap / low);
+      else if (gap < 0)
+        return false;
+      // highest point down to the bottom of the box
+      double high = directions[axis + 3];
+      gap = box[axis] - origins[axis + 3];
+      if (high > 0)
+        tMin = Math.max(tMin, gap / high);
+      else if (high < 0)
+        tMax = Math.min(tMax, gap / high);
+      else if (gap > 0)
+        return false;
+    }
+    return tMin <= tMax;
+  }
+
+  private static boolean sameView(Camera a, Camera b) {
+    return a.getOrigin().equals(b.getOrigin()) && a.getVTo().equals(b.getVTo()) && a.getVUp().equals(b.getVUp())
+        && a.getDistance() == b.getDistance() && a.getWidth() == b.getWidth() && a.getHeight() == b.getHeight();
+  }
+
+  private static boolean overlaps(double[] a, double[] b) {
+    for (int axis = 0; axis < 3; ++axis)
+      if (a[axis] > b[axis + 3] || b[axis] > a[axis + 3])
+        return false;
+    return true;
+  }
+
+  private static void add(double[] box, double x, double y, double z) {
+    box[0] = Math.min(box[0], x);
+    box[1] = Math.min(box[1], y);
+    box[2] = Math.min(box[2], z);
+    box[3] = Math.max(box[3], x);
+    box[4] = Math.max(box[4], y);
+    box[5] = Math.max(box[5], z);
+  }
+
+  private static void grow(double[] box, double[] other) {
+    for (int axis = 0; axis < 3; ++axis) {
+      box[axis] = Math.min(box[axis], other[axis]);
+      box[axis + 3] = Math.max(box[axis + 3], other[axis + 3]);
+    }
+  }
+
+  private static double[] emptyBox() {
+    double inf = Double.POSITIVE_INFINITY;
+    return new double[] { inf, inf, inf, -inf, -inf, -inf };
+  }
+}
@@ -0,0 +1,138 @@
+package renderer;
+
+import primitives.Color;
+
+/**
+ * Float accumulation buffer for progressive rendering - each pass adds one
+ * sample per pixel and the image is the running average of the passes
+ * 
+ * @author Jonah Lawrence
+ * @author Elad Harizy
+ */
+public class FrameBuffer {
+
+  /**
+   * largest number of pixels of a buffer, whose sums are one array
+   */
+  public static final int MAX_PIXELS = (Integer.MAX_VALUE - 8) / 3;
+
+  private final int nX;
+  private final int nY;
+
+  /**
+   * red, green and blue sums of every pixel, row by row
+   */
+  private final float[] sums;
+
+  /**
+   * number of samples accumulated in every pixel
+   */
+  private final int[] counts;
+
+  /**
+   * constructor
+   * 
+   * @param nX amount of pixels by width
+   * @param nY amount of pixels by height
+   * @throws IllegalArgumentException if the buffer of the image is too large
+   */
+  public FrameBuffer(int nX, int nY) {
+    checkSize(nX, nY);
+    this.nX = nX;
+    this.nY = nY;
+    this.sums = new float[3 * nX * nY];
+    this.counts = new int[nX * nY];
+  }
+
+  /**
+   * Check that the buffer of an image can be allocated: its sums fit in one array
+   * and its 16 bytes of every pixel in the largest heap
+   * 
+   * @param nX amount of pixels by width
+   * @param nY amount of pixels by height
+   * @throws IllegalArgumentException if the buffer is too large
+   */
+  static void checkSize(int nX, int nY) {
+    long pixels = (long) nX * nY;
+    if (pixels > MAX_PIXELS)
+      throw new IllegalArgumentException(String.format(
+          "Accumulation buffer of %dx%d pixels exceeds %d pixels, render the image in one pass without a checkpoint",
+          nX, nY, MAX_PIXELS));
+    long megabytes = (16 * pixels >> 20) + 1;
+    long heap = Runtime.getRuntime().maxMemory() >> 20;
+    if (megabytes > heap)
+      throw new IllegalArgumentException(String.format(
+          "Accumulation buffer of %dx%d pixels needs %d MB of the %d MB heap, render the image in one pass without a checkpoint",
+          nX, nY, megabytes, heap));
+  }
+
+  /**
+   * @return the amount of pixels by width
+   */
+  public int getNx() {
+    return nX;
+  }
+
+  /**
+   * @return the amount of pixels by height
+   */
+  public int getNy() {
+    return nY;
+  }
+
+  /**
+   * Add a sample to a pixel - a pixel must be written by one thread at a time
+   * 
+   * @param col   pixel's column number
+   * @param row   pixel's row number
+   * @param color sample color
+   */
+  public void accumulate(int col, int row, Color color) {
+    int pixel = row * nX + col;
+    sums[3 * pixel] += (float) color.getRed();
+    sums[3 * pixel + 1] += (float) color.getGreen();
+    sums[3 * pixel + 2] += (float) color.getBlue();
+    ++counts[pixel];
+  }
+
+  /**
+   * Get the average of the samples of a pixel
+   * 
+   * @param col pixel's column number
+   * @param row pixel's row number
+   * @return the average color, black if there are no samples
+   */
+  public Color getColor(int col, int row) {
+    int pixel = row * nX + col;
+    int count = counts[pixel];
+    if (count == 0) {
+      return Color.BLACK;
+    }
+    return new Color(sums[3 * pixel] / count, sums[3 * pixel + 1] / count, sums[3 * pixel + 2] / count);
+  }
+
+  /**
+   * @return red, green and blue sums of every pixel, row by row, for checkpoints
+   */
+  float[] getSums() {
+    return sums;
+  }
+
+  /**
+   * @return number of samples of every pixel, row by row, for checkpoints
+   */
+  int[] getCounts() {
+    return counts;
+  }
+
+  /**
+   * Get the number of samples of a pixel
+   * 
+   * @param col pixel's column number
+   * @param row pixel's row number
+   * @return the number of samples
+   */
+  public int getCount(int col, int row) {
+    return counts[row * nX + col];
+  }
+}
@@ -0,0 +1,40 @@
+package renderer;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event of encoding an image, or a tile of one, to a file or a
+ * stream
+ *
+ * @author Jonah Lawrence
+ * @author Elad Harizy
+ */
+@Name("raytracer.ImageEncode")
+@Label("Image Encode")
+@Category({ "Ray Tracer", "I/O" })
+@Description("Encoding of an image or a tile of one")
+@StackTrace(false)
+class ImageEncodeEvent extends Event {
+
+  @Label("Image")
+  String image;
+
+  @Label("Format")
+  String format;
+
+  @Label("Width")
+  int width;
+
+  @Label("Height")
+  int height;
+
+  @Label("Size")
+  @DataAmount
+  long bytes;
+}
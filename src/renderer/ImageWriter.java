@@ -4,6 +4,7 @@ import primitives.Color;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -37,11 +38,24 @@ public class ImageWriter {
 	 * @param nY        amount of pixels by height
 	 */
 	public ImageWriter(String imageName, int nX, int nY) {
+		this(imageName, nX, nY, new BufferedImage(nX, nY, BufferedImage.TYPE_INT_RGB));
+	}
+
+	/**
+	 * Image Writer constructor for writers that keep the pixels elsewhere and
+	 * override {@link #writePixel(int, int, Color)} and {@link #writeToImage()}
+	 * 
+	 * @param imageName the name of jpeg file
+	 * @param nX        amount of pixels by Width
+	 * @param nY        amount of pixels by height
+	 * @param image     the pixel color matrix, null if the pixels are kept
+	 *                  elsewhere
+	 */
+	protected ImageWriter(String imageName, int nX, int nY, BufferedImage image) {
 		this.imageName = imageName;
 		this.nX = nX;
 		this.nY = nY;
-
-		image = new BufferedImage(nX, nY, BufferedImage.TYPE_INT_RGB);
+		this.image = image;
 	}
 
 	// ***************** Getters/Setters ********************** //
@@ -63,6 +77,23 @@ public class ImageWriter {
 		return nX;
 	}
 
+	/**
+	 * @return the name of the image
+	 */
+	public String getImageName() {
+		return imageName;
+	}
+
+	/**
+	 * File of the image in the images directory of the project
+	 * 
+	 * @param extension extension of the file, such as ".png"
+	 * @return the file
+	 */
+	protected File getFile(String extension) {
+		return new File(FOLDER_PATH + '/' + imageName + extension);
+	}
+
 	// ***************** Operations ******************** //
 
 	/**
@@ -71,9 +102,23 @@ public class ImageWriter {
 	 */
 	public File writeToImage() {
 		try {
-			File file = new File(FOLDER_PATH + '/' + imageName + ".png");
+			File file = getFile(".png");
 			file.mkdirs();
+			TraceRecorder tracer = TraceRecorder.current();
+			long start = tracer == null ? 0 : System.nanoTime();
+			ImageEncodeEvent event = new ImageEncodeEvent();
+			event.begin();
 			ImageIO.write(image, "png", file);
+			if (event.shouldCommit()) {
+				event.image = imageName;
+				event.format = "png";
+				event.width = nX;
+				event.height = nY;
+				event.bytes = file.length();
+				event.commit();
+			}
+			if (tracer != null)
+				tracer.record("encode", "encode", start, System.nanoTime(), file.getName());
 			return file;
 		} catch (IOException e) {
 			logger.log(Level.SEVERE, "I/O error", e);
@@ -81,6 +126,30 @@ public class ImageWriter {
 		}
 	}
 
+	/**
+	 * Write the png image of the pixel color matrix to a stream, such as the
+	 * response of a render service
+	 * 
+	 * @param out the stream, which is not closed
+	 * @throws IOException if the stream cannot be written
+	 */
+	public void writeToStream(OutputStream out) throws IOException {
+		TraceRecorder tracer = TraceRecorder.current();
+		long start = tracer == null ? 0 : System.nanoTime();
+		ImageEncodeEvent event = new ImageEncodeEvent();
+		event.begin();
+		ImageIO.write(image, "png", out);
+		if (event.shouldCommit()) {
+			event.image = imageName;
+			event.format = "png";
+			event.width = nX;
+			event.height = nY;
+			event.commit();
+		}
+		if (tracer != null)
+			tracer.record("encode", "encode", start, System.nanoTime(), imageName + " to stream");
+	}
+
 	/**
 	 * The function writePixel writes a color of a specific pixel into pixel color
 	 * matrix
@@ -0,0 +1,362 @@
+package renderer;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.Deflater;
+
+import primitives.Color;
+
+/**
+ * Image writer for images too large for the heap. The pixels are kept in a
+ * memory-mapped file, tile by tile so the pixels of a tile are close together,
+ * and render threads write to the mapped file directly. The image is written
+ * as a tiled TIFF, BigTIFF if it may exceed 4 GB, whose tiles are deflated and
+ * written one at a time straight from the mapped file, so writing takes memory
+ * for one tile only.
+ * <p>
+ * Only the pixels are mapped: renders of more than one pass, and renders with a
+ * checkpoint, accumulate their samples in a {@link FrameBuffer} on the heap, of
+ * 16 bytes a pixel and at most {@link FrameBuffer#MAX_PIXELS} pixels, and are
+ * refused for larger images. Such images are rendered in one pass without a
+ * checkpoint.
+ *
+ * @author Jonah Lawrence
+ * @author Elad Harizy
+ */
+public class MappedImageWriter extends ImageWriter implements Closeable {
+
+  /**
+   * bytes of the mapped segments, a whole number of tiles each
+   */
+  private static final long SEGMENT_BYTES = 1L << 30;
+
+  private static final int TIFF_SHORT = 3;
+  private static final int TIFF_LONG = 4;
+  private static final int TIFF_LONG8 = 16;
+
+  private final Path file;
+  private final boolean temporary;
+  private final FileChannel channel;
+  private final int tileSize;
+  private final int tilesX;
+  private final int tilesY;
+  private final int tileBytes;
+  private final int tilesPerSegment;
+  private final MappedByteBuffer[] segments;
+
+  /**
+   * whether BigTIFF is written even if classic TIFF suffices
+   */
+  private boolean bigTiff = false;
+
+  private final Logger logger = Logger.getLogger("MappedImageWriter");
+
+  /**
+   * Constructor with tiles of 256 pixels in a temporary file
+   *
+   * @param imageName the name of the image file
+   * @param nX        amount of pixels by width
+   * @param nY        amount of pixels by height
+   * @throws UncheckedIOException if the file cannot be mapped
+   */
+  public MappedImageWriter(String imageName, int nX, int nY) {
+    this(imageName, nX, nY, 256, null);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param imageName the name of the image file
+   * @param nX        amount of pixels by width
+   * @param nY        amount of pixels by height
+   * @param tileSize  width and height of the tiles, a multiple of 16 as TIFF
+   *                  requires
+   * @param file      the file the pixels are mapped from, null for a temporary
+   *                  file removed when the writer is closed
+   * @throws UncheckedIOException if the file cannot be mapped
+   */
+  public MappedImageWriter(String imageName, int nX, int nY, int tileSize, Path file) {
+    super(imageName, nX, nY, null);
+    temporary = file == null;
+    if (tileSize < 16 || tileSize % 16 != 0)
+      throw new IllegalArgumentException("Tile size must be a positive multiple of 16");
+    this.tileSize = tileSize;
+    tilesX = (nX + tileSize - 1) / tileSize;
+    tilesY = (nY + tileSize - 1) / tileSize;
+    tileBytes = 3 * tileSize * tileSize;
+    tilesPerSegment = (int) Math.max(1, SEGMENT_BYTES / tileBytes);
+    long tiles = (long) tilesX * tilesY;
+    segments = new MappedByteBuffer[(int) ((tiles + tilesPerSegment - 1) / tilesPerSegment)];
+    try {
+      this.file = file != null ? file : Files.createTempFile("image", ".pixels");
+      channel = FileChannel.open(this.file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+          StandardOpenOption.WRITE);
+      for (int i = 0; i < segments.length; ++i) {
+        long first = (long) i * tilesPerSegment;
+        long bytes = Math.min(tilesPerSegment, tiles - first) * tileBytes;
+        segments[i] = channel.map(FileChannel.MapMode.READ_WRITE, first * tileBytes, bytes);
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Image file cannot be mapped", e);
+    }
+    if (temporary)
+      this.file.toFile().deleteOnExit();
+  }
+
+  /**
+   * set whether BigTIFF is written even if classic TIFF suffices
+   *
+   * @param bigTiff true for BigTIFF
+   * @return the MappedImageWriter object itself
+   */
+  public MappedImageWriter setBigTiff(boolean bigTiff) {
+    this.bigTiff = bigTiff;
+    return this;
+  }
+
+  /**
+   * @return width and height of the tiles
+   */
+  public int getTileSize() {
+    return tileSize;
+  }
+
+  @Override
+  public void writePixel(int xIndex, int yIndex, Color color) {
+    java.awt.Color rgb = color.getColor();
+    long tile = (long) (yIndex / tileSize) * tilesX + xIndex / tileSize;
+    int offset = (int) (tile % tilesPerSegment) * tileBytes
+        + 3 * ((yIndex % tileSize) * tileSize + xIndex % tileSize);
+    MappedByteBuffer segment = segments[(int) (tile / tilesPerSegment)];
+    segment.put(offset, (byte) rgb.getRed());
+    segment.put(offset + 1, (byte) rgb.getGreen());
+    segment.put(offset + 2, (byte) rgb.getBlue());
+  }
+
+  /**
+   * Read the color of a pixel
+   *
+   * @param xIndex X axis index of the pixel
+   * @param yIndex Y axis index of the pixel
+   * @return the color as red, green and blue bytes of an int
+   */
+  public int getRGB(int xIndex, int yIndex) {
+    long tile = (long) (yIndex / tileSize) * tilesX + xIndex / tileSize;
+    int offset = (int) (tile % tilesPerSegment) * tileBytes
+        + 3 * ((yIndex % tileSize) * tileSize + xIndex % tileSize);
+    MappedByteBuffer segment = segments[(int) (tile / tilesPerSegment)];
+    return (segment.get(offset) & 0xFF) << 16 | (segment.get(offset + 1) & 0xFF) << 8
+        | (segment.get(offset + 2) & 0xFF);
+  }
+
+  /**
+   * Copy the red, green and blue bytes of a tile, row by row with the rows of
+   * the whole tile size even where the image ends
+   *
+   * @param tileX column of the tile
+   * @param tileY row of the tile
+   * @param rgb   receives the bytes, of 3 times the square of the tile size
+   */
+  public void readTile(int tileX, int tileY, byte[] rgb) {
+    long tile = (long) tileY * tilesX + tileX;
+    MappedByteBuffer segment = segments[(int) (tile / tilesPerSegment)];
+    segment.get((int) (tile % tilesPerSegment) * tileBytes, rgb, 0, tileBytes);
+  }
+
+  /**
+   * Write the image as a tiled TIFF in the images directory of the project
+   *
+   * @return the TIFF file, or null if it cannot be written
+   */
+  @Override
+  public File writeToImage() {
+    File tiff = getFile(".tif");
+    try {
+      File parent = tiff.getParentFile();
+      if (parent != null)
+        parent.mkdirs();
+      writeTiff(tiff.toPath());
+      return tiff;
+    } catch (IOException e) {
+      logger.log(Level.SEVERE, "I/O error", e);
+      return null;
+    }
+  }
+
+  /**
+   * Write the image as a tiled TIFF of deflated tiles: the header, the tiles one
+   * after the other, and the directory of the image with the offsets and sizes
+   * of the tiles, whose place is then written in the header
+   *
+   * @param path the TIFF file
+   * @throws IOException if the file cannot be written
+   */
+  public void writeTiff(Path path) throws IOException {
+    int tiles = tilesX * tilesY;
+    // deflated tiles are at most a little larger than raw ones
+    boolean big = bigTiff || (long) tiles * (tileBytes + tileBytes / 100 + 64) + 1024 > 0xFFFFFFFFL;
+    long[] offsets = new long[tiles];
+    long[] counts = new long[tiles];
+    TraceRecorder tracer = TraceRecorder.current();
+    long start = tracer == null ? 0 : System.nanoTime();
+    ImageEncodeEvent event = new ImageEncodeEvent();
+    event.begin();
+    try (FileChannel out = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+        StandardOpenOption.TRUNCATE_EXISTING)) {
+      ByteBuffer header = ByteBuffer.allocate(big ? 16 : 8).order(ByteOrder.LITTLE_ENDIAN);
+      header.put((byte) 'I').put((byte) 'I');
+      if (big)
+        header.putShort((short) 43).putShort((short) 8).putShort((short) 0).putLong(0);
+      else
+        header.putShort((short) 42).putInt(0);
+      header.flip();
+      write(out, header);
+
+      byte[] raw = new byte[tileBytes];
+      byte[] deflated = new byte[tileBytes + tileBytes / 100 + 64];
+      Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+      try {
+        for (int tile = 0; tile < tiles; ++tile) {
+          readTile(tile % tilesX, tile / tilesX, raw);
+          deflater.reset();
+          deflater.setInput(raw);
+          deflater.finish();
+          int length = 0;
+          while (!deflater.finished())
+            length += deflater.deflate(deflated, length, deflated.length - length);
+          offsets[tile] = out.position();
+          counts[tile] = length;
+          write(out, ByteBuffer.wrap(deflated, 0, length));
+        }
+      } finally {
+        deflater.end();
+      }
+
+      long directory = out.position();
+      write(out, directory(big, directory, offsets, counts));
+      ByteBuffer place = ByteBuffer.allocate(big ? 8 : 4).order(ByteOrder.LITTLE_ENDIAN);
+      if (big)
+        place.putLong(directory);
+      else
+        place.putInt((int) directory);
+      place.flip();
+      while (place.hasRemaining())
+        out.write(place, (big ? 8 : 4) + place.position());
+      if (event.shouldCommit()) {
+        event.image = getImageName();
+        event.format = big ? "bigtiff" : "tiff";
+        event.width = getNx();
+        event.height = getNy();
+        event.bytes = out.size();
+        event.commit();
+      }
+    }
+    if (tracer != null)
+      tracer.record("encode", "encode", start, System.nanoTime(), path.getFileName().toString());
+  }
+
+  /**
+   * Build the image file directory, followed by the bits per sample and by the
+   * offsets and sizes of the tiles
+   */
+  private ByteBuffer directory(boolean big, long position, long[] offsets, long[] counts) {
+    int entries = 11;
+    int entryBytes = big ? 20 : 12;
+    int directoryBytes = (big ? 8 : 2) + entries * entryBytes + (big ? 8 : 4);
+    int arrayBytes = big ? 8 : 4;
+    long bitsPosition = position + directoryBytes;
+    long offsetsPosition = bitsPosition + 8;
+    long countsPosition = offsetsPosition + (long) offsets.length * arrayBytes;
+    ByteBuffer buffer = ByteBuffer.allocate(directoryBytes + 8 + 2 * offsets.length * arrayBytes)
+        .order(ByteOrder.LITTLE_ENDIAN);
+    if (big)
+      buffer.putLong(entries);
+    else
+      buffer.putShort((short) entries);
+    // entries in ascending order of their tags
+    entry(buffer, big, 256, TIFF_LONG, 1, getNx());
+    entry(buffer, big, 257, TIFF_LONG, 1, getNy());
+    // 8 bits of every sample, in the entry itself if it fits
+    entry(buffer, big, 258, TIFF_SHORT, 3, big ? 0x0008_0008_0008L : bitsPosition);
+    entry(buffer, big, 259, TIFF_SHORT, 1, 8); // deflate
+    entry(buffer, big, 262, TIFF_SHORT, 1, 2); // RGB
+    entry(buffer, big, 277, TIFF_SHORT, 1, 3);
+    entry(buffer, big, 284, TIFF_SHORT, 1, 1); // pixels interleaved
+    entry(buffer, big, 322, TIFF_LONG, 1, tileSize);
+    entry(buffer, big, 323, TIFF_LONG, 1, tileSize);
+    int arrayType = big ? TIFF_LONG8 : TIFF_LONG;
+    entry(buffer, big, 324, arrayType, offsets.length,
+        offsets.length == 1 ? offsets[0] : offsetsPosition);
+    entry(buffer, big, 325, arrayType, counts.length, counts.length == 1 ? counts[0] : countsPosition);
+    if (big)
+      buffer.putLong(0);
+    else
+      buffer.putInt(0);
+    buffer.putShort((short) 8).putShort((short) 8).putShort((short) 8).putShort((short) 0);
+    for (long offset : offsets)
+      putOffset(buffer, big, offset);
+    for (long count : counts)
+      putOffset(buffer, big, count);
+    buffer.flip();
+    return buffer;
+  }
+
+  /**
+   * Put an entry of the directory, whose value is left aligned in its field
+   */
+  private static void entry(ByteBuffer buffer, boolean big, int tag, int type, long count, long value) {
+    buffer.putShort((short) tag).putShort((short) type);
+    if (big)
+      buffer.putInt((int) count).putInt((int) (count >>> 32));
+    else
+      buffer.putInt((int) count);
+    int start = buffer.position();
+    if (type == TIFF_SHORT && count == 1)
+      buffer.putShort((short) value);
+    else if (type == TIFF_SHORT && big)
+      buffer.putLong(value);
+    else
+      putOffset(buffer, big, value);
+    // the rest of the field is zero
+    buffer.position(start + (big ? 8 : 4));
+  }
+
+  private static void putOffset(ByteBuffer buffer, boolean big, long value) {
+    if (big)
+      buffer.putLong(value);
+    else
+      buffer.putInt((int) value);
+  }
+
+  private static void write(FileChannel out, ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining())
+      out.write(buffer);
+  }
+
+  /**
+   * Close the mapped file, removing it if it is temporary - the pixels must not
+   * be written or read afterwards
+   */
+  @Override
+  public void close() throws IOException {
+    channel.close();
+    if (temporary) {
+      try {
+        Files.deleteIfExists(file);
+      } catch (IOException e) {
+        // still mapped on some systems, removed on exit
+      }
+    }
+  }
+}
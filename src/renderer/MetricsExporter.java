@@ -0,0 +1,139 @@
+package renderer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Exporter of the metrics of a registry in the text format of Prometheus, over
+ * a local HTTP endpoint that Prometheus scrapes and to a file that is rewritten
+ * periodically, for the textfile collector of the node exporter or for hosts
+ * that cannot be scraped. The exporter is also the handler of the endpoint, so
+ * a service may serve the metrics on its own server.
+ *
+ * @author Jonah Lawrence
+ * @author Elad Harizy
+ */
+public class MetricsExporter implements HttpHandler, Closeable {
+
+  private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+  private final MetricsRegistry registry;
+  private HttpServer server;
+  private ScheduledExecutorService writer;
+  private Path file;
+  private final Logger logger = Logger.getLogger("MetricsExporter");
+
+  /**
+   * Constructor
+   *
+   * @param registry the metrics exported
+   */
+  public MetricsExporter(MetricsRegistry registry) {
+    if (registry == null)
+      throw new IllegalArgumentException("Registry cannot be null");
+    this.registry = registry;
+  }
+
+  /**
+   * Start serving GET /metrics on localhost
+   *
+   * @param port TCP port, 0 for any free port
+   * @return the port of the endpoint
+   * @throws IOException if the port cannot be opened
+   */
+  public int serve(int port) throws IOException {
+    if (server != null)
+      throw new IllegalStateException("Metrics are already served");
+    server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+    server.createContext("/metrics", this);
+    server.setExecutor(Executors.newSingleThreadExecutor(r -> {
+      Thread thread = new Thread(r, "metrics endpoint");
+      thread.setDaemon(true);
+      return thread;
+    }));
+    server.start();
+    return server.getAddress().getPort();
+  }
+
+  /**
+   * Start rewriting a file with the metrics periodically, and once more when the
+   * exporter is closed
+   *
+   * @param file         the file
+   * @param periodMillis milliseconds between writes
+   * @return the MetricsExporter object itself
+   */
+  public MetricsExporter writeTo(Path file, long periodMillis) {
+    if (periodMillis < 1)
+      throw new IllegalArgumentException("Period must be positive");
+    if (writer != null)
+      throw new IllegalStateException("Metrics are already written to " + this.file);
+    this.file = file;
+    writer = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread thread = new Thread(r, "metrics writer");
+      thread.setDaemon(true);
+      return thread;
+    });
+    writer.scheduleAtFixedRate(this::write, 0, periodMillis, TimeUnit.MILLISECONDS);
+    return this;
+  }
+
+  private void write() {
+    try {
+      registry.writeText(file);
+    } catch (IOException | RuntimeException e) {
+      // the next write may succeed, the renders go on anyway
+      logger.log(Level.WARNING, "Metrics cannot be written", e);
+    }
+  }
+
+  @Override
+  public void handle(HttpExchange exchange) throws IOException {
+    try (exchange) {
+      if (!"GET".equals(exchange.getRequestMethod())) {
+        exchange.getResponseHeaders().set("Allow", "GET");
+        exchange.sendResponseHeaders(405, -1);
+        return;
+      }
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      registry.writeText(out);
+      exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+      exchange.sendResponseHeaders(200, out.size());
+      out.writeTo(exchange.getResponseBody());
+    }
+  }
+
+  @Override
+  public void close() {
+    if (server != null) {
+      server.stop(0);
+      ((ExecutorService) server.getExecutor()).shutdownNow();
+      server = null;
+    }
+    if (writer != null) {
+      writer.shutdown();
+      try {
+        // a write in progress would race the last one for the temporary file
+        writer.awaitTermination(1, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      writer = null;
+      write();
+    }
+  }
+}
@@ -0,0 +1,179 @@
+package renderer;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.DoubleSupplier;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * Metrics of a long running renderer, such as the rays it traced, the jobs it
+ * runs and the memory they take. A metric is a supplier the owner of the value
+ * registers, which is read only when the metrics are written, so the work it
+ * measures pays nothing for it. The metrics are written in the text format of
+ * Prometheus, sorted by name, for the endpoint and the file of
+ * {@link MetricsExporter}.
+ *
+ * @author Jonah Lawrence
+ * @author Elad Harizy
+ */
+public class MetricsRegistry {
+
+  /**
+   * Types of metrics
+   */
+  public enum METRIC_TYPE {
+    /**
+     * a value that only grows, such as rays traced, whose rate is taken by the
+     * scraper
+     */
+    COUNTER,
+    /**
+     * a value that goes up and down, such as jobs running
+     */
+    GAUGE
+  }
+
+  private static final Pattern NAME = Pattern.compile("[a-zA-Z_:][a-zA-Z0-9_:]*");
+
+  /**
+   * A metric with the supplier of its values by the values of its label
+   */
+  private static final class Metric {
+    private final String help;
+    private final METRIC_TYPE type;
+    private final String label;
+    private final Supplier<Map<String, ? extends Number>> values;
+    private final DoubleSupplier value;
+
+    private Metric(String help, METRIC_TYPE type, String label, Supplier<Map<String, ? extends Number>> values,
+        DoubleSupplier value) {
+      this.help = help;
+      this.type = type;
+      this.label = label;
+      this.values = values;
+      this.value = value;
+    }
+  }
+
+  private final Map<String, Metric> metrics = new ConcurrentSkipListMap<>();
+
+  /**
+   * Register a metric of a single value
+   *
+   * @param name  name of the metric, counters ending with _total
+   * @param help  description of the metric
+   * @param type  type of the metric
+   * @param value supplier of the value, called from the threads that write the
+   *              metrics
+   * @return the MetricsRegistry object itself
+   * @throws IllegalArgumentException if the name is not valid or is registered
+   */
+  public MetricsRegistry register(String name, String help, METRIC_TYPE type, DoubleSupplier value) {
+    return add(name, new Metric(help, type, null, null, value));
+  }
+
+  /**
+   * Register a metric of a value for every value of a label, such as a value of
+   * every job
+   *
+   * @param name   name of the metric, counters ending with _total
+   * @param help   description of the metric
+   * @param type   type of the metric
+   * @param label  name of the label
+   * @param values supplier of the values by the values of the label, called from
+   *               the threads that write the metrics
+   * @return the MetricsRegistry object itself
+   * @throws IllegalArgumentException if a name is not valid or the metric is
+   *                                  registered
+   */
+  public MetricsRegistry register(String name, String help, METRIC_TYPE type, String label,
+      Supplier<Map<String, ? extends Number>> values) {
+    if (label == null || !NAME.matcher(label).matches() || label.startsWith("__"))
+      throw new IllegalArgumentException("Label name '" + label + "' is not valid");
+    return add(name, new Metric(help, type, label, values, null));
+  }
+
+  private MetricsRegistry add(String name, Metric metric) {
+    if (name == null || !NAME.matcher(name).matches())
+      throw new IllegalArgumentException("Metric name '" + name + "' is not valid");
+    if (metrics.putIfAbsent(name, metric) != null)
+      throw new IllegalArgumentException("Metric " + name + " is already registered");
+    return this;
+  }
+
+  /**
+   * Remove a metric
+   *
+   * @param name name of the metric
+   * @return true if the metric was registered
+   */
+  public boolean unregister(String name) {
+    return metrics.remove(name) != null;
+  }
+
+  /**
+   * Write the metrics to a temporary file that then replaces the file, so a
+   * collector reading the file never sees half of them
+   *
+   * @param path the file
+   * @throws IOException if the file cannot be written
+   */
+  public void writeText(Path path) throws IOException {
+    Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+    try (OutputStream out = Files.newOutputStream(temporary)) {
+      writeText(out);
+    }
+    Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * Write the current values of the metrics in the text format of Prometheus
+   *
+   * @param out the stream, which is not closed
+   * @throws IOException if the stream cannot be written
+   */
+  public void writeText(OutputStream out) throws IOException {
+    Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+    for (Map.Entry<String, Metric> entry : metrics.entrySet()) {
+      String name = entry.getKey();
+      Metric metric = entry.getValue();
+      if (metric.help != null)
+        writer.write("# HELP " + name + " " + metric.help.replace("\\", "\\\\").replace("\n", "\\n") + "\n");
+      writer.write("# TYPE " + name + " " + metric.type.name().toLowerCase(Locale.ROOT) + "\n");
+      if (metric.value != null) {
+        writer.write(name + " " + format(metric.value.getAsDouble()) + "\n");
+        continue;
+      }
+      for (Map.Entry<String, ? extends Number> sample : metric.values.get().entrySet())
+        writer.write(name + "{" + metric.label + "=\""
+            + sample.getKey().replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n") + "\"} "
+            + format(sample.getValue().doubleValue()) + "\n");
+    }
+    writer.flush();
+  }
+
+  /**
+   * @param value a value
+   * @return the value in the text format, whole values without a fraction
+   */
+  private static String format(double value) {
+    if (Double.isNaN(value))
+      return "NaN";
+    if (Double.isInfinite(value))
+      return value > 0 ? "+Inf" : "-Inf";
+    if (value == Math.rint(value) && Math.abs(value) < 1e15)
+      return Long.toString((long) value);
+    return Double.toString(value);
+  }
+}
@@ -0,0 +1,265 @@
+package renderer;
+
+import java.util.SplittableRandom;
+
+import elements.LightSource;
+import geometries.Intersectable.GeoPoint;
+import primitives.Color;
+import primitives.Material;
+import primitives.Point3D;
+import primitives.Ray;
+import primitives.Vector;
+import scene.CompiledScene;
+import scene.Scene;
+
+import static primitives.Util.*;
+
+/**
+ * PathTracer inherits from the abstract class RayTracerBase and traces one
+ * random light path per ray for global illumination. Each call of traceRay is a
+ * single noisy sample, so it is meant to be averaged over many passes of the
+ * Render (see {@link Render#setPasses(int)}) or over supersampling rays.
+ * 
+ * @author Jonah Lawrence
+ * @author Elad Harizy
+ */
+public class PathTracer extends RayTracerBase {
+
+  /**
+   * source of the per-thread generators, split under its own lock
+   */
+  private final SplittableRandom seed;
+
+  /**
+   * random generator of each rendering thread, so threads never contend
+   */
+  private final ThreadLocal<SplittableRandom> random;
+
+  /**
+   * constructor
+   * 
+   * @param scene
+   */
+  public PathTracer(Scene scene) {
+    this(scene, new SplittableRandom().nextLong());
+  }
+
+  /**
+   * constructor with a seed for repeatable sampling
+   * 
+   * @param scene
+   * @param seed  seed of the random generators
+   */
+  public PathTracer(Scene scene, long seed) {
+    this(scene.compile(), seed);
+  }
+
+  /**
+   * constructor that shares a compiled scene
+   * 
+   * @param scene
+   */
+  public PathTracer(CompiledScene scene) {
+    this(scene, new SplittableRandom().nextLong());
+  }
+
+  /**
+   * constructor that shares a compiled scene, with a seed for repeatable
+   * sampling
+   * 
+   * @param scene
+   * @param seed  seed of the random generators
+   */
+  public PathTracer(CompiledScene scene, long seed) {
+    super(scene);
+    this.seed = new SplittableRandom(seed);
+    this.random = ThreadLocal.withInitial(this::splitRandom);
+    // paths are continued by russian roulette rather than cut at a fixed depth
+    this.terminationType = TERMINATION_TYPE.RUSSIAN_ROULETTE;
+  }
+
+  /**
+   * split a new generator for a rendering thread
+   * 
+   * @return the generator
+   */
+  private SplittableRandom splitRandom() {
+    synchronized (seed) {
+      return seed.split();
+    }
+  }
+
+  @Override
+  public PathTracer setTerminationType(TERMINATION_TYPE type) {
+    super.setTerminationType(type);
+    return this;
+  }
+
+  @Override
+  public PathTracer setFixedTermination(int level, double k) {
+    super.setFixedTermination(level, k);
+    return this;
+  }
+
+  @Override
+  public PathTracer setRouletteTermination(int startDepth, double threshold, int maxLevel) {
+    super.setRouletteTermination(startDepth, threshold, maxLevel);
+    return this;
+  }
+
+  @Override
+  public Color traceRay(Ray ray) {
+    return traceRay(ray, ray.findClosestGeoPoint(scene.findGeoIntersections(ray)));
+  }
+
+  @Override
+  public Color traceRay(Ray ray, GeoPoint closest) {
+    SplittableRandom rnd = random.get();
+    Color radiance = Color.BLACK;
+    double throughput = 1.0;
+    int level = getStartLevel();
+    GeoPoint geopoint = closest;
+    while (level > 1) {
+      // the first point of the path is given
+      if (level != getStartLevel())
+        geopoint = ray.findClosestGeoPoint(scene.findGeoIntersections(ray));
+      if (geopoint == null) {
+        // the path escapes the scene
+        return radiance.add(scene.getBackground().scale(throughput));
+      }
+      Material material = geopoint.geometry.getMaterial();
+      Vector v = ray.getDirection();
+      Vector n = geopoint.geometry.getNormal(geopoint.point);
+      double nv = alignZero(n.dotProduct(v));
+      if (nv == 0) {
+        break;
+      }
+      // emission of the surface and light arriving straight from the light sources
+      radiance = radiance.add(geopoint.geometry.getEmission().scale(throughput),
+          calcDirectLight(geopoint, material, n, v, nv).scale(throughput));
+      if (level == getStartLevel()) {
+        radiance = radiance.add(scene.getAmbientIntensity());
+      }
+      // choose one of the diffuse, reflected or refracted directions by its weight
+      double total = material.kD + material.kR + material.kT;
+      double weight = survivalWeight(level, throughput * total);
+      if (weight == 0) {
+        break;
+      }
+      throughput *= total * weight;
+      double choice = rnd.nextDouble() * total;
+      Vector direction;
+      if (choice < material.kD) {
+        direction = sampleCosineHemisphere(nv < 0 ? n : n.scale(-1), rnd);
+        countRay(RenderStatistics.RAY_TYPE.REFLECTION);
+      } else if (choice < material.kD + material.kR) {
+        direction = sampleCone(v.subtract(n.scale(2 * nv)), material.kGlossiness, rnd);
+        countRay(RenderStatistics.RAY_TYPE.REFLECTION);
+      } else {
+        direction = sampleCone(v, material.kBlurriness, rnd);
+        countRay(RenderStatistics.RAY_TYPE.REFRACTION);
+      }
+      ray = new Ray(geopoint.point, direction, n);
+      --level;
+    }
+    return radiance;
+  }
+
+  /**
+   * Calculate light arriving straight from the light sources (next event
+   * estimation) with the Phong model of BasicRayTracer
+   * 
+   * @param geopoint the intersection point
+   * @param material material at the point
+   * @param n        normal at the point
+   * @param v        view direction
+   * @param nv       dot product of the normal and view direction
+   * @return the reflected light
+   */
+  private Color calcDirectLight(GeoPoint geopoint, Material material, Vector n, Vector v, double nv) {
+    if (material.kD == 0 && material.kS == 0) {
+      return Color.BLACK;
+    }
+    Color color = Color.BLACK;
+    for (LightSource lightSource : scene.getLights()) {
+      Vector l = lightSource.getL(geopoint.point);
+      if (l == null) {
+        continue;
+      }
+      double nl = alignZero(n.dotProduct(l));
+      if (checkSign(nl, nv)) {
+        double ktr = transparency(l, n, geopoint, lightSource);
+        if (ktr > 0) {
+          Color lightIntensity = lightSource.getIntensity(geopoint.point).scale(ktr);
+          Vector r = l.subtract(n.scale(alignZero(2 * nl)));
+          double vr = alignZero(-v.dotProduct(r));
+          double specular = vr > 0 ? material.kS * Math.pow(vr, material.nShininess) : 0;
+          color = color.add(lightIntensity.scale(material.kD * Math.abs(nl) + specular));
+        }
+      }
+    }
+    return color;
+  }
+
+  /**
+   * Sample a direction in the hemisphere around a normal with probability
+   * proportional to the cosine of its angle with the normal
+   * 
+   * @param n   normal of the hemisphere
+   * @param rnd random generator
+   * @return the direction
+   */
+  private Vector sampleCosineHemisphere(Vector n, SplittableRandom rnd) {
+    double phi = 2 * Math.PI * rnd.nextDouble();
+    double r2 = rnd.nextDouble();
+    double r = Math.sqrt(r2);
+    double z = Math.sqrt(1 - r2);
+    Vector[] basis = orthonormalBasis(n);
+    Vector direction = n.scale(Math.max(z, 1e-6));
+    double x = alignZero(r * Math.cos(phi));
+    double y = alignZero(r * Math.sin(phi));
+    if (x != 0)
+      direction = direction.add(basis[0].scale(x));
+    if (y != 0)
+      direction = direction.add(basis[1].scale(y));
+    return direction;
+  }
+
+  /**
+   * Sample a direction in a cone around an ideal direction
+   * 
+   * @param direction ideal direction
+   * @param roughness radius of the cone at unit distance
+   * @param rnd       random generator
+   * @return the direction
+   */
+  private Vector sampleCone(Vector direction, double roughness, SplittableRandom rnd) {
+    if (isZero(roughness)) {
+      return direction;
+    }
+    double radius = roughness * Math.sqrt(rnd.nextDouble());
+    double angle = 2 * Math.PI * rnd.nextDouble();
+    Vector[] basis = orthonormalBasis(direction.normalized());
+    double x = alignZero(radius * Math.cos(angle));
+    double y = alignZero(radius * Math.sin(angle));
+    Vector sample = direction.normalized();
+    if (x != 0)
+      sample = sample.add(basis[0].scale(x));
+    if (y != 0)
+      sample = sample.add(basis[1].scale(y));
+    return sample;
+  }
+
+  /**
+   * Find two unit vectors orthogonal to a unit vector and to each other
+   * 
+   * @param w unit vector
+   * @return the two vectors
+   */
+  private static Vector[] orthonormalBasis(Vector w) {
+    Point3D head = w.getHead();
+    Vector helper = Math.abs(head.getX()) < 0.9 ? new Vector(1, 0, 0) : new Vector(0, 1, 0);
+    Vector u = w.crossProduct(helper).normalize();
+    return new Vector[] { u, w.crossProduct(u) };
+  }
+}
@@ -0,0 +1,210 @@
+package renderer;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import geometries.IntersectionCounter;
+import geometries.Intersectable;
+import primitives.Color;
+
+/**
+ * Cost of every pixel of a render: the time it took, the rays traced for it,
+ * the depth adaptive supersampling reached in it and the intersection tests of
+ * its rays, summed over the passes. The costs are written as heatmap images
+ * beside the render, to tune supersampling and materials against the pixels
+ * they make expensive
+ *
+ * @author Jonah Lawrence
+ * @author Elad Harizy
+ */
+public class PixelCosts extends IntersectionCounter {
+
+  private int nX;
+  private int nY;
+  private long[] nanos;
+  private int[] rays;
+  private int[] tests;
+  private byte[] depths;
+
+  /**
+   * Costs of the pixel a thread colors, which are passed on to the counters of
+   * the render if it has them
+   */
+  private static final class Tally {
+    private long start;
+    private int rays;
+    private int tests;
+    private int depth;
+    private IntersectionCounter next;
+  }
+
+  private final ThreadLocal<Tally> tallies = ThreadLocal.withInitial(Tally::new);
+
+  /**
+   * Start the costs of a render of an image from zero - called by the renderer
+   *
+   * @param nX amount of pixels by width
+   * @param nY amount of pixels by height
+   */
+  void begin(int nX, int nY) {
+    this.nX = nX;
+    this.nY = nY;
+    nanos = new long[nX * nY];
+    rays = new int[nX * nY];
+    tests = new int[nX * nY];
+    depths = new byte[nX * nY];
+  }
+
+  /**
+   * Start the costs of a pixel the current thread colors
+   *
+   * @param next counter of the intersections of the render, or null
+   */
+  void beginPixel(IntersectionCounter next) {
+    Tally tally = tallies.get();
+    tally.rays = 0;
+    tally.tests = 0;
+    tally.depth = 0;
+    tally.next = next;
+    tally.start = System.nanoTime();
+  }
+
+  /**
+   * Count a ray traced for the pixel of the current thread
+   */
+  void countRay() {
+    ++tallies.get().rays;
+  }
+
+  /**
+   * Keep the depth adaptive supersampling reached in the pixel of the current
+   * thread
+   *
+   * @param depth level of the cells sampled, 1 for the whole pixel
+   */
+  void countDepth(int depth) {
+    Tally tally = tallies.get();
+    tally.depth = Math.max(tally.depth, depth);
+  }
+
+  /**
+   * Add the costs of the pixel of the current thread to the pixel - every pixel
+   * is colored by one thread at a time
+   *
+   * @param col pixel's column number
+   * @param row pixel's row number
+   */
+  void endPixel(int col, int row) {
+    Tally tally = tallies.get();
+    int pixel = row * nX + col;
+    nanos[pixel] += System.nanoTime() - tally.start;
+    rays[pixel] += tally.rays;
+    tests[pixel] += tally.tests;
+    depths[pixel] = (byte) Math.max(depths[pixel], tally.depth);
+    tally.next = null;
+  }
+
+  @Override
+  public void nodesVisited(int count) {
+    IntersectionCounter next = tallies.get().next;
+    if (next != null)
+      next.nodesVisited(count);
+  }
+
+  @Override
+  public void tested(Class<? extends Intersectable> type, int count) {
+    Tally tally = tallies.get();
+    tally.tests += count;
+    if (tally.next != null)
+      tally.next.tested(type, count);
+  }
+
+  /**
+   * @param col pixel's column number
+   * @param row pixel's row number
+   * @return nanoseconds the pixel took
+   */
+  public long getNanos(int col, int row) {
+    return nanos[row * nX + col];
+  }
+
+  /**
+   * @param col pixel's column number
+   * @param row pixel's row number
+   * @return rays traced for the pixel, primary and secondary
+   */
+  public int getRays(int col, int row) {
+    return rays[row * nX + col];
+  }
+
+  /**
+   * @param col pixel's column number
+   * @param row pixel's row number
+   * @return intersection tests of the rays of the pixel
+   */
+  public int getTests(int col, int row) {
+    return tests[row * nX + col];
+  }
+
+  /**
+   * @param col pixel's column number
+   * @param row pixel's row number
+   * @return depth adaptive supersampling reached in the pixel, 0 without it
+   */
+  public int getDepth(int col, int row) {
+    return depths[row * nX + col];
+  }
+
+  /**
+   * Write the costs as heatmaps, from black for no cost to white for the
+   * costliest pixel, named by the name of the image and the cost: time, rays,
+   * depth and tests
+   *
+   * @param imageName name of the rendered image
+   * @return the files written
+   * @throws IllegalStateException if no render was counted
+   */
+  public List<File> writeToImages(String imageName) {
+    if (nanos == null)
+      throw new IllegalStateException("No render was counted");
+    long[] depthValues = new long[depths.length];
+    long[] rayValues = new long[rays.length];
+    long[] testValues = new long[tests.length];
+    for (int i = 0; i < depths.length; ++i) {
+      depthValues[i] = depths[i];
+      rayValues[i] = rays[i];
+      testValues[i] = tests[i];
+    }
+    List<File> files = new ArrayList<>();
+    files.add(writeHeatmap(imageName + " time", nanos));
+    files.add(writeHeatmap(imageName + " rays", rayValues));
+    files.add(writeHeatmap(imageName + " depth", depthValues));
+    files.add(writeHeatmap(imageName + " tests", testValues));
+    return files;
+  }
+
+  private File writeHeatmap(String name, long[] values) {
+    long max = 1;
+    for (long value : values)
+      max = Math.max(max, value);
+    ImageWriter imageWriter = new ImageWriter(name, nX, nY);
+    for (int row = 0; row < nY; ++row)
+      for (int col = 0; col < nX; ++col)
+        imageWriter.writePixel(col, row, heat(values[row * nX + col] / (double) max));
+    return imageWriter.writeToImage();
+  }
+
+  /**
+   * Color of a cost on a black, red, yellow and white scale
+   *
+   * @param t cost from 0 to 1
+   * @return the color
+   */
+  private static Color heat(double t) {
+    double red = Math.min(1, 3 * t);
+    double green = Math.min(1, Math.max(0, 3 * t - 1));
+    double blue = Math.max(0, 3 * t - 2);
+    return new Color(255 * red, 255 * green, 255 * blue);
+  }
+}
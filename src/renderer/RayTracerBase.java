@@ -1,21 +1,97 @@
 package renderer;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import elements.LightSource;
+import geometries.Intersectable.GeoPoint;
 import primitives.Color;
 import primitives.Ray;
+import primitives.Vector;
+import scene.CompiledScene;
 import scene.Scene;
 
+import static primitives.Util.*;
+
 /**
  * Abstract class RayTracerBase contains the scene handles ray tracing
  */
 public abstract class RayTracerBase {
-  protected Scene scene;
 
   /**
-   * constructor
+   * Choices for ending the recursion of reflected and refracted rays
+   */
+  public enum TERMINATION_TYPE {
+    FIXED, RUSSIAN_ROULETTE
+  }
+
+  private static final int MAX_CALC_COLOR_LEVEL = 5;
+  private static final double MIN_CALC_COLOR_K = 0.05;
+  private static final int MAX_ROULETTE_LEVEL = 32;
+
+  /**
+   * the compiled scene that is traced
+   */
+  protected final CompiledScene scene;
+
+  /**
+   * how the recursion of secondary rays ends
+   */
+  protected TERMINATION_TYPE terminationType = TERMINATION_TYPE.FIXED;
+
+  /**
+   * recursion level primary rays start from with fixed termination
+   */
+  protected int maxLevel = MAX_CALC_COLOR_LEVEL;
+
+  /**
+   * minimal effect factor of a ray with fixed termination
+   */
+  protected double minK = MIN_CALC_COLOR_K;
+
+  /**
+   * recursion level primary rays start from with russian roulette, only a safety
+   * net for scenes of facing perfect mirrors
+   */
+  protected int rouletteMaxLevel = MAX_ROULETTE_LEVEL;
+
+  /**
+   * number of bounces that are always traced before russian roulette starts
+   */
+  protected int rouletteStartDepth = 2;
+
+  /**
+   * effect factor from which a ray always survives russian roulette
+   */
+  protected double rouletteThreshold = 0.25;
+
+  /**
+   * counters of the render the tracer traces for, or null if it is not counted
+   */
+  RenderStatistics statistics;
+
+  /**
+   * costs of the pixels of the render the tracer traces for, or null
+   */
+  PixelCosts pixelCosts;
+
+  /**
+   * constructor that compiles the scene, later changes to the scene are not
+   * traced
    * 
    * @param scene
    */
   protected RayTracerBase(Scene scene) {
+    this(scene.compile());
+  }
+
+  /**
+   * constructor that shares a compiled scene
+   * 
+   * @param scene
+   */
+  protected RayTracerBase(CompiledScene scene) {
     this.scene = scene;
   }
 
@@ -27,12 +103,233 @@ public abstract class RayTracerBase {
    */
   public abstract Color traceRay(Ray ray);
 
+  /**
+   * Generate color for a ray whose closest intersection was already found, such
+   * as a primary ray the renderer intersected to decide whether to trace it -
+   * tracers that do not override it intersect the ray again
+   * 
+   * @param ray     the ray
+   * @param closest closest intersection of the ray with the scene, null if it
+   *                has none
+   * @return Color
+   */
+  public Color traceRay(Ray ray, GeoPoint closest) {
+    return traceRay(ray);
+  }
+
   /**
    * getter for the scene
    * 
    * @return scene
    */
-  public Scene getScene() {
+  public CompiledScene getScene() {
     return this.scene;
   }
-}
\ No newline at end of file
+
+  /**
+   * set termination of secondary rays to FIXED or RUSSIAN_ROULETTE - the
+   * termination setters of the tracers return their own type, so they chain
+   * with the other setters of the tracer
+   * 
+   * @param type termination type
+   * @return the ray tracer
+   */
+  public RayTracerBase setTerminationType(TERMINATION_TYPE type) {
+    this.terminationType = type;
+    return this;
+  }
+
+  /**
+   * set the maximum recursion level and minimal effect factor of fixed
+   * termination
+   * 
+   * @param level maximum recursion level
+   * @param k     minimal effect factor
+   * @return the ray tracer
+   */
+  public RayTracerBase setFixedTermination(int level, double k) {
+    if (level < 1 || k < 0)
+      throw new IllegalArgumentException("Recursion level must be positive and effect factor non-negative");
+    this.maxLevel = level;
+    this.minK = k;
+    return this;
+  }
+
+  /**
+   * set the parameters of russian roulette termination
+   * 
+   * @param startDepth number of bounces that are always traced
+   * @param threshold  effect factor from which rays always survive
+   * @param maxLevel   recursion level at which rays are stopped regardless
+   * @return the ray tracer
+   */
+  public RayTracerBase setRouletteTermination(int startDepth, double threshold, int maxLevel) {
+    if (startDepth < 0 || threshold <= 0 || maxLevel < 1)
+      throw new IllegalArgumentException("Illegal russian roulette parameters");
+    this.rouletteStartDepth = startDepth;
+    this.rouletteThreshold = threshold;
+    this.rouletteMaxLevel = maxLevel;
+    return this;
+  }
+
+  /**
+   * @return the recursion level primary rays start from
+   */
+  protected int getStartLevel() {
+    return terminationType == TERMINATION_TYPE.FIXED ? maxLevel : rouletteMaxLevel;
+  }
+
+  /**
+   * Check whether render workers can trace with a tracer - they create the
+   * tracers of this package, not subclasses of them
+   * 
+   * @param rayTracer the tracer
+   * @return true if workers can create the tracer
+   */
+  static boolean isTransferable(RayTracerBase rayTracer) {
+    return rayTracer.getClass() == BasicRayTracer.class || rayTracer.getClass() == PathTracer.class;
+  }
+
+  /**
+   * Write the kind and settings of a tracer, which a render worker reads back by
+   * {@link #readRayTracer(DataInput, CompiledScene)} to trace the same rays
+   * 
+   * @param rayTracer the tracer, which must be transferable
+   * @param out       the stream
+   * @throws IOException if the stream cannot be written
+   */
+  static void writeRayTracer(RayTracerBase rayTracer, DataOutput out) throws IOException {
+    if (!isTransferable(rayTracer))
+      throw new IllegalArgumentException(rayTracer.getClass().getName() + " cannot be traced by workers");
+    out.writeBoolean(rayTracer instanceof PathTracer);
+    rayTracer.writeSettings(out);
+  }
+
+  /**
+   * Create a tracer of the kind and settings written by
+   * {@link #writeRayTracer(RayTracerBase, DataOutput)} - path tracers draw their
+   * own random paths
+   * 
+   * @param in    the stream
+   * @param scene the scene to trace
+   * @return the tracer
+   * @throws IOException if the stream cannot be read
+   */
+  static RayTracerBase readRayTracer(DataInput in, CompiledScene scene) throws IOException {
+    RayTracerBase rayTracer = in.readBoolean() ? new PathTracer(scene) : new BasicRayTracer(scene);
+    rayTracer.readSettings(in);
+    return rayTracer;
+  }
+
+  /**
+   * Write the settings of the tracer
+   * 
+   * @param out the stream
+   * @throws IOException if the stream cannot be written
+   */
+  void writeSettings(DataOutput out) throws IOException {
+    out.writeInt(terminationType.ordinal());
+    out.writeInt(maxLevel);
+    out.writeDouble(minK);
+    out.writeInt(rouletteMaxLevel);
+    out.writeInt(rouletteStartDepth);
+    out.writeDouble(rouletteThreshold);
+  }
+
+  /**
+   * Read the settings of the tracer written by {@link #writeSettings(DataOutput)}
+   * 
+   * @param in the stream
+   * @throws IOException if the stream cannot be read
+   */
+  void readSettings(DataInput in) throws IOException {
+    terminationType = TERMINATION_TYPE.values()[in.readInt()];
+    maxLevel = in.readInt();
+    minK = in.readDouble();
+    rouletteMaxLevel = in.readInt();
+    rouletteStartDepth = in.readInt();
+    rouletteThreshold = in.readDouble();
+  }
+
+  /**
+   * Count a ray traced for the render, if its work is counted
+   * 
+   * @param type type of the ray
+   */
+  protected void countRay(RenderStatistics.RAY_TYPE type) {
+    RenderStatistics counters = statistics;
+    if (counters != null)
+      counters.countRay(type);
+    PixelCosts costs = pixelCosts;
+    if (costs != null)
+      costs.countRay();
+  }
+
+  /**
+   * Check whether an effect factor is too small to be worth calculating - only
+   * with fixed termination, russian roulette compensates surviving rays instead
+   * 
+   * @param k effect factor
+   * @return true if the effect can be ignored
+   */
+  protected boolean isNegligible(double k) {
+    return terminationType == TERMINATION_TYPE.FIXED ? k < minK : k <= 0;
+  }
+
+  /**
+   * get transparency of light intersection
+   * 
+   * @param l           light direction
+   * @param n           normal
+   * @param geopoint    intersection point
+   * @param lightSource light source
+   * @return transparency
+   */
+  protected double transparency(Vector l, Vector n, GeoPoint geopoint, LightSource lightSource) {
+    Vector lightDirection = l.scale(-1);
+    Ray lightRay = new Ray(geopoint.point, lightDirection, n);
+    double lightDistance = lightSource.getDistance(geopoint.point);
+    countRay(RenderStatistics.RAY_TYPE.SHADOW);
+    // nothing behind the light can shade the point
+    var intersections = scene.findGeoIntersections(lightRay, lightDistance);
+    if (intersections == null)
+      return 1.0;
+    double ktr = 1.0;
+    for (GeoPoint gp : intersections) {
+      if (alignZero(gp.point.distance(geopoint.point) - lightDistance) <= 0) {
+        ktr *= gp.geometry.getMaterial().kT;
+        if (ktr < minK)
+          return 0.0;
+      }
+    }
+    return ktr;
+  }
+
+  /**
+   * Decide whether a reflected or refracted ray is traced. With russian roulette
+   * a ray survives with probability proportional to the effect factor it carries
+   * into the pixel, and a surviving ray is weighted up so the expected color stays
+   * the same
+   * 
+   * @param level recursion level of the ray
+   * @param k     effect factor of the ray
+   * @return the weight of the ray's color, 0 if the ray is not traced
+   */
+  protected double survivalWeight(int level, double k) {
+    if (terminationType == TERMINATION_TYPE.FIXED) {
+      return k > minK ? 1 : 0;
+    }
+    if (k <= 0) {
+      return 0;
+    }
+    // the first bounces are always traced
+    if (rouletteMaxLevel - level < rouletteStartDepth) {
+      return 1;
+    }
+    double survival = Math.min(1, k / rouletteThreshold);
+    if (survival >= 1) {
+      return 1;
+    }
+    return random(0, 1) < survival ? 1 / survival : 0;
+  }
+}
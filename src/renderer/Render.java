@@ -1,15 +1,27 @@
 package renderer;
 
 import elements.Camera;
+import elements.PixelRayGenerator;
+import geometries.Intersectable;
+import geometries.IntersectionCounter;
+import geometries.Intersectable.GeoPoint;
 import primitives.Color;
 import primitives.Ray;
+import primitives.Sampler;
 
 import java.util.List;
 import java.util.MissingResourceException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntConsumer;
 import java.util.stream.Collectors;
 import java.awt.Desktop;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 
 /**
  * Generate the picture according to a scene
@@ -36,11 +48,105 @@ public class Render {
    */
   private int supersamplingGridSize = 9;
 
+  /**
+   * pattern of the supersampling rays and of the jitter of progressive passes,
+   * the regular grid of the supersampling grid size when not set
+   */
+  private Sampler sampler = null;
+
+  /**
+   * number of rays per pixel when supersampling with a sampler, 0 for the square
+   * of the grid size
+   */
+  private int samplesPerPixel = 0;
+
   /**
    * maximum recursion level for adaptive supersampling
    */
   private int adaptiveMaxRecursionLevel = 3;
 
+  /**
+   * number of passes over the image, averaged in a float frame buffer
+   */
+  private int passes = 1;
+
+  /**
+   * accumulation of the passes, only used with more than one pass
+   */
+  private FrameBuffer frameBuffer;
+
+  /**
+   * index of the current pass
+   */
+  private int pass = 0;
+
+  /**
+   * colors of the previous frame that pixels of a moving camera may reuse, null
+   * to shade every pixel
+   */
+  private Reprojection reprojection = null;
+
+  /**
+   * record of the geometries the rays of every tile reached, for re-tracing only
+   * the tiles an edit of the scene changes, null to not record
+   */
+  private DirtyRegions dirtyRegions = null;
+
+  /**
+   * periodic snapshot of the render on disk that the render resumes from, null
+   * to render without one
+   */
+  private Checkpoint checkpoint = null;
+
+  /**
+   * generator of the rays through the pixel centers of the current render
+   */
+  private PixelRayGenerator rayGenerator;
+
+  /**
+   * counters of the work of the render, or null if it is not counted
+   */
+  private RenderStatistics statistics;
+
+  /**
+   * costs of every pixel of the render, or null if they are not kept
+   */
+  private PixelCosts pixelCosts;
+
+  /**
+   * timeline of the threads of the render, or null if it is not traced
+   */
+  private TraceRecorder tracer;
+
+  /**
+   * number of rays traced in the current render, counted without contention
+   * between the threads
+   */
+  private final LongAdder samples = new LongAdder();
+
+  /**
+   * number of tiles the threads finished in the current render
+   */
+  private final LongAdder tilesDone = new LongAdder();
+
+  /**
+   * primary rays every thread traced, counted only while the flight recorder
+   * records tiles, which is checked when a render starts
+   */
+  private final ThreadLocal<long[]> threadRays = ThreadLocal.withInitial(() -> new long[1]);
+  private boolean countThreadRays = false;
+
+  /**
+   * number of pixels colored in the current render and the number it colors
+   */
+  private final LongAdder pixelsDone = new LongAdder();
+  private volatile long pixelsTotal = 0;
+
+  /**
+   * throughput of the last render
+   */
+  private double samplesPerSecond = 0;
+
   /**
    * thread count for multithreading
    */
@@ -74,128 +180,7 @@ public class Render {
   private static final String IMAGE_WRITER_COMPONENT = "Image writer";
   private static final String CAMERA_COMPONENT = "Camera";
   private static final String RAY_TRACER_COMPONENT = "Ray tracer";
-
-  /**
-   * Pixel is an internal helper class whose objects are associated with a Render
-   * object that they are generated in scope of. It is used for multithreading in
-   * the Renderer and for follow up its progress.<br/>
-   * There is a main follow up object and several secondary objects - one in each
-   * thread.
-   * 
-   * @author Dan
-   *
-   */
-  private class Pixel {
-    private long maxRows = 0;
-    private long maxCols = 0;
-    private long pixels = 0;
-    public volatile int row = 0;
-    public volatile int col = -1;
-    private long counter = 0;
-    private int percents = 0;
-    private long nextCounter = 0;
-
-    /**
-     * The constructor for initializing the main follow up Pixel object
-     * 
-     * @param maxRows the amount of pixel rows
-     * @param maxCols the amount of pixel columns
-     */
-    public Pixel(int maxRows, int maxCols) {
-      this.maxRows = maxRows;
-      this.maxCols = maxCols;
-      this.pixels = (long) maxRows * maxCols;
-      this.nextCounter = this.pixels / 100;
-      if (Render.this.print)
-        System.out.printf("\r %02d%%", this.percents);
-    }
-
-    /**
-     * Default constructor for secondary Pixel objects
-     */
-    public Pixel() {
-    }
-
-    /**
-     * Internal function for thread-safe manipulating of main follow up Pixel object
-     * - this function is critical section for all the threads, and main Pixel
-     * object data is the shared data of this critical section.<br/>
-     * The function provides next pixel number each call.
-     * 
-     * @param target target secondary Pixel object to copy the row/column of the
-     *               next pixel
-     * @return the progress percentage for follow up: if it is 0 - nothing to print,
-     *         if it is -1 - the task is finished, any other value - the progress
-     *         percentage (only when it changes)
-     */
-    private synchronized int nextP(Pixel target) {
-      ++col;
-      ++this.counter;
-      if (col < this.maxCols) {
-        target.row = this.row;
-        target.col = this.col;
-        if (Render.this.print && this.counter == this.nextCounter) {
-          ++this.percents;
-          this.nextCounter = this.pixels * (this.percents + 1) / 100;
-          return this.percents;
-        }
-        return 0;
-      }
-      ++row;
-      if (row < this.maxRows) {
-        col = 0;
-        target.row = this.row;
-        target.col = this.col;
-        if (Render.this.print && this.counter == this.nextCounter) {
-          ++this.percents;
-          this.nextCounter = this.pixels * (this.percents + 1) / 100;
-          return this.percents;
-        }
-        return 0;
-      }
-      return -1;
-    }
-
-    /**
-     * Public function for getting next pixel number into secondary Pixel object.
-     * The function prints also progress percentage in the console window.
-     * 
-     * @param target target secondary Pixel object to copy the row/column of the
-     *               next pixel
-     * @return true if the work still in progress, -1 if it's done
-     */
-    public boolean nextPixel(Pixel target) {
-      int percent = nextP(target);
-      if (Render.this.print && percent > 0)
-        synchronized (this) {
-          notifyAll();
-        }
-      if (percent >= 0)
-        return true;
-      if (Render.this.print)
-        synchronized (this) {
-          notifyAll();
-        }
-      return false;
-    }
-
-    /**
-     * Debug print of progress percentage - must be run from the main thread
-     */
-    public void print() {
-      if (Render.this.print)
-        while (this.percents < 100)
-          try {
-            synchronized (this) {
-              wait();
-            }
-            System.out.printf("\r %02d%%", this.percents);
-            System.out.flush();
-          } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-          }
-    }
-  }
+  private static final String DIRTY_REGIONS_COMPONENT = "Dirty regions";
 
   /**
    * write image writer to image file
@@ -205,7 +190,16 @@ public class Render {
   public File writeToImage() {
     if (imageWriter == null)
       throw new MissingResourceException(RESOURCE_ERROR, RENDER_CLASS, IMAGE_WRITER_COMPONENT);
-    return imageWriter.writeToImage();
+    if (tracer == null)
+      return imageWriter.writeToImage();
+    // the timeline shows the encode too
+    tracer.start();
+    try {
+      return imageWriter.writeToImage();
+    } finally {
+      tracer.stop();
+      tracer.dump();
+    }
   }
 
   /**
@@ -232,72 +226,460 @@ public class Render {
 
   /**
    * This function renders image's pixel color map from the scene included with
-   * the Renderer object - with multi-threading
+   * the Renderer object - with multi-threading, the threads take whole rows
    */
   private void renderImageThreaded() {
+    final int nX = imageWriter.getNx();
+    final int nY = imageWriter.getNy();
+    final ThreadLocal<Ray[]> rowRays = ThreadLocal.withInitial(() -> new Ray[nX]);
+    final AtomicInteger percents = new AtomicInteger(-1);
+    renderTiles(nY, i -> {
+      renderRow(i, rowRays.get());
+      if (print)
+        printProgress(percents);
+    });
+    if (print)
+      System.out.println("\nFinished");
+  }
+
+  /**
+   * Render a row of the image, which is a tile of the recording
+   * 
+   * @param row     the row
+   * @param rowRays receives the rays of the row
+   */
+  private void renderRow(int row, Ray[] rowRays) {
     Camera camera = rayTracer.scene.getCamera();
     final int nX = imageWriter.getNx();
     final int nY = imageWriter.getNy();
-    final double pixelWidth = camera.getWidth() / imageWriter.getNx();
-    final double pixelHeight = camera.getHeight() / imageWriter.getNy();
-    final Pixel thePixel = new Pixel(nY, nX);
-    // Generate threads
-    Thread[] threads = new Thread[threadsCount];
-    for (int i = threadsCount - 1; i >= 0; --i) {
-      threads[i] = new Thread(() -> {
-        Pixel pixel = new Pixel();
-        while (thePixel.nextPixel(pixel))
-          castRay(nX, nY, pixelWidth, pixelHeight, pixel.col, pixel.row);
+    final double pixelWidth = camera.getWidth() / nX;
+    final double pixelHeight = camera.getHeight() / nY;
+    TileTiming tile = beginTile();
+    // the rays of a whole row are generated at once
+    rayGenerator.constructRowRays(row, 0, nX, rowRays);
+    for (int j = 0; j < nX; ++j)
+      castRay(nX, nY, pixelWidth, pixelHeight, j, row, rowRays[j]);
+    commitTile(tile, 0, row, nX, row + 1);
+  }
+
+  /**
+   * Debug print of the progress percentage of the render, when it changes
+   * 
+   * @param percents the percentage printed last
+   */
+  private void printProgress(AtomicInteger percents) {
+    int current = (int) (getProgress() * 100);
+    int last = percents.get();
+    if (current > last && percents.compareAndSet(last, current))
+      System.out.printf("\r %02d%%", current);
+  }
+
+  /**
+   * This function renders image's pixel color map from the scene included with
+   * the Renderer object
+   */
+  public void renderImage() {
+    if (imageWriter == null)
+      throw new MissingResourceException(RESOURCE_ERROR, RENDER_CLASS, IMAGE_WRITER_COMPONENT);
+    if (rayTracer == null)
+      throw new MissingResourceException(RESOURCE_ERROR, RENDER_CLASS, RAY_TRACER_COMPONENT);
+    if (rayTracer.scene.getCamera() == null)
+      throw new MissingResourceException(RESOURCE_ERROR, RENDER_CLASS, CAMERA_COMPONENT);
+
+    if (reprojection != null) {
+      if (reprojection.getNx() != imageWriter.getNx() || reprojection.getNy() != imageWriter.getNy())
+        throw new IllegalArgumentException("Reprojection must have the resolution of the image");
+      if (passes > 1)
+        throw new IllegalArgumentException("Reprojection cannot be used with more than one pass");
+    }
+    if (dirtyRegions != null && (passes > 1 || reprojection != null))
+      throw new IllegalArgumentException("Dirty regions can only be recorded with one pass and no reprojection");
+    if (checkpoint != null && (reprojection != null || dirtyRegions != null))
+      throw new IllegalArgumentException("Checkpoints cannot be used with reprojection or dirty regions");
+    // passes and checkpoints accumulate the samples on the heap
+    if (passes > 1 || checkpoint != null)
+      FrameBuffer.checkSize(imageWriter.getNx(), imageWriter.getNy());
+
+    // a refused render leaves the frames and regions of the renders before it
+    if (reprojection != null)
+      reprojection.beginFrame(rayTracer.scene.getCamera());
+    if (dirtyRegions != null)
+      dirtyRegions.begin(rayTracer.scene, imageWriter.getNx(), imageWriter.getNy());
+
+    long startTime = System.currentTimeMillis();
+    long startNanos = System.nanoTime();
+    RenderEvent event = new RenderEvent();
+    event.begin();
+    samples.reset();
+    tilesDone.reset();
+    pixelsDone.reset();
+    pixelsTotal = (long) imageWriter.getNx() * imageWriter.getNy() * passes;
+    beginCounting();
+    long endTime;
+    try {
+      if (checkpoint != null) {
+        renderFromCheckpoint();
+      } else {
+        frameBuffer = passes > 1 ? new FrameBuffer(imageWriter.getNx(), imageWriter.getNy()) : null;
+        rayGenerator = rayTracer.scene.getCamera().getRayGenerator(imageWriter.getNx(), imageWriter.getNy());
+        for (pass = 0; pass < passes; ++pass) {
+          if (threadsCount == 0) {
+            Ray[] rowRays = new Ray[imageWriter.getNx()];
+            for (int i = 0; i < imageWriter.getNy(); ++i)
+              renderRow(i, rowRays);
+          } else {
+            renderImageThreaded();
+          }
+        }
+      }
+    } finally {
+      // a failed render stops its counters and recorder too
+      endTime = System.currentTimeMillis();
+      if (statistics != null)
+        statistics.end();
+      endRender(event, startNanos);
+    }
+    double seconds = (endTime - startTime) / 1000.0;
+    samplesPerSecond = seconds > 0 ? samples.sum() / seconds : 0;
+    System.out.println(seconds + " seconds");
+    if (print)
+      System.out.printf("%.0f samples per second%n", samplesPerSecond);
+  }
+
+  /**
+   * Render again only the tiles of the image that changes of geometries since the
+   * last render can change - the scene of the ray tracer must be compiled from
+   * the same scene after the changes, with the same camera, lights and
+   * background, and the image writer must still hold the last render. When the
+   * changes cannot be tracked to tiles, such as after geometries were added or
+   * the camera moved, the whole image is rendered
+   * 
+   * @param changed geometries of the scene that were changed, added or removed
+   * @throws MissingResourceException if dirty regions are not set or a resource
+   *                                  of the render is missing
+   */
+  public void renderChanges(Intersectable... changed) {
+    if (dirtyRegions == null)
+      throw new MissingResourceException(RESOURCE_ERROR, RENDER_CLASS, DIRTY_REGIONS_COMPONENT);
+    if (imageWriter == null)
+      throw new MissingResourceException(RESOURCE_ERROR, RENDER_CLASS, IMAGE_WRITER_COMPONENT);
+    if (rayTracer == null)
+      throw new MissingResourceException(RESOURCE_ERROR, RENDER_CLASS, RAY_TRACER_COMPONENT);
+    if (rayTracer.scene.getCamera() == null)
+      throw new MissingResourceException(RESOURCE_ERROR, RENDER_CLASS, CAMERA_COMPONENT);
+    final int nX = imageWriter.getNx();
+    final int nY = imageWriter.getNy();
+    final int[] tiles = passes > 1 || reprojection != null ? null
+        : dirtyRegions.dirtyTiles(rayTracer.scene, nX, nY, changed);
+    if (tiles == null) {
+      renderImage();
+      return;
+    }
+
+    long startTime = System.currentTimeMillis();
+    long startNanos = System.nanoTime();
+    RenderEvent event = new RenderEvent();
+    event.begin();
+    beginRegions();
+    long endTime;
+    try {
+      renderTiles(tiles.length, t -> {
+        int[] bounds = dirtyRegions.getTileBounds(tiles[t]);
+        renderRegion(bounds[0], bounds[1], bounds[2], bounds[3]);
       });
+    } finally {
+      endTime = System.currentTimeMillis();
+      if (statistics != null)
+        statistics.end();
+      endRender(event, startNanos);
     }
-    // Start threads
-    for (Thread thread : threads)
-      thread.start();
+    double seconds = (endTime - startTime) / 1000.0;
+    samplesPerSecond = seconds > 0 ? samples.sum() / seconds : 0;
+    if (print)
+      System.out.printf("%d of %d tiles rendered again%n", tiles.length, dirtyRegions.getTileCount());
+    System.out.println(seconds + " seconds");
+  }
 
-    // Print percents on the console
-    thePixel.print();
+  /**
+   * Render the unfinished tiles of the checkpoint pass by pass, from the state
+   * of its file if there is one
+   */
+  private void renderFromCheckpoint() {
+    checkpoint.begin(imageWriter, passes, checkpointSettings());
+    boolean finished = false;
+    try {
+      frameBuffer = passes > 1 ? checkpoint.getFrameBuffer() : null;
+      rayGenerator = rayTracer.scene.getCamera().getRayGenerator(imageWriter.getNx(), imageWriter.getNy());
+      for (pass = checkpoint.getPass(); pass < passes; ++pass) {
+        final int[] tiles = checkpoint.pendingTiles();
+        renderTiles(tiles.length, t -> {
+          int[] bounds = checkpoint.beginTile(tiles[t]);
+          renderRegion(bounds[0], bounds[1], bounds[2], bounds[3]);
+          checkpoint.commitTile(tiles[t]);
+        });
+        checkpoint.endPass();
+      }
+      finished = true;
+    } finally {
+      checkpoint.end(finished);
+    }
+  }
 
-    // Ensure all threads have finished
+  /**
+   * @return the settings that change the samples of a checkpoint, besides the
+   *         image size and passes it keeps itself
+   */
+  private byte[] checkpointSettings() {
+    ByteArrayOutputStream settings = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(settings);
+    try {
+      out.writeInt(supersamplingType.ordinal());
+      out.writeInt(supersamplingGridSize);
+      out.writeInt(adaptiveMaxRecursionLevel);
+      out.writeUTF(sampler == null ? "" : sampler.getClass().getName());
+      out.writeInt(samplesPerPixel);
+      out.writeUTF(rayTracer.getClass().getName());
+      rayTracer.writeSettings(out);
+    } catch (IOException e) {
+      // a stream in memory is not failed
+      throw new UncheckedIOException(e);
+    }
+    return settings.toByteArray();
+  }
+
+  /**
+   * Render tiles, by the threads of the render if it is multi-threaded
+   * 
+   * @param count      number of tiles
+   * @param renderTile renders the tile of an index from 0 to count - 1
+   */
+  private void renderTiles(int count, IntConsumer renderTile) {
+    if (threadsCount == 0) {
+      for (int t = 0; t < count; ++t)
+        renderTile.accept(t);
+      return;
+    }
+    // the threads take the tiles one by one, until a tile fails
+    AtomicInteger next = new AtomicInteger();
+    AtomicReference<RuntimeException> failure = new AtomicReference<>();
+    Thread[] threads = new Thread[threadsCount];
+    for (int i = 0; i < threadsCount; ++i) {
+      threads[i] = new Thread(() -> {
+        try {
+          for (int t = next.getAndIncrement(); t < count; t = next.getAndIncrement())
+            renderTile.accept(t);
+        } catch (RuntimeException e) {
+          failure.compareAndSet(null, e);
+          next.set(count);
+        }
+      });
+      threads[i].start();
+    }
     for (Thread thread : threads)
       try {
         thread.join();
-      } catch (Exception e) {
+      } catch (InterruptedException e) {
         Thread.currentThread().interrupt();
       }
-
-    if (print)
-      System.out.println("\nFinished");
+    // the render is not finished, as if it rendered on one thread
+    if (failure.get() != null)
+      throw failure.get();
   }
 
   /**
-   * This function renders image's pixel color map from the scene included with
-   * the Renderer object
+   * Prepare rendering regions of the image one at a time, such as the tiles
+   * leased to a render worker - the regions are rendered in the first pass, and
+   * with more than one pass the image writer receives the color of the pass of
+   * every pixel, whose average is taken by the caller
+   * 
+   * @throws MissingResourceException if a resource of the render is missing
    */
-  public void renderImage() {
+  void beginRegions() {
     if (imageWriter == null)
       throw new MissingResourceException(RESOURCE_ERROR, RENDER_CLASS, IMAGE_WRITER_COMPONENT);
     if (rayTracer == null)
       throw new MissingResourceException(RESOURCE_ERROR, RENDER_CLASS, RAY_TRACER_COMPONENT);
     if (rayTracer.scene.getCamera() == null)
       throw new MissingResourceException(RESOURCE_ERROR, RENDER_CLASS, CAMERA_COMPONENT);
+    samples.reset();
+    tilesDone.reset();
+    pixelsDone.reset();
+    pixelsTotal = 0;
+    beginCounting();
+    frameBuffer = null;
+    pass = 0;
+    rayGenerator = rayTracer.scene.getCamera().getRayGenerator(imageWriter.getNx(), imageWriter.getNy());
+  }
 
-    long startTime = System.currentTimeMillis();
+  /**
+   * Set the pass of the regions rendered after {@link #beginRegions()} - no
+   * region of another pass may be rendering
+   * 
+   * @param pass index of the pass, from 0 to the number of passes - 1
+   */
+  void beginPass(int pass) {
+    if (pass < 0 || pass >= passes)
+      throw new IllegalArgumentException("Pass " + pass + " is not one of the " + passes + " passes");
+    this.pass = pass;
+  }
 
-    if (threadsCount == 0) {
-      Camera camera = rayTracer.scene.getCamera();
-      final int nX = imageWriter.getNx();
-      final int nY = imageWriter.getNy();
-      final double pixelWidth = camera.getWidth() / imageWriter.getNx();
-      final double pixelHeight = camera.getHeight() / imageWriter.getNy();
-      for (int i = 0; i < nY; ++i)
-        for (int j = 0; j < nX; ++j)
-          castRay(nX, nY, pixelWidth, pixelHeight, j, i);
-    } else {
-      renderImageThreaded();
+  /**
+   * Start counting the work of a render, if it is counted, and let the ray
+   * tracer count its rays
+   */
+  private void beginCounting() {
+    rayTracer.statistics = statistics;
+    rayTracer.pixelCosts = pixelCosts;
+    if (statistics != null)
+      statistics.begin();
+    if (pixelCosts != null)
+      pixelCosts.begin(imageWriter.getNx(), imageWriter.getNy());
+    if (tracer != null)
+      tracer.start();
+    countThreadRays = tracer != null || new TileEvent().isEnabled();
+  }
+
+  /**
+   * Commit the flight recorder event of a render, if it is recorded, and write
+   * the timeline of the render and stop its recorder, if it is traced
+   * 
+   * @param event      the event, begun when the render started
+   * @param startNanos value of {@link System#nanoTime()} when the render started
+   */
+  private void endRender(RenderEvent event, long startNanos) {
+    if (event.shouldCommit()) {
+      event.scene = rayTracer.scene.getName();
+      event.width = imageWriter.getNx();
+      event.height = imageWriter.getNy();
+      event.passes = passes;
+      event.threads = Math.max(1, threadsCount);
+      event.rays = samples.sum();
+      event.commit();
+    }
+    if (tracer != null) {
+      tracer.record("render", "render", startNanos, System.nanoTime(), String.format("%s %dx%d, %d rays",
+          rayTracer.scene.getName(), imageWriter.getNx(), imageWriter.getNy(), samples.sum()));
+      tracer.dump();
+      tracer.stop();
+    }
+  }
+
+  /**
+   * Start of a tile a thread renders, for the flight recorder and the timeline
+   */
+  private static final class TileTiming {
+    private final TileEvent event = new TileEvent();
+    private long startNanos;
+
+    /**
+     * rays of the thread before the tile
+     */
+    private long rays;
+  }
+
+  /**
+   * Begin the timing of a tile the current thread renders
+   * 
+   * @return the start of the tile
+   */
+  private TileTiming beginTile() {
+    TileTiming tile = new TileTiming();
+    tile.event.begin();
+    if (tracer != null)
+      tile.startNanos = System.nanoTime();
+    if (countThreadRays)
+      tile.rays = threadRays.get()[0];
+    return tile;
+  }
+
+  /**
+   * Commit the flight recorder event of a tile the current thread rendered, if
+   * it is recorded, and add it to the timeline, if it is traced
+   * 
+   * @param tile    the start of the tile of {@link #beginTile()}
+   * @param fromCol first column
+   * @param fromRow first row
+   * @param toCol   column after the last
+   * @param toRow   row after the last
+   */
+  private void commitTile(TileTiming tile, int fromCol, int fromRow, int toCol, int toRow) {
+    tilesDone.increment();
+    long rays = countThreadRays ? threadRays.get()[0] - tile.rays : 0;
+    TileEvent event = tile.event;
+    if (event.shouldCommit()) {
+      event.fromCol = fromCol;
+      event.fromRow = fromRow;
+      event.toCol = toCol;
+      event.toRow = toRow;
+      event.pass = pass;
+      event.rays = rays;
+      event.commit();
+    }
+    if (tracer != null)
+      tracer.record("tile", "render", tile.startNanos, System.nanoTime(),
+          String.format("%d,%d to %d,%d pass %d, %d rays", fromCol, fromRow, toCol, toRow, pass, rays));
+  }
+
+  /**
+   * Render a rectangle of pixels of the image, after
+   * {@link #beginRegions()} - regions may be rendered by several threads at once
+   * 
+   * @param fromCol first column
+   * @param fromRow first row
+   * @param toCol   column after the last
+   * @param toRow   row after the last
+   */
+  void renderRegion(int fromCol, int fromRow, int toCol, int toRow) {
+    Camera camera = rayTracer.scene.getCamera();
+    final int nX = imageWriter.getNx();
+    final int nY = imageWriter.getNy();
+    final double pixelWidth = camera.getWidth() / nX;
+    final double pixelHeight = camera.getHeight() / nY;
+    TileTiming tile = beginTile();
+    Ray[] rowRays = new Ray[toCol - fromCol];
+    for (int i = fromRow; i < toRow; ++i) {
+      rayGenerator.constructRowRays(i, fromCol, toCol, rowRays);
+      for (int j = fromCol; j < toCol; ++j)
+        castRay(nX, nY, pixelWidth, pixelHeight, j, i, rowRays[j - fromCol]);
     }
+    commitTile(tile, fromCol, fromRow, toCol, toRow);
+  }
+
+  /**
+   * Trace a ray of a pixel, counting it in the render's samples
+   * 
+   * @param ray the ray
+   * @return the color of the ray
+   */
+  private Color traceRay(Ray ray) {
+    countPrimaryRay();
+    return rayTracer.traceRay(ray);
+  }
+
+  /**
+   * Trace a ray of a pixel whose closest intersection was already found,
+   * counting it in the render's samples
+   * 
+   * @param ray     the ray
+   * @param closest closest intersection of the ray, null if it has none
+   * @return the color of the ray
+   */
+  private Color traceRay(Ray ray, GeoPoint closest) {
+    countPrimaryRay();
+    return rayTracer.traceRay(ray, closest);
+  }
 
-    long endTime = System.currentTimeMillis();
-    System.out.println((endTime - startTime) / 1000.0 + " seconds");
+  /**
+   * Count a ray of a pixel in the render's samples
+   */
+  private void countPrimaryRay() {
+    samples.increment();
+    if (countThreadRays)
+      ++threadRays.get()[0];
+    if (pixelCosts != null)
+      pixelCosts.countRay();
+    if (statistics != null)
+      statistics.countRay(RenderStatistics.RAY_TYPE.PRIMARY);
   }
 
   /**
@@ -309,10 +691,70 @@ public class Render {
    * @param pixelHeight camera height / number of pixels high
    * @param col         pixel's column number (pixel index in row)
    * @param row         pixel's row number (pixel index in column)
+   * @param ray         ray through the center of the pixel
    */
-  private void castRay(int nX, int nY, double pixelWidth, double pixelHeight, int col, int row) {
+  private void castRay(int nX, int nY, double pixelWidth, double pixelHeight, int col, int row, Ray ray) {
+    IntersectionCounter counter = statistics;
+    if (pixelCosts != null) {
+      // the costs of the pixel pass the intersections on to the statistics
+      pixelCosts.beginPixel(statistics);
+      counter = pixelCosts;
+    }
+    if (counter != null)
+      IntersectionCounter.setCurrent(counter);
+    try {
+      if (dirtyRegions == null) {
+        colorPixel(nX, nY, pixelWidth, pixelHeight, col, row, ray);
+      } else {
+        // the rays of the pixel are recorded in its tile
+        dirtyRegions.beginPixel();
+        try {
+          colorPixel(nX, nY, pixelWidth, pixelHeight, col, row, ray);
+        } finally {
+          dirtyRegions.endPixel(col, row);
+        }
+      }
+    } finally {
+      if (counter != null)
+        IntersectionCounter.setCurrent(null);
+      if (statistics != null)
+        statistics.countPixel();
+      if (pixelCosts != null)
+        pixelCosts.endPixel(col, row);
+    }
+    pixelsDone.increment();
+  }
+
+  /**
+   * Color a pixel by its ray from the camera
+   * 
+   * @param nX          resolution on X axis (number of pixels in row)
+   * @param nY          resolution on Y axis (number of pixels in column)
+   * @param pixelWidth  camera width / number of pixels wide
+   * @param pixelHeight camera height / number of pixels high
+   * @param col         pixel's column number (pixel index in row)
+   * @param row         pixel's row number (pixel index in column)
+   * @param ray         ray through the center of the pixel
+   */
+  private void colorPixel(int nX, int nY, double pixelWidth, double pixelHeight, int col, int row, Ray ray) {
     Camera camera = rayTracer.scene.getCamera();
-    Ray ray = camera.constructRayThroughPixel(nX, nY, col, row);
+    long pixel = (long) row * nX + col;
+    // progressive passes spread their rays over the pixel
+    if (passes > 1 && sampler != null && supersamplingType == SUPERSAMPLING_TYPE.NONE) {
+      double[] point = new double[2];
+      sampler.sample(pixel, pass, passes, point);
+      ray = camera.constructRayThroughSample(ray, pixelWidth, pixelHeight, point);
+    }
+    GeoPoint hit = null;
+    if (reprojection != null) {
+      // the closest point of the ray decides whether the previous frame is reused
+      hit = ray.findClosestGeoPoint(rayTracer.scene.findGeoIntersections(ray));
+      Color reused = reprojection.reuse(col, row, hit);
+      if (reused != null) {
+        imageWriter.writePixel(col, row, reused);
+        return;
+      }
+    }
     Color pixelColor;
     // adaptive supersampling is enabled
     if (supersamplingType == SUPERSAMPLING_TYPE.ADAPTIVE) {
@@ -320,11 +762,23 @@ public class Render {
     }
     // supersampling is enabled
     else if (supersamplingType == SUPERSAMPLING_TYPE.SUPERSAMPLING) {
-      pixelColor = calcSupersamplingColor(ray, supersamplingGridSize);
+      pixelColor = calcSupersamplingColor(ray, supersamplingGridSize, pixel);
     }
-    // no supersampling
+    // no supersampling, the ray of a reprojected pixel is already intersected
     else {
-      pixelColor = rayTracer.traceRay(ray);
+      pixelColor = reprojection != null ? traceRay(ray, hit) : traceRay(ray);
+    }
+    if (reprojection != null)
+      reprojection.store(col, row, hit, pixelColor);
+    // the pixels of a tile are shown when the whole tile is finished
+    if (checkpoint != null) {
+      checkpoint.sample(col, row, pixelColor);
+      return;
+    }
+    // progressive rendering shows the average of the passes so far
+    if (frameBuffer != null) {
+      frameBuffer.accumulate(col, row, pixelColor);
+      pixelColor = frameBuffer.getColor(col, row);
     }
     imageWriter.writePixel(col, row, pixelColor);
   }
@@ -342,6 +796,8 @@ public class Render {
    */
   private Color calcAdaptiveSupersamplingColor(Ray center, double cellWidth, double cellHeight, Camera camera,
       int level) {
+    if (pixelCosts != null)
+      pixelCosts.countDepth(adaptiveMaxRecursionLevel - level + 1);
 
     // compute half cell width for locating rays and for recursive calls
     double halfCellWidth = cellWidth / 2;
@@ -351,7 +807,7 @@ public class Render {
     List<Ray> quadrantRays = camera.constructAdaptiveSupersamplingRays(center, halfCellWidth, halfCellHeight);
 
     // get colors for each ray
-    List<Color> quadrantColors = quadrantRays.stream().map(ray -> rayTracer.traceRay(ray)).collect(Collectors.toList());
+    List<Color> quadrantColors = quadrantRays.stream().map(this::traceRay).collect(Collectors.toList());
 
     // stop when maximum recursion level is reached
     if (level <= 1) {
@@ -367,6 +823,8 @@ public class Render {
     }
 
     // calculate average colors of the four quadrants
+    if (statistics != null)
+      statistics.countSubdivision();
     return calcAdaptiveSupersamplingColor(quadrantRays.get(0), halfCellWidth, halfCellHeight, camera, level - 1)
         .add(calcAdaptiveSupersamplingColor(quadrantRays.get(1), halfCellWidth, halfCellHeight, camera, level - 1),
             calcAdaptiveSupersamplingColor(quadrantRays.get(2), halfCellWidth, halfCellHeight, camera, level - 1),
@@ -379,18 +837,29 @@ public class Render {
    * 
    * @param middleRay ray for original pixel location
    * @param gridSize  number of rows and columns for dividing pixel
+   * @param pixel     index of the pixel
    * @return supersampling average color
    */
-  private Color calcSupersamplingColor(Ray middleRay, int gridSize) {
+  private Color calcSupersamplingColor(Ray middleRay, int gridSize, long pixel) {
     Camera camera = rayTracer.scene.getCamera();
     double pixelWidth = camera.getWidth() / imageWriter.getNx();
     double pixelHeight = camera.getHeight() / imageWriter.getNy();
     // list for returning rays
-    List<Ray> supersamplingRays = camera.constructSupersamplingRays(middleRay, gridSize, pixelWidth, pixelHeight);
+    List<Ray> supersamplingRays;
+    if (sampler == null) {
+      supersamplingRays = camera.constructSupersamplingRays(middleRay, gridSize, pixelWidth, pixelHeight);
+    } else {
+      int count = samplesPerPixel > 0 ? samplesPerPixel : gridSize * gridSize;
+      // every pass keys the pattern of the pixel by the pass, so later passes draw
+      // new samples instead of repeating the pattern of the first pass - they do
+      // not continue its sequence
+      supersamplingRays = camera.constructSupersamplingRays(middleRay, count, pixelWidth, pixelHeight, sampler,
+          pixel + pass * 0x5DEECE66DL);
+    }
     // add the intersected colors together
     Color pixelColor = Color.BLACK;
     for (Ray r : supersamplingRays) {
-      pixelColor = pixelColor.add(rayTracer.traceRay(r));
+      pixelColor = pixelColor.add(traceRay(r));
     }
     // divide by the number of rays
     return pixelColor.reduce(supersamplingRays.size());
@@ -439,6 +908,98 @@ public class Render {
     return this;
   }
 
+  /**
+   * set the reprojection of the previous frame for rendering the frames of a
+   * camera moving through a static scene, with one pass
+   * 
+   * @param reprojection the reprojection, null to shade every pixel
+   * @return the Render object
+   */
+  public Render setReprojection(Reprojection reprojection) {
+    this.reprojection = reprojection;
+    return this;
+  }
+
+  /**
+   * @return the reprojection of the previous frame, or null
+   */
+  Reprojection getReprojection() {
+    return reprojection;
+  }
+
+  /**
+   * set the record of the geometries the rays of every tile reach, so that after
+   * the scene is edited {@link #renderChanges(Intersectable...)} only renders the
+   * tiles the edit can change - recorded while rendering with one pass
+   * 
+   * @param dirtyRegions the record, null to not record
+   * @return the Render object
+   */
+  public Render setDirtyRegions(DirtyRegions dirtyRegions) {
+    this.dirtyRegions = dirtyRegions;
+    return this;
+  }
+
+  /**
+   * set the checkpoint the render writes periodically and resumes from - the
+   * image is then rendered tile by tile. The checkpoint knows its scene by the
+   * scene file of it, so the scene must be one {@link scene.SceneFile} writes:
+   * geometries, instances and composites of the geometries package, and the
+   * lights of the elements package
+   * 
+   * @param checkpoint the checkpoint, null to render without one
+   * @return the Render object
+   */
+  public Render setCheckpoint(Checkpoint checkpoint) {
+    this.checkpoint = checkpoint;
+    return this;
+  }
+
+  /**
+   * set the counters of the work of the next renders, which may be read while
+   * they render
+   * 
+   * @param statistics the counters, null to stop counting
+   * @return the Render object itself
+   */
+  public Render setStatistics(RenderStatistics statistics) {
+    this.statistics = statistics;
+    return this;
+  }
+
+  /**
+   * @return the counters of the work of the renders, or null if they are not
+   *         counted
+   */
+  public RenderStatistics getStatistics() {
+    return statistics;
+  }
+
+  /**
+   * set the costs of every pixel of the next renders, which can be written as
+   * heatmaps
+   * 
+   * @param pixelCosts the costs, null to stop keeping them
+   * @return the Render object itself
+   */
+  public Render setPixelCosts(PixelCosts pixelCosts) {
+    this.pixelCosts = pixelCosts;
+    return this;
+  }
+
+  /**
+   * set the timeline of the threads of the next renders, which is started while
+   * a render renders and while the image is written, and written to its file
+   * after each
+   * 
+   * @param tracer the timeline, null to stop tracing
+   * @return the Render object itself
+   */
+  public Render setTracer(TraceRecorder tracer) {
+    this.tracer = tracer;
+    return this;
+  }
+
   /**
    * set supersampling to NONE, SUPERSAMPLING, or ADAPTIVE
    * 
@@ -461,6 +1022,32 @@ public class Render {
     return this;
   }
 
+  /**
+   * set the sampler placing the supersampling rays in a pixel, such as a
+   * JitteredSampler, HaltonSampler or SobolSampler - null for the regular grid
+   * 
+   * @param sampler the sampler
+   * @return Render object
+   */
+  public Render setSampler(Sampler sampler) {
+    this.sampler = sampler;
+    return this;
+  }
+
+  /**
+   * set number of supersampling rays per pixel when a sampler is set - low
+   * discrepancy samplers reach the quality of the regular grid with fewer rays
+   * 
+   * @param count number of rays, 0 for the square of the grid size
+   * @return Render object
+   */
+  public Render setSamplesPerPixel(int count) {
+    if (count < 0)
+      throw new IllegalArgumentException("Samples per pixel cannot be negative");
+    this.samplesPerPixel = count;
+    return this;
+  }
+
   /**
    * set adaptive supersampling max recursion level
    * 
@@ -472,6 +1059,61 @@ public class Render {
     return this;
   }
 
+  /**
+   * set the number of passes over the image - with more than one pass the image
+   * is the average of the passes, for stochastic ray tracers such as PathTracer
+   * 
+   * @param passes number of passes
+   * @return Render object
+   */
+  public Render setPasses(int passes) {
+    if (passes < 1)
+      throw new IllegalArgumentException("Number of passes must be positive");
+    this.passes = passes;
+    return this;
+  }
+
+  /**
+   * get the throughput of the last render
+   * 
+   * @return rays traced per second
+   */
+  public double getSamplesPerSecond() {
+    return samplesPerSecond;
+  }
+
+  /**
+   * get the number of rays traced in the current render, which may be read from
+   * other threads while it renders
+   * 
+   * @return rays traced since the render started
+   */
+  public long getRays() {
+    return samples.sum();
+  }
+
+  /**
+   * get the number of tiles finished in the current render, which may be read
+   * from other threads while it renders - rows of the image or regions
+   * 
+   * @return tiles finished since the render started
+   */
+  public long getTiles() {
+    return tilesDone.sum();
+  }
+
+  /**
+   * get the progress of the current render, which may be read from other threads
+   * while it renders
+   * 
+   * @return fraction of the pixels of all the passes colored so far, 0 before a
+   *         whole image is rendered
+   */
+  public double getProgress() {
+    long total = pixelsTotal;
+    return total == 0 ? 0 : Math.min(1, pixelsDone.sum() / (double) total);
+  }
+
   /**
    * Set multi-threading - if the parameter is 0, number of cores less 2 is taken
    * 
@@ -0,0 +1,550 @@
+package renderer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import primitives.Color;
+import primitives.GridSampler;
+import primitives.HaltonSampler;
+import primitives.JitteredSampler;
+import primitives.RandomSampler;
+import primitives.Sampler;
+import primitives.SobolSampler;
+import renderer.Render.SUPERSAMPLING_TYPE;
+import scene.Scene;
+import scene.SceneFile;
+
+/**
+ * Renders an image on render workers in other processes. The coordinator
+ * listens on a TCP port and sends every worker that connects the scene file of
+ * the scene once, followed by leases of tiles of the image. Every worker keeps
+ * twice as many tiles leased as it has threads, so it never waits for the
+ * network, and sends back the colors of the tiles, which are assembled in the
+ * image writer. The tiles of a worker that disconnects or does not answer in
+ * time are leased to the others.
+ * <p>
+ * The workers trace with the kind and settings of the ray tracer and the
+ * supersampling, sampler and passes of the coordinator, and the scene file
+ * keeps the geometries of the scene exactly, so the image is the image of a
+ * render of the scene in one process. With more than one pass the
+ * tiles of a pass are leased once the tiles of the pass before it are back,
+ * and the coordinator averages the passes
+ *
+ * @author Jonah Lawrence
+ * @author Elad Harizy
+ */
+public class RenderCoordinator implements Closeable {
+
+  /**
+   * first int a worker sends
+   */
+  static final int MAGIC = 0x4A525457;
+
+  /**
+   * tile number that ends the work of a worker
+   */
+  static final int END = -1;
+
+  /**
+   * samplers workers create, by the index sent to them
+   */
+  static final List<Supplier<Sampler>> SAMPLERS = List.of(GridSampler::new, JitteredSampler::new,
+      RandomSampler::new, HaltonSampler::new, SobolSampler::new);
+
+  private final Scene scene;
+  private final ImageWriter imageWriter;
+
+  private int tileSize = 32;
+  private SUPERSAMPLING_TYPE supersamplingType = SUPERSAMPLING_TYPE.ADAPTIVE;
+  private int supersamplingGridSize = 9;
+  private int adaptiveMaxRecursionLevel = 3;
+  private Sampler sampler = null;
+  private int samplesPerPixel = 0;
+  private int passes = 1;
+
+  /**
+   * tracer whose kind and settings the workers trace with, null for a
+   * BasicRayTracer of the default settings
+   */
+  private RayTracerBase rayTracer = null;
+
+  /**
+   * milliseconds a worker may take to send a tile, 0 to wait for ever - a
+   * minute by default, so a worker whose host vanished without closing the
+   * connection does not keep its tiles
+   */
+  private int leaseTimeout = 60000;
+
+  /**
+   * milliseconds the render may take, 0 to wait for ever
+   */
+  private long renderTimeout = 0;
+
+  /**
+   * whether the coordinator was closed before all the tiles were rendered
+   */
+  private volatile boolean aborted = false;
+
+  /**
+   * whether the time of the render is printed
+   */
+  private boolean print = false;
+
+  private ServerSocket server;
+  private byte[] sceneBytes;
+  private byte[] settingsBytes;
+  private int tilesX;
+
+  /**
+   * number of tiles of every pass - the tile of a lease is its number modulo the
+   * number of tiles, and its pass is the quotient
+   */
+  private int tileCount;
+  private boolean[] completed;
+  private int[] passTiles;
+  private CountDownLatch remaining;
+
+  /**
+   * average of the passes, only used with more than one pass
+   */
+  private FrameBuffer frameBuffer;
+
+  /**
+   * leases of tiles that are not leased, of the current pass
+   */
+  private final BlockingQueue<Integer> pending = new LinkedBlockingQueue<>();
+
+  private final AtomicInteger workers = new AtomicInteger();
+  private final AtomicInteger reissued = new AtomicInteger();
+
+  /**
+   * Constructor
+   *
+   * @param scene       the scene, which must be writable as a scene file
+   * @param imageWriter receives the colors of the pixels
+   */
+  public RenderCoordinator(Scene scene, ImageWriter imageWriter) {
+    this.scene = scene;
+    this.imageWriter = imageWriter;
+  }
+
+  /**
+   * set the width and height of the leased tiles
+   *
+   * @param tileSize tile size in pixels
+   * @return the RenderCoordinator object itself
+   */
+  public RenderCoordinator setTileSize(int tileSize) {
+    if (tileSize < 1)
+      throw new IllegalArgumentException("Tile size must be positive");
+    this.tileSize = tileSize;
+    return this;
+  }
+
+  /**
+   * set supersampling of the workers to NONE, SUPERSAMPLING, or ADAPTIVE
+   *
+   * @param type supersampling type
+   * @return the RenderCoordinator object itself
+   */
+  public RenderCoordinator setSupersamplingType(SUPERSAMPLING_TYPE type) {
+    this.supersamplingType = type;
+    return this;
+  }
+
+  /**
+   * set supersampling grid size of the workers
+   *
+   * @param gridSize number of rows/cols
+   * @return the RenderCoordinator object itself
+   */
+  public RenderCoordinator setSupersamplingGridSize(int gridSize) {
+    this.supersamplingGridSize = gridSize;
+    return this;
+  }
+
+  /**
+   * set adaptive supersampling max recursion level of the workers
+   *
+   * @param maxLevel maximum level of recursion
+   * @return the RenderCoordinator object itself
+   */
+  public RenderCoordinator setAdaptiveMaxRecursionLevel(int maxLevel) {
+    this.adaptiveMaxRecursionLevel = maxLevel;
+    return this;
+  }
+
+  /**
+   * set the sampler placing the supersampling rays of the workers in a pixel -
+   * null for the regular grid
+   *
+   * @param sampler the sampler, one of the samplers of the primitives package
+   * @return the RenderCoordinator object itself
+   * @throws IllegalArgumentException if workers cannot create the sampler
+   */
+  public RenderCoordinator setSampler(Sampler sampler) {
+    if (sampler != null && samplerIndex(sampler) < 0)
+      throw new IllegalArgumentException(sampler.getClass().getName() + " cannot be created by workers");
+    this.sampler = sampler;
+    return this;
+  }
+
+  /**
+   * set number of supersampling rays per pixel of the workers when a sampler is
+   * set
+   *
+   * @param count number of rays, 0 for the square of the grid size
+   * @return the RenderCoordinator object itself
+   */
+  public RenderCoordinator setSamplesPerPixel(int count) {
+    if (count < 0)
+      throw new IllegalArgumentException("Samples per pixel cannot be negative");
+    this.samplesPerPixel = count;
+    return this;
+  }
+
+  /**
+   * set the number of passes over the image, whose average is the image
+   *
+   * @param passes number of passes
+   * @return the RenderCoordinator object itself
+   */
+  public RenderCoordinator setPasses(int passes) {
+    if (passes < 1)
+      throw new IllegalArgumentException("Number of passes must be positive");
+    this.passes = passes;
+    return this;
+  }
+
+  /**
+   * set the ray tracer whose kind and settings the workers trace with - they
+   * trace the scene of the coordinator, not the scene of the tracer
+   *
+   * @param rayTracer a BasicRayTracer or a PathTracer
+   * @return the RenderCoordinator object itself
+   * @throws IllegalArgumentException if workers cannot create the tracer
+   */
+  public RenderCoordinator setRayTracer(RayTracerBase rayTracer) {
+    if (!RayTracerBase.isTransferable(rayTracer))
+      throw new IllegalArgumentException(rayTracer.getClass().getName() + " cannot be traced by workers");
+    this.rayTracer = rayTracer;
+    return this;
+  }
+
+  /**
+   * @param sampler a sampler
+   * @return index of the sampler in {@link #SAMPLERS}, or -1 if it is not there
+   */
+  private static int samplerIndex(Sampler sampler) {
+    for (int i = 0; i < SAMPLERS.size(); ++i)
+      if (SAMPLERS.get(i).get().getClass() == sampler.getClass())
+        return i;
+    return -1;
+  }
+
+  /**
+   * set the time a worker may take to send back a tile before its tiles are
+   * leased to the others
+   *
+   * @param millis milliseconds, 0 to wait for ever
+   * @return the RenderCoordinator object itself
+   */
+  public RenderCoordinator setLeaseTimeout(int millis) {
+    if (millis < 0)
+      throw new IllegalArgumentException("Lease timeout cannot be negative");
+    this.leaseTimeout = millis;
+    return this;
+  }
+
+  /**
+   * set the time the workers may take to render the image before
+   * {@link #renderImage()} gives up
+   *
+   * @param millis milliseconds, 0 to wait for ever
+   * @return the RenderCoordinator object itself
+   */
+  public RenderCoordinator setRenderTimeout(long millis) {
+    if (millis < 0)
+      throw new IllegalArgumentException("Render timeout cannot be negative");
+    this.renderTimeout = millis;
+    return this;
+  }
+
+  /**
+   * Set debug printing on
+   *
+   * @return the RenderCoordinator object itself
+   */
+  public RenderCoordinator setDebugPrint() {
+    print = true;
+    return this;
+  }
+
+  /**
+   * @return number of workers that connected
+   */
+  public int getWorkerCount() {
+    return workers.get();
+  }
+
+  /**
+   * @return number of tiles leased again after their worker was lost
+   */
+  public int getReissuedTiles() {
+    return reissued.get();
+  }
+
+  /**
+   * Write the scene file and start accepting workers
+   *
+   * @param port TCP port, 0 for any free port
+   * @return the port workers connect to
+   * @throws IOException if the scene file cannot be written or the port cannot
+   *                     be opened
+   */
+  public int listen(int port) throws IOException {
+    if (server != null)
+      throw new IllegalStateException("Coordinator already listens");
+    Path file = Files.createTempFile("scene", ".jrts");
+    try {
+      SceneFile.write(scene, file);
+      sceneBytes = Files.readAllBytes(file);
+    } finally {
+      Files.deleteIfExists(file);
+    }
+
+    int nX = imageWriter.getNx();
+    int nY = imageWriter.getNy();
+    ByteArrayOutputStream settings = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(settings);
+    out.writeInt(nX);
+    out.writeInt(nY);
+    out.writeInt(tileSize);
+    out.writeInt(passes);
+    out.writeInt(supersamplingType.ordinal());
+    out.writeInt(supersamplingGridSize);
+    out.writeInt(adaptiveMaxRecursionLevel);
+    out.writeInt(sampler == null ? -1 : samplerIndex(sampler));
+    out.writeInt(samplesPerPixel);
+    out.writeBoolean(rayTracer != null);
+    if (rayTracer != null)
+      RayTracerBase.writeRayTracer(rayTracer, out);
+    settingsBytes = settings.toByteArray();
+
+    tilesX = (nX + tileSize - 1) / tileSize;
+    tileCount = tilesX * ((nY + tileSize - 1) / tileSize);
+    completed = new boolean[tileCount * passes];
+    passTiles = new int[passes];
+    remaining = new CountDownLatch(tileCount * passes);
+    frameBuffer = passes > 1 ? new FrameBuffer(nX, nY) : null;
+    for (int i = 0; i < tileCount; ++i)
+      pending.add(i);
+
+    server = new ServerSocket(port);
+    Thread acceptor = new Thread(this::accept, "render coordinator");
+    acceptor.setDaemon(true);
+    acceptor.start();
+    return server.getLocalPort();
+  }
+
+  /**
+   * Wait until the workers rendered all the tiles of the image, then stop
+   * accepting workers
+   *
+   * @throws IllegalStateException if the coordinator does not listen, or the
+   *                               image was not rendered because the coordinator
+   *                               was closed, the render timed out or the
+   *                               waiting thread was interrupted
+   */
+  public void renderImage() {
+    if (server == null)
+      throw new IllegalStateException("Coordinator does not listen");
+    long startTime = System.currentTimeMillis();
+    boolean rendered;
+    try {
+      if (renderTimeout == 0) {
+        remaining.await();
+        rendered = true;
+      } else {
+        rendered = remaining.await(renderTimeout, TimeUnit.MILLISECONDS);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      rendered = false;
+    }
+    close();
+    if (!rendered || aborted)
+      throw new IllegalStateException("Workers did not render the image");
+    if (print)
+      System.out.println((System.currentTimeMillis() - startTime) / 1000.0 + " seconds");
+  }
+
+  /**
+   * Stop accepting workers, and end the work of the workers and a waiting
+   * {@link #renderImage()} if the image is not rendered yet
+   */
+  @Override
+  public void close() {
+    CountDownLatch latch = remaining;
+    if (latch != null && latch.getCount() > 0) {
+      aborted = true;
+      while (latch.getCount() > 0)
+        latch.countDown();
+    }
+    try {
+      if (server != null)
+        server.close();
+    } catch (IOException e) {
+      // the port is closed anyway
+    }
+  }
+
+  private void accept() {
+    try {
+      while (true) {
+        Socket socket = server.accept();
+        Thread thread = new Thread(() -> serve(socket), "render worker " + workers.incrementAndGet());
+        thread.setDaemon(true);
+        thread.start();
+      }
+    } catch (IOException e) {
+      // the coordinator was closed
+    }
+  }
+
+  /**
+   * Lease tiles to a worker until all the tiles are rendered
+   *
+   * @param socket connection to the worker
+   */
+  private void serve(Socket socket) {
+    Deque<Integer> leased = new ArrayDeque<>();
+    try (socket) {
+      socket.setSoTimeout(leaseTimeout);
+      socket.setTcpNoDelay(true);
+      DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+      DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+      if (in.readInt() != MAGIC)
+        return;
+      int capacity = 2 * Math.max(1, in.readInt());
+      out.writeInt(sceneBytes.length);
+      out.write(sceneBytes);
+      out.writeInt(settingsBytes.length);
+      out.write(settingsBytes);
+      out.flush();
+
+      while (remaining.getCount() > 0) {
+        Integer tile;
+        while (leased.size() < capacity && (tile = pending.poll()) != null) {
+          lease(out, tile);
+          leased.add(tile);
+        }
+        out.flush();
+        if (!leased.isEmpty()) {
+          receive(in, leased);
+        } else {
+          // tiles of lost workers may come back
+          tile = pending.poll(50, TimeUnit.MILLISECONDS);
+          if (tile != null) {
+            lease(out, tile);
+            leased.add(tile);
+          }
+        }
+      }
+      out.writeInt(END);
+      out.flush();
+    } catch (IOException e) {
+      // the worker was lost or too slow
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      for (Integer tile : leased) {
+        synchronized (this) {
+          if (completed[tile])
+            continue;
+        }
+        pending.add(tile);
+        reissued.incrementAndGet();
+      }
+    }
+  }
+
+  private void lease(DataOutputStream out, int lease) throws IOException {
+    int[] bounds = getTileBounds(lease % tileCount);
+    out.writeInt(lease);
+    out.writeInt(lease / tileCount);
+    for (int bound : bounds)
+      out.writeInt(bound);
+  }
+
+  /**
+   * Read a tile a worker rendered and write its colors to the image - the red,
+   * green and blue of every pixel, so passes are averaged before the colors are
+   * limited
+   */
+  private void receive(DataInputStream in, Deque<Integer> leased) throws IOException {
+    int lease = in.readInt();
+    if (!leased.contains(lease))
+      throw new IOException("Tile was not leased: " + lease);
+    int[] bounds = getTileBounds(lease % tileCount);
+    int width = bounds[2] - bounds[0];
+    byte[] bytes = new byte[24 * width * (bounds[3] - bounds[1])];
+    in.readFully(bytes);
+    leased.remove(lease);
+    DoubleBuffer pixels = ByteBuffer.wrap(bytes).asDoubleBuffer();
+    synchronized (this) {
+      // a tile leased again may come back twice
+      if (completed[lease])
+        return;
+      completed[lease] = true;
+    }
+    for (int i = bounds[1]; i < bounds[3]; ++i)
+      for (int j = bounds[0]; j < bounds[2]; ++j) {
+        Color color = new Color(pixels.get(), pixels.get(), pixels.get());
+        if (frameBuffer != null) {
+          frameBuffer.accumulate(j, i, color);
+          color = frameBuffer.getColor(j, i);
+        }
+        imageWriter.writePixel(j, i, color);
+      }
+    int pass = lease / tileCount;
+    synchronized (this) {
+      // the next pass starts once all the tiles of this pass are in the image
+      if (++passTiles[pass] == tileCount && pass + 1 < passes)
+        for (int tile = 0; tile < tileCount; ++tile)
+          pending.add((pass + 1) * tileCount + tile);
+    }
+    remaining.countDown();
+  }
+
+  /**
+   * @return first column, first row, column after the last and row after the
+   *         last of a tile
+   */
+  private int[] getTileBounds(int tile) {
+    int col = (tile % tilesX) * tileSize;
+    int row = (tile / tilesX) * tileSize;
+    return new int[] { col, row, Math.min(col + tileSize, imageWriter.getNx()),
+        Math.min(row + tileSize, imageWriter.getNy()) };
+  }
+}
@@ -0,0 +1,40 @@
+package renderer;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event of a whole render, from its start to its end
+ *
+ * @author Jonah Lawrence
+ * @author Elad Harizy
+ */
+@Name("raytracer.Render")
+@Label("Render")
+@Category({ "Ray Tracer", "Render" })
+@Description("Render of an image, from its start to its end")
+@StackTrace(false)
+class RenderEvent extends Event {
+
+  @Label("Scene")
+  String scene;
+
+  @Label("Width")
+  int width;
+
+  @Label("Height")
+  int height;
+
+  @Label("Passes")
+  int passes;
+
+  @Label("Threads")
+  int threads;
+
+  @Label("Primary Rays")
+  long rays;
+}
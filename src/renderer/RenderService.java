@@ -0,0 +1,580 @@
+package renderer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import renderer.MetricsRegistry.METRIC_TYPE;
+import renderer.RenderStatistics.RAY_TYPE;
+import scene.Scene;
+import scene.XmlSceneLoader;
+
+/**
+ * Local HTTP service that renders submitted scenes. Jobs wait in a priority
+ * queue for a fixed pool of render threads, so a burst of submissions cannot
+ * take more cores than the pool was given. Admission control refuses jobs when
+ * too many are waiting and images whose pixels do not fit the memory budget,
+ * and a job only allocates its image once the budget has room for it.
+ * <p>
+ * Requests, all on localhost:
+ * <ul>
+ * <li>POST /jobs?width=500&amp;height=500&amp;priority=0 with the scene XML -
+ * 202 and the job, 503 when too many jobs wait, 413 when the image is too
+ * large</li>
+ * <li>GET /jobs/{id} - the state and progress of the job</li>
+ * <li>GET /jobs/{id}/progress - a line of the state and progress of the job
+ * every 200 ms until it ends, on threads of their own so they do not hold up
+ * the other requests - 503 when too many are open</li>
+ * <li>GET /jobs/{id}/image - the PNG of a finished job</li>
+ * <li>GET /metrics - the metrics of the registry of the service, once
+ * {@link #registerMetrics(MetricsRegistry)} gave it one</li>
+ * </ul>
+ *
+ * @author Jonah Lawrence
+ * @author Elad Harizy
+ */
+public class RenderService implements Closeable {
+
+  /**
+   * States of a job
+   */
+  public enum State {
+    QUEUED, RUNNING, DONE, FAILED
+  }
+
+  /**
+   * A render of a scene, ordered by priority and then by submission
+   */
+  public final class Job implements Runnable, Comparable<Job> {
+    private final long id;
+    private final Scene scene;
+    private final int nX;
+    private final int nY;
+    private final int priority;
+    private final int kilobytes;
+    private volatile State state = State.QUEUED;
+    private volatile Render render;
+    private volatile RenderStatistics statistics;
+    private volatile byte[] png;
+    private volatile String error;
+
+    private Job(long id, Scene scene, int nX, int nY, int priority, int kilobytes) {
+      this.id = id;
+      this.scene = scene;
+      this.nX = nX;
+      this.nY = nY;
+      this.priority = priority;
+      this.kilobytes = kilobytes;
+    }
+
+    /**
+     * @return the number of the job
+     */
+    public long getId() {
+      return id;
+    }
+
+    /**
+     * @return the state of the job
+     */
+    public State getState() {
+      return state;
+    }
+
+    /**
+     * @return fraction of the image rendered
+     */
+    public double getProgress() {
+      if (state == State.DONE)
+        return 1;
+      Render current = render;
+      return current == null ? 0 : current.getProgress();
+    }
+
+    /**
+     * @return the PNG of the image, null until the job is done
+     */
+    public byte[] getPng() {
+      return png;
+    }
+
+    /**
+     * @return the reason the job failed, null if it did not
+     */
+    public String getError() {
+      return error;
+    }
+
+    @Override
+    public int compareTo(Job other) {
+      return priority != other.priority ? Integer.compare(other.priority, priority) : Long.compare(id, other.id);
+    }
+
+    @Override
+    public void run() {
+      try {
+        // the image is only allocated when the budget has room for it
+        memory.acquire(kilobytes);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        finish(State.FAILED, "Interrupted");
+        return;
+      }
+      running.incrementAndGet();
+      try {
+        state = State.RUNNING;
+        ImageWriter imageWriter = new ImageWriter(scene.getName(), nX, nY);
+        // the rays of every type are only counted for the metrics
+        statistics = metrics == null ? null : new RenderStatistics();
+        render = new Render().setImageWriter(imageWriter).setRayTracer(new BasicRayTracer(scene))
+            .setMultithreading(threadsPerJob).setStatistics(statistics);
+        render.renderImage();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        imageWriter.writeToStream(out);
+        png = out.toByteArray();
+        finish(State.DONE, null);
+      } catch (IOException | RuntimeException e) {
+        finish(State.FAILED, e.getMessage());
+      } finally {
+        running.decrementAndGet();
+        memory.release(kilobytes);
+      }
+    }
+
+    private void finish(State end, String reason) {
+      error = reason;
+      state = end;
+      synchronized (totals) {
+        // the counters move from the render to the totals at once
+        Render done = render;
+        if (done != null)
+          tilesDone += done.getTiles();
+        RenderStatistics counted = statistics;
+        if (counted != null)
+          for (RAY_TYPE type : RAY_TYPE.values())
+            raysDone[type.ordinal()] += counted.getRays(type);
+        render = null;
+        statistics = null;
+      }
+      admitted.decrementAndGet();
+      synchronized (finished) {
+        // the images of old jobs are dropped
+        finished.add(id);
+        while (finished.size() > maxFinished)
+          jobs.remove(finished.remove());
+      }
+    }
+
+    private String toJson() {
+      return String.format("{\"id\":%d,\"state\":\"%s\",\"progress\":%.3f%s}", id, state, getProgress(),
+          error == null ? "" : ",\"error\":\"" + error.replace("\\", "\\\\").replace("\"", "\\\"") + "\"");
+    }
+  }
+
+  private final int threadsPerJob;
+  private final ThreadPoolExecutor pool;
+
+  /**
+   * number of jobs that may be queued or running at once
+   */
+  private final int maxJobs;
+
+  /**
+   * budget of the images of running jobs, in kilobytes
+   */
+  private final Semaphore memory;
+  private final int memoryBudget;
+
+  /**
+   * number of finished jobs kept for their images
+   */
+  private int maxFinished = 32;
+
+  private final Map<Long, Job> jobs = new ConcurrentHashMap<>();
+  private final Deque<Long> finished = new ArrayDeque<>();
+  private final AtomicInteger admitted = new AtomicInteger();
+  private final AtomicInteger running = new AtomicInteger();
+
+  /**
+   * rays and tiles of the renders of the jobs that ended
+   */
+  private final Object totals = new Object();
+  private final long[] raysDone = new long[RAY_TYPE.values().length];
+  private long tilesDone = 0;
+
+  private MetricsRegistry metrics;
+  private final AtomicLong nextId = new AtomicLong(1);
+  private HttpServer server;
+
+  /**
+   * threads of the progress streams, which hold them until their jobs end
+   */
+  private ThreadPoolExecutor streams;
+
+  /**
+   * number of progress streams open at once
+   */
+  private static final int MAX_STREAMS = 32;
+
+  /**
+   * Constructor
+   *
+   * @param parallelJobs  number of jobs rendered at once
+   * @param threadsPerJob number of threads of every job
+   * @param maxQueued     number of jobs that may wait beyond the running ones
+   * @param memoryBudget  bytes the images of the running jobs may take
+   */
+  public RenderService(int parallelJobs, int threadsPerJob, int maxQueued, long memoryBudget) {
+    if (parallelJobs < 1 || threadsPerJob < 1)
+      throw new IllegalArgumentException("Number of jobs and threads must be positive");
+    if (maxQueued < 0)
+      throw new IllegalArgumentException("Number of queued jobs cannot be negative");
+    this.threadsPerJob = threadsPerJob;
+    this.maxJobs = parallelJobs + maxQueued;
+    this.memoryBudget = (int) Math.min(Integer.MAX_VALUE, memoryBudget / 1024);
+    this.memory = new Semaphore(this.memoryBudget, true);
+    AtomicInteger threadNumber = new AtomicInteger();
+    // the priority queue only orders jobs given to execute, not submit
+    pool = new ThreadPoolExecutor(parallelJobs, parallelJobs, 0, TimeUnit.MILLISECONDS,
+        new PriorityBlockingQueue<>(), r -> {
+          Thread thread = new Thread(r, "render job " + threadNumber.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        });
+  }
+
+  /**
+   * set the number of finished jobs whose images are kept
+   *
+   * @param count number of jobs
+   * @return the RenderService object itself
+   */
+  public RenderService setMaxFinishedJobs(int count) {
+    if (count < 1)
+      throw new IllegalArgumentException("Number of finished jobs must be positive");
+    this.maxFinished = count;
+    return this;
+  }
+
+  /**
+   * Register the metrics of the service, which it also serves at /metrics once
+   * started: the rays of every type and the tiles of the jobs, from which the
+   * scraper takes rays and tiles per second, the jobs running and waiting, the
+   * image memory every running job holds and the heap of the process - jobs
+   * submitted afterwards count their rays
+   *
+   * @param registry the registry
+   * @return the RenderService object itself
+   * @throws IllegalArgumentException if the registry has metrics of the names
+   */
+  public RenderService registerMetrics(MetricsRegistry registry) {
+    registry.register("raytracer_rays_total", "Rays traced by the jobs", METRIC_TYPE.COUNTER, "type", this::getRays)
+        .register("raytracer_tiles_total", "Tiles rendered by the jobs", METRIC_TYPE.COUNTER, this::getTiles)
+        .register("raytracer_jobs_active", "Jobs rendering", METRIC_TYPE.GAUGE, running::get)
+        .register("raytracer_jobs_queued", "Jobs waiting for a thread or for memory", METRIC_TYPE.GAUGE,
+            () -> Math.max(0, admitted.get() - running.get()))
+        .register("raytracer_job_heap_bytes", "Image memory of a running job", METRIC_TYPE.GAUGE, "job",
+            this::getJobBytes)
+        .register("raytracer_heap_used_bytes", "Heap used by the process", METRIC_TYPE.GAUGE,
+            () -> Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory());
+    metrics = registry;
+    return this;
+  }
+
+  /**
+   * @return rays traced by the jobs, ended and running, by the type of the rays
+   */
+  private Map<String, Long> getRays() {
+    synchronized (totals) {
+      Map<String, Long> rays = new TreeMap<>();
+      for (RAY_TYPE type : RAY_TYPE.values()) {
+        long count = raysDone[type.ordinal()];
+        for (Job job : jobs.values()) {
+          RenderStatistics current = job.statistics;
+          if (current != null)
+            count += current.getRays(type);
+        }
+        rays.put(type.name().toLowerCase(Locale.ROOT), count);
+      }
+      return rays;
+    }
+  }
+
+  /**
+   * @return tiles rendered by the jobs, ended and running
+   */
+  private long getTiles() {
+    synchronized (totals) {
+      long tiles = tilesDone;
+      for (Job job : jobs.values()) {
+        Render current = job.render;
+        if (current != null)
+          tiles += current.getTiles();
+      }
+      return tiles;
+    }
+  }
+
+  /**
+   * @return bytes of the images of the running jobs, by the numbers of the jobs
+   */
+  private Map<String, Long> getJobBytes() {
+    Map<String, Long> bytes = new TreeMap<>();
+    for (Job job : jobs.values())
+      if (job.state == State.RUNNING)
+        bytes.put(Long.toString(job.id), job.kilobytes * 1024L);
+    return bytes;
+  }
+
+  /**
+   * Queue the render of a scene
+   *
+   * @param scene    the scene, with a camera
+   * @param nX       amount of pixels by width
+   * @param nY       amount of pixels by height
+   * @param priority jobs of higher priority run first
+   * @return the job
+   * @throws RejectedExecutionException if too many jobs are queued
+   * @throws IllegalArgumentException   if the image does not fit the memory
+   *                                    budget
+   */
+  public Job submit(Scene scene, int nX, int nY, int priority) {
+    if (nX < 1 || nY < 1)
+      throw new IllegalArgumentException("Image size must be positive");
+    long kilobytes = ((long) nX * nY * 4 + 1023) / 1024;
+    if (kilobytes > memoryBudget)
+      throw new IllegalArgumentException("Image of " + nX + "x" + nY + " exceeds the memory budget");
+    if (admitted.incrementAndGet() > maxJobs) {
+      admitted.decrementAndGet();
+      throw new RejectedExecutionException("Too many jobs are queued");
+    }
+    Job job = new Job(nextId.getAndIncrement(), scene, nX, nY, priority, (int) kilobytes);
+    jobs.put(job.id, job);
+    pool.execute(job);
+    return job;
+  }
+
+  /**
+   * @param id number of a job
+   * @return the job, or null if there is no such job or it was dropped
+   */
+  public Job getJob(long id) {
+    return jobs.get(id);
+  }
+
+  /**
+   * Start serving requests on localhost
+   *
+   * @param port TCP port, 0 for any free port
+   * @return the port of the service
+   * @throws IOException if the port cannot be opened
+   */
+  public int start(int port) throws IOException {
+    server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+    server.createContext("/jobs", this::handle);
+    if (metrics != null)
+      server.createContext("/metrics", new MetricsExporter(metrics));
+    server.setExecutor(Executors.newFixedThreadPool(8, r -> {
+      Thread thread = new Thread(r, "render service");
+      thread.setDaemon(true);
+      return thread;
+    }));
+    streams = new ThreadPoolExecutor(0, MAX_STREAMS, 60, TimeUnit.SECONDS, new SynchronousQueue<>(), r -> {
+      Thread thread = new Thread(r, "progress stream");
+      thread.setDaemon(true);
+      return thread;
+    });
+    server.start();
+    return server.getAddress().getPort();
+  }
+
+  @Override
+  public void close() {
+    if (server != null) {
+      server.stop(0);
+      ((ExecutorService) server.getExecutor()).shutdownNow();
+      streams.shutdownNow();
+    }
+    pool.shutdownNow();
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    boolean streaming = false;
+    try {
+      URI uri = exchange.getRequestURI();
+      String[] path = uri.getPath().replaceAll("/+$", "").split("/");
+      String method = exchange.getRequestMethod();
+      if (path.length == 2 && "POST".equals(method)) {
+        handleSubmit(exchange, parseQuery(uri.getRawQuery()));
+        return;
+      }
+      Job job = null;
+      if (path.length >= 3 && "GET".equals(method)) {
+        try {
+          job = jobs.get(Long.parseLong(path[2]));
+        } catch (NumberFormatException e) {
+          // no such job
+        }
+      }
+      if (job == null) {
+        send(exchange, 404, "Not found");
+      } else if (path.length == 3) {
+        send(exchange, 200, job.toJson());
+      } else if (path.length == 4 && "progress".equals(path[3])) {
+        streaming = startProgress(exchange, job);
+      } else if (path.length == 4 && "image".equals(path[3])) {
+        byte[] png = job.getPng();
+        if (png == null) {
+          send(exchange, 409, job.toJson());
+        } else {
+          exchange.getResponseHeaders().set("Content-Type", "image/png");
+          exchange.sendResponseHeaders(200, png.length);
+          exchange.getResponseBody().write(png);
+        }
+      } else {
+        send(exchange, 404, "Not found");
+      }
+    } finally {
+      // a progress stream closes its exchange when it ends
+      if (!streaming)
+        exchange.close();
+    }
+  }
+
+  /**
+   * Stream the progress of a job on a thread of the progress streams
+   *
+   * @return true if the stream started, false if too many are open
+   */
+  private boolean startProgress(HttpExchange exchange, Job job) throws IOException {
+    try {
+      streams.execute(() -> {
+        try (exchange) {
+          streamProgress(exchange, job);
+        } catch (IOException e) {
+          // the client went away
+        }
+      });
+      return true;
+    } catch (RejectedExecutionException e) {
+      exchange.getResponseHeaders().set("Retry-After", "1");
+      send(exchange, 503, "Too many progress streams");
+      return false;
+    }
+  }
+
+  private void handleSubmit(HttpExchange exchange, Map<String, String> query) throws IOException {
+    Job job;
+    try (InputStream in = exchange.getRequestBody()) {
+      int nX = Integer.parseInt(query.getOrDefault("width", "500"));
+      int nY = Integer.parseInt(query.getOrDefault("height", "500"));
+      int priority = Integer.parseInt(query.getOrDefault("priority", "0"));
+      if ((long) nX * nY * 4 > (long) memoryBudget * 1024) {
+        send(exchange, 413, "Image exceeds the memory budget");
+        return;
+      }
+      Scene scene = new XmlSceneLoader().load(in, query.getOrDefault("name", "job"));
+      if (scene.getCamera() == null)
+        throw new IllegalArgumentException("Scene has no camera");
+      job = submit(scene, nX, nY, priority);
+    } catch (IllegalArgumentException e) {
+      send(exchange, 400, e.getMessage());
+      return;
+    } catch (RejectedExecutionException e) {
+      exchange.getResponseHeaders().set("Retry-After", "1");
+      send(exchange, 503, e.getMessage());
+      return;
+    }
+    exchange.getResponseHeaders().set("Location", "/jobs/" + job.getId());
+    send(exchange, 202, job.toJson());
+  }
+
+  private static void streamProgress(HttpExchange exchange, Job job) throws IOException {
+    exchange.getResponseHeaders().set("Content-Type", "text/plain");
+    exchange.sendResponseHeaders(200, 0);
+    OutputStream out = exchange.getResponseBody();
+    while (true) {
+      State state = job.getState();
+      out.write(String.format("%s %.1f%%%n", state, 100 * job.getProgress()).getBytes(StandardCharsets.US_ASCII));
+      out.flush();
+      if (state == State.DONE || state == State.FAILED)
+        return;
+      try {
+        Thread.sleep(200);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+    }
+  }
+
+  private static void send(HttpExchange exchange, int status, String body) throws IOException {
+    byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().set("Content-Type",
+        body.startsWith("{") ? "application/json" : "text/plain; charset=utf-8");
+    exchange.sendResponseHeaders(status, bytes.length);
+    exchange.getResponseBody().write(bytes);
+  }
+
+  private static Map<String, String> parseQuery(String query) {
+    Map<String, String> parameters = new HashMap<>();
+    if (query != null)
+      for (String parameter : query.split("&")) {
+        int equals = parameter.indexOf('=');
+        if (equals > 0)
+          parameters.put(parameter.substring(0, equals), parameter.substring(equals + 1));
+      }
+    return parameters;
+  }
+
+  /**
+   * Run the service until the process is stopped
+   *
+   * @param args the port, 8080 by default, and a file to write the metrics to
+   *             every 15 seconds, if they are written
+   * @throws IOException if the port cannot be opened
+   */
+  public static void main(String[] args) throws IOException {
+    int cores = Runtime.getRuntime().availableProcessors();
+    MetricsRegistry registry = new MetricsRegistry();
+    RenderService service = new RenderService(1, Math.max(1, cores - 2), 16,
+        Runtime.getRuntime().maxMemory() / 2).registerMetrics(registry);
+    if (args.length > 1)
+      new MetricsExporter(registry).writeTo(Path.of(args[1]), 15000);
+    int port = service.start(args.length > 0 ? Integer.parseInt(args[0]) : 8080);
+    System.out.println("Render service on http://localhost:" + port + "/jobs");
+    // the threads of the service are daemons
+    try {
+      Thread.currentThread().join();
+    } catch (InterruptedException e) {
+      service.close();
+    }
+  }
+}
@@ -0,0 +1,225 @@
+package renderer;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import geometries.IntersectionCounter;
+import geometries.Intersectable;
+
+/**
+ * Counters of the work of a render: the rays traced by their type, the
+ * intersection tests by the type of the geometry, the visited nodes of the
+ * bounding volume hierarchies and the subdivisions of adaptive supersampling.
+ * The threads of the render count without contention, and the counters may be
+ * read while the render runs or after it, until the next render of the same
+ * statistics starts them again
+ *
+ * @author Jonah Lawrence
+ * @author Elad Harizy
+ */
+public class RenderStatistics extends IntersectionCounter {
+
+  /**
+   * Types of the rays that are counted
+   */
+  public enum RAY_TYPE {
+    PRIMARY, SHADOW, REFLECTION, REFRACTION
+  }
+
+  private final LongAdder[] rays = new LongAdder[RAY_TYPE.values().length];
+  private final LongAdder nodeVisits = new LongAdder();
+  private final Map<Class<? extends Intersectable>, LongAdder> tests = new ConcurrentHashMap<>();
+
+  /**
+   * pixels colored, their adaptive subdivisions and the most of one pixel
+   */
+  private final LongAdder pixels = new LongAdder();
+  private final LongAdder subdivisions = new LongAdder();
+  private final LongAccumulator maxSubdivisions = new LongAccumulator(Math::max, 0);
+
+  /**
+   * subdivisions of the pixel every thread colors
+   */
+  private final ThreadLocal<int[]> pixelSubdivisions = ThreadLocal.withInitial(() -> new int[1]);
+
+  private volatile long startTime = 0;
+  private volatile long endTime = 0;
+
+  /**
+   * Constructor
+   */
+  public RenderStatistics() {
+    for (int i = 0; i < rays.length; ++i)
+      rays[i] = new LongAdder();
+  }
+
+  /**
+   * Start counting a render from zero - called by the renderer
+   */
+  void begin() {
+    for (LongAdder counter : rays)
+      counter.reset();
+    nodeVisits.reset();
+    tests.clear();
+    pixels.reset();
+    subdivisions.reset();
+    maxSubdivisions.reset();
+    endTime = 0;
+    startTime = System.nanoTime();
+  }
+
+  /**
+   * Stop the clock of the render - called by the renderer
+   */
+  void end() {
+    endTime = System.nanoTime();
+  }
+
+  /**
+   * Count a traced ray
+   *
+   * @param type type of the ray
+   */
+  void countRay(RAY_TYPE type) {
+    rays[type.ordinal()].increment();
+  }
+
+  /**
+   * Count a subdivision of a cell of the pixel the current thread colors
+   */
+  void countSubdivision() {
+    subdivisions.increment();
+    ++pixelSubdivisions.get()[0];
+  }
+
+  /**
+   * Count a colored pixel, ending the subdivisions of the current thread's pixel
+   */
+  void countPixel() {
+    pixels.increment();
+    int[] count = pixelSubdivisions.get();
+    if (count[0] > 0) {
+      maxSubdivisions.accumulate(count[0]);
+      count[0] = 0;
+    }
+  }
+
+  @Override
+  public void nodesVisited(int count) {
+    nodeVisits.add(count);
+  }
+
+  @Override
+  public void tested(Class<? extends Intersectable> type, int count) {
+    tests.computeIfAbsent(type, t -> new LongAdder()).add(count);
+  }
+
+  /**
+   * @param type type of rays
+   * @return number of rays of the type traced
+   */
+  public long getRays(RAY_TYPE type) {
+    return rays[type.ordinal()].sum();
+  }
+
+  /**
+   * @return number of rays of all the types traced
+   */
+  public long getTotalRays() {
+    long total = 0;
+    for (LongAdder counter : rays)
+      total += counter.sum();
+    return total;
+  }
+
+  /**
+   * @return number of bounding volume hierarchy nodes the rays visited
+   */
+  public long getNodeVisits() {
+    return nodeVisits.sum();
+  }
+
+  /**
+   * @param type type of geometries
+   * @return number of intersection tests of rays with geometries of the type
+   */
+  public long getIntersectionTests(Class<? extends Intersectable> type) {
+    LongAdder counter = tests.get(type);
+    return counter == null ? 0 : counter.sum();
+  }
+
+  /**
+   * @return number of intersection tests by the simple name of the type of the
+   *         geometries
+   */
+  public Map<String, Long> getIntersectionTests() {
+    Map<String, Long> result = new TreeMap<>();
+    tests.forEach((type, counter) -> result.merge(type.getSimpleName(), counter.sum(), Long::sum));
+    return result;
+  }
+
+  /**
+   * @return number of pixels colored
+   */
+  public long getPixels() {
+    return pixels.sum();
+  }
+
+  /**
+   * @return number of cells adaptive supersampling subdivided
+   */
+  public long getSubdivisions() {
+    return subdivisions.sum();
+  }
+
+  /**
+   * @return average number of adaptive subdivisions of a pixel
+   */
+  public double getSubdivisionsPerPixel() {
+    long count = pixels.sum();
+    return count == 0 ? 0 : subdivisions.sum() / (double) count;
+  }
+
+  /**
+   * @return most adaptive subdivisions of a single pixel
+   */
+  public long getMaxSubdivisions() {
+    return maxSubdivisions.get();
+  }
+
+  /**
+   * @return seconds since the render started, or that it took once it ended
+   */
+  public double getSeconds() {
+    long start = startTime;
+    if (start == 0)
+      return 0;
+    long end = endTime;
+    return ((end == 0 ? System.nanoTime() : end) - start) / 1e9;
+  }
+
+  /**
+   * @return rays of all the types traced per second
+   */
+  public double getRaysPerSecond() {
+    double seconds = getSeconds();
+    return seconds > 0 ? getTotalRays() / seconds : 0;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder result = new StringBuilder();
+    result.append(String.format("%.3f seconds, %d pixels%n", getSeconds(), getPixels()));
+    for (RAY_TYPE type : RAY_TYPE.values())
+      result.append(String.format("%s rays: %d%n", type.name().toLowerCase(), getRays(type)));
+    result.append(String.format("rays per second: %.0f%n", getRaysPerSecond()));
+    result.append(String.format("node visits: %d%n", getNodeVisits()));
+    getIntersectionTests().forEach((type, count) -> result.append(String.format("%s tests: %d%n", type, count)));
+    result.append(String.format("adaptive subdivisions: %d, %.2f per pixel, at most %d%n", getSubdivisions(),
+        getSubdivisionsPerPixel(), getMaxSubdivisions()));
+    return result.toString();
+  }
+}
@@ -0,0 +1,201 @@
+package renderer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import primitives.Color;
+import renderer.Render.SUPERSAMPLING_TYPE;
+import scene.CompiledScene;
+import scene.SceneFile;
+
+/**
+ * Renders the tiles a render coordinator leases to it. A worker connects to the
+ * coordinator, receives the scene file, the render settings and the kind and
+ * settings of the ray tracer once, and then renders the leased tiles on its
+ * threads and sends back their colors until the coordinator ends the work. Workers run in their own processes:
+ *
+ * <pre>
+ * java renderer.RenderWorker host port [threads]
+ * </pre>
+ *
+ * @author Jonah Lawrence
+ * @author Elad Harizy
+ */
+public class RenderWorker {
+
+  private final int threads;
+
+  /**
+   * Colors of the tiles a worker renders, kept apart so threads write to their
+   * own tiles without an image of the whole size
+   */
+  private static final class TileWriter extends ImageWriter {
+    private final int tileSize;
+    private final int tilesX;
+
+    /**
+     * red, green and blue of the pixels of the tiles being rendered
+     */
+    private final AtomicReferenceArray<double[]> tiles;
+
+    private TileWriter(int nX, int nY, int tileSize) {
+      super("tiles", nX, nY, null);
+      this.tileSize = tileSize;
+      tilesX = (nX + tileSize - 1) / tileSize;
+      tiles = new AtomicReferenceArray<>(tilesX * ((nY + tileSize - 1) / tileSize));
+    }
+
+    @Override
+    public void writePixel(int xIndex, int yIndex, Color color) {
+      int col = xIndex / tileSize;
+      double[] tile = tiles.get((yIndex / tileSize) * tilesX + col);
+      int width = Math.min(tileSize, getNx() - col * tileSize);
+      int pixel = 3 * ((yIndex % tileSize) * width + xIndex % tileSize);
+      tile[pixel] = color.getRed();
+      tile[pixel + 1] = color.getGreen();
+      tile[pixel + 2] = color.getBlue();
+    }
+
+    /**
+     * Tiles are sent to the coordinator, so there is no file
+     *
+     * @return null, as for an image that cannot be written
+     */
+    @Override
+    public File writeToImage() {
+      return null;
+    }
+  }
+
+  /**
+   * Constructor
+   *
+   * @param threads number of tiles rendered at once
+   */
+  public RenderWorker(int threads) {
+    if (threads < 1)
+      throw new IllegalArgumentException("Number of threads must be positive");
+    this.threads = threads;
+  }
+
+  /**
+   * Render the tiles a coordinator leases until it ends the work
+   *
+   * @param host host of the coordinator
+   * @param port port of the coordinator
+   * @return number of tiles rendered
+   * @throws IOException if the connection to the coordinator is lost
+   */
+  public int run(String host, int port) throws IOException {
+    try (Socket socket = new Socket(host, port)) {
+      socket.setTcpNoDelay(true);
+      DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+      DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+      out.writeInt(RenderCoordinator.MAGIC);
+      out.writeInt(threads);
+      out.flush();
+
+      byte[] sceneBytes = new byte[in.readInt()];
+      in.readFully(sceneBytes);
+      // meshes are mapped from the file, which is removed when the worker ends
+      Path file = Files.createTempFile("scene", ".jrts");
+      file.toFile().deleteOnExit();
+      Files.write(file, sceneBytes);
+      CompiledScene scene = SceneFile.read(file).compile();
+      // the settings are read one by one, their length is for other readers
+      in.readInt();
+      int nX = in.readInt();
+      int nY = in.readInt();
+      int tileSize = in.readInt();
+      TileWriter writer = new TileWriter(nX, nY, tileSize);
+      Render render = new Render() //
+          .setPasses(in.readInt()) //
+          .setSupersamplingType(SUPERSAMPLING_TYPE.values()[in.readInt()]) //
+          .setSupersamplingGridSize(in.readInt()) //
+          .setAdaptiveMaxRecursionLevel(in.readInt()) //
+          .setImageWriter(writer);
+      int sampler = in.readInt();
+      if (sampler >= 0)
+        render.setSampler(RenderCoordinator.SAMPLERS.get(sampler).get());
+      render.setSamplesPerPixel(in.readInt());
+      render.setRayTracer(in.readBoolean() ? RayTracerBase.readRayTracer(in, scene) : new BasicRayTracer(scene));
+      render.beginRegions();
+
+      AtomicInteger rendered = new AtomicInteger();
+      IOException[] failure = new IOException[1];
+      ExecutorService pool = Executors.newFixedThreadPool(threads);
+      try {
+        for (int tile = in.readInt(); tile != RenderCoordinator.END; tile = in.readInt()) {
+          final int index = tile;
+          int pass = in.readInt();
+          // the tiles of the pass before are sent back before this one is leased
+          render.beginPass(pass);
+          final int fromCol = in.readInt();
+          final int fromRow = in.readInt();
+          final int toCol = in.readInt();
+          final int toRow = in.readInt();
+          pool.execute(() -> {
+            double[] pixels = new double[3 * (toCol - fromCol) * (toRow - fromRow)];
+            int slot = (fromRow / tileSize) * writer.tilesX + fromCol / tileSize;
+            writer.tiles.set(slot, pixels);
+            render.renderRegion(fromCol, fromRow, toCol, toRow);
+            writer.tiles.set(slot, null);
+            ByteBuffer bytes = ByteBuffer.allocate(8 * pixels.length);
+            bytes.asDoubleBuffer().put(pixels);
+            try {
+              synchronized (out) {
+                out.writeInt(index);
+                out.write(bytes.array());
+                out.flush();
+              }
+              rendered.incrementAndGet();
+            } catch (IOException e) {
+              failure[0] = e;
+            }
+          });
+        }
+      } finally {
+        pool.shutdown();
+        try {
+          pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      if (failure[0] != null)
+        throw failure[0];
+      return rendered.get();
+    }
+  }
+
+  /**
+   * Run a worker in its own process
+   *
+   * @param args host and port of the coordinator, and optionally the number of
+   *             threads - all the cores but 2 by default
+   * @throws IOException if the connection to the coordinator is lost
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length < 2) {
+      System.err.println("Usage: java renderer.RenderWorker host port [threads]");
+      System.exit(2);
+    }
+    int threads = args.length > 2 ? Integer.parseInt(args[2])
+        : Math.max(1, Runtime.getRuntime().availableProcessors() - 2);
+    int tiles = new RenderWorker(threads).run(args[0], Integer.parseInt(args[1]));
+    System.out.println(tiles + " tiles rendered");
+  }
+}
@@ -0,0 +1,228 @@
+package renderer;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+import elements.Camera;
+import geometries.Intersectable.GeoPoint;
+import primitives.Color;
+import primitives.Material;
+import primitives.Point3D;
+import primitives.Vector;
+
+/**
+ * Reuse of the colors of the previous frame of a camera moving through a static
+ * scene. Every pixel keeps the point its ray hit and its color. A pixel of the
+ * next frame that hits a point which the previous camera saw in the pixel it
+ * projects to takes the color of that pixel instead of being shaded. Points
+ * that were hidden in the previous frame, and surfaces that reflect, refract or
+ * shine and so look different from another place, are shaded anew
+ *
+ * @author Jonah Lawrence
+ * @author Elad Harizy
+ */
+public class Reprojection {
+
+  /**
+   * difference of the depths of the point of a pixel and of the point of the
+   * previous frame that it may take the color of, relative to the depth
+   */
+  private static final double TOLERANCE = 0.02;
+
+  private final int nX;
+  private final int nY;
+
+  /**
+   * number of frames a color is reused before the pixel is shaded anew, so errors
+   * of resampling do not pile up
+   */
+  private int maxAge = 8;
+
+  /**
+   * cameras of the previous frame, null if there is none, and of the current one
+   */
+  private Camera previousCamera;
+  private Camera currentCamera;
+
+  /**
+   * points and colors of the previous frame and of the current one
+   */
+  private Frame previous;
+  private Frame current;
+
+  private final LongAdder reused = new LongAdder();
+
+  /**
+   * Points, colors and ages of the pixels of a frame
+   */
+  private static final class Frame {
+    /**
+     * x, y, z of the point of every pixel, NaN if the pixel cannot be reused
+     */
+    private final float[] points;
+
+    /**
+     * red, green and blue of every pixel
+     */
+    private final float[] colors;
+
+    /**
+     * number of frames the color of every pixel was reused
+     */
+    private final int[] ages;
+
+    private Frame(int pixels) {
+      points = new float[3 * pixels];
+      colors = new float[3 * pixels];
+      ages = new int[pixels];
+    }
+  }
+
+  /**
+   * Constructor
+   *
+   * @param nX amount of pixels by width
+   * @param nY amount of pixels by height
+   */
+  public Reprojection(int nX, int nY) {
+    this.nX = nX;
+    this.nY = nY;
+    previous = new Frame(nX * nY);
+    current = new Frame(nX * nY);
+  }
+
+  /**
+   * @return the amount of pixels by width
+   */
+  public int getNx() {
+    return nX;
+  }
+
+  /**
+   * @return the amount of pixels by height
+   */
+  public int getNy() {
+    return nY;
+  }
+
+  /**
+   * set the number of frames a color is reused before the pixel is shaded anew
+   *
+   * @param frames number of frames
+   * @return the Reprojection object itself
+   */
+  public Reprojection setMaxAge(int frames) {
+    if (frames < 0)
+      throw new IllegalArgumentException("Age cannot be negative");
+    this.maxAge = frames;
+    return this;
+  }
+
+  /**
+   * @return number of pixels of the current frame that took the color of the
+   *         previous frame
+   */
+  public long getReusedPixels() {
+    return reused.sum();
+  }
+
+  /**
+   * Forget the previous frames, such as after the scene changed
+   */
+  public void reset() {
+    currentCamera = null;
+  }
+
+  /**
+   * Start a frame, the frame before becomes the previous frame - called by the
+   * renderer
+   *
+   * @param camera camera of the frame
+   */
+  void beginFrame(Camera camera) {
+    Frame swap = previous;
+    previous = current;
+    current = swap;
+    Arrays.fill(current.points, Float.NaN);
+    previousCamera = currentCamera;
+    currentCamera = camera;
+    reused.reset();
+  }
+
+  /**
+   * Find the color of a pixel in the previous frame
+   *
+   * @param col pixel's column number
+   * @param row pixel's row number
+   * @param hit closest point of the ray of the pixel, null if it hits nothing
+   * @return the color, or null if the pixel must be shaded
+   */
+  Color reuse(int col, int row, GeoPoint hit) {
+    if (previousCamera == null || hit == null || !isViewIndependent(hit))
+      return null;
+    Point3D point = hit.point;
+    Point3D origin = previousCamera.getOrigin();
+    Vector v = point.subtract(origin);
+    double depth = v.dotProduct(previousCamera.getVTo());
+    if (depth <= 0)
+      return null;
+    // pixel of the previous view plane the point is seen through
+    Vector vRight = previousCamera.getVTo().crossProduct(previousCamera.getVUp());
+    double scale = previousCamera.getDistance() / depth;
+    double x = v.dotProduct(vRight) * scale / (previousCamera.getWidth() / nX) + (nX - 1) / 2.0;
+    double y = -v.dotProduct(previousCamera.getVUp()) * scale / (previousCamera.getHeight() / nY) + (nY - 1) / 2.0;
+    int j = (int) Math.round(x);
+    int i = (int) Math.round(y);
+    if (j < 0 || j >= nX || i < 0 || i >= nY)
+      return null;
+    int pixel = i * nX + j;
+    if (previous.ages[pixel] >= maxAge)
+      return null;
+    // the previous camera saw a point of another depth there - the point was
+    // hidden, such as behind an object the camera moved around
+    Vector vTo = previousCamera.getVTo();
+    Point3D to = vTo.getHead();
+    double previousDepth = (previous.points[3 * pixel] - origin.getX()) * to.getX()
+        + (previous.points[3 * pixel + 1] - origin.getY()) * to.getY()
+        + (previous.points[3 * pixel + 2] - origin.getZ()) * to.getZ();
+    if (!(Math.abs(previousDepth - depth) <= TOLERANCE * depth))
+      return null;
+    store(col, row, point, previous.colors[3 * pixel], previous.colors[3 * pixel + 1], previous.colors[3 * pixel + 2],
+        previous.ages[pixel] + 1);
+    reused.increment();
+    return new Color(previous.colors[3 * pixel], previous.colors[3 * pixel + 1], previous.colors[3 * pixel + 2]);
+  }
+
+  /**
+   * Keep the color of a shaded pixel for the next frame
+   *
+   * @param col   pixel's column number
+   * @param row   pixel's row number
+   * @param hit   closest point of the ray of the pixel, null if it hits nothing
+   * @param color the color of the pixel
+   */
+  void store(int col, int row, GeoPoint hit, Color color) {
+    if (hit != null && isViewIndependent(hit))
+      store(col, row, hit.point, (float) color.getRed(), (float) color.getGreen(), (float) color.getBlue(), 0);
+  }
+
+  private void store(int col, int row, Point3D point, float red, float green, float blue, int age) {
+    int pixel = row * nX + col;
+    current.points[3 * pixel] = (float) point.getX();
+    current.points[3 * pixel + 1] = (float) point.getY();
+    current.points[3 * pixel + 2] = (float) point.getZ();
+    current.colors[3 * pixel] = red;
+    current.colors[3 * pixel + 1] = green;
+    current.colors[3 * pixel + 2] = blue;
+    current.ages[pixel] = age;
+  }
+
+  /**
+   * Check whether a point looks the same from everywhere - diffuse and emitting
+   * surfaces do, reflecting, refracting and shining ones do not
+   */
+  private static boolean isViewIndependent(GeoPoint hit) {
+    Material material = hit.geometry.getMaterial();
+    return material.kS == 0 && material.kR == 0 && material.kT == 0;
+  }
+}
@@ -0,0 +1,41 @@
+package renderer;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event of a rectangle of pixels a thread rendered - a tile of
+ * a tiled render, or the pixels of a row a thread took one after the other
+ *
+ * @author Jonah Lawrence
+ * @author Elad Harizy
+ */
+@Name("raytracer.Tile")
+@Label("Tile")
+@Category({ "Ray Tracer", "Render" })
+@Description("Pixels a thread rendered one after the other")
+@StackTrace(false)
+class TileEvent extends Event {
+
+  @Label("First Column")
+  int fromCol;
+
+  @Label("First Row")
+  int fromRow;
+
+  @Label("Column After the Last")
+  int toCol;
+
+  @Label("Row After the Last")
+  int toRow;
+
+  @Label("Pass")
+  int pass;
+
+  @Label("Primary Rays")
+  long rays;
+}
@@ -0,0 +1,245 @@
+package renderer;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import geometries.BoundingVolumeHierarchy;
+
+/**
+ * Timeline of what the threads of renders did - the tiles they rendered, the
+ * hierarchies they built, the images they encoded and the files they wrote - as
+ * spans in a ring buffer of fixed size, which keeps the latest spans once it is
+ * full. The timeline is written in the JSON trace format of Chrome, which
+ * Perfetto and chrome://tracing show with a track per thread.
+ * <p>
+ * A started recorder receives the builds of all the hierarchies and the encodes
+ * and writes of all the images and checkpoints, a render it is set for adds its
+ * tiles and writes the timeline to the file of the recorder when it ends.
+ *
+ * @author Jonah Lawrence
+ * @author Elad Harizy
+ */
+public class TraceRecorder implements BoundingVolumeHierarchy.BuildListener {
+
+  /**
+   * the started recorder, or null
+   */
+  private static volatile TraceRecorder current = null;
+
+  private final int capacity;
+  private final long[] starts;
+  private final long[] ends;
+  private final long[] threads;
+  private final String[] names;
+  private final String[] categories;
+  private final String[] details;
+
+  /**
+   * number of spans recorded since the recorder was created
+   */
+  private final AtomicLong next = new AtomicLong();
+  private final Map<Long, String> threadNames = new ConcurrentHashMap<>();
+
+  /**
+   * time of the origin of the timeline
+   */
+  private final long origin = System.nanoTime();
+
+  private Path file;
+  private final Logger logger = Logger.getLogger("TraceRecorder");
+
+  /**
+   * Constructor
+   *
+   * @param capacity number of latest spans kept
+   */
+  public TraceRecorder(int capacity) {
+    if (capacity < 1)
+      throw new IllegalArgumentException("Capacity must be positive");
+    this.capacity = capacity;
+    starts = new long[capacity];
+    ends = new long[capacity];
+    threads = new long[capacity];
+    names = new String[capacity];
+    categories = new String[capacity];
+    details = new String[capacity];
+  }
+
+  /**
+   * set the file the timeline is written to when a render ends
+   *
+   * @param file the file, null to write it only by {@link #writeJson(Path)}
+   * @return the TraceRecorder object itself
+   */
+  public TraceRecorder setFile(Path file) {
+    this.file = file;
+    return this;
+  }
+
+  /**
+   * Start receiving the builds of hierarchies and the encodes and writes of
+   * images and checkpoints, instead of the recorder that was started before
+   *
+   * @return the TraceRecorder object itself
+   */
+  public TraceRecorder start() {
+    current = this;
+    BoundingVolumeHierarchy.setBuildListener(this);
+    return this;
+  }
+
+  /**
+   * Stop receiving the builds, encodes and writes, if the recorder is started
+   */
+  public void stop() {
+    if (current == this) {
+      current = null;
+      BoundingVolumeHierarchy.setBuildListener(null);
+    }
+  }
+
+  /**
+   * @return the started recorder, or null
+   */
+  static TraceRecorder current() {
+    return current;
+  }
+
+  /**
+   * Record a span of the current thread
+   *
+   * @param name       name of the span
+   * @param category   category of the span, such as render or io
+   * @param startNanos value of {@link System#nanoTime()} when the span started
+   * @param endNanos   value of {@link System#nanoTime()} when the span ended
+   * @param detail     details shown with the span, or null
+   */
+  public void record(String name, String category, long startNanos, long endNanos, String detail) {
+    Thread thread = Thread.currentThread();
+    long id = thread.getId();
+    if (!threadNames.containsKey(id))
+      threadNames.put(id, thread.getName());
+    int slot = (int) (next.getAndIncrement() % capacity);
+    starts[slot] = startNanos;
+    ends[slot] = endNanos;
+    threads[slot] = id;
+    names[slot] = name;
+    categories[slot] = category;
+    details[slot] = detail;
+  }
+
+  @Override
+  public void built(long startNanos, long endNanos, int primitives, boolean refit) {
+    record(refit ? "hierarchy refit" : "hierarchy build", "build", startNanos, endNanos, primitives + " primitives");
+  }
+
+  /**
+   * @return number of spans kept
+   */
+  public int getSpanCount() {
+    return (int) Math.min(next.get(), capacity);
+  }
+
+  /**
+   * @return number of spans the newer ones replaced
+   */
+  public long getDroppedSpans() {
+    return Math.max(0, next.get() - capacity);
+  }
+
+  /**
+   * Write the timeline to the file of the recorder, if it has one - called by
+   * the renderer when a render ends
+   */
+  void dump() {
+    if (file == null)
+      return;
+    try {
+      writeJson(file);
+    } catch (IOException e) {
+      // the render is done, only its timeline is lost
+      logger.log(Level.WARNING, "Trace cannot be written", e);
+    }
+  }
+
+  /**
+   * Write the timeline to a temporary file that then replaces the file, after
+   * the spans that are recorded are finished
+   *
+   * @param path the file
+   * @throws IOException if the file cannot be written
+   */
+  public void writeJson(Path path) throws IOException {
+    Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+    try (OutputStream out = Files.newOutputStream(temporary)) {
+      writeJson(out);
+    }
+    Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * Write the timeline in the JSON trace format, with a complete event of every
+   * span and the names of the threads
+   *
+   * @param out the stream, which is not closed
+   * @throws IOException if the stream cannot be written
+   */
+  public void writeJson(OutputStream out) throws IOException {
+    Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+    writer.write("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[");
+    boolean first = true;
+    for (Map.Entry<Long, String> thread : threadNames.entrySet()) {
+      writer.write(first ? "\n" : ",\n");
+      first = false;
+      writer.write("{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":" + thread.getKey()
+          + ",\"args\":{\"name\":" + quote(thread.getValue()) + "}}");
+    }
+    long count = next.get();
+    // the oldest span kept is the one after the newest
+    for (long index = Math.max(0, count - capacity); index < count; ++index) {
+      int slot = (int) (index % capacity);
+      writer.write(first ? "\n" : ",\n");
+      first = false;
+      writer.write(String.format(Locale.ROOT,
+          "{\"name\":%s,\"cat\":%s,\"ph\":\"X\",\"pid\":1,\"tid\":%d,\"ts\":%.3f,\"dur\":%.3f",
+          quote(names[slot]), quote(categories[slot]), threads[slot], (starts[slot] - origin) / 1000.0,
+          (ends[slot] - starts[slot]) / 1000.0));
+      if (details[slot] != null)
+        writer.write(",\"args\":{\"detail\":" + quote(details[slot]) + "}");
+      writer.write("}");
+    }
+    writer.write("\n]}\n");
+    writer.flush();
+  }
+
+  /**
+   * @param text the text
+   * @return the text as a JSON string
+   */
+  private static String quote(String text) {
+    StringBuilder result = new StringBuilder("\"");
+    for (int i = 0; i < text.length(); ++i) {
+      char c = text.charAt(i);
+      if (c == '"' || c == '\\')
+        result.append('\\').append(c);
+      else if (c < 0x20)
+        result.append(String.format("\\u%04x", (int) c));
+      else
+        result.append(c);
+    }
+    return result.append('"').toString();
+  }
+}
@@ -0,0 +1,264 @@
+package scene;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import elements.Camera;
+import elements.DirectionalLight;
+import elements.LightSource;
+import elements.PointLight;
+import elements.SpotLight;
+import geometries.Geometries;
+import geometries.Geometry;
+import geometries.Instance;
+import geometries.Intersectable;
+import primitives.Color;
+import primitives.Material;
+import primitives.Ray;
+
+/**
+ * Frozen snapshot of a scene for rendering, made by {@link Scene#compile()}.
+ * The geometries are flattened into an array of copies that share their shapes
+ * with the scene, with a hierarchy over their bounds, the materials into a
+ * table of copies and the lights into an array of copies, so changes to the
+ * scene after compiling do not reach the snapshot and any number of renders can
+ * share it without locks. An instance is copied with its place and a copy of
+ * its geometry, one copy for all the instances of the geometry - the
+ * geometries of an instanced composite are shared with the scene
+ *
+ * @author Jonah Lawrence
+ * @author Elad Harizy
+ */
+public final class CompiledScene implements Intersectable {
+
+  /**
+   * Receives the rays that are intersected with a compiled scene and the
+   * geometries they intersect, such as to find the pixels that an edit of a
+   * geometry changes
+   */
+  public interface Recorder {
+    /**
+     * A ray is intersected with the scene
+     *
+     * @param ray         the ray
+     * @param maxDistance maximum distance along the ray
+     */
+    void ray(Ray ray, double maxDistance);
+
+    /**
+     * The ray intersected a geometry
+     *
+     * @param index index of the geometry
+     */
+    void geometry(int index);
+  }
+
+  private final String name;
+  private final Color background;
+  private final Color ambientIntensity;
+  private final Camera camera;
+  private final Material[] materials;
+  private final Intersectable[] geometries;
+  private final Geometries hierarchy;
+
+  /**
+   * indices of the geometries of the scene that were compiled
+   */
+  private final Map<Intersectable, Integer> sourceIndices = new IdentityHashMap<>();
+
+  /**
+   * recorder of the rays of every thread
+   */
+  private final ThreadLocal<Recorder> recorders = new ThreadLocal<>();
+  private final LightSource[] lights;
+
+  /**
+   * Compile a scene
+   *
+   * @param scene    the scene
+   * @param previous snapshot of an earlier frame of the scene whose hierarchy is
+   *                 refitted, or null to build one
+   */
+  CompiledScene(Scene scene, CompiledScene previous) {
+    name = scene.getName();
+    background = scene.background;
+    ambientIntensity = scene.ambientLight.getIntensity();
+    Camera source = scene.getCamera();
+    camera = source == null ? null
+        : new Camera(source.getOrigin(), source.getVTo(), source.getVUp()) //
+            .setDistance(source.getDistance()) //
+            .setViewPlaneSize(source.getWidth(), source.getHeight());
+
+    // materials shared in the scene are shared in the snapshot too
+    Map<Material, Material> materialCopies = new IdentityHashMap<>();
+    Map<Geometry, Geometry> instancedCopies = new IdentityHashMap<>();
+    List<Intersectable> flat = new ArrayList<>();
+    flatten(scene.geometries, flat);
+    geometries = new Intersectable[flat.size()];
+    for (int i = 0; i < geometries.length; ++i) {
+      Intersectable intersectable = flat.get(i);
+      sourceIndices.put(intersectable, i);
+      if (intersectable instanceof Geometry) {
+        Geometry geometry = (Geometry) intersectable;
+        Material material = materialCopies.computeIfAbsent(geometry.getMaterial(), Material::new);
+        intersectable = geometry.copy(geometry.getEmission(), material);
+      } else if (intersectable instanceof Instance) {
+        // the place of an instance is frozen, its geometry is copied once
+        Instance instance = (Instance) intersectable;
+        Intersectable instanced = instance.getGeometry();
+        if (instanced instanceof Geometry)
+          instanced = instancedCopies.computeIfAbsent((Geometry) instanced, geometry -> geometry
+              .copy(geometry.getEmission(), materialCopies.computeIfAbsent(geometry.getMaterial(), Material::new)));
+        intersectable = new Instance(instanced, instance.getTransform());
+      }
+      geometries[i] = intersectable;
+    }
+    materials = materialCopies.values().toArray(new Material[0]);
+    hierarchy = new Geometries(geometries);
+    if (previous != null && previous.geometries.length == geometries.length)
+      hierarchy.refit(previous.hierarchy);
+
+    lights = new LightSource[scene.lights.size()];
+    int i = 0;
+    for (LightSource light : scene.lights)
+      lights[i++] = copy(light);
+  }
+
+  /**
+   * Collect the geometries of a composite
+   *
+   * @param intersectable geometry or composite of geometries
+   * @param flat          receives the geometries
+   */
+  private static void flatten(Intersectable intersectable, List<Intersectable> flat) {
+    if (intersectable instanceof Geometries) {
+      List<Intersectable> list = ((Geometries) intersectable).getGeometryList();
+      if (list != null)
+        for (Intersectable child : list)
+          flatten(child, flat);
+    } else {
+      flat.add(intersectable);
+    }
+  }
+
+  /**
+   * Copy a light whose parameters can be changed, other lights are shared
+   *
+   * @param light the light
+   * @return the copy
+   */
+  private static LightSource copy(LightSource light) {
+    if (light instanceof SpotLight) {
+      SpotLight spot = (SpotLight) light;
+      return new SpotLight(spot.getIntensity(), spot.getPosition(), spot.getDirection(), spot.getKC(), spot.getKL(),
+          spot.getKQ(), spot.getConcentration());
+    }
+    if (light instanceof PointLight) {
+      PointLight point = (PointLight) light;
+      return new PointLight(point.getIntensity(), point.getPosition(), point.getKC(), point.getKL(), point.getKQ());
+    }
+    if (light instanceof DirectionalLight) {
+      DirectionalLight directional = (DirectionalLight) light;
+      return new DirectionalLight(directional.getIntensity(), directional.getL(null));
+    }
+    return light;
+  }
+
+  /**
+   * @return scene name
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * @return the color of the background
+   */
+  public Color getBackground() {
+    return background;
+  }
+
+  /**
+   * @return the intensity of the ambient light
+   */
+  public Color getAmbientIntensity() {
+    return ambientIntensity;
+  }
+
+  /**
+   * @return the camera, or null if the scene had none
+   */
+  public Camera getCamera() {
+    return camera;
+  }
+
+  /**
+   * @return number of distinct materials
+   */
+  public int getMaterialCount() {
+    return materials.length;
+  }
+
+  /**
+   * @return number of geometries
+   */
+  public int getGeometryCount() {
+    return geometries.length;
+  }
+
+  /**
+   * Get a geometry
+   *
+   * @param index index of the geometry
+   * @return the geometry
+   */
+  public Intersectable getGeometry(int index) {
+    return geometries[index];
+  }
+
+  /**
+   * Find the geometry compiled from a geometry of the scene
+   *
+   * @param source geometry of the scene
+   * @return index of the compiled geometry, or -1 if it was not compiled
+   */
+  public int indexOf(Intersectable source) {
+    Integer index = sourceIndices.get(source);
+    return index == null ? -1 : index;
+  }
+
+  /**
+   * Set the recorder of the rays the current thread intersects with the scene
+   *
+   * @param recorder the recorder, null to stop recording
+   */
+  public void setRecorder(Recorder recorder) {
+    if (recorder == null)
+      recorders.remove();
+    else
+      recorders.set(recorder);
+  }
+
+  /**
+   * @return the lights, an array the caller must not change
+   */
+  public LightSource[] getLights() {
+    return lights;
+  }
+
+  @Override
+  public double[] getBounds() {
+    return hierarchy.getBounds();
+  }
+
+  @Override
+  public List<GeoPoint> findGeoIntersections(Ray ray, double maxDistance) {
+    Recorder recorder = recorders.get();
+    if (recorder == null)
+      return hierarchy.findGeoIntersections(ray, maxDistance);
+    recorder.ray(ray, maxDistance);
+    return hierarchy.findGeoIntersections(ray, maxDistance, recorder::geometry);
+  }
+}
@@ -0,0 +1,740 @@
+package scene;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+import geometries.HierarchyCache;
+import geometries.Mesh;
+
+/**
+ * Loads triangle meshes from Wavefront OBJ and binary PLY files. The files are
+ * memory mapped and parsed in parallel chunks in two passes: the first pass
+ * counts the vertices and triangles of every chunk, so the arrays of the mesh
+ * are allocated once at their final size and the second pass parses every
+ * chunk straight into its place in them. No line or token objects are created
+ * on the way, so the heap used by a load is close to the size of the mesh.
+ * <p>
+ * Of an OBJ file only vertex positions (v) and faces (f) are read, faces of
+ * more than 3 vertices are split into fans and negative indices count back from
+ * the last vertex. Of a PLY file the x, y, z properties of the vertex element
+ * and the vertex_indices list of the face element are read.
+ *
+ * @author Jonah Lawrence
+ * @author Elad Harizy
+ */
+public class MeshLoader {
+
+  /**
+   * smallest chunk of an OBJ file parsed as one task
+   */
+  private static final long MIN_CHUNK_BYTES = 1 << 20;
+
+  /**
+   * largest chunk of an OBJ file parsed as one task
+   */
+  private static final long MAX_CHUNK_BYTES = 1 << 28;
+
+  /**
+   * number of PLY records parsed as one task
+   */
+  private static final int RECORDS_PER_CHUNK = 1 << 16;
+
+  /**
+   * powers of ten that are exact in a double
+   */
+  private static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+      1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+  /**
+   * time of the last load in milliseconds
+   */
+  private long loadMillis;
+
+  /**
+   * cache of the hierarchies of the meshes, or null to build them every time
+   */
+  private HierarchyCache hierarchyCache = null;
+
+  /**
+   * Set a cache of the hierarchies of the loaded meshes
+   *
+   * @param hierarchyCache the cache, or null to build the hierarchies every time
+   * @return the loader
+   */
+  public MeshLoader setHierarchyCache(HierarchyCache hierarchyCache) {
+    this.hierarchyCache = hierarchyCache;
+    return this;
+  }
+
+  /**
+   * @return time of the last load in milliseconds, building the hierarchy of
+   *         the mesh included
+   */
+  public long getLoadMillis() {
+    return loadMillis;
+  }
+
+  /**
+   * Load a mesh by the extension of its file, .obj or .ply
+   *
+   * @param file the file
+   * @return the mesh
+   * @throws IOException              if the file cannot be read
+   * @throws IllegalArgumentException if the format is unknown or the file is
+   *                                  malformed
+   */
+  public Mesh load(Path file) throws IOException {
+    String name = file.getFileName().toString().toLowerCase();
+    if (name.endsWith(".obj"))
+      return loadObj(file);
+    if (name.endsWith(".ply"))
+      return loadPly(file);
+    throw new IllegalArgumentException("Unknown mesh format: " + file);
+  }
+
+  /**
+   * Load a mesh from a Wavefront OBJ file
+   *
+   * @param file the file
+   * @return the mesh
+   * @throws IOException              if the file cannot be read
+   * @throws IllegalArgumentException if the file is malformed
+   */
+  public Mesh loadObj(Path file) throws IOException {
+    long startTime = System.currentTimeMillis();
+    SceneLoadEvent event = new SceneLoadEvent();
+    event.begin();
+    ObjChunk[] chunks;
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      long[] bounds = splitLines(channel);
+      chunks = new ObjChunk[bounds.length - 1];
+      for (int i = 0; i < chunks.length; ++i)
+        chunks[i] = new ObjChunk(channel.map(FileChannel.MapMode.READ_ONLY, bounds[i], bounds[i + 1] - bounds[i]),
+            bounds[i]);
+    }
+
+    // first pass - count, then place every chunk after the ones before it
+    parallel(chunks.length, i -> chunks[i].parse(null, null));
+    long vertexCount = 0;
+    long triangleCount = 0;
+    for (ObjChunk chunk : chunks) {
+      chunk.vertexBase = (int) vertexCount;
+      chunk.triangleBase = (int) triangleCount;
+      vertexCount += chunk.vertexCount;
+      triangleCount += chunk.triangleCount;
+      if (3 * vertexCount > Integer.MAX_VALUE || 3 * triangleCount > Integer.MAX_VALUE)
+        throw new IllegalArgumentException("Mesh is too large: " + file);
+    }
+
+    // second pass - fill
+    float[] vertices = new float[(int) (3 * vertexCount)];
+    int[] indices = new int[(int) (3 * triangleCount)];
+    parallel(chunks.length, i -> chunks[i].parse(vertices, indices));
+
+    Mesh mesh = createMesh(vertices, indices);
+    loadMillis = System.currentTimeMillis() - startTime;
+    event.commit(file.toString(), "obj", indices.length / 3);
+    return mesh;
+  }
+
+  /**
+   * Create a mesh with the hierarchy of the cache if there is one
+   *
+   * @param vertices x, y, z of every vertex
+   * @param indices  indices of the vertices of every triangle
+   * @return the mesh
+   */
+  private Mesh createMesh(float[] vertices, int[] indices) {
+    if (hierarchyCache == null)
+      return new Mesh(vertices, indices);
+    return hierarchyCache.getMesh(FloatBuffer.wrap(vertices), IntBuffer.wrap(indices));
+  }
+
+  /**
+   * Split a file into chunks of whole lines, a few for every processor
+   *
+   * @param channel the file
+   * @return offsets of the chunks followed by the size of the file
+   * @throws IOException if the file cannot be read
+   */
+  private static long[] splitLines(FileChannel channel) throws IOException {
+    long size = channel.size();
+    int processors = Runtime.getRuntime().availableProcessors();
+    long target = Math.min(MAX_CHUNK_BYTES, Math.max(MIN_CHUNK_BYTES, size / (4L * processors)));
+    List<Long> bounds = new ArrayList<>();
+    bounds.add(0L);
+    ByteBuffer window = ByteBuffer.allocate(4096);
+    long position = target;
+    while (position < size) {
+      // move the boundary after the end of the line it falls in
+      long boundary = -1;
+      long scan = position;
+      while (boundary < 0 && scan < size) {
+        window.clear();
+        int read = channel.read(window, scan);
+        for (int k = 0; k < read && boundary < 0; ++k)
+          if (window.get(k) == '\n')
+            boundary = scan + k + 1;
+        scan += Math.max(read, 0);
+        if (read <= 0)
+          break;
+      }
+      if (boundary < 0 || boundary >= size)
+        break;
+      bounds.add(boundary);
+      position = boundary + target;
+    }
+    bounds.add(size);
+    return bounds.stream().mapToLong(Long::longValue).toArray();
+  }
+
+  /**
+   * Run tasks on the common pool
+   *
+   * @param count number of tasks
+   * @param task  the task of an index
+   */
+  private static void parallel(int count, IntConsumer task) {
+    IntStream.range(0, count).parallel().forEach(task);
+  }
+
+  /**
+   * Parser of a chunk of whole lines of an OBJ file
+   */
+  private static final class ObjChunk {
+    private final ByteBuffer buffer;
+    private final long offset;
+    private int position;
+    private int vertexBase;
+    private int triangleBase;
+    private int vertexCount;
+    private int triangleCount;
+
+    private ObjChunk(ByteBuffer buffer, long offset) {
+      this.buffer = buffer;
+      this.offset = offset;
+    }
+
+    /**
+     * Count the vertices and triangles of the chunk, or parse them into the
+     * arrays of the mesh
+     *
+     * @param vertices vertices of the mesh, or null to count
+     * @param indices  indices of the mesh, or null to count
+     */
+    private void parse(float[] vertices, int[] indices) {
+      int end = buffer.limit();
+      position = 0;
+      vertexCount = 0;
+      triangleCount = 0;
+      while (position < end) {
+        skipBlanks();
+        if (position + 1 < end && isBlank(buffer.get(position + 1))) {
+          byte type = buffer.get(position);
+          if (type == 'v') {
+            ++position;
+            if (vertices != null) {
+              int v = 3 * (vertexBase + vertexCount);
+              vertices[v] = parseFloat();
+              vertices[v + 1] = parseFloat();
+              vertices[v + 2] = parseFloat();
+            }
+            ++vertexCount;
+          } else if (type == 'f') {
+            ++position;
+            parseFace(indices);
+          }
+        }
+        // skip the rest of the line
+        while (position < end && buffer.get(position++) != '\n') {
+          // nothing to read
+        }
+      }
+    }
+
+    /**
+     * Parse the vertices of a face into a fan of triangles
+     *
+     * @param indices indices of the mesh, or null to count
+     */
+    private void parseFace(int[] indices) {
+      int first = 0;
+      int previous = 0;
+      int corners = 0;
+      while (true) {
+        skipBlanks();
+        if (position >= buffer.limit() || !isSign(buffer.get(position)) && !isDigit(buffer.get(position)))
+          break;
+        int index = parseIndex();
+        // skip texture and normal indices
+        while (position < buffer.limit() && !isBlank(buffer.get(position)) && buffer.get(position) != '\n')
+          ++position;
+        if (corners >= 2) {
+          if (indices != null) {
+            int t = 3 * (triangleBase + triangleCount);
+            indices[t] = first;
+            indices[t + 1] = previous;
+            indices[t + 2] = index;
+          }
+          ++triangleCount;
+        } else if (corners == 0) {
+          first = index;
+        }
+        previous = index;
+        ++corners;
+      }
+    }
+
+    /**
+     * Parse a vertex index of a face
+     *
+     * @return index of the vertex from 0
+     */
+    private int parseIndex() {
+      boolean negative = buffer.get(position) == '-';
+      if (isSign(buffer.get(position)))
+        ++position;
+      long value = 0;
+      int digits = 0;
+      while (position < buffer.limit() && isDigit(buffer.get(position)) && value <= Integer.MAX_VALUE) {
+        value = 10 * value + buffer.get(position++) - '0';
+        ++digits;
+      }
+      if (digits == 0 || value == 0 || value > Integer.MAX_VALUE)
+        throw malformed("vertex index");
+      // relative indices count back from the last vertex read so far
+      return (int) (negative ? vertexBase + vertexCount - value : value - 1);
+    }
+
+    /**
+     * Parse a decimal number with an optional fraction and exponent
+     *
+     * @return the number
+     */
+    private float parseFloat() {
+      skipBlanks();
+      int end = buffer.limit();
+      boolean negative = false;
+      if (position < end && isSign(buffer.get(position)))
+        negative = buffer.get(position++) == '-';
+      long mantissa = 0;
+      int exponent = 0;
+      int digits = 0;
+      int significant = 0;
+      while (position < end && isDigit(buffer.get(position))) {
+        int d = buffer.get(position++) - '0';
+        ++digits;
+        if (significant < 18) {
+          mantissa = 10 * mantissa + d;
+          if (mantissa != 0)
+            ++significant;
+        } else {
+          ++exponent;
+        }
+      }
+      if (position < end && buffer.get(position) == '.') {
+        ++position;
+        while (position < end && isDigit(buffer.get(position))) {
+          int d = buffer.get(position++) - '0';
+          ++digits;
+          if (significant < 18) {
+            mantissa = 10 * mantissa + d;
+            --exponent;
+            if (mantissa != 0)
+              ++significant;
+          }
+        }
+      }
+      if (digits == 0)
+        throw malformed("number");
+      if (position < end && (buffer.get(position) == 'e' || buffer.get(position) == 'E')) {
+        ++position;
+        boolean negativeExponent = false;
+        if (position < end && isSign(buffer.get(position)))
+          negativeExponent = buffer.get(position++) == '-';
+        int power = 0;
+        int powerDigits = 0;
+        while (position < end && isDigit(buffer.get(position))) {
+          power = Math.min(10 * power + buffer.get(position++) - '0', 1000);
+          ++powerDigits;
+        }
+        if (powerDigits == 0)
+          throw malformed("number");
+        exponent += negativeExponent ? -power : power;
+      }
+      double value = mantissa;
+      if (exponent > 0)
+        value *= exponent < POWERS_OF_TEN.length ? POWERS_OF_TEN[exponent] : Math.pow(10, exponent);
+      else if (exponent < 0)
+        value /= -exponent < POWERS_OF_TEN.length ? POWERS_OF_TEN[-exponent] : Math.pow(10, -exponent);
+      return (float) (negative ? -value : value);
+    }
+
+    private void skipBlanks() {
+      while (position < buffer.limit() && isBlank(buffer.get(position)))
+        ++position;
+    }
+
+    private IllegalArgumentException malformed(String what) {
+      return new IllegalArgumentException("Malformed OBJ " + what + " at byte " + (offset + position));
+    }
+  }
+
+  private static boolean isBlank(byte c) {
+    return c == ' ' || c == '\t' || c == '\r';
+  }
+
+  private static boolean isDigit(byte c) {
+    return c >= '0' && c <= '9';
+  }
+
+  private static boolean isSign(byte c) {
+    return c == '-' || c == '+';
+  }
+
+  /**
+   * Load a mesh from a binary PLY file, little or big endian. Every element of
+   * the file is limited to 2 GB
+   *
+   * @param file the file
+   * @return the mesh
+   * @throws IOException              if the file cannot be read
+   * @throws IllegalArgumentException if the file is malformed or not binary
+   */
+  public Mesh loadPly(Path file) throws IOException {
+    long startTime = System.currentTimeMillis();
+    SceneLoadEvent event = new SceneLoadEvent();
+    event.begin();
+    float[] vertices = null;
+    int[] indices = null;
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      PlyHeader header = PlyHeader.read(channel);
+      long offset = header.length;
+      for (PlyElement element : header.elements) {
+        long remaining = channel.size() - offset;
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, offset,
+            Math.min(remaining, Integer.MAX_VALUE));
+        buffer.order(header.order);
+        if (element.name.equals("vertex")) {
+          vertices = readPlyVertices(buffer, element);
+        } else if (element.name.equals("face")) {
+          indices = readPlyFaces(buffer, element);
+        }
+        int size = 0;
+        if (element.isFixedSize()) {
+          long fixed = element.count * (long) element.recordSize();
+          if (fixed > remaining)
+            throw new IllegalArgumentException("PLY element " + element.name + " is truncated");
+          size = (int) fixed;
+        } else {
+          for (int i = 0; i < element.count; ++i)
+            size += element.recordSize(buffer, size);
+        }
+        offset += size;
+      }
+    }
+    if (vertices == null || indices == null)
+      throw new IllegalArgumentException("PLY file has no vertex or face element: " + file);
+
+    Mesh mesh = createMesh(vertices, indices);
+    loadMillis = System.currentTimeMillis() - startTime;
+    event.commit(file.toString(), "ply", indices.length / 3);
+    return mesh;
+  }
+
+  /**
+   * Read the positions of the vertex element in parallel
+   *
+   * @param buffer  buffer positioned on the element
+   * @param element the vertex element
+   * @return x, y, z of every vertex
+   */
+  private static float[] readPlyVertices(ByteBuffer buffer, PlyElement element) {
+    if (!element.isFixedSize())
+      throw new IllegalArgumentException("PLY vertex element must not have lists");
+    int stride = element.recordSize();
+    PlyProperty[] axes = { element.property("x"), element.property("y"), element.property("z") };
+    int[] offsets = new int[3];
+    for (int axis = 0; axis < 3; ++axis)
+      offsets[axis] = element.offsetOf(axes[axis]);
+    if (3L * element.count > Integer.MAX_VALUE || (long) element.count * stride > buffer.limit())
+      throw new IllegalArgumentException("PLY vertex element is truncated or too large");
+
+    float[] vertices = new float[3 * element.count];
+    int chunks = (element.count + RECORDS_PER_CHUNK - 1) / RECORDS_PER_CHUNK;
+    parallel(chunks, chunk -> {
+      int end = Math.min(element.count, (chunk + 1) * RECORDS_PER_CHUNK);
+      for (int i = chunk * RECORDS_PER_CHUNK; i < end; ++i)
+        for (int axis = 0; axis < 3; ++axis)
+          vertices[3 * i + axis] = (float) axes[axis].type.read(buffer, i * stride + offsets[axis]);
+    });
+    return vertices;
+  }
+
+  /**
+   * Read the vertex indices of the face element in parallel. A first pass finds
+   * where every chunk of faces starts and how many triangles come before it
+   *
+   * @param buffer  buffer positioned on the element
+   * @param element the face element
+   * @return indices of the vertices of every triangle
+   */
+  private static int[] readPlyFaces(ByteBuffer buffer, PlyElement element) {
+    PlyProperty list = element.property("vertex_indices", "vertex_index");
+    if (!list.isList)
+      throw new IllegalArgumentException("PLY vertex indices must be a list");
+    int chunks = (element.count + RECORDS_PER_CHUNK - 1) / RECORDS_PER_CHUNK;
+    int[] chunkStarts = new int[chunks];
+    int[] triangleBases = new int[chunks];
+    long triangles = 0;
+    int position = 0;
+    for (int i = 0; i < element.count; ++i) {
+      if (i % RECORDS_PER_CHUNK == 0) {
+        chunkStarts[i / RECORDS_PER_CHUNK] = position;
+        triangleBases[i / RECORDS_PER_CHUNK] = (int) triangles;
+      }
+      int corners = (int) list.countType.read(buffer, position + element.offsetOf(list));
+      triangles += Math.max(0, corners - 2);
+      position += element.recordSize(buffer, position);
+      if (3 * triangles > Integer.MAX_VALUE)
+        throw new IllegalArgumentException("PLY face element is too large");
+    }
+
+    int[] indices = new int[(int) (3 * triangles)];
+    parallel(chunks, chunk -> {
+      int record = chunkStarts[chunk];
+      int t = 3 * triangleBases[chunk];
+      int end = Math.min(element.count, (chunk + 1) * RECORDS_PER_CHUNK);
+      int itemSize = list.type.size;
+      for (int i = chunk * RECORDS_PER_CHUNK; i < end; ++i) {
+        int items = record + element.offsetOf(list) + list.countType.size;
+        int corners = (int) list.countType.read(buffer, items - list.countType.size);
+        int first = (int) list.type.read(buffer, items);
+        for (int k = 2; k < corners; ++k) {
+          indices[t++] = first;
+          indices[t++] = (int) list.type.read(buffer, items + (k - 1) * itemSize);
+          indices[t++] = (int) list.type.read(buffer, items + k * itemSize);
+        }
+        record += element.recordSize(buffer, record);
+      }
+    });
+    return indices;
+  }
+
+  /**
+   * Scalar types of PLY properties
+   */
+  private enum PlyType {
+    CHAR(1), UCHAR(1), SHORT(2), USHORT(2), INT(4), UINT(4), FLOAT(4), DOUBLE(8);
+
+    private final int size;
+
+    PlyType(int size) {
+      this.size = size;
+    }
+
+    private static PlyType of(String name) {
+      switch (name) {
+        case "char":
+        case "int8":
+          return CHAR;
+        case "uchar":
+        case "uint8":
+          return UCHAR;
+        case "short":
+        case "int16":
+          return SHORT;
+        case "ushort":
+        case "uint16":
+          return USHORT;
+        case "int":
+        case "int32":
+          return INT;
+        case "uint":
+        case "uint32":
+          return UINT;
+        case "float":
+        case "float32":
+          return FLOAT;
+        case "double":
+        case "float64":
+          return DOUBLE;
+        default:
+          throw new IllegalArgumentException("Unknown PLY type: " + name);
+      }
+    }
+
+    private double read(ByteBuffer buffer, int index) {
+      switch (this) {
+        case CHAR:
+          return buffer.get(index);
+        case UCHAR:
+          return buffer.get(index) & 0xFF;
+        case SHORT:
+          return buffer.getShort(index);
+        case USHORT:
+          return buffer.getShort(index) & 0xFFFF;
+        case INT:
+          return buffer.getInt(index);
+        case UINT:
+          return buffer.getInt(index) & 0xFFFFFFFFL;
+        case FLOAT:
+          return buffer.getFloat(index);
+        default:
+          return buffer.getDouble(index);
+      }
+    }
+  }
+
+  /**
+   * Property of a PLY element, a scalar or a list
+   */
+  private static final class PlyProperty {
+    private final String name;
+    private final PlyType type;
+    private final boolean isList;
+    private final PlyType countType;
+
+    private PlyProperty(String name, PlyType type, PlyType countType) {
+      this.name = name;
+      this.type = type;
+      this.isList = countType != null;
+      this.countType = countType;
+    }
+  }
+
+  /**
+   * Element of a PLY file with its records
+   */
+  private static final class PlyElement {
+    private final String name;
+    private final int count;
+    private final List<PlyProperty> properties = new ArrayList<>();
+
+    private PlyElement(String name, int count) {
+      this.name = name;
+      this.count = count;
+    }
+
+    private boolean isFixedSize() {
+      return properties.stream().noneMatch(p -> p.isList);
+    }
+
+    private PlyProperty property(String... names) {
+      for (PlyProperty property : properties)
+        for (String name : names)
+          if (property.name.equals(name))
+            return property;
+      throw new IllegalArgumentException("PLY element " + this.name + " has no property " + names[0]);
+    }
+
+    /**
+     * Offset of a property in a record, only lists after it make it vary
+     */
+    private int offsetOf(PlyProperty property) {
+      int offset = 0;
+      for (PlyProperty p : properties) {
+        if (p == property)
+          return offset;
+        if (p.isList)
+          throw new IllegalArgumentException("PLY property " + property.name + " must come before any list");
+        offset += p.type.size;
+      }
+      throw new IllegalArgumentException("PLY element " + name + " has no property " + property.name);
+    }
+
+    /**
+     * @return size of a record without lists
+     */
+    private int recordSize() {
+      return properties.stream().mapToInt(p -> p.type.size).sum();
+    }
+
+    /**
+     * Size of a record with lists
+     *
+     * @param buffer buffer of the element
+     * @param record index of the record in the buffer
+     * @return the size
+     */
+    private int recordSize(ByteBuffer buffer, int record) {
+      int size = 0;
+      for (PlyProperty p : properties) {
+        if (p.isList)
+          size += p.countType.size + (int) p.countType.read(buffer, record + size) * p.type.size;
+        else
+          size += p.type.size;
+      }
+      return size;
+    }
+  }
+
+  /**
+   * Header of a binary PLY file
+   */
+  private static final class PlyHeader {
+    private static final int MAX_HEADER_BYTES = 1 << 20;
+    private final List<PlyElement> elements = new ArrayList<>();
+    private ByteOrder order;
+    private int length;
+
+    private static PlyHeader read(FileChannel channel) throws IOException {
+      ByteBuffer bytes = ByteBuffer.allocate((int) Math.min(channel.size(), MAX_HEADER_BYTES));
+      while (bytes.hasRemaining() && channel.read(bytes, bytes.position()) > 0) {
+        // read the whole header
+      }
+      String text = new String(bytes.array(), 0, bytes.position(), StandardCharsets.US_ASCII);
+      // the header lines may end with CR LF, the binary data starts after the last
+      int end = text.indexOf("end_header");
+      int after = end + "end_header".length();
+      int lineEnd = end < 0 ? -1 : text.startsWith("\n", after) ? 1 : text.startsWith("\r\n", after) ? 2 : -1;
+      if (!text.startsWith("ply") || lineEnd < 0)
+        throw new IllegalArgumentException("Not a PLY file");
+
+      PlyHeader header = new PlyHeader();
+      header.length = after + lineEnd;
+      PlyElement element = null;
+      for (String line : text.substring(0, end).split("\r?\n")) {
+        String[] words = line.trim().split("\\s+");
+        switch (words[0]) {
+          case "format":
+            if (words[1].equals("binary_little_endian"))
+              header.order = ByteOrder.LITTLE_ENDIAN;
+            else if (words[1].equals("binary_big_endian"))
+              header.order = ByteOrder.BIG_ENDIAN;
+            else
+              throw new IllegalArgumentException("Only binary PLY files are supported");
+            break;
+          case "element":
+            element = new PlyElement(words[1], Integer.parseInt(words[2]));
+            header.elements.add(element);
+            break;
+          case "property":
+            if (element == null)
+              throw new IllegalArgumentException("PLY property outside of an element");
+            element.properties.add(words[1].equals("list")
+                ? new PlyProperty(words[4], PlyType.of(words[3]), PlyType.of(words[2]))
+                : new PlyProperty(words[2], PlyType.of(words[1]), null));
+            break;
+          default:
+            // ply, comment and obj_info lines
+        }
+      }
+      if (header.order == null)
+        throw new IllegalArgumentException("PLY file has no format");
+      return header;
+    }
+  }
+}
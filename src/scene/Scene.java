@@ -121,6 +121,28 @@ public class Scene {
     return this;
   }
 
+  /**
+   * Freeze the scene into a snapshot that later changes to the scene do not
+   * reach, for renders to share
+   * 
+   * @return the compiled scene
+   */
+  public CompiledScene compile() {
+    return new CompiledScene(this, null);
+  }
+
+  /**
+   * Freeze the next frame of an animated scene whose geometries only moved since
+   * an earlier snapshot, reusing the hierarchy of that snapshot refitted to their
+   * new places instead of building a new one
+   * 
+   * @param previous snapshot of an earlier frame of the scene
+   * @return the compiled scene
+   */
+  public CompiledScene compile(CompiledScene previous) {
+    return new CompiledScene(this, previous);
+  }
+
   /**
    * set lights
    * 
@@ -0,0 +1,794 @@
+package scene;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import elements.AmbientLight;
+import elements.Camera;
+import elements.DirectionalLight;
+import elements.LightSource;
+import elements.PointLight;
+import elements.SpotLight;
+import geometries.BoundingVolumeHierarchy;
+import geometries.Cylinder;
+import geometries.Geometries;
+import geometries.Geometry;
+import geometries.Instance;
+import geometries.Intersectable;
+import geometries.Mesh;
+import geometries.Plane;
+import geometries.Polygon;
+import geometries.Sphere;
+import geometries.Triangle;
+import geometries.Tube;
+import primitives.Color;
+import primitives.Material;
+import primitives.Point3D;
+import primitives.Ray;
+import primitives.Transform;
+import primitives.Vector;
+
+/**
+ * Versioned binary file of a compiled scene. A scene is written once and later
+ * runs map the file into memory: the vertices, triangles and hierarchies of
+ * its meshes are used as views of the mapped file, without being copied or
+ * rebuilt, so loading takes about as long as creating the small geometries,
+ * lights and camera.
+ * <p>
+ * The file is little endian: a header of the magic bytes, the version and a
+ * reserved int, followed by sections of a tag, a reserved int, the length of
+ * the body and the body itself padded to 8 bytes. Readers skip sections they
+ * do not know. Geometries are written in the order of the scene at double
+ * precision, instances as their transformation and the geometry they place,
+ * and meshes once however many instances share them. Triangles that share
+ * their emission and material are merged into one mesh, which gets a hierarchy
+ * too, only when the writer asks for it.
+ *
+ * @author Jonah Lawrence
+ * @author Elad Harizy
+ */
+public final class SceneFile {
+
+  /**
+   * version written by this class, files of later versions are refused
+   */
+  public static final int VERSION = 2;
+
+  private static final byte[] MAGIC = "JRTSCENE".getBytes(StandardCharsets.US_ASCII);
+  private static final int HEADER_BYTES = 16;
+  private static final int SECTION_HEADER_BYTES = 16;
+
+  private static final int SECTION_NAME = 1;
+  private static final int SECTION_ENVIRONMENT = 2;
+  private static final int SECTION_CAMERA = 3;
+  private static final int SECTION_MATERIALS = 4;
+  private static final int SECTION_LIGHTS = 5;
+  private static final int SECTION_GEOMETRIES = 6;
+  private static final int SECTION_MESH = 7;
+  private static final int SECTION_SHARED_MESH = 8;
+
+  private static final int LIGHT_DIRECTIONAL = 1;
+  private static final int LIGHT_POINT = 2;
+  private static final int LIGHT_SPOT = 3;
+
+  private static final int GEOMETRY_SPHERE = 1;
+  private static final int GEOMETRY_PLANE = 2;
+  private static final int GEOMETRY_POLYGON = 3;
+  private static final int GEOMETRY_TUBE = 4;
+  private static final int GEOMETRY_CYLINDER = 5;
+  private static final int GEOMETRY_TRIANGLE = 6;
+  private static final int GEOMETRY_MESH = 7;
+  private static final int GEOMETRY_INSTANCE = 8;
+  private static final int GEOMETRY_GROUP = 9;
+
+  /**
+   * Empty private ctor to hide the public one
+   */
+  private SceneFile() {
+  }
+
+  /**
+   * Write a scene exactly as it is
+   *
+   * @param scene the scene
+   * @param file  the file
+   * @throws IOException              if the file cannot be written
+   * @throws IllegalArgumentException if the scene has a geometry or light that
+   *                                  cannot be written
+   */
+  public static void write(Scene scene, Path file) throws IOException {
+    write(scene, file, false);
+  }
+
+  /**
+   * Write a scene
+   *
+   * @param scene          the scene
+   * @param file           the file
+   * @param mergeTriangles whether triangles of the scene that share their
+   *                       emission and material are written as one mesh in
+   *                       place of the first of them, which gets a hierarchy but
+   *                       keeps the vertices only at float precision
+   * @throws IOException              if the file cannot be written
+   * @throws IllegalArgumentException if the scene has a geometry or light that
+   *                                  cannot be written
+   */
+  public static void write(Scene scene, Path file, boolean mergeTriangles) throws IOException {
+    List<Intersectable> records = new ArrayList<>();
+    flatten(scene.geometries, records);
+
+    // shared materials are written once
+    Map<Material, Integer> materials = new IdentityHashMap<>();
+    List<Material> materialList = new ArrayList<>();
+    for (Intersectable record : records)
+      forEachGeometry(record, geometry -> {
+        if (materials.putIfAbsent(geometry.getMaterial(), materialList.size()) == null)
+          materialList.add(geometry.getMaterial());
+      });
+
+    if (mergeTriangles)
+      records = mergeTriangles(records, materials);
+
+    // shared meshes are written once, before the geometries that refer to them
+    Map<Mesh, Integer> meshes = new IdentityHashMap<>();
+    List<Mesh> meshList = new ArrayList<>();
+    for (Intersectable record : records)
+      forEachGeometry(record, geometry -> {
+        if (geometry instanceof Mesh && meshes.putIfAbsent((Mesh) geometry, meshList.size()) == null)
+          meshList.add((Mesh) geometry);
+      });
+
+    try (Output out = new Output(FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+        StandardOpenOption.TRUNCATE_EXISTING))) {
+      out.putBytes(MAGIC);
+      out.putInt(VERSION);
+      out.putInt(0);
+
+      out.beginSection(SECTION_NAME);
+      byte[] name = scene.getName().getBytes(StandardCharsets.UTF_8);
+      out.putInt(name.length);
+      out.putBytes(name);
+      out.endSection();
+
+      out.beginSection(SECTION_ENVIRONMENT);
+      out.putColor(scene.background);
+      out.putColor(scene.ambientLight.getIntensity());
+      out.endSection();
+
+      Camera camera = scene.getCamera();
+      if (camera != null) {
+        out.beginSection(SECTION_CAMERA);
+        out.putPoint(camera.getOrigin());
+        out.putPoint(camera.getVTo().getHead());
+        out.putPoint(camera.getVUp().getHead());
+        out.putDouble(camera.getDistance());
+        out.putDouble(camera.getWidth());
+        out.putDouble(camera.getHeight());
+        out.endSection();
+      }
+
+      out.beginSection(SECTION_MATERIALS);
+      out.putInt(materialList.size());
+      for (Material material : materialList) {
+        out.putDouble(material.kD);
+        out.putDouble(material.kS);
+        out.putDouble(material.kR);
+        out.putDouble(material.kT);
+        out.putDouble(material.nShininess);
+        out.putDouble(material.kGlossiness);
+        out.putDouble(material.kBlurriness);
+      }
+      out.endSection();
+
+      out.beginSection(SECTION_LIGHTS);
+      out.putInt(scene.lights.size());
+      for (LightSource light : scene.lights)
+        writeLight(out, light);
+      out.endSection();
+
+      for (Mesh mesh : meshList) {
+        out.beginSection(SECTION_SHARED_MESH);
+        writeGeometryHeader(out, mesh, materials);
+        BoundingVolumeHierarchy hierarchy = mesh.getHierarchy();
+        out.putInt(mesh.getVertexCount());
+        out.putInt(mesh.getTriangleCount());
+        out.putInt(hierarchy.getNodeCount());
+        out.putInt(0);
+        out.putFloats(mesh.getVertices());
+        out.align();
+        out.putInts(mesh.getIndices());
+        out.align();
+        out.putFloats(hierarchy.getBounds());
+        out.align();
+        out.putInts(hierarchy.getLinks());
+        out.endSection();
+      }
+
+      out.beginSection(SECTION_GEOMETRIES);
+      out.putInt(records.size());
+      for (Intersectable record : records)
+        writeRecord(out, record, materials, meshes);
+      out.endSection();
+    }
+  }
+
+  /**
+   * Read a scene by mapping its file
+   *
+   * @param file the file
+   * @return the scene
+   * @throws IOException              if the file cannot be read
+   * @throws IllegalArgumentException if the file is not a scene file of a
+   *                                  known version
+   */
+  public static Scene read(Path file) throws IOException {
+    SceneLoadEvent event = new SceneLoadEvent();
+    event.begin();
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      long size = channel.size();
+      ByteBuffer header = readFully(channel, 0, HEADER_BYTES);
+      byte[] magic = new byte[MAGIC.length];
+      header.get(magic);
+      if (!Arrays.equals(magic, MAGIC))
+        throw new IllegalArgumentException("Not a scene file: " + file);
+      int version = header.getInt();
+      if (version > VERSION)
+        throw new IllegalArgumentException("Scene file version " + version + " is newer than " + VERSION);
+
+      Scene scene = null;
+      List<Material> materials = new ArrayList<>();
+      List<Mesh> meshes = new ArrayList<>();
+      long offset = HEADER_BYTES;
+      while (offset < size) {
+        ByteBuffer sectionHeader = readFully(channel, offset, SECTION_HEADER_BYTES);
+        int tag = sectionHeader.getInt();
+        sectionHeader.getInt();
+        long length = sectionHeader.getLong();
+        if (length < 0 || offset + SECTION_HEADER_BYTES + length > size || length > Integer.MAX_VALUE)
+          throw new IllegalArgumentException("Truncated scene file: " + file);
+        ByteBuffer body = channel.map(FileChannel.MapMode.READ_ONLY, offset + SECTION_HEADER_BYTES, length)
+            .order(ByteOrder.LITTLE_ENDIAN);
+        offset += SECTION_HEADER_BYTES + length;
+
+        if (tag == SECTION_NAME) {
+          byte[] name = new byte[body.getInt()];
+          body.get(name);
+          scene = new Scene(new String(name, StandardCharsets.UTF_8));
+          continue;
+        }
+        if (scene == null)
+          throw new IllegalArgumentException("Scene file must start with the name of the scene: " + file);
+        switch (tag) {
+          case SECTION_ENVIRONMENT:
+            scene.setBackground(getColor(body));
+            scene.setAmbientLight(new AmbientLight(getColor(body), 1));
+            break;
+          case SECTION_CAMERA:
+            scene.setCamera(new Camera(getPoint(body), new Vector(getPoint(body)), new Vector(getPoint(body))) //
+                .setDistance(body.getDouble()) //
+                .setViewPlaneSize(body.getDouble(), body.getDouble()));
+            break;
+          case SECTION_MATERIALS:
+            for (int i = body.getInt(); i > 0; --i)
+              materials.add(new Material().setKD(body.getDouble()) //
+                  .setKS(body.getDouble()) //
+                  .setKR(body.getDouble()) //
+                  .setKT(body.getDouble()) //
+                  .setShininess((int) body.getDouble()) //
+                  .setGlossiness(body.getDouble()) //
+                  .setBlurriness(body.getDouble()));
+            break;
+          case SECTION_LIGHTS:
+            for (int i = body.getInt(); i > 0; --i)
+              scene.lights.add(readLight(body));
+            break;
+          case SECTION_GEOMETRIES:
+            for (int i = body.getInt(); i > 0; --i)
+              scene.geometries.add(readRecord(body, materials, meshes));
+            break;
+          case SECTION_SHARED_MESH:
+            meshes.add(readMeshSection(body, materials));
+            break;
+          case SECTION_MESH:
+            // the merged triangles of version 1 files, after the other geometries
+            scene.geometries.add(readMeshSection(body, materials));
+            break;
+          default:
+            // section of a later version
+        }
+      }
+      if (scene == null)
+        throw new IllegalArgumentException("Empty scene file: " + file);
+      List<Intersectable> geometries = scene.geometries.getGeometryList();
+      event.commit(file.toString(), "scene", geometries == null ? 0 : geometries.size());
+      return scene;
+    }
+  }
+
+  /**
+   * Collect the geometries and instances of a composite, in their order
+   *
+   * @param intersectable geometry, instance or composite of them
+   * @param records       receives the geometries and instances
+   */
+  private static void flatten(Intersectable intersectable, List<Intersectable> records) {
+    if (intersectable instanceof Geometries) {
+      List<Intersectable> list = ((Geometries) intersectable).getGeometryList();
+      if (list != null)
+        for (Intersectable child : list)
+          flatten(child, records);
+    } else if (intersectable instanceof Geometry || intersectable instanceof Instance) {
+      records.add(intersectable);
+    } else {
+      throw new IllegalArgumentException("Cannot write " + intersectable.getClass().getSimpleName());
+    }
+  }
+
+  /**
+   * Visit the geometries of a geometry, instance or composite, including the
+   * geometries placed by instances
+   *
+   * @param intersectable geometry, instance or composite of them
+   * @param action        called for every geometry
+   */
+  private static void forEachGeometry(Intersectable intersectable, Consumer<Geometry> action) {
+    if (intersectable instanceof Instance) {
+      forEachGeometry(((Instance) intersectable).getGeometry(), action);
+    } else if (intersectable instanceof Geometries) {
+      List<Intersectable> list = ((Geometries) intersectable).getGeometryList();
+      if (list != null)
+        for (Intersectable child : list)
+          forEachGeometry(child, action);
+    } else if (intersectable instanceof Geometry) {
+      action.accept((Geometry) intersectable);
+    } else {
+      throw new IllegalArgumentException("Cannot write " + intersectable.getClass().getSimpleName());
+    }
+  }
+
+  /**
+   * Replace the triangles that share their emission and material by one mesh of
+   * them, in place of the first of them
+   *
+   * @param records   geometries and instances of the scene
+   * @param materials indices of the materials
+   * @return the geometries and instances with the meshes
+   */
+  private static List<Intersectable> mergeTriangles(List<Intersectable> records, Map<Material, Integer> materials) {
+    Map<List<Object>, List<Triangle>> groups = new LinkedHashMap<>();
+    for (Intersectable record : records)
+      if (record instanceof Triangle)
+        groups.computeIfAbsent(triangleKey((Triangle) record, materials), k -> new ArrayList<>())
+            .add((Triangle) record);
+    List<Intersectable> merged = new ArrayList<>();
+    Set<List<Object>> placed = new HashSet<>();
+    for (Intersectable record : records) {
+      if (!(record instanceof Triangle)) {
+        merged.add(record);
+        continue;
+      }
+      List<Object> key = triangleKey((Triangle) record, materials);
+      if (placed.add(key))
+        merged.add(toMesh(groups.get(key)));
+    }
+    return merged;
+  }
+
+  private static List<Object> triangleKey(Triangle triangle, Map<Material, Integer> materials) {
+    Color e = triangle.getEmission();
+    return List.of(materials.get(triangle.getMaterial()), e.getRed(), e.getGreen(), e.getBlue());
+  }
+
+  /**
+   * Create a mesh of triangles with the emission and material of the first one
+   *
+   * @param triangles the triangles
+   * @return the mesh
+   */
+  private static Mesh toMesh(List<Triangle> triangles) {
+    float[] vertices = new float[9 * triangles.size()];
+    int[] indices = new int[3 * triangles.size()];
+    for (int t = 0; t < triangles.size(); ++t) {
+      List<Point3D> corners = triangles.get(t).getVertices();
+      for (int k = 0; k < 3; ++k) {
+        Point3D corner = corners.get(k);
+        vertices[9 * t + 3 * k] = (float) corner.getX();
+        vertices[9 * t + 3 * k + 1] = (float) corner.getY();
+        vertices[9 * t + 3 * k + 2] = (float) corner.getZ();
+        indices[3 * t + k] = 3 * t + k;
+      }
+    }
+    Mesh mesh = new Mesh(vertices, indices);
+    mesh.setEmission(triangles.get(0).getEmission()).setMaterial(triangles.get(0).getMaterial());
+    return mesh;
+  }
+
+  private static void writeLight(Output out, LightSource light) throws IOException {
+    if (light instanceof DirectionalLight) {
+      DirectionalLight directional = (DirectionalLight) light;
+      out.putInt(LIGHT_DIRECTIONAL);
+      out.putColor(directional.getIntensity());
+      out.putPoint(directional.getL(null).getHead());
+    } else if (light instanceof PointLight) {
+      PointLight point = (PointLight) light;
+      boolean spot = light instanceof SpotLight;
+      out.putInt(spot ? LIGHT_SPOT : LIGHT_POINT);
+      out.putColor(point.getIntensity());
+      out.putPoint(point.getPosition());
+      out.putDouble(point.getKC());
+      out.putDouble(point.getKL());
+      out.putDouble(point.getKQ());
+      if (spot) {
+        out.putPoint(((SpotLight) light).getDirection().getHead());
+        out.putDouble(((SpotLight) light).getConcentration());
+      }
+    } else {
+      throw new IllegalArgumentException("Cannot write " + light.getClass().getSimpleName());
+    }
+  }
+
+  private static LightSource readLight(ByteBuffer body) {
+    int type = body.getInt();
+    Color intensity = getColor(body);
+    if (type == LIGHT_DIRECTIONAL)
+      return new DirectionalLight(intensity, new Vector(getPoint(body)));
+    Point3D position = getPoint(body);
+    double kC = body.getDouble();
+    double kL = body.getDouble();
+    double kQ = body.getDouble();
+    if (type == LIGHT_POINT)
+      return new PointLight(intensity, position, kC, kL, kQ);
+    if (type == LIGHT_SPOT)
+      return new SpotLight(intensity, position, new Vector(getPoint(body)), kC, kL, kQ, body.getDouble());
+    throw new IllegalArgumentException("Unknown light type " + type);
+  }
+
+  /**
+   * Write a geometry, instance or composite of them, with the geometries placed
+   * by instances and composites
+   *
+   * @param out           the file
+   * @param intersectable the geometry, instance or composite
+   * @param materials     indices of the materials
+   * @param meshes        indices of the meshes
+   * @throws IOException if the file cannot be written
+   */
+  private static void writeRecord(Output out, Intersectable intersectable, Map<Material, Integer> materials,
+      Map<Mesh, Integer> meshes) throws IOException {
+    if (intersectable instanceof Instance) {
+      Transform transform = ((Instance) intersectable).getTransform();
+      out.putInt(GEOMETRY_INSTANCE);
+      // the inverse too, so the transformation is read back exactly
+      for (double value : transform.getRows())
+        out.putDouble(value);
+      for (double value : transform.inverse().getRows())
+        out.putDouble(value);
+      writeRecord(out, ((Instance) intersectable).getGeometry(), materials, meshes);
+    } else if (intersectable instanceof Geometries) {
+      List<Intersectable> list = ((Geometries) intersectable).getGeometryList();
+      out.putInt(GEOMETRY_GROUP);
+      out.putInt(list == null ? 0 : list.size());
+      if (list != null)
+        for (Intersectable child : list)
+          writeRecord(out, child, materials, meshes);
+    } else {
+      Geometry geometry = (Geometry) intersectable;
+      writeGeometryHeader(out, geometry, materials);
+      if (geometry instanceof Mesh)
+        out.putInt(meshes.get(geometry));
+      else
+        writeGeometry(out, geometry);
+    }
+  }
+
+  /**
+   * Read a geometry, instance or composite written by
+   * {@link #writeRecord(Output, Intersectable, Map, Map)}
+   *
+   * @param body      the section
+   * @param materials the materials of the file
+   * @param meshes    the meshes of the file
+   * @return the geometry, instance or composite
+   */
+  private static Intersectable readRecord(ByteBuffer body, List<Material> materials, List<Mesh> meshes) {
+    int type = body.getInt();
+    if (type == GEOMETRY_INSTANCE) {
+      double[] rows = new double[12];
+      double[] inverseRows = new double[12];
+      body.asDoubleBuffer().get(rows).get(inverseRows);
+      body.position(body.position() + 8 * 24);
+      return new Instance(readRecord(body, materials, meshes), Transform.of(rows, inverseRows));
+    }
+    if (type == GEOMETRY_GROUP) {
+      Geometries group = new Geometries();
+      for (int i = body.getInt(); i > 0; --i)
+        group.add(readRecord(body, materials, meshes));
+      return group;
+    }
+    Material material = materials.get(body.getInt());
+    Color emission = getColor(body);
+    Geometry geometry = type == GEOMETRY_MESH ? meshes.get(body.getInt()) : readGeometry(body, type);
+    return geometry.setEmission(emission).setMaterial(material);
+  }
+
+  private static void writeGeometryHeader(Output out, Geometry geometry, Map<Material, Integer> materials)
+      throws IOException {
+    out.putInt(geometryType(geometry));
+    out.putInt(materials.get(geometry.getMaterial()));
+    out.putColor(geometry.getEmission());
+  }
+
+  private static int geometryType(Geometry geometry) {
+    if (geometry instanceof Sphere)
+      return GEOMETRY_SPHERE;
+    if (geometry instanceof Plane)
+      return GEOMETRY_PLANE;
+    if (geometry instanceof Triangle)
+      return GEOMETRY_TRIANGLE;
+    if (geometry instanceof Polygon)
+      return GEOMETRY_POLYGON;
+    if (geometry instanceof Cylinder)
+      return GEOMETRY_CYLINDER;
+    if (geometry instanceof Tube)
+      return GEOMETRY_TUBE;
+    if (geometry instanceof Mesh)
+      return GEOMETRY_MESH;
+    throw new IllegalArgumentException("Cannot write " + geometry.getClass().getSimpleName());
+  }
+
+  private static void writeGeometry(Output out, Geometry geometry) throws IOException {
+    switch (geometryType(geometry)) {
+      case GEOMETRY_SPHERE:
+        out.putPoint(((Sphere) geometry).getCenter());
+        out.putDouble(((Sphere) geometry).getRadius());
+        break;
+      case GEOMETRY_PLANE:
+        out.putPoint(((Plane) geometry).getOrigin());
+        out.putPoint(((Plane) geometry).getNormal().getHead());
+        break;
+      case GEOMETRY_TRIANGLE:
+        for (Point3D vertex : ((Triangle) geometry).getVertices())
+          out.putPoint(vertex);
+        break;
+      case GEOMETRY_POLYGON:
+        List<Point3D> vertices = ((Polygon) geometry).getVertices();
+        out.putInt(vertices.size());
+        for (Point3D vertex : vertices)
+          out.putPoint(vertex);
+        break;
+      default:
+        Tube tube = (Tube) geometry;
+        out.putPoint(tube.getAxis().getOrigin());
+        out.putPoint(tube.getAxis().getDirection().getHead());
+        out.putDouble(tube.getRadius());
+        if (geometry instanceof Cylinder)
+          out.putDouble(((Cylinder) geometry).getHeight());
+    }
+  }
+
+  private static Geometry readGeometry(ByteBuffer body, int type) {
+    switch (type) {
+      case GEOMETRY_SPHERE:
+        return new Sphere(getPoint(body), body.getDouble());
+      case GEOMETRY_PLANE:
+        return new Plane(getPoint(body), new Vector(getPoint(body)));
+      case GEOMETRY_POLYGON:
+        Point3D[] vertices = new Point3D[body.getInt()];
+        for (int i = 0; i < vertices.length; ++i)
+          vertices[i] = getPoint(body);
+        return new Polygon(vertices);
+      case GEOMETRY_TRIANGLE:
+        return new Triangle(getPoint(body), getPoint(body), getPoint(body));
+      case GEOMETRY_TUBE:
+        return new Tube(new Ray(getPoint(body), new Vector(getPoint(body))), body.getDouble());
+      case GEOMETRY_CYLINDER:
+        return new Cylinder(new Ray(getPoint(body), new Vector(getPoint(body))), body.getDouble(),
+            body.getDouble());
+      default:
+        throw new IllegalArgumentException("Unknown geometry type " + type);
+    }
+  }
+
+  /**
+   * Read a mesh section
+   *
+   * @param body      body of the section
+   * @param materials the materials of the file
+   * @return the mesh
+   */
+  private static Mesh readMeshSection(ByteBuffer body, List<Material> materials) {
+    body.getInt();
+    Material material = materials.get(body.getInt());
+    Color emission = getColor(body);
+    Mesh mesh = readMesh(body);
+    mesh.setEmission(emission).setMaterial(material);
+    return mesh;
+  }
+
+  /**
+   * Create a mesh of views of its section
+   *
+   * @param body body of the section after the emission
+   * @return the mesh
+   */
+  private static Mesh readMesh(ByteBuffer body) {
+    int vertexCount = body.getInt();
+    int triangleCount = body.getInt();
+    int nodeCount = body.getInt();
+    body.getInt();
+    FloatBuffer vertices = slice(body, 4 * 3 * vertexCount).asFloatBuffer();
+    IntBuffer indices = slice(body, 4 * 3 * triangleCount).asIntBuffer();
+    FloatBuffer bounds = slice(body, 4 * 6 * nodeCount).asFloatBuffer();
+    IntBuffer links = slice(body, 4 * 2 * nodeCount).asIntBuffer();
+    return new Mesh(vertices, indices, new BoundingVolumeHierarchy(bounds, links));
+  }
+
+  /**
+   * Take a view of the next bytes of a buffer and skip them with their padding
+   *
+   * @param body   the buffer
+   * @param length number of bytes
+   * @return the view
+   */
+  private static ByteBuffer slice(ByteBuffer body, int length) {
+    ByteBuffer view = body.slice().limit(length).order(ByteOrder.LITTLE_ENDIAN);
+    body.position(Math.min(body.limit(), body.position() + (length + 7 & ~7)));
+    return view;
+  }
+
+  private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+    while (buffer.hasRemaining())
+      if (channel.read(buffer, position + buffer.position()) < 0)
+        throw new IllegalArgumentException("Truncated scene file");
+    return buffer.flip();
+  }
+
+  private static Point3D getPoint(ByteBuffer body) {
+    return new Point3D(body.getDouble(), body.getDouble(), body.getDouble());
+  }
+
+  private static Color getColor(ByteBuffer body) {
+    return new Color(body.getDouble(), body.getDouble(), body.getDouble());
+  }
+
+  /**
+   * Buffered writer of little endian values and sections to a file channel
+   */
+  private static final class Output implements Closeable {
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+    private long written = 0;
+    private long sectionStart = -1;
+
+    private Output(FileChannel channel) {
+      this.channel = channel;
+    }
+
+    private long position() {
+      return written + buffer.position();
+    }
+
+    private void ensure(int bytes) throws IOException {
+      if (buffer.remaining() < bytes)
+        flush();
+    }
+
+    private void flush() throws IOException {
+      buffer.flip();
+      while (buffer.hasRemaining())
+        written += channel.write(buffer);
+      buffer.clear();
+    }
+
+    private void putInt(int value) throws IOException {
+      ensure(4);
+      buffer.putInt(value);
+    }
+
+    private void putLong(long value) throws IOException {
+      ensure(8);
+      buffer.putLong(value);
+    }
+
+    private void putDouble(double value) throws IOException {
+      ensure(8);
+      buffer.putDouble(value);
+    }
+
+    private void putBytes(byte[] bytes) throws IOException {
+      for (byte b : bytes) {
+        ensure(1);
+        buffer.put(b);
+      }
+    }
+
+    private void putPoint(Point3D point) throws IOException {
+      putDouble(point.getX());
+      putDouble(point.getY());
+      putDouble(point.getZ());
+    }
+
+    private void putColor(Color color) throws IOException {
+      putDouble(color.getRed());
+      putDouble(color.getGreen());
+      putDouble(color.getBlue());
+    }
+
+    private void putFloats(FloatBuffer values) throws IOException {
+      while (values.hasRemaining()) {
+        ensure(4);
+        int count = Math.min(buffer.remaining() / 4, values.remaining());
+        FloatBuffer part = values.slice().limit(count);
+        buffer.asFloatBuffer().put(part);
+        buffer.position(buffer.position() + 4 * count);
+        values.position(values.position() + count);
+      }
+    }
+
+    private void putInts(IntBuffer values) throws IOException {
+      while (values.hasRemaining()) {
+        ensure(4);
+        int count = Math.min(buffer.remaining() / 4, values.remaining());
+        IntBuffer part = values.slice().limit(count);
+        buffer.asIntBuffer().put(part);
+        buffer.position(buffer.position() + 4 * count);
+        values.position(values.position() + count);
+      }
+    }
+
+    /**
+     * Pad to a multiple of 8 bytes
+     */
+    private void align() throws IOException {
+      while (position() % 8 != 0) {
+        ensure(1);
+        buffer.put((byte) 0);
+      }
+    }
+
+    private void beginSection(int tag) throws IOException {
+      align();
+      sectionStart = position();
+      putInt(tag);
+      putInt(0);
+      putLong(0);
+    }
+
+    /**
+     * Pad the section and write its length into its header
+     */
+    private void endSection() throws IOException {
+      align();
+      flush();
+      ByteBuffer length = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN)
+          .putLong(position() - sectionStart - SECTION_HEADER_BYTES).flip();
+      while (length.hasRemaining())
+        channel.write(length, sectionStart + 8 + length.position());
+      sectionStart = -1;
+    }
+
+    @Override
+    public void close() throws IOException {
+      flush();
+      channel.close();
+    }
+  }
+}
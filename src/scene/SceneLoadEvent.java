@@ -0,0 +1,47 @@
+package scene;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event of loading a scene or a mesh
+ *
+ * @author Jonah Lawrence
+ * @author Elad Harizy
+ */
+@Name("raytracer.SceneLoad")
+@Label("Scene Load")
+@Category({ "Ray Tracer", "Scene" })
+@Description("Load of a scene or a mesh")
+@StackTrace(false)
+class SceneLoadEvent extends Event {
+
+  @Label("Source")
+  String source;
+
+  @Label("Format")
+  String format;
+
+  @Label("Geometries")
+  int geometries;
+
+  /**
+   * Commit the event, if it is recorded, after the load
+   *
+   * @param source     file or name the scene or mesh was loaded from
+   * @param format     format of the source
+   * @param geometries number of geometries, or triangles of a mesh
+   */
+  void commit(String source, String format, int geometries) {
+    if (shouldCommit()) {
+      this.source = source;
+      this.format = format;
+      this.geometries = geometries;
+      commit();
+    }
+  }
+}
@@ -0,0 +1,482 @@
+package scene;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import elements.AmbientLight;
+import elements.Camera;
+import elements.DirectionalLight;
+import elements.PointLight;
+import elements.SpotLight;
+import geometries.Cylinder;
+import geometries.Geometry;
+import geometries.HierarchyCache;
+import geometries.Intersectable;
+import geometries.Mesh;
+import geometries.Plane;
+import geometries.Polygon;
+import geometries.Sphere;
+import geometries.Triangle;
+import geometries.Tube;
+import primitives.Color;
+import primitives.Material;
+import primitives.Point3D;
+import primitives.Ray;
+import primitives.Vector;
+
+/**
+ * Loads a scene from an XML file with a StAX stream reader. Every element is
+ * turned into its geometry, light or camera as soon as it is read, so only the
+ * scene itself is kept in memory and no document tree is built. Example:
+ *
+ * <pre>
+ * &lt;scene background-color="75 127 90"&gt;
+ *   &lt;ambient-light color="255 191 191" k="1"/&gt;
+ *   &lt;camera p0="0 0 0" vTo="0 0 -1" vUp="0 1 0" distance="100" width="500" height="500"/&gt;
+ *   &lt;materials&gt;
+ *     &lt;material id="shiny" kD="0.5" kS="0.5" shininess="60"/&gt;
+ *   &lt;/materials&gt;
+ *   &lt;geometries&gt;
+ *     &lt;sphere center="0 0 -100" radius="50" emission="0 0 255" material="shiny"/&gt;
+ *     &lt;triangle p0="-100 0 -100" p1="0 100 -100" p2="-100 100 -100" kD="0.5"/&gt;
+ *   &lt;/geometries&gt;
+ *   &lt;lights&gt;
+ *     &lt;point-light color="500 500 500" position="100 0 -100" kQ="0.000001"/&gt;
+ *   &lt;/lights&gt;
+ * &lt;/scene&gt;
+ * </pre>
+ *
+ * Geometries are sphere, triangle, plane (p0 and normal, or p0, p1 and p2),
+ * polygon (points separated by commas), tube and cylinder (axis-p0, axis-dir,
+ * radius, height) and mesh (an OBJ or PLY file, relative to the directory of
+ * the XML file). Lights are directional-light, point-light and spot-light.
+ * A geometry takes a shared material by its id, or material attributes of its
+ * own.
+ *
+ * @author Jonah Lawrence
+ * @author Elad Harizy
+ */
+public class XmlSceneLoader {
+
+  private static final String[] MATERIAL_ATTRIBUTES = { "kD", "kS", "kR", "kT", "shininess", "glossiness",
+      "blurriness" };
+
+  /**
+   * shared materials by their id
+   */
+  private final Map<String, Material> materials = new HashMap<>();
+
+  /**
+   * directory of the XML file that mesh files are relative to
+   */
+  private Path directory = Paths.get("");
+
+  /**
+   * loader of the mesh files
+   */
+  private final MeshLoader meshLoader = new MeshLoader();
+
+  /**
+   * statistics of the last load
+   */
+  private Statistics statistics = new Statistics();
+
+  /**
+   * Statistics of loading a scene
+   */
+  public static class Statistics {
+    private long loadMillis;
+    private long heapBytes;
+    private long geometries;
+    private long lights;
+    private long materials;
+
+    /**
+     * @return time of the load in milliseconds
+     */
+    public long getLoadMillis() {
+      return loadMillis;
+    }
+
+    /**
+     * @return growth of the used heap during the load in bytes
+     */
+    public long getHeapBytes() {
+      return heapBytes;
+    }
+
+    /**
+     * @return number of geometries loaded
+     */
+    public long getGeometries() {
+      return geometries;
+    }
+
+    /**
+     * @return number of light sources loaded
+     */
+    public long getLights() {
+      return lights;
+    }
+
+    /**
+     * @return number of shared materials loaded
+     */
+    public long getMaterials() {
+      return materials;
+    }
+
+    @Override
+    public String toString() {
+      return String.format("%d geometries, %d lights, %d materials loaded in %d ms, heap grew by %.1f MB", geometries,
+          lights, materials, loadMillis, heapBytes / (1024.0 * 1024.0));
+    }
+  }
+
+  /**
+   * Load a scene from an XML file, named after the file
+   *
+   * @param file the XML file
+   * @return the scene
+   * @throws IOException              if the file cannot be read
+   * @throws IllegalArgumentException if the XML is not a valid scene
+   */
+  public Scene load(Path file) throws IOException {
+    String name = file.getFileName().toString().replaceFirst("\\.xml$", "");
+    Path parent = file.toAbsolutePath().getParent();
+    try (InputStream in = Files.newInputStream(file)) {
+      directory = parent == null ? Paths.get("") : parent;
+      return load(in, name);
+    } finally {
+      directory = Paths.get("");
+    }
+  }
+
+  /**
+   * Load a scene from an XML stream, mesh files are relative to the working
+   * directory
+   *
+   * @param in        the XML stream
+   * @param sceneName name of the scene
+   * @return the scene
+   * @throws IllegalArgumentException if the XML is not a valid scene
+   */
+  public Scene load(InputStream in, String sceneName) {
+    Runtime runtime = Runtime.getRuntime();
+    long heapBefore = runtime.totalMemory() - runtime.freeMemory();
+    long startTime = System.currentTimeMillis();
+    SceneLoadEvent event = new SceneLoadEvent();
+    event.begin();
+    statistics = new Statistics();
+    materials.clear();
+
+    Scene scene = new Scene(sceneName);
+    XMLStreamReader reader = null;
+    try {
+      reader = createFactory().createXMLStreamReader(in);
+      while (reader.hasNext()) {
+        if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+          readElement(reader, scene);
+        }
+      }
+    } catch (XMLStreamException e) {
+      throw new IllegalArgumentException("Malformed scene XML: " + e.getMessage(), e);
+    } finally {
+      if (reader != null) {
+        try {
+          reader.close();
+        } catch (XMLStreamException e) {
+          // nothing left to read
+        }
+      }
+    }
+
+    statistics.loadMillis = System.currentTimeMillis() - startTime;
+    statistics.heapBytes = Math.max(0, runtime.totalMemory() - runtime.freeMemory() - heapBefore);
+    statistics.materials = materials.size();
+    List<Intersectable> geometries = scene.geometries.getGeometryList();
+    event.commit(sceneName, "xml", geometries == null ? 0 : geometries.size());
+    return scene;
+  }
+
+  /**
+   * Set a cache of the hierarchies of the meshes of the scenes
+   *
+   * @param hierarchyCache the cache, or null to build the hierarchies every time
+   * @return the loader
+   */
+  public XmlSceneLoader setHierarchyCache(HierarchyCache hierarchyCache) {
+    meshLoader.setHierarchyCache(hierarchyCache);
+    return this;
+  }
+
+  /**
+   * @return statistics of the last load
+   */
+  public Statistics getStatistics() {
+    return statistics;
+  }
+
+  /**
+   * Create a stream reader factory that does not resolve DTDs or external
+   * entities
+   *
+   * @return the factory
+   */
+  private static XMLInputFactory createFactory() {
+    XMLInputFactory factory = XMLInputFactory.newInstance();
+    factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    return factory;
+  }
+
+  /**
+   * Add the object of an element to the scene
+   *
+   * @param reader reader positioned on the start of the element
+   * @param scene  the scene
+   */
+  private void readElement(XMLStreamReader reader, Scene scene) {
+    switch (reader.getLocalName()) {
+      case "scene":
+        String background = attribute(reader, "background-color");
+        if (background != null)
+          scene.setBackground(parseColor(background));
+        break;
+      case "geometries":
+      case "lights":
+      case "materials":
+        break;
+      case "ambient-light":
+        scene.setAmbientLight(new AmbientLight(parseColor(required(reader, "color")), number(reader, "k", 1)));
+        break;
+      case "camera":
+        scene.setCamera(new Camera(parsePoint(required(reader, "p0")), parseVector(required(reader, "vTo")),
+            parseVector(required(reader, "vUp"))) //
+            .setDistance(number(reader, "distance", 0)) //
+            .setViewPlaneSize(number(reader, "width", 0), number(reader, "height", 0)));
+        break;
+      case "material":
+        materials.put(required(reader, "id"), readMaterial(reader, new Material()));
+        break;
+      case "directional-light":
+        scene.lights.add(new DirectionalLight(parseColor(required(reader, "color")),
+            parseVector(required(reader, "direction"))));
+        ++statistics.lights;
+        break;
+      case "point-light":
+        scene.lights.add(new PointLight(parseColor(required(reader, "color")), parsePoint(required(reader, "position")),
+            number(reader, "kC", 1), number(reader, "kL", 0), number(reader, "kQ", 0)));
+        ++statistics.lights;
+        break;
+      case "spot-light":
+        scene.lights.add(new SpotLight(parseColor(required(reader, "color")), parsePoint(required(reader, "position")),
+            parseVector(required(reader, "direction")), number(reader, "kC", 1), number(reader, "kL", 0),
+            number(reader, "kQ", 0), number(reader, "concentration", 1)));
+        ++statistics.lights;
+        break;
+      default:
+        scene.geometries.add(readGeometry(reader));
+        ++statistics.geometries;
+    }
+  }
+
+  /**
+   * Create the geometry of an element with its emission and material
+   *
+   * @param reader reader positioned on the start of the element
+   * @return the geometry
+   */
+  private Geometry readGeometry(XMLStreamReader reader) {
+    Geometry geometry;
+    switch (reader.getLocalName()) {
+      case "sphere":
+        geometry = new Sphere(parsePoint(required(reader, "center")), number(reader, "radius", 0));
+        break;
+      case "triangle":
+        geometry = new Triangle(parsePoint(required(reader, "p0")), parsePoint(required(reader, "p1")),
+            parsePoint(required(reader, "p2")));
+        break;
+      case "plane":
+        String normal = attribute(reader, "normal");
+        geometry = normal != null ? new Plane(parsePoint(required(reader, "p0")), parseVector(normal).normalize())
+            : new Plane(parsePoint(required(reader, "p0")), parsePoint(required(reader, "p1")),
+                parsePoint(required(reader, "p2")));
+        break;
+      case "polygon":
+        String[] points = required(reader, "points").split(",");
+        Point3D[] vertices = new Point3D[points.length];
+        for (int i = 0; i < points.length; ++i)
+          vertices[i] = parsePoint(points[i]);
+        geometry = new Polygon(vertices);
+        break;
+      case "tube":
+        geometry = new Tube(readAxis(reader), number(reader, "radius", 0));
+        break;
+      case "cylinder":
+        geometry = new Cylinder(readAxis(reader), number(reader, "radius", 0), number(reader, "height", 0));
+        break;
+      case "mesh":
+        String file = required(reader, "file");
+        try {
+          geometry = meshLoader.load(directory.resolve(file));
+        } catch (IOException e) {
+          throw new IllegalArgumentException("Cannot read mesh " + file + ": " + e.getMessage(), e);
+        }
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown scene element: " + reader.getLocalName());
+    }
+    String emission = attribute(reader, "emission");
+    if (emission != null)
+      geometry.setEmission(parseColor(emission));
+    String materialId = attribute(reader, "material");
+    if (materialId != null) {
+      Material material = materials.get(materialId);
+      if (material == null)
+        throw new IllegalArgumentException("Undefined material: " + materialId);
+      geometry.setMaterial(material);
+    } else if (hasMaterialAttributes(reader)) {
+      geometry.setMaterial(readMaterial(reader, new Material()));
+    }
+    return geometry;
+  }
+
+  /**
+   * Read the axis of a tube or cylinder
+   *
+   * @param reader reader positioned on the start of the element
+   * @return the axis
+   */
+  private static Ray readAxis(XMLStreamReader reader) {
+    return new Ray(parsePoint(required(reader, "axis-p0")), parseVector(required(reader, "axis-dir")));
+  }
+
+  /**
+   * Check whether an element has material attributes
+   *
+   * @param reader reader positioned on the start of the element
+   * @return true if there is any material attribute
+   */
+  private static boolean hasMaterialAttributes(XMLStreamReader reader) {
+    for (String name : MATERIAL_ATTRIBUTES)
+      if (attribute(reader, name) != null)
+        return true;
+    return false;
+  }
+
+  /**
+   * Set the material attributes of an element into a material
+   *
+   * @param reader   reader positioned on the start of the element
+   * @param material the material
+   * @return the material
+   */
+  private static Material readMaterial(XMLStreamReader reader, Material material) {
+    return material.setKD(number(reader, "kD", 0)) //
+        .setKS(number(reader, "kS", 0)) //
+        .setKR(number(reader, "kR", 0)) //
+        .setKT(number(reader, "kT", 0)) //
+        .setShininess((int) number(reader, "shininess", 0)) //
+        .setGlossiness(number(reader, "glossiness", 0)) //
+        .setBlurriness(number(reader, "blurriness", 0));
+  }
+
+  /**
+   * Get an attribute of the current element
+   *
+   * @param reader reader positioned on the start of the element
+   * @param name   name of the attribute
+   * @return the value, or null if it is missing
+   */
+  private static String attribute(XMLStreamReader reader, String name) {
+    return reader.getAttributeValue(null, name);
+  }
+
+  /**
+   * Get an attribute the current element must have
+   *
+   * @param reader reader positioned on the start of the element
+   * @param name   name of the attribute
+   * @return the value
+   * @throws IllegalArgumentException if it is missing
+   */
+  private static String required(XMLStreamReader reader, String name) {
+    String value = attribute(reader, name);
+    if (value == null)
+      throw new IllegalArgumentException(
+          String.format("Missing attribute %s of %s at line %d", name, reader.getLocalName(),
+              reader.getLocation().getLineNumber()));
+    return value;
+  }
+
+  /**
+   * Get a numeric attribute of the current element
+   *
+   * @param reader       reader positioned on the start of the element
+   * @param name         name of the attribute
+   * @param defaultValue value of a missing attribute
+   * @return the value
+   */
+  private static double number(XMLStreamReader reader, String name, double defaultValue) {
+    String value = attribute(reader, name);
+    return value == null ? defaultValue : Double.parseDouble(value.trim());
+  }
+
+  /**
+   * Parse three numbers separated by white space
+   *
+   * @param text the text
+   * @return the numbers
+   */
+  private static double[] parseTriple(String text) {
+    String[] parts = text.trim().split("\\s+");
+    if (parts.length != 3)
+      throw new IllegalArgumentException("Expected three numbers: " + text);
+    return new double[] { Double.parseDouble(parts[0]), Double.parseDouble(parts[1]), Double.parseDouble(parts[2]) };
+  }
+
+  /**
+   * Parse a point
+   *
+   * @param text x, y and z separated by white space
+   * @return the point
+   */
+  private static Point3D parsePoint(String text) {
+    double[] xyz = parseTriple(text);
+    return new Point3D(xyz[0], xyz[1], xyz[2]);
+  }
+
+  /**
+   * Parse a vector
+   *
+   * @param text x, y and z separated by white space
+   * @return the vector
+   */
+  private static Vector parseVector(String text) {
+    double[] xyz = parseTriple(text);
+    return new Vector(xyz[0], xyz[1], xyz[2]);
+  }
+
+  /**
+   * Parse a color
+   *
+   * @param text red, green and blue separated by white space
+   * @return the color
+   */
+  private static Color parseColor(String text) {
+    double[] rgb = parseTriple(text);
+    return new Color(rgb[0], rgb[1], rgb[2]);
+  }
+}
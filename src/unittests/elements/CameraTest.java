@@ -5,6 +5,7 @@ import static org.junit.Assert.*;
 import org.junit.Test;
 
 import elements.Camera;
+import elements.PixelRayGenerator;
 import primitives.*;
 
 /**
@@ -55,4 +56,33 @@ public class CameraTest {
 
 	}
 
+	/**
+	 * Test method for
+	 * {@link elements.PixelRayGenerator#constructRay(int, int)} and
+	 * {@link elements.PixelRayGenerator#constructRowRays(int, int, int, Ray[])}.
+	 */
+	@Test
+	public void testRayGenerator() {
+		Camera camera = new Camera(new Point3D(1, 2, 3), new Vector(0, 0, 1), new Vector(0, -1, 0)) //
+				.setDistance(10).setViewPlaneSize(8, 6);
+		PixelRayGenerator generator = camera.getRayGenerator(4, 3);
+		Ray[] row = new Ray[4];
+
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: every pixel gets the same ray as constructRayThroughPixel
+		for (int i = 0; i < 3; ++i) {
+			generator.constructRowRays(i, 0, 4, row);
+			for (int j = 0; j < 4; ++j) {
+				Ray expected = camera.constructRayThroughPixel(4, 3, j, i);
+				assertEquals("Bad generated ray", expected, generator.constructRay(j, i));
+				assertEquals("Bad incremental row ray", expected, row[j]);
+			}
+		}
+
+		// =============== Boundary Values Tests ==================
+		// TC11: part of a row starting in the middle
+		generator.constructRowRays(2, 2, 4, row);
+		assertEquals("Bad ray of partial row", camera.constructRayThroughPixel(4, 3, 3, 2), row[1]);
+	}
+
 }
@@ -2,16 +2,21 @@ package unittests.geometries;
 
 import static org.junit.Assert.*;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
 
 import org.junit.Test;
 
 import geometries.Geometries;
+import geometries.Instance;
+import geometries.Intersectable;
 import geometries.Plane;
 import geometries.Sphere;
 import geometries.Intersectable.GeoPoint;
 import primitives.Point3D;
 import primitives.Ray;
+import primitives.Transform;
 import primitives.Vector;
 
 /**
@@ -95,4 +100,97 @@ public class GeometriesTests {
         actual = geometries.findGeoIntersections(ray3);
         assertEquals("all geometries intersected failed", expected, actual);
     }
+
+    /**
+     * Test method for
+     * {@link geometries.Geometries#findGeoIntersections(primitives.Ray)} with a
+     * hierarchy over many geometries.
+     */
+    @Test
+    public void testFindGeoIntersectionsHierarchy() {
+        // grid of spheres and a plane below them
+        Geometries geometries = new Geometries(new Plane(new Point3D(0, 0, -5), new Vector(0, 0, 1)));
+        List<Sphere> spheres = new ArrayList<>();
+        for (int i = 0; i < 10; ++i) {
+            for (int j = 0; j < 10; ++j) {
+                spheres.add(new Sphere(new Point3D(3 * i, 3 * j, 0), 1));
+            }
+        }
+        geometries.add(spheres.toArray(new Sphere[0]));
+        assertNull("Plane is unbounded", geometries.getBounds());
+        assertArrayEquals("Wrong bounds", new double[] { -1, -1, -1, 28, 28, 1 },
+                new Geometries(spheres.toArray(new Sphere[0])).getBounds(), 1e-9);
+
+        // ============ Equivalence Partitions Tests ==============
+        // every ray finds the same points as a loop over all geometries
+        Random random = new Random(7);
+        for (int k = 0; k < 200; ++k) {
+            Ray ray = new Ray(new Point3D(random.nextDouble() * 30, random.nextDouble() * 30, 10),
+                    new Vector(random.nextDouble() - 0.5, random.nextDouble() - 0.5, -1));
+            List<GeoPoint> expected = new ArrayList<>();
+            for (Intersectable geometry : geometries.getGeometryList()) {
+                List<GeoPoint> points = geometry.findGeoIntersections(ray);
+                if (points != null) {
+                    expected.addAll(points);
+                }
+            }
+            List<GeoPoint> actual = geometries.findGeoIntersections(ray);
+            assertEquals("Wrong number of points", expected.size(), actual.size());
+            assertTrue("Hierarchy missed points", actual.containsAll(expected));
+        }
+
+        // =============== Boundary Values Tests ==================
+        // geometries added after the hierarchy was built are found
+        Sphere added = new Sphere(new Point3D(100, 100, 0), 1);
+        geometries.add(added);
+        List<GeoPoint> points = geometries.findGeoIntersections(new Ray(new Point3D(100, 100, 10), new Vector(0, 0, -1)));
+        assertTrue("Added geometry missed", points.contains(new GeoPoint(added, new Point3D(100, 100, 1))));
+    }
+
+    /**
+     * Test method for {@link geometries.Geometries#refit()}.
+     */
+    @Test
+    public void testRefit() {
+        // row of instances of one sphere
+        Sphere sphere = new Sphere(Point3D.ZERO, 1);
+        Instance[] instances = new Instance[50];
+        for (int i = 0; i < instances.length; ++i) {
+            instances[i] = new Instance(sphere, Transform.translation(new Vector(3 * i, 0, 1)));
+        }
+        Geometries geometries = new Geometries(instances);
+        Ray down = new Ray(new Point3D(30, 0, 10), new Vector(0, 0, -1));
+        assertEquals("Wrong points before moving", 2, geometries.findGeoIntersections(down).size());
+
+        // ============ Equivalence Partitions Tests ==============
+        // instance moved a little is found in its new place
+        instances[10].setTransform(Transform.translation(new Vector(30, 5, 1)));
+        geometries.refit();
+        assertNull("Moved instance found in its old place", geometries.findGeoIntersections(down));
+        List<GeoPoint> points = geometries
+                .findGeoIntersections(new Ray(new Point3D(30, 5, 10), new Vector(0, 0, -1)));
+        assertEquals("Moved instance not found", 2, points.size());
+
+        // =============== Boundary Values Tests ==================
+        // every instance moved far enough to rebuild the hierarchy
+        Random random = new Random(3);
+        for (Instance instance : instances) {
+            instance.setTransform(Transform.translation(
+                    new Vector(random.nextDouble() * 150, random.nextDouble() * 150, random.nextDouble() * 150)));
+        }
+        geometries.refit();
+        for (int k = 0; k < 100; ++k) {
+            Ray ray = new Ray(new Point3D(random.nextDouble() * 150, random.nextDouble() * 150, 200),
+                    new Vector(0, 0, -1));
+            List<GeoPoint> expected = new ArrayList<>();
+            for (Instance instance : instances) {
+                List<GeoPoint> found = instance.findGeoIntersections(ray);
+                if (found != null) {
+                    expected.addAll(found);
+                }
+            }
+            List<GeoPoint> actual = geometries.findGeoIntersections(ray);
+            assertEquals("Wrong number of points after refit", expected.size(), actual == null ? 0 : actual.size());
+        }
+    }
 }
@@ -0,0 +1,122 @@
+package unittests.geometries;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+
+import geometries.*;
+import primitives.*;
+
+/**
+ * Unit tests for geometries.HierarchyCache class
+ * 
+ * @author Jonah Lawrence
+ * @author Elad Harizy
+ */
+public class HierarchyCacheTests {
+
+	/**
+	 * Grid of triangles over a plane parallel to z = 0
+	 * 
+	 * @param size   number of squares along each side
+	 * @param height z of the plane
+	 * @return vertices followed by indices
+	 */
+	private Object[] grid(int size, float height) {
+		float[] vertices = new float[3 * (size + 1) * (size + 1)];
+		int[] indices = new int[6 * size * size];
+		for (int i = 0; i <= size; ++i)
+			for (int j = 0; j <= size; ++j) {
+				int v = 3 * (i * (size + 1) + j);
+				vertices[v] = i;
+				vertices[v + 1] = j;
+				vertices[v + 2] = height;
+			}
+		int t = 0;
+		for (int i = 0; i < size; ++i)
+			for (int j = 0; j < size; ++j) {
+				int a = i * (size + 1) + j;
+				int[] corners = { a, a + size + 1, a + size + 2, a, a + size + 2, a + 1 };
+				for (int corner : corners)
+					indices[t++] = corner;
+			}
+		return new Object[] { vertices, indices };
+	}
+
+	/**
+	 * Test method for
+	 * {@link geometries.HierarchyCache#getMesh(java.nio.FloatBuffer, java.nio.IntBuffer)}.
+	 */
+	@Test
+	public void testGetMesh() throws IOException {
+		Path directory = Files.createTempDirectory("bvh");
+		HierarchyCache cache = new HierarchyCache(directory);
+		Object[] grid = grid(20, 0);
+		Ray ray = new Ray(new Point3D(7.3, 11.6, 5), new Vector(0, 0, -1));
+
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: first mesh is built and stored
+		Mesh built = cache.getMesh(FloatBuffer.wrap((float[]) grid[0]), IntBuffer.wrap((int[]) grid[1]));
+		assertEquals("Mesh was not built", 1, cache.getMisses());
+
+		// TC02: same mesh is mapped from the cache
+		Mesh mapped = cache.getMesh(FloatBuffer.wrap((float[]) grid[0]), IntBuffer.wrap((int[]) grid[1]));
+		assertEquals("Mesh was not mapped", 1, cache.getHits());
+		assertTrue("Triangles were not mapped", mapped.getIndices().isDirect());
+		assertEquals("Wrong hierarchy", built.getHierarchy().getNodeCount(), mapped.getHierarchy().getNodeCount());
+		assertEquals("Wrong point", new Point3D(7.3, 11.6, 0), mapped.findGeoIntersections(ray).get(0).point);
+
+		// TC03: changed mesh has another key
+		grid = grid(20, 1);
+		Mesh changed = cache.getMesh(FloatBuffer.wrap((float[]) grid[0]), IntBuffer.wrap((int[]) grid[1]));
+		assertEquals("Changed mesh was not built", 2, cache.getMisses());
+		assertEquals("Wrong point", new Point3D(7.3, 11.6, 1), changed.findGeoIntersections(ray).get(0).point);
+
+		// =============== Boundary Values Tests ==================
+		// TC10: file of the right size with a triangle of another mesh is rebuilt
+		Path cached = directory.resolve(HierarchyCache.hash(FloatBuffer.wrap((float[]) grid[0]),
+				IntBuffer.wrap((int[]) grid[1])) + ".bvh");
+		byte[] bytes = Files.readAllBytes(cached);
+		ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).putInt(32, 1000000);
+		Files.write(cached, bytes);
+		cache.getMesh(FloatBuffer.wrap((float[]) grid[0]), IntBuffer.wrap((int[]) grid[1]));
+		assertEquals("File with a bad triangle was used", 3, cache.getMisses());
+
+		// TC11: file of the right size with a bad link is rebuilt
+		bytes = Files.readAllBytes(cached);
+		ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).putInt(bytes.length - 8, 1000000);
+		Files.write(cached, bytes);
+		cache.getMesh(FloatBuffer.wrap((float[]) grid[0]), IntBuffer.wrap((int[]) grid[1]));
+		assertEquals("File with a bad link was used", 4, cache.getMisses());
+		cache.getMesh(FloatBuffer.wrap((float[]) grid[0]), IntBuffer.wrap((int[]) grid[1]));
+		assertEquals("Rebuilt file was not used", 2, cache.getHits());
+
+		// TC12: damaged file is rebuilt
+		try (Stream<Path> files = Files.list(directory)) {
+			for (Path file : (Iterable<Path>) files::iterator)
+				Files.write(file, new byte[40]);
+		}
+		cache.getMesh(FloatBuffer.wrap((float[]) grid[0]), IntBuffer.wrap((int[]) grid[1]));
+		assertEquals("Damaged file was used", 5, cache.getMisses());
+
+		try (Stream<Path> files = Files.list(directory)) {
+			for (Path file : (Iterable<Path>) files::iterator)
+				Files.delete(file);
+		}
+		Files.delete(directory);
+
+		// TC13: mesh is created when the cache cannot be written
+		grid = grid(20, 2);
+		Mesh unstored = cache.getMesh(FloatBuffer.wrap((float[]) grid[0]), IntBuffer.wrap((int[]) grid[1]));
+		assertEquals("Wrong point", new Point3D(7.3, 11.6, 2), unstored.findGeoIntersections(ray).get(0).point);
+	}
+}
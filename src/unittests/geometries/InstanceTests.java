@@ -0,0 +1,74 @@
+package unittests.geometries;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import geometries.*;
+import geometries.Intersectable.GeoPoint;
+import primitives.*;
+
+/**
+ * Unit tests for geometries.Instance class
+ * 
+ * @author Jonah Lawrence
+ * @author Elad Harizy
+ */
+public class InstanceTests {
+
+	/**
+	 * Test method for
+	 * {@link geometries.Instance#findGeoIntersections(primitives.Ray, double)}.
+	 */
+	@Test
+	public void testFindGeoIntersections() {
+		Sphere sphere = new Sphere(Point3D.ZERO, 1);
+		sphere.setEmission(new Color(10, 20, 30));
+		// sphere of radius 2 around (5, 0, 0)
+		Instance instance = new Instance(sphere,
+				Transform.scaling(2).then(Transform.translation(new Vector(5, 0, 0))));
+
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: Ray through the center of the transformed sphere
+		Ray ray = new Ray(new Point3D(0, 0, 0), new Vector(1, 0, 0));
+		List<GeoPoint> points = instance.findGeoIntersections(ray);
+		assertEquals("Wrong number of points", 2, points.size());
+		GeoPoint near = points.get(0).point.distance(ray.getOrigin()) < points.get(1).point.distance(ray.getOrigin())
+				? points.get(0)
+				: points.get(1);
+		assertEquals("Wrong point", new Point3D(3, 0, 0), near.point);
+		assertEquals("Wrong normal", new Vector(-1, 0, 0), near.geometry.getNormal(near.point));
+		assertEquals("Wrong emission", new Color(10, 20, 30).getColor(), near.geometry.getEmission().getColor());
+
+		// TC02: Ray that misses the transformed sphere but hits the shared one
+		assertNull("Ray misses instance",
+				instance.findGeoIntersections(new Ray(new Point3D(0, 0, 5), new Vector(0, 0, -1))));
+
+		// =============== Boundary Values Tests ==================
+		// TC10: Maximum distance in scene units, not in the units of the sphere
+		points = instance.findGeoIntersections(ray, 4);
+		assertEquals("Wrong number of points before max distance", 1, points.size());
+		assertEquals("Wrong point before max distance", new Point3D(3, 0, 0), points.get(0).point);
+	}
+
+	/**
+	 * Test method for {@link geometries.Instance#getBounds()}.
+	 */
+	@Test
+	public void testGetBounds() {
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: Rotated and moved box
+		Instance instance = new Instance(new Sphere(Point3D.ZERO, 1), Transform
+				.rotation(new Vector(0, 0, 1), Math.PI / 4).then(Transform.translation(new Vector(0, 0, 10))));
+		double[] bounds = instance.getBounds();
+		double half = Math.sqrt(2);
+		assertArrayEquals("Wrong bounds", new double[] { -half, -half, 9, half, half, 11 }, bounds, 1e-9);
+
+		// =============== Boundary Values Tests ==================
+		// TC10: Unbounded geometry
+		assertNull("Plane is unbounded", new Instance(new Plane(Point3D.ZERO, new Vector(0, 0, 1)),
+				Transform.translation(new Vector(1, 0, 0))).getBounds());
+	}
+}
@@ -0,0 +1,135 @@
+package unittests.geometries;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import geometries.*;
+import geometries.Intersectable.GeoPoint;
+import primitives.*;
+
+/**
+ * Unit tests for geometries.Mesh class
+ * 
+ * @author Jonah Lawrence
+ * @author Elad Harizy
+ */
+public class MeshTests {
+
+	/**
+	 * Test method for {@link geometries.Mesh#Mesh(float[], int[])}.
+	 */
+	@Test
+	public void testConstructor() {
+		// =============== Boundary Values Tests ==================
+		// TC01: Vertex index out of range
+		assertThrows("Index out of range", IllegalArgumentException.class,
+				() -> new Mesh(new float[] { 0, 0, 0, 1, 0, 0, 0, 1, 0 }, new int[] { 0, 1, 3 }));
+
+		// TC02: Partial triangle
+		assertThrows("Partial triangle", IllegalArgumentException.class,
+				() -> new Mesh(new float[] { 0, 0, 0, 1, 0, 0, 0, 1, 0 }, new int[] { 0, 1 }));
+
+		// TC03: Empty mesh has no intersections
+		assertNull("Empty mesh", new Mesh(new float[0], new int[0])
+				.findGeoIntersections(new Ray(new Point3D(0, 0, 1), new Vector(0, 0, -1))));
+	}
+
+	/**
+	 * Test method for {@link geometries.Mesh#getNormal(primitives.Point3D)}.
+	 */
+	@Test
+	public void testGetNormal() {
+		// corner of a triangle on the plane z = 0 and a triangle on the plane x = 0
+		Mesh corner = new Mesh(new float[] { 0, 0, 0, 1, 0, 0, 0, 1, 0, 0, 0, 1 }, new int[] { 0, 1, 2, 0, 2, 3 });
+
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: Point on a triangle
+		assertEquals("Wrong normal", new Vector(0, 0, 1), corner.getNormal(new Point3D(0.25, 0.25, 0)));
+		// TC02: Point on the other triangle
+		assertEquals("Wrong normal", new Vector(1, 0, 0), corner.getNormal(new Point3D(0, 0.25, 0.25)));
+		// TC03: Point off the mesh
+		assertThrows("Point off the mesh", IllegalArgumentException.class,
+				() -> corner.getNormal(new Point3D(0.25, 0.25, 0.5)));
+	}
+
+	/**
+	 * Test method for {@link geometries.Mesh#findGeoIntersections(primitives.Ray)}.
+	 */
+	@Test
+	public void testFindGeoIntersections() {
+		// square of two triangles on the plane z = 0
+		Mesh square = new Mesh(new float[] { 0, 0, 0, 1, 0, 0, 1, 1, 0, 0, 1, 0 }, new int[] { 0, 1, 2, 0, 2, 3 });
+		square.setEmission(new Color(10, 20, 30));
+
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: Ray through a triangle
+		List<GeoPoint> result = square.findGeoIntersections(new Ray(new Point3D(0.75, 0.25, 1), new Vector(0, 0, -1)));
+		assertEquals("Wrong number of points", 1, result.size());
+		assertEquals("Wrong point", new Point3D(0.75, 0.25, 0), result.get(0).point);
+		assertEquals("Wrong normal", new Vector(0, 0, 1), result.get(0).geometry.getNormal(result.get(0).point));
+		assertEquals("Face lost the emission of the mesh", new Color(10, 20, 30).getColor(),
+				result.get(0).geometry.getEmission().getColor());
+
+		// TC02: Ray misses the mesh
+		assertNull("Ray outside the mesh",
+				square.findGeoIntersections(new Ray(new Point3D(2, 0.5, 1), new Vector(0, 0, -1))));
+
+		// TC03: Mesh beyond the maximum distance
+		assertNull("Mesh beyond the distance",
+				square.findGeoIntersections(new Ray(new Point3D(0.5, 0.2, 1), new Vector(0, 0, -1)), 0.5));
+
+		// =============== Boundary Values Tests ==================
+		// TC11: Ray through the shared edge does not pass between the triangles
+		result = square.findGeoIntersections(new Ray(new Point3D(0.5, 0.5, 1), new Vector(0, 0, -1)));
+		assertNotNull("Ray passed between the triangles", result);
+
+		// TC12: Ray starts on the mesh
+		assertNull("Ray starts on the mesh",
+				square.findGeoIntersections(new Ray(new Point3D(0.25, 0.75, 0), new Vector(0, 0, -1))));
+	}
+
+	/**
+	 * Test the hierarchy of a mesh against intersecting its triangles one by one
+	 */
+	@Test
+	public void testHierarchy() {
+		Random random = new Random(7);
+		int count = 2000;
+		float[] vertices = new float[9 * count];
+		int[] indices = new int[3 * count];
+		Triangle[] triangles = new Triangle[count];
+		for (int t = 0; t < count; ++t) {
+			double x = random.nextDouble() * 100 - 50, y = random.nextDouble() * 100 - 50,
+					z = random.nextDouble() * 100 - 50;
+			Point3D[] corners = new Point3D[3];
+			for (int k = 0; k < 3; ++k) {
+				corners[k] = new Point3D((float) (x + random.nextDouble() * 6), (float) (y + random.nextDouble() * 6),
+						(float) (z + random.nextDouble() * 6));
+				vertices[9 * t + 3 * k] = (float) corners[k].getX();
+				vertices[9 * t + 3 * k + 1] = (float) corners[k].getY();
+				vertices[9 * t + 3 * k + 2] = (float) corners[k].getZ();
+				indices[3 * t + k] = 3 * t + k;
+			}
+			triangles[t] = new Triangle(corners[0], corners[1], corners[2]);
+		}
+		Mesh mesh = new Mesh(vertices, indices);
+		Geometries soup = new Geometries(triangles);
+		assertTrue("Hierarchy has no inner nodes", mesh.getHierarchy().getNodeCount() > 1);
+
+		for (int r = 0; r < 500; ++r) {
+			Ray ray = new Ray(new Point3D(random.nextDouble() * 200 - 100, random.nextDouble() * 200 - 100, 100),
+					new Vector(random.nextDouble() - 0.5, random.nextDouble() - 0.5, -1).normalize());
+			List<GeoPoint> expected = soup.findGeoIntersections(ray);
+			List<GeoPoint> actual = mesh.findGeoIntersections(ray);
+			assertEquals("Wrong number of points", expected == null ? 0 : expected.size(),
+					actual == null ? 0 : actual.size());
+			if (expected != null)
+				assertEquals("Wrong closest point", ray.getOrigin().distance(ray.findClosestGeoPoint(expected).point),
+						ray.getOrigin().distance(ray.findClosestGeoPoint(actual).point), 1e-6);
+		}
+	}
+}
@@ -6,6 +6,7 @@ package unittests.lights;
 import org.junit.Test;
 
 import elements.*;
+import geometries.Plane;
 import geometries.Sphere;
 import geometries.Triangle;
 import primitives.*;
@@ -220,4 +221,84 @@ public class ReflectionRefractionTests {
 		render.writeToImage();
 	}
 
+	/**
+	 * Produce a picture of spheres behind a blurry glass pane and on a glossy
+	 * mirror, with adaptive sampling of the cones of rays
+	 */
+	@Test
+	public void glossyMirrorBlurryGlass() {
+		Camera camera = new Camera(new Point3D(0, 0, 1000), new Vector(0, 0, -1), new Vector(0, 1, 0)) //
+				.setViewPlaneSize(200, 200).setDistance(1000);
+
+		scene.setAmbientLight(new AmbientLight(new Color(java.awt.Color.WHITE), 0.15));
+
+		scene.geometries.add( //
+				new Plane(new Point3D(0, -50, 0), new Vector(0, 1, 0)) //
+						.setEmission(new Color(20, 20, 20)) //
+						.setMaterial(new Material().setKD(0.2).setKR(0.6).setGlossiness(0.1)), //
+				new Sphere(new Point3D(-40, 0, -100), 50) //
+						.setEmission(new Color(java.awt.Color.BLUE)) //
+						.setMaterial(new Material().setKD(0.5).setKS(0.5).setShininess(60)), //
+				new Sphere(new Point3D(50, -20, -40), 30) //
+						.setEmission(new Color(java.awt.Color.RED)) //
+						.setMaterial(new Material().setKD(0.5).setKS(0.5).setShininess(60)), //
+				new Triangle(new Point3D(-100, -50, 50), new Point3D(20, -50, 50), new Point3D(-100, 100, 50)) //
+						.setMaterial(new Material().setKT(0.8).setBlurriness(0.05)));
+
+		scene.lights.add(new SpotLight(new Color(700, 400, 400), new Point3D(60, 150, 100), new Vector(-1, -2, -2)) //
+				.setKL(4E-5).setKQ(2E-7));
+
+		scene.setCamera(camera);
+
+		Render render = new Render() //
+				.setImageWriter(new ImageWriter("glossyMirrorBlurryGlass", 300, 300)) //
+				.setRayTracer(new BasicRayTracer(scene) //
+						.setGlossySamplingType(BasicRayTracer.GLOSSY_SAMPLING_TYPE.ADAPTIVE) //
+						.setGlossySampleCount(32)) //
+				.setSupersamplingType(SUPERSAMPLING_TYPE.NONE);
+		render.renderImage();
+		render.writeToImage();
+	}
+
+	/**
+	 * Produce the picture of two spheres on mirrors with russian roulette ending
+	 * the recursion instead of the fixed level and effect cutoffs
+	 */
+	@Test
+	public void twoSpheresOnMirrorsRussianRoulette() {
+		Camera camera = new Camera(new Point3D(0, 0, 10000), new Vector(0, 0, -1), new Vector(0, 1, 0)) //
+				.setViewPlaneSize(2500, 2500).setDistance(10000); //
+
+		scene.setAmbientLight(new AmbientLight(new Color(255, 255, 255), 0.1));
+
+		scene.geometries.add( //
+				new Sphere(new Point3D(-950, -900, -1000), 400) //
+						.setEmission(new Color(0, 0, 100)) //
+						.setMaterial(new Material().setKD(0.25).setKS(0.25).setShininess(20).setKT(0.5)),
+				new Sphere(new Point3D(-950, -900, -1000), 200) //
+						.setEmission(new Color(100, 20, 20)) //
+						.setMaterial(new Material().setKD(0.25).setKS(0.25).setShininess(20)),
+				new Triangle(new Point3D(1500, -1500, -1500), new Point3D(-1500, 1500, -1500), new Point3D(670, 670, 3000)) //
+						.setEmission(new Color(20, 20, 20)) //
+						.setMaterial(new Material().setKR(1)),
+				new Triangle(new Point3D(1500, -1500, -1500), new Point3D(-1500, 1500, -1500), new Point3D(-1500, -1500, -2000)) //
+						.setEmission(new Color(20, 20, 20)) //
+						.setMaterial(new Material().setKR(0.5)));
+
+		scene.lights.add(new SpotLight(new Color(1020, 400, 400), new Point3D(-750, -750, -150), new Vector(-1, -1, -4)) //
+				.setKL(0.00001).setKQ(0.000005));
+
+		scene.setCamera(camera);
+
+		Render render = new Render() //
+				.setImageWriter(new ImageWriter("reflectionTwoSpheresMirroredRoulette", 500, 500)) //
+				.setRayTracer(new BasicRayTracer(scene) //
+						.setTerminationType(RayTracerBase.TERMINATION_TYPE.RUSSIAN_ROULETTE)) //
+				.setSupersamplingType(SUPERSAMPLING_TYPE.SUPERSAMPLING) //
+				.setSupersamplingGridSize(3);
+
+		render.renderImage();
+		render.writeToImage();
+	}
+
 }
@@ -0,0 +1,95 @@
+package unittests.primitives;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import primitives.*;
+
+/**
+ * Testing the samplers of pixel sample points
+ * 
+ * @author Jonah Lawrence
+ * @author Elad Harizy
+ */
+public class SamplerTests {
+
+	/**
+	 * Count the samples of a pixel in each cell of a grid over the unit square
+	 * 
+	 * @param sampler the sampler
+	 * @param pixel   index of the pixel
+	 * @param count   number of samples
+	 * @param cols    number of columns of the grid
+	 * @param rows    number of rows of the grid
+	 * @return number of samples in each cell
+	 */
+	private int[] countStrata(Sampler sampler, long pixel, int count, int cols, int rows) {
+		int[] strata = new int[cols * rows];
+		double[] point = new double[2];
+		for (int i = 0; i < count; ++i) {
+			sampler.sample(pixel, i, count, point);
+			assertTrue("Sample out of the unit square", point[0] >= 0 && point[0] < 1 && point[1] >= 0 && point[1] < 1);
+			++strata[(int) (point[1] * rows) * cols + (int) (point[0] * cols)];
+		}
+		return strata;
+	}
+
+	/**
+	 * Test method for {@link primitives.JitteredSampler#sample(long, int, int, double[])}.
+	 */
+	@Test
+	public void testJitteredSampler() {
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: one sample in each of the 4x4 strata
+		for (int stratum : countStrata(new JitteredSampler(), 7, 16, 4, 4))
+			assertEquals("Jittered sample outside its own stratum", 1, stratum);
+	}
+
+	/**
+	 * Test method for {@link primitives.SobolSampler#sample(long, int, int, double[])}.
+	 */
+	@Test
+	public void testSobolSampler() {
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: 16 samples are stratified in all the elementary intervals
+		for (int pixel = 0; pixel < 10; ++pixel) {
+			for (int cols = 1; cols <= 16; cols *= 2)
+				for (int stratum : countStrata(new SobolSampler(), pixel, 16, cols, 16 / cols))
+					assertEquals("Sobol samples are not stratified", 1, stratum);
+		}
+	}
+
+	/**
+	 * Test method for {@link primitives.HaltonSampler#sample(long, int, int, double[])}.
+	 */
+	@Test
+	public void testHaltonSampler() {
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: 64 samples spread over all the 4x4 strata
+		for (int stratum : countStrata(new HaltonSampler(), 3, 64, 4, 4))
+			assertTrue("Halton samples leave a stratum empty", stratum > 0);
+		// TC02: different pixels get different patterns
+		double[] first = new double[2];
+		double[] second = new double[2];
+		new HaltonSampler().sample(1, 0, 4, first);
+		new HaltonSampler().sample(2, 0, 4, second);
+		assertNotEquals("Pixels share the same pattern", first[0], second[0], 1e-12);
+	}
+
+	/**
+	 * Test method for {@link primitives.GridSampler#sample(long, int, int, double[])}.
+	 */
+	@Test
+	public void testGridSampler() {
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: 3x3 grid equidistant from each other and from the pixel borders
+		double[] point = new double[2];
+		new GridSampler().sample(0, 4, 9, point);
+		assertEquals("Bad middle sample x", 0.5, point[0], 1e-12);
+		assertEquals("Bad middle sample y", 0.5, point[1], 1e-12);
+		new GridSampler().sample(0, 0, 9, point);
+		assertEquals("Bad first sample x", 0.25, point[0], 1e-12);
+		assertEquals("Bad first sample y", 0.25, point[1], 1e-12);
+	}
+}
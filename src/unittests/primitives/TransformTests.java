@@ -0,0 +1,83 @@
+package unittests.primitives;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import primitives.*;
+
+/**
+ * Unit tests for primitives.Transform class
+ * 
+ * @author Jonah Lawrence
+ * @author Elad Harizy
+ */
+public class TransformTests {
+
+  /**
+   * Test method for {@link primitives.Transform#then(primitives.Transform)}.
+   */
+  @Test
+  public void testThen() {
+    Transform transform = Transform.scaling(2).then(Transform.rotation(new Vector(0, 0, 1), Math.PI / 2))
+        .then(Transform.translation(new Vector(1, 2, 3)));
+    // ============ Equivalence Partitions Tests ==============
+    // TC01: scale, turn and move a point
+    assertEquals("Wrong point", new Point3D(1, 4, 3), transform.applyToPoint(new Point3D(1, 0, 0)));
+    // TC02: the inverse brings it back
+    assertEquals("Wrong inverse", new Point3D(1, 0, 0), transform.inverse().applyToPoint(new Point3D(1, 4, 3)));
+
+    // =============== Boundary Values Tests ==================
+    // TC10: singular matrix
+    assertThrows("Zero scale", IllegalArgumentException.class, () -> Transform.scaling(1, 0, 1));
+  }
+
+  /**
+   * Test method for
+   * {@link primitives.Transform#interpolate(primitives.Transform, double)}.
+   */
+  @Test
+  public void testInterpolate() {
+    Vector axis = new Vector(0, 0, 1);
+    Transform from = Transform.rotation(axis, 0.1).then(Transform.translation(new Vector(0, 0, 2)));
+    Transform to = Transform.scaling(3).then(Transform.rotation(axis, Math.PI / 2))
+        .then(Transform.translation(new Vector(4, 0, 2)));
+    Point3D point = new Point3D(1, 0, 0);
+
+    // ============ Equivalence Partitions Tests ==============
+    // TC01: half way turns half the angle, scales and moves half the way
+    Transform half = from.interpolate(to, 0.5);
+    double angle = (0.1 + Math.PI / 2) / 2;
+    assertEquals("Wrong interpolation", new Point3D(2 + 2 * Math.cos(angle), 2 * Math.sin(angle), 2),
+        half.applyToPoint(point));
+
+    // =============== Boundary Values Tests ==================
+    // TC10: weights 0 and 1 are the keyframes
+    assertEquals("Wrong start", from.applyToPoint(point), from.interpolate(to, 0).applyToPoint(point));
+    assertEquals("Wrong end", to.applyToPoint(point), from.interpolate(to, 1).applyToPoint(point));
+  }
+
+  /**
+   * Test method for {@link primitives.Transform#of(double[], double[])}.
+   */
+  @Test
+  public void testOf() {
+    Transform transform = Transform.rotation(new Vector(1, 2, 3), 0.7)
+        .then(Transform.translation(new Vector(-30.1, 0.2, 5)));
+
+    // ============ Equivalence Partitions Tests ==============
+    // TC01: the rows of a transformation and its inverse make the same
+    // transformation
+    Transform copy = Transform.of(transform.getRows(), transform.inverse().getRows());
+    assertArrayEquals("Wrong rows", transform.getRows(), copy.getRows(), 0);
+    assertArrayEquals("Wrong inverse", transform.inverse().getRows(), copy.inverse().getRows(), 0);
+
+    // =============== Boundary Values Tests ==================
+    // TC10: rows that are not inverse to each other
+    assertThrows("Not inverse", IllegalArgumentException.class,
+        () -> Transform.of(transform.getRows(), transform.getRows()));
+    // TC11: too few numbers
+    assertThrows("Too few numbers", IllegalArgumentException.class,
+        () -> Transform.of(new double[9], transform.inverse().getRows()));
+  }
+}
@@ -0,0 +1,140 @@
+package unittests.renderer;
+
+import static org.junit.Assert.*;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Test;
+
+import elements.*;
+import geometries.*;
+import primitives.*;
+import renderer.*;
+import renderer.Render.SUPERSAMPLING_TYPE;
+import scene.Scene;
+
+/**
+ * Testing rendering a sequence of frames
+ * 
+ * @author Jonah Lawrence
+ * @author Elad Harizy
+ */
+public class AnimationTests {
+
+	/**
+	 * Test method for {@link renderer.Animation#renderFrames(int, int)}: a row of
+	 * spheres, one of them rolling, seen from a moving camera
+	 */
+	@Test
+	public void testRenderFrames() throws InterruptedException {
+		Scene scene = new Scene("Animation test").setAmbientLight(new AmbientLight(new Color(255, 255, 255), 0.1));
+		Sphere ball = (Sphere) new Sphere(Point3D.ZERO, 10).setEmission(new Color(java.awt.Color.BLUE))
+				.setMaterial(new Material().setKD(0.5).setKS(0.5).setShininess(30));
+		Instance moving = null;
+		for (int i = 0; i < 8; ++i) {
+			Instance instance = new Instance(ball, Transform.translation(new Vector(-105 + 30 * i, 0, -100)));
+			scene.geometries.add(instance);
+			if (i == 0)
+				moving = instance;
+		}
+		scene.lights.add(new DirectionalLight(new Color(500, 300, 0), new Vector(1, -1, -1)));
+
+		Animation animation = new Animation(scene,
+				new Render().setSupersamplingType(SUPERSAMPLING_TYPE.NONE).setMultithreading(2),
+				BasicRayTracer::new) //
+				.setImage("animation test", 100, 100) //
+				.addCameraKeyframe(0,
+						new Camera(new Point3D(0, 0, 200), new Vector(0, 0, -1), new Vector(0, 1, 0)).setDistance(100)
+								.setViewPlaneSize(150, 150))
+				.addCameraKeyframe(4,
+						new Camera(new Point3D(0, 100, 200), new Vector(0, -1, -3), new Vector(0, 3, -1))
+								.setDistance(100).setViewPlaneSize(150, 150))
+				.addKeyframe(moving, 0, Transform.translation(new Vector(-105, 0, -100)))
+				.addKeyframe(moving, 4, Transform.rotation(new Vector(0, 0, 1), Math.PI)
+						.then(Transform.translation(new Vector(-105, 40, -100))));
+
+		List<File> files = animation.renderFrames(0, 4);
+		assertEquals("Bad number of frames", 5, files.size());
+		for (File file : files)
+			assertTrue("Frame not written", file.isFile());
+		List<Animation.FrameTime> times = animation.getFrameTimes();
+		assertEquals("Bad number of timings", 5, times.size());
+		for (Animation.FrameTime time : times)
+			assertTrue("Frame write not timed", time.getWriteMillis() >= 0);
+		assertEquals("Moved instance not restored", new Point3D(-105, 0, -100),
+				moving.getTransform().applyToPoint(Point3D.ZERO));
+		assertNull("Camera not restored", scene.getCamera());
+	}
+
+	/**
+	 * Test method for {@link renderer.Animation#setReprojection(boolean)}: a
+	 * camera moving past diffuse spheres reuses most pixels and renders the same
+	 * frames as without reprojection
+	 */
+	@Test
+	public void testReprojection() throws IOException, InterruptedException {
+		Scene scene = new Scene("Reprojection test").setAmbientLight(new AmbientLight(new Color(255, 255, 255), 0.1));
+		Material diffuse = new Material().setKD(0.8);
+		scene.geometries.add(new Plane(new Point3D(0, -20, 0), new Vector(0, 1, 0)).setMaterial(diffuse));
+		for (int i = 0; i < 5; ++i)
+			scene.geometries.add(new Sphere(new Point3D(-60 + 30 * i, 0, -100 - 20 * i), 15)
+					.setEmission(new Color(20, 40, 80)).setMaterial(diffuse));
+		scene.lights.add(new PointLight(new Color(800, 600, 400), new Point3D(50, 100, 0)));
+
+		Reprojection callerReprojection = new Reprojection(100, 100);
+		Render render = new Render().setSupersamplingType(SUPERSAMPLING_TYPE.NONE).setMultithreading(2)
+				.setReprojection(callerReprojection);
+		Camera start = new Camera(new Point3D(0, 0, 100), new Vector(0, 0, -1), new Vector(0, 1, 0)).setDistance(100)
+				.setViewPlaneSize(150, 150);
+		Camera end = new Camera(new Point3D(10, 5, 90), new Vector(0, 0, -1), new Vector(0, 1, 0)).setDistance(100)
+				.setViewPlaneSize(150, 150);
+		scene.setCamera(start);
+		Animation reprojected = new Animation(scene, render, BasicRayTracer::new) //
+				.setImage("reprojection test", 100, 100) //
+				.addCameraKeyframe(0, start).addCameraKeyframe(4, end) //
+				.setReprojection(true);
+		List<File> reusedFiles = reprojected.renderFrames(0, 4);
+		Animation traced = new Animation(scene, render, BasicRayTracer::new) //
+				.setImage("reprojection reference", 100, 100) //
+				.addCameraKeyframe(0, start).addCameraKeyframe(4, end);
+		List<File> tracedFiles = traced.renderFrames(0, 4);
+
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: most pixels of the later frames are reused
+		assertEquals("First frame has nothing to reuse", 0, reprojected.getFrameTimes().get(0).getReusedPixels());
+		for (int frame = 1; frame <= 4; ++frame)
+			assertTrue("Too few pixels reused", reprojected.getFrameTimes().get(frame).getReusedPixels() > 3000);
+
+		// TC02: the frames are close to the traced ones
+		for (int frame = 0; frame <= 4; ++frame) {
+			BufferedImage a = ImageIO.read(reusedFiles.get(frame));
+			BufferedImage b = ImageIO.read(tracedFiles.get(frame));
+			double difference = 0;
+			for (int y = 0; y < 100; ++y)
+				for (int x = 0; x < 100; ++x)
+					for (int shift = 0; shift < 24; shift += 8)
+						difference += Math.abs((a.getRGB(x, y) >> shift & 0xFF) - (b.getRGB(x, y) >> shift & 0xFF));
+			assertTrue("Frame " + frame + " differs", difference / (3 * 100 * 100) < 2);
+		}
+
+		// TC03: pixels traced from the closest points found for the reuse are the
+		// traced pixels
+		BufferedImage first = ImageIO.read(reusedFiles.get(0));
+		BufferedImage firstTraced = ImageIO.read(tracedFiles.get(0));
+		for (int y = 0; y < 100; ++y)
+			for (int x = 0; x < 100; ++x)
+				assertEquals("Bad pixel at " + x + "," + y, firstTraced.getRGB(x, y), first.getRGB(x, y));
+
+		// TC04: the scene keeps its camera and the render its reprojection
+		assertSame("Camera not restored", start, scene.getCamera());
+		render.setImageWriter(new ImageWriter("reprojection after", 100, 100)).setRayTracer(new BasicRayTracer(scene));
+		render.renderImage();
+		render.renderImage();
+		assertTrue("Reprojection of the render not restored", callerReprojection.getReusedPixels() > 0);
+	}
+}
@@ -0,0 +1,148 @@
+package unittests.renderer;
+
+import static org.junit.Assert.*;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Test;
+
+import elements.*;
+import geometries.*;
+import primitives.*;
+import renderer.*;
+import renderer.Render.SUPERSAMPLING_TYPE;
+import scene.Scene;
+
+/**
+ * Testing checkpoints of renders and resuming from them
+ *
+ * @author Jonah Lawrence
+ * @author Elad Harizy
+ */
+public class CheckpointTests {
+
+	/**
+	 * Ray tracer that stops the render after a number of rays, as if the process
+	 * was stopped
+	 */
+	private static class FailingRayTracer extends BasicRayTracer {
+		private int rays;
+
+		FailingRayTracer(Scene scene, int rays) {
+			super(scene);
+			this.rays = rays;
+		}
+
+		@Override
+		public Color traceRay(Ray ray) {
+			if (--rays < 0)
+				throw new IllegalStateException("Render stopped");
+			return super.traceRay(ray);
+		}
+	}
+
+	/**
+	 * Test method for {@link renderer.Render#setCheckpoint(renderer.Checkpoint)}.
+	 */
+	@Test
+	public void testResume() throws IOException {
+		Scene scene = TestScenes.twoSpheres("Checkpoint test");
+		BufferedImage expected = TestScenes.render(
+				new Render().setSupersamplingType(SUPERSAMPLING_TYPE.NONE).setRayTracer(new BasicRayTracer(scene)),
+				"checkpoint expected", 80, 60);
+
+		Path file = Files.createTempFile("checkpoint", ".ckpt");
+		Files.delete(file);
+		try {
+			// ============ Equivalence Partitions Tests ==============
+			// TC01: a stopped render keeps its finished tiles
+			Checkpoint checkpoint = new Checkpoint(file, scene).setTileSize(16);
+			Render render = new Render().setSupersamplingType(SUPERSAMPLING_TYPE.NONE).setCheckpoint(checkpoint)
+					.setImageWriter(new ImageWriter("checkpoint stopped", 80, 60))
+					.setRayTracer(new FailingRayTracer(scene, 2000));
+			assertThrows("Render not stopped", IllegalStateException.class, render::renderImage);
+			assertTrue("No checkpoint", Files.exists(file));
+
+			// TC02: the resumed render skips the finished tiles and deletes the
+			// checkpoint when it finishes
+			ImageWriter resumedWriter = new ImageWriter("checkpoint resumed", 80, 60);
+			render.setImageWriter(resumedWriter).setRayTracer(new FailingRayTracer(scene, 80 * 60 - 2000 + 16 * 16))
+					.setMultithreading(2).renderImage();
+			assertEquals("Bad number of resumed tiles", 2000 / (16 * 16), checkpoint.getResumedTiles());
+			// colors may differ by the float sums of the checkpoint
+			TestScenes.assertSameImage(expected, ImageIO.read(resumedWriter.writeToImage()), 1);
+			assertFalse("Checkpoint of a finished render kept", Files.exists(file));
+
+			// TC03: the render after a finished one starts over
+			render.setImageWriter(new ImageWriter("checkpoint again", 80, 60))
+					.setRayTracer(new FailingRayTracer(scene, 80 * 60)).renderImage();
+			assertEquals("Bad number of resumed tiles", 0, checkpoint.getResumedTiles());
+
+			// TC04: a checkpoint of another scene is refused
+			render.setRayTracer(new FailingRayTracer(scene, 2000));
+			assertThrows("Render not stopped", IllegalStateException.class, render::renderImage);
+			Scene other = TestScenes.twoSpheres("Checkpoint test")
+					.setAmbientLight(new AmbientLight(new Color(255, 255, 255), 0.2));
+			render.setCheckpoint(new Checkpoint(file, other).setTileSize(16)).setRayTracer(new BasicRayTracer(other));
+			assertThrows("Checkpoint of another scene not refused", IllegalArgumentException.class,
+					render::renderImage);
+
+			// TC05: a checkpoint of other settings is refused
+			render.setCheckpoint(checkpoint).setRayTracer(new FailingRayTracer(scene, 0))
+					.setSupersamplingType(SUPERSAMPLING_TYPE.SUPERSAMPLING);
+			assertThrows("Checkpoint of other settings not refused", IllegalArgumentException.class,
+					render::renderImage);
+
+			// =============== Boundary Values Tests ==================
+			// TC11: a checkpoint of another image size is refused
+			render.setSupersamplingType(SUPERSAMPLING_TYPE.NONE).setImageWriter(new ImageWriter("checkpoint other", 40, 60));
+			assertThrows("Checkpoint not refused", IllegalArgumentException.class, render::renderImage);
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+
+	/**
+	 * Test method for {@link renderer.Render#setCheckpoint(renderer.Checkpoint)}
+	 * with a scene of instances and with reprojection.
+	 */
+	@Test
+	public void testInstancesAndReprojection() throws IOException {
+		Scene scene = TestScenes.twoSpheres("Checkpoint instances");
+		Sphere ball = new Sphere(Point3D.ZERO, 10);
+		scene.geometries.add(new Instance(ball, Transform.translation(new Vector(0, 40, -100))),
+				new Instance(ball, Transform.translation(new Vector(0, -40, -100))));
+		Render render = new Render().setSupersamplingType(SUPERSAMPLING_TYPE.NONE)
+				.setRayTracer(new BasicRayTracer(scene));
+		BufferedImage expected = TestScenes.render(render, "checkpoint instances expected", 40, 30);
+
+		Path file = Files.createTempFile("checkpoint", ".ckpt");
+		Files.delete(file);
+		try {
+			// ============ Equivalence Partitions Tests ==============
+			// TC01: the checkpoint of a scene of instances renders the image
+			render.setCheckpoint(new Checkpoint(file, scene).setTileSize(16));
+			TestScenes.assertSameImage(expected, TestScenes.render(render, "checkpoint instances", 40, 30), 1);
+
+			// =============== Boundary Values Tests ==================
+			// TC11: a render of a checkpoint with reprojection is refused before the
+			// reprojection starts a frame
+			Reprojection reprojection = new Reprojection(40, 30);
+			render.setCheckpoint(null).setReprojection(reprojection);
+			TestScenes.render(render, "checkpoint reprojection", 40, 30);
+			render.setCheckpoint(new Checkpoint(file, scene));
+			assertThrows("Checkpoint with reprojection not refused", IllegalArgumentException.class,
+					render::renderImage);
+			render.setCheckpoint(null);
+			TestScenes.render(render, "checkpoint reprojection", 40, 30);
+			assertTrue("Frame of the refused render kept", reprojection.getReusedPixels() > 0);
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+}
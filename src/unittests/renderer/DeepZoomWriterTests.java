@@ -0,0 +1,112 @@
+package unittests.renderer;
+
+import static org.junit.Assert.*;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Test;
+
+import geometries.*;
+import primitives.*;
+import renderer.*;
+import renderer.Render.SUPERSAMPLING_TYPE;
+import scene.Scene;
+
+/**
+ * Testing Deep Zoom pyramids written during the render
+ *
+ * @author Jonah Lawrence
+ * @author Elad Harizy
+ */
+public class DeepZoomWriterTests {
+
+	/**
+	 * Test method for {@link renderer.DeepZoomWriter#writePixel(int, int, primitives.Color)}.
+	 */
+	@Test
+	public void testPyramid() throws IOException {
+		Scene scene = TestScenes.twoSpheres("Deep zoom test");
+		BufferedImage expected = TestScenes.render(
+				new Render().setSupersamplingType(SUPERSAMPLING_TYPE.NONE).setRayTracer(new BasicRayTracer(scene)),
+				"deep zoom expected", 70, 50);
+
+		DeepZoomWriter imageWriter = new DeepZoomWriter("deep zoom test", 70, 50, 16);
+		new Render().setSupersamplingType(SUPERSAMPLING_TYPE.NONE).setMultithreading(2).setImageWriter(imageWriter)
+				.setRayTracer(new BasicRayTracer(scene)).renderImage();
+		File tiles = new File(System.getProperty("user.dir") + "/images", "deep zoom test_files");
+
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: every tile of every level is written by the end of the render
+		assertEquals("Bad max level", 7, imageWriter.getMaxLevel());
+		// levels 7 to 0: 5x4, 3x2, 2x1 and five single tiles
+		assertEquals("Bad number of tiles", 20 + 6 + 2 + 5, imageWriter.getWrittenTiles());
+		assertTrue("No top tile", new File(tiles, "0/0_0.png").exists());
+
+		// TC02: the tiles of the full resolution are the image
+		BufferedImage tile = ImageIO.read(new File(tiles, "7/4_3.png"));
+		assertEquals("Bad tile width", 70 - 4 * 16, tile.getWidth());
+		assertEquals("Bad tile height", 50 - 3 * 16, tile.getHeight());
+		for (int y = 0; y < tile.getHeight(); ++y)
+			for (int x = 0; x < tile.getWidth(); ++x)
+				assertEquals("Bad pixel at " + x + "," + y, expected.getRGB(4 * 16 + x, 3 * 16 + y), tile.getRGB(x, y));
+
+		// TC03: a pixel of a level is the average of 2x2 pixels of the level below
+		BufferedImage half = ImageIO.read(new File(tiles, "6/1_1.png"));
+		assertEquals("Bad half tile width", 16, half.getWidth());
+		assertEquals("Bad half tile height", 25 - 16, half.getHeight());
+		for (int shift = 0; shift < 24; shift += 8) {
+			int sum = 0;
+			for (int i = 0; i < 4; ++i)
+				sum += (expected.getRGB(2 * 20 + i % 2, 2 * 17 + i / 2) >> shift) & 0xFF;
+			assertEquals("Bad average", sum / 4.0, (half.getRGB(4, 1) >> shift) & 0xFF, 0.5);
+		}
+
+		// TC04: the descriptor has the size of the image
+		String descriptor = Files.readString(imageWriter.writeToImage().toPath());
+		assertTrue("Bad descriptor", descriptor.contains("TileSize=\"16\"") && descriptor.contains("Width=\"70\"")
+				&& descriptor.contains("Height=\"50\""));
+
+		// =============== Boundary Values Tests ==================
+		// TC11: an odd tile size is refused
+		assertThrows("Odd tile size not refused", IllegalArgumentException.class,
+				() -> new DeepZoomWriter("deep zoom odd", 70, 50, 15));
+	}
+
+	/**
+	 * Test method for {@link renderer.DeepZoomWriter#writePixel(int, int, primitives.Color)}
+	 * of pixels rendered again by {@link renderer.Render#renderChanges(Intersectable...)}.
+	 */
+	@Test
+	public void testRenderChanges() throws IOException {
+		Scene scene = TestScenes.twoSpheres("Deep zoom changes");
+		DeepZoomWriter imageWriter = new DeepZoomWriter("deep zoom changes", 70, 50, 16);
+		Render render = new Render().setSupersamplingType(SUPERSAMPLING_TYPE.NONE).setMultithreading(2)
+				.setImageWriter(imageWriter).setDirtyRegions(new DirtyRegions(10));
+		render.setRayTracer(new BasicRayTracer(scene.compile())).renderImage();
+		Geometry sphere = (Geometry) scene.geometries.getGeometryList().get(0);
+		sphere.setEmission(new Color(java.awt.Color.GREEN));
+		render.setRayTracer(new BasicRayTracer(scene.compile())).renderChanges(sphere);
+		imageWriter.writeToImage();
+
+		DeepZoomWriter expectedWriter = new DeepZoomWriter("deep zoom changes expected", 70, 50, 16);
+		new Render().setSupersamplingType(SUPERSAMPLING_TYPE.NONE).setImageWriter(expectedWriter)
+				.setRayTracer(new BasicRayTracer(scene)).renderImage();
+
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: the tiles rendered again and the tiles above them are written again
+		// from the pixels of both renders
+		File images = new File(System.getProperty("user.dir") + "/images");
+		for (int level = 0; level <= imageWriter.getMaxLevel(); ++level) {
+			File[] files = new File(images, "deep zoom changes expected_files/" + level).listFiles();
+			assertNotNull("No level " + level, files);
+			for (File file : files)
+				TestScenes.assertSameImage(ImageIO.read(file),
+						ImageIO.read(new File(images, "deep zoom changes_files/" + level + "/" + file.getName())), 0);
+		}
+	}
+}
@@ -0,0 +1,100 @@
+package unittests.renderer;
+
+import static org.junit.Assert.*;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Test;
+
+import elements.*;
+import geometries.*;
+import primitives.*;
+import renderer.*;
+import renderer.Render.SUPERSAMPLING_TYPE;
+import scene.Scene;
+
+/**
+ * Testing rendering again only the tiles an edit of the scene changes
+ *
+ * @author Jonah Lawrence
+ * @author Elad Harizy
+ */
+public class DirtyRegionsTests {
+
+	/**
+	 * Test method for {@link renderer.Render#renderChanges(Intersectable...)}: a
+	 * row of spheres and a triangle over a floor lit by a point light and a
+	 * directional light
+	 */
+	@Test
+	public void testRenderChanges() throws IOException {
+		Scene scene = new Scene("Dirty regions test").setAmbientLight(new AmbientLight(new Color(255, 255, 255), 0.1))
+				.setCamera(new Camera(new Point3D(0, 0, 200), new Vector(0, 0, -1), new Vector(0, 1, 0)).setDistance(100)
+						.setViewPlaneSize(150, 150));
+		Material material = new Material().setKD(0.5).setKS(0.5).setShininess(30);
+		Sphere[] spheres = new Sphere[4];
+		for (int i = 0; i < spheres.length; ++i) {
+			spheres[i] = (Sphere) new Sphere(new Point3D(-90 + 60 * i, 0, -100), 12)
+					.setEmission(new Color(java.awt.Color.BLUE)).setMaterial(material);
+			scene.geometries.add(spheres[i]);
+		}
+		Instance triangle = new Instance(new Triangle(new Point3D(-10, -10, 0), new Point3D(10, -10, 0),
+				new Point3D(0, 10, 0)).setEmission(new Color(java.awt.Color.GREEN)).setMaterial(material),
+				Transform.translation(new Vector(0, 50, -100)));
+		scene.geometries.add(triangle, new Polygon(new Point3D(-200, -20, 0), new Point3D(200, -20, 0),
+				new Point3D(200, -20, -300), new Point3D(-200, -20, -300)).setMaterial(new Material().setKD(0.8)));
+		scene.lights.add(new PointLight(new Color(500, 500, 500), new Point3D(0, 100, 0)).setKL(0.001));
+		scene.lights.add(new DirectionalLight(new Color(200, 150, 0), new Vector(1, -1, -1)));
+
+		DirtyRegions dirtyRegions = new DirtyRegions(10);
+		ImageWriter image = new ImageWriter("dirty regions test", 100, 100);
+		Render render = new Render().setSupersamplingType(SUPERSAMPLING_TYPE.NONE).setMultithreading(2)
+				.setImageWriter(image).setDirtyRegions(dirtyRegions);
+		render.setRayTracer(new BasicRayTracer(scene.compile())).renderImage();
+		assertEquals("Bad number of tiles", 100, dirtyRegions.getTileCount());
+
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: the tiles that saw a sphere whose emission changed
+		spheres[0].setEmission(new Color(java.awt.Color.RED));
+		render.setRayTracer(new BasicRayTracer(scene.compile())).renderChanges(spheres[0]);
+		int dirty = dirtyRegions.getDirtyTileCount();
+		assertTrue("No tile rendered", dirty > 0);
+		assertTrue("Too many tiles rendered: " + dirty, dirty < 30);
+		assertSameImage("Bad image after emission change", render, scene);
+
+		// TC02: the tiles that saw a triangle or can see it where it moved
+		triangle.setTransform(Transform.translation(new Vector(30, 40, -100)));
+		render.setRayTracer(new BasicRayTracer(scene.compile())).renderChanges(triangle);
+		dirty = dirtyRegions.getDirtyTileCount();
+		assertTrue("No tile rendered", dirty > 0);
+		assertTrue("Too many tiles rendered: " + dirty, dirty < 100);
+		assertSameImage("Bad image after move", render, scene);
+
+		// =============== Boundary Values Tests ==================
+		// TC11: an added geometry renders the whole image
+		Sphere added = new Sphere(new Point3D(0, 0, -50), 5);
+		scene.geometries.add(added);
+		render.setRayTracer(new BasicRayTracer(scene.compile())).renderChanges(added);
+		assertEquals("Image not rendered", 100, dirtyRegions.getDirtyTileCount());
+		assertSameImage("Bad image after addition", render, scene);
+	}
+
+	/**
+	 * Compare the image of a render to a whole render of the scene
+	 */
+	private static void assertSameImage(String message, Render render, Scene scene) throws IOException {
+		File changed = render.writeToImage();
+		BufferedImage actual = ImageIO.read(changed);
+		ImageWriter expectedWriter = new ImageWriter("dirty regions expected", 100, 100);
+		new Render().setSupersamplingType(SUPERSAMPLING_TYPE.NONE).setImageWriter(expectedWriter)
+				.setRayTracer(new BasicRayTracer(scene.compile())).renderImage();
+		BufferedImage expected = ImageIO.read(expectedWriter.writeToImage());
+		for (int y = 0; y < 100; ++y)
+			for (int x = 0; x < 100; ++x)
+				assertEquals(message + " at " + x + "," + y, expected.getRGB(x, y), actual.getRGB(x, y));
+	}
+}
@@ -0,0 +1,113 @@
+package unittests.renderer;
+
+import static org.junit.Assert.*;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Test;
+
+import renderer.*;
+import renderer.Render.SUPERSAMPLING_TYPE;
+import scene.Scene;
+
+/**
+ * Testing images kept in memory-mapped files and written as tiled TIFF
+ *
+ * @author Jonah Lawrence
+ * @author Elad Harizy
+ */
+public class MappedImageWriterTests {
+
+	/**
+	 * Test method for {@link renderer.MappedImageWriter#writeTiff(java.nio.file.Path)}.
+	 */
+	@Test
+	public void testWriteTiff() throws IOException, DataFormatException {
+		Scene scene = TestScenes.twoSpheres("Mapped test");
+		BufferedImage expected = TestScenes.render(
+				new Render().setSupersamplingType(SUPERSAMPLING_TYPE.NONE).setRayTracer(new BasicRayTracer(scene)),
+				"mapped expected", 70, 50);
+
+		Path tiff = Files.createTempFile("mapped", ".tif");
+		try (MappedImageWriter imageWriter = new MappedImageWriter("mapped test", 70, 50, 16, null)) {
+			new Render().setSupersamplingType(SUPERSAMPLING_TYPE.NONE).setMultithreading(2).setImageWriter(imageWriter)
+					.setRayTracer(new BasicRayTracer(scene)).renderImage();
+
+			// ============ Equivalence Partitions Tests ==============
+			// TC01: the tiled TIFF is the image
+			imageWriter.writeTiff(tiff);
+			BufferedImage actual = ImageIO.read(tiff.toFile());
+			assertEquals("Bad width", 70, actual.getWidth());
+			assertEquals("Bad height", 50, actual.getHeight());
+			for (int y = 0; y < 50; ++y)
+				for (int x = 0; x < 70; ++x) {
+					assertEquals("Bad pixel at " + x + "," + y, expected.getRGB(x, y) & 0xFFFFFF, imageWriter.getRGB(x, y));
+					assertEquals("Bad TIFF pixel at " + x + "," + y, expected.getRGB(x, y), actual.getRGB(x, y));
+				}
+
+			// TC02: the tiles of a BigTIFF are found from its header
+			imageWriter.setBigTiff(true).writeTiff(tiff);
+			ByteBuffer file = ByteBuffer.wrap(Files.readAllBytes(tiff)).order(ByteOrder.LITTLE_ENDIAN);
+			assertEquals("Bad byte order", 0x4949, file.getShort(0));
+			assertEquals("Not BigTIFF", 43, file.getShort(2));
+			int directory = (int) file.getLong(8);
+			long entries = file.getLong(directory);
+			long offsets = 0;
+			long counts = 0;
+			for (int i = 0; i < entries; ++i) {
+				int entry = directory + 8 + 20 * i;
+				if (file.getShort(entry) == 324)
+					offsets = file.getLong(entry + 12);
+				else if (file.getShort(entry) == 325)
+					counts = file.getLong(entry + 12);
+			}
+			int last = 5 * 4 - 1;
+			Inflater inflater = new Inflater();
+			inflater.setInput(file.array(), (int) file.getLong((int) offsets + 8 * last),
+					(int) file.getLong((int) counts + 8 * last));
+			byte[] tile = new byte[3 * 16 * 16];
+			assertEquals("Bad tile size", tile.length, inflater.inflate(tile));
+			inflater.end();
+			byte[] mapped = new byte[tile.length];
+			imageWriter.readTile(4, 3, mapped);
+			assertArrayEquals("Bad tile", mapped, tile);
+		} finally {
+			Files.deleteIfExists(tiff);
+		}
+	}
+
+	/**
+	 * Test method for {@link renderer.Render#renderImage()} of an image too large
+	 * for an accumulation buffer.
+	 */
+	@Test
+	public void testAccumulationLimit() throws IOException {
+		Scene scene = TestScenes.twoSpheres("Mapped limit");
+		Path checkpointFile = Files.createTempFile("mapped", ".ckpt");
+		Files.delete(checkpointFile);
+		try (MappedImageWriter imageWriter = new MappedImageWriter("mapped limit", 50000, 50000)) {
+			Render render = new Render().setImageWriter(imageWriter).setRayTracer(new BasicRayTracer(scene));
+
+			// =============== Boundary Values Tests ==================
+			// TC11: more than one pass is refused before rendering
+			render.setPasses(2);
+			assertThrows("Passes not refused", IllegalArgumentException.class, render::renderImage);
+
+			// TC12: a checkpoint is refused before its file is written
+			render.setPasses(1).setCheckpoint(new Checkpoint(checkpointFile, scene));
+			assertThrows("Checkpoint not refused", IllegalArgumentException.class, render::renderImage);
+			assertFalse("Checkpoint written", Files.exists(checkpointFile));
+		} finally {
+			Files.deleteIfExists(checkpointFile);
+		}
+	}
+}
@@ -0,0 +1,111 @@
+package unittests.renderer;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import renderer.MetricsExporter;
+import renderer.MetricsRegistry;
+import renderer.MetricsRegistry.METRIC_TYPE;
+
+/**
+ * Testing the metrics of renderers and their exporter
+ *
+ * @author Jonah Lawrence
+ * @author Elad Harizy
+ */
+public class MetricsRegistryTests {
+
+	/**
+	 * Test method for {@link renderer.MetricsRegistry#writeText(java.io.OutputStream)}.
+	 */
+	@Test
+	public void testWriteText() throws IOException {
+		AtomicLong rays = new AtomicLong(1234);
+		MetricsRegistry registry = new MetricsRegistry()
+				.register("test_rays_total", "Rays traced", METRIC_TYPE.COUNTER, rays::get)
+				.register("test_load", "Load \\ of\nthe host", METRIC_TYPE.GAUGE, () -> 0.25)
+				.register("test_job_bytes", null, METRIC_TYPE.GAUGE, "job", () -> Map.of("say \"hi\"", 8));
+
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: the metrics are written sorted by name, with their help and type
+		assertEquals("Bad text", "# TYPE test_job_bytes gauge\n" //
+				+ "test_job_bytes{job=\"say \\\"hi\\\"\"} 8\n" //
+				+ "# HELP test_load Load \\\\ of\\nthe host\n" //
+				+ "# TYPE test_load gauge\n" //
+				+ "test_load 0.25\n" //
+				+ "# HELP test_rays_total Rays traced\n" //
+				+ "# TYPE test_rays_total counter\n" //
+				+ "test_rays_total 1234\n", text(registry));
+
+		// TC02: the values are read when the metrics are written
+		rays.set(5678);
+		assertTrue("Value not read", text(registry).contains("test_rays_total 5678\n"));
+
+		// TC03: a metric is removed
+		assertTrue("Metric not removed", registry.unregister("test_load"));
+		assertFalse("Removed metric written", text(registry).contains("test_load"));
+
+		// =============== Boundary Values Tests ==================
+		// TC11: a name is registered once
+		assertThrows("Same name registered", IllegalArgumentException.class,
+				() -> registry.register("test_rays_total", "Rays", METRIC_TYPE.COUNTER, () -> 0));
+		// TC12: names and labels must be valid in the text format
+		assertThrows("Bad name registered", IllegalArgumentException.class,
+				() -> registry.register("test-rays", "Rays", METRIC_TYPE.COUNTER, () -> 0));
+		assertThrows("Bad label registered", IllegalArgumentException.class,
+				() -> registry.register("test_bytes", "Bytes", METRIC_TYPE.GAUGE, "__job", Map::of));
+	}
+
+	/**
+	 * Test method for {@link renderer.MetricsExporter#serve(int)} and
+	 * {@link renderer.MetricsExporter#writeTo(Path, long)}.
+	 */
+	@Test
+	public void testExporter() throws IOException {
+		AtomicLong rays = new AtomicLong(42);
+		MetricsRegistry registry = new MetricsRegistry().register("test_rays_total", "Rays traced",
+				METRIC_TYPE.COUNTER, rays::get);
+		Path file = Files.createTempFile("metrics", ".prom");
+		MetricsExporter exporter = new MetricsExporter(registry);
+		try {
+			// ============ Equivalence Partitions Tests ==============
+			// TC01: the metrics are scraped from the endpoint
+			int port = exporter.writeTo(file, 60000).serve(0);
+			HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + port + "/metrics")
+					.openConnection();
+			assertEquals("Not served", 200, connection.getResponseCode());
+			assertTrue("Bad content type", connection.getContentType().startsWith("text/plain; version=0.0.4"));
+			String body = new String(connection.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+			assertTrue("Bad metrics: " + body, body.contains("test_rays_total 42\n"));
+
+			// TC02: the file is written again when the exporter is closed
+			rays.set(43);
+			exporter.close();
+			assertTrue("File not written", Files.readString(file).contains("test_rays_total 43\n"));
+
+			// =============== Boundary Values Tests ==================
+			// TC11: files are written at a positive period
+			assertThrows("Bad period accepted", IllegalArgumentException.class, () -> exporter.writeTo(file, 0));
+		} finally {
+			exporter.close();
+			Files.deleteIfExists(file);
+		}
+	}
+
+	private static String text(MetricsRegistry registry) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		registry.writeText(out);
+		return out.toString(StandardCharsets.UTF_8);
+	}
+}
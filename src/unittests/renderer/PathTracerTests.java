@@ -0,0 +1,131 @@
+package unittests.renderer;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+import elements.*;
+import geometries.*;
+import primitives.*;
+import renderer.*;
+import renderer.Render.SUPERSAMPLING_TYPE;
+import scene.Scene;
+
+/**
+ * Test rendering with global illumination by the path tracer
+ * 
+ * @author Jonah Lawrence
+ * @author Elad Harizy
+ */
+public class PathTracerTests {
+
+	/**
+	 * Produce a small box with colored walls, a mirror sphere and a diffuse sphere,
+	 * averaging several passes of the path tracer on all cores with the rays of the
+	 * passes spread over each pixel by a Sobol sequence
+	 */
+	@Test
+	public void pathTracedBox() {
+		Scene scene = new Scene("pathTracedBox") //
+				.setCamera(new Camera(new Point3D(0, 0, 1000), new Vector(0, 0, -1), new Vector(0, 1, 0)) //
+						.setViewPlaneSize(200, 200).setDistance(1000));
+
+		scene.geometries.add( //
+				// floor and ceiling
+				new Plane(new Point3D(0, -100, 0), new Vector(0, 1, 0)) //
+						.setMaterial(new Material().setKD(0.5)), //
+				new Plane(new Point3D(0, 100, 0), new Vector(0, -1, 0)) //
+						.setEmission(new Color(30, 30, 30)) //
+						.setMaterial(new Material().setKD(0.5)), //
+				// left and right walls
+				new Plane(new Point3D(-100, 0, 0), new Vector(1, 0, 0)) //
+						.setEmission(new Color(25, 2, 2)) //
+						.setMaterial(new Material().setKD(0.4)), //
+				new Plane(new Point3D(100, 0, 0), new Vector(-1, 0, 0)) //
+						.setEmission(new Color(2, 25, 2)) //
+						.setMaterial(new Material().setKD(0.4)), //
+				// back wall
+				new Plane(new Point3D(0, 0, -200), new Vector(0, 0, 1)) //
+						.setMaterial(new Material().setKD(0.5)), //
+				new Sphere(new Point3D(-40, -60, -120), 40) //
+						.setMaterial(new Material().setKR(0.9).setGlossiness(0.05)), //
+				new Sphere(new Point3D(45, -70, -60), 30) //
+						.setEmission(new Color(10, 10, 40)) //
+						.setMaterial(new Material().setKD(0.6).setKS(0.3).setShininess(40)));
+
+		scene.lights.add(new PointLight(new Color(300, 300, 300), new Point3D(0, 90, -100)) //
+				.setKL(0.001).setKQ(0.0001));
+
+		Render render = new Render() //
+				.setImageWriter(new ImageWriter("pathTracedBox", 200, 200)) //
+				.setRayTracer(new PathTracer(scene, 42)) //
+				.setSupersamplingType(SUPERSAMPLING_TYPE.NONE) //
+				.setPasses(16) //
+				.setSampler(new SobolSampler()) //
+				.setMultithreading(0);
+		render.renderImage();
+		render.writeToImage();
+
+		assertTrue("Path tracer throughput should be reported", render.getSamplesPerSecond() > 0);
+	}
+
+	/**
+	 * Test method for {@link renderer.PathTracer#traceRay(primitives.Ray)}: the
+	 * paths of a diffuse sphere alone in the dark escape after their first bounce,
+	 * so the path tracer sees the direct lighting of the ray tracer
+	 */
+	@Test
+	public void testDirectLighting() throws IOException {
+		Scene scene = new Scene("Path tracer direct test").setAmbientLight(new AmbientLight(new Color(255, 255, 255), 0.1))
+				.setCamera(new Camera(new Point3D(0, 0, 200), new Vector(0, 0, -1), new Vector(0, 1, 0)).setDistance(100)
+						.setViewPlaneSize(150, 150));
+		scene.geometries.add(new Sphere(new Point3D(0, 0, -100), 50).setEmission(new Color(20, 10, 40))
+				.setMaterial(new Material().setKD(0.7)));
+		scene.lights.add(new PointLight(new Color(500, 400, 300), new Point3D(60, 100, 0)).setKL(0.001));
+
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: the average of the passes is the image of the ray tracer
+		TestScenes.assertSameImage(
+				TestScenes.render(new Render().setSupersamplingType(SUPERSAMPLING_TYPE.NONE)
+						.setRayTracer(new BasicRayTracer(scene)), "path tracer direct expected", 40, 40),
+				TestScenes.render(new Render().setSupersamplingType(SUPERSAMPLING_TYPE.NONE).setPasses(4)
+						.setRayTracer(new PathTracer(scene, 42)), "path tracer direct", 40, 40),
+				1);
+	}
+
+	/**
+	 * Test method for
+	 * {@link renderer.RayTracerBase#setRouletteTermination(int, double, int)}:
+	 * paths of a diffuse plane under a bright sky that russian roulette ends at
+	 * their first bounce keep the color of the paths it does not end on average
+	 */
+	@Test
+	public void testRouletteUnbiased() {
+		Scene scene = new Scene("Path tracer roulette test").setBackground(new Color(100, 100, 100))
+				.setAmbientLight(new AmbientLight(Color.BLACK, 0));
+		scene.geometries.add(new Plane(new Point3D(0, 0, -100), new Vector(0, 0, 1)).setMaterial(new Material().setKD(0.5)));
+		Ray ray = new Ray(new Point3D(0, 0, 0), new Vector(0, 0, -1));
+
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: a path that always bounces carries half of the sky
+		PathTracer always = new PathTracer(scene, 7);
+		assertEquals("Bad bounce", 50, always.traceRay(ray).getRed(), 1e-9);
+
+		// TC02: a path that survives half of the time carries all of the sky, so the
+		// average is the same
+		PathTracer roulette = new PathTracer(scene, 7).setRouletteTermination(0, 1, 32);
+		int survived = 0;
+		double sum = 0;
+		final int paths = 4000;
+		for (int i = 0; i < paths; ++i) {
+			double red = roulette.traceRay(ray).getRed();
+			sum += red;
+			if (red > 0)
+				++survived;
+		}
+		assertTrue("Roulette never ended a path", survived < paths);
+		assertEquals("Biased roulette", 50, sum / paths, 3);
+	}
+}
@@ -0,0 +1,76 @@
+package unittests.renderer;
+
+import static org.junit.Assert.*;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Test;
+
+import geometries.*;
+import renderer.*;
+import renderer.Render.SUPERSAMPLING_TYPE;
+import scene.Scene;
+
+/**
+ * Testing the costs of the pixels of renders
+ *
+ * @author Jonah Lawrence
+ * @author Elad Harizy
+ */
+public class PixelCostsTests {
+
+	/**
+	 * Test method for {@link renderer.Render#setPixelCosts(renderer.PixelCosts)}.
+	 */
+	@Test
+	public void testPixelCosts() throws IOException {
+		Scene scene = TestScenes.twoSpheres("Costs test");
+		PixelCosts costs = new PixelCosts();
+		RenderStatistics statistics = new RenderStatistics();
+
+		// =============== Boundary Values Tests ==================
+		// TC11: there are no costs before a render
+		assertThrows("Costs written before a render", IllegalStateException.class,
+				() -> costs.writeToImages("costs none"));
+
+		new Render().setSupersamplingType(SUPERSAMPLING_TYPE.ADAPTIVE).setAdaptiveMaxRecursionLevel(3)
+				.setMultithreading(2).setPixelCosts(costs).setStatistics(statistics)
+				.setImageWriter(new ImageWriter("costs test", 30, 30)).setRayTracer(new BasicRayTracer(scene))
+				.renderImage();
+
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: the costs of the pixels add up to the counters of the render
+		long rays = 0;
+		long tests = 0;
+		for (int row = 0; row < 30; ++row)
+			for (int col = 0; col < 30; ++col) {
+				assertTrue("Bad depth", costs.getDepth(col, row) >= 1 && costs.getDepth(col, row) <= 3);
+				assertTrue("No time", costs.getNanos(col, row) > 0);
+				rays += costs.getRays(col, row);
+				tests += costs.getTests(col, row);
+			}
+		assertEquals("Bad rays", statistics.getTotalRays(), rays);
+		assertEquals("Bad tests", statistics.getIntersectionTests(Sphere.class), tests);
+
+		// TC02: a pixel of the background costs four rays, one of the mirror adds
+		// shadow and reflected rays
+		assertEquals("Bad background rays", 4, costs.getRays(0, 0));
+		assertEquals("Bad background depth", 1, costs.getDepth(0, 0));
+		assertTrue("Mirror not costlier", costs.getRays(17, 15) >= 3 * 4);
+
+		// TC03: a heatmap of every cost
+		List<File> files = costs.writeToImages("costs test");
+		assertEquals("Bad number of heatmaps", 4, files.size());
+		for (File file : files) {
+			BufferedImage heatmap = ImageIO.read(file);
+			assertEquals("Bad heatmap width", 30, heatmap.getWidth());
+			assertEquals("Bad heatmap height", 30, heatmap.getHeight());
+		}
+		assertTrue("Bad names", files.get(0).getName().startsWith("costs test time"));
+	}
+}
@@ -0,0 +1,148 @@
+package unittests.renderer;
+
+import static org.junit.Assert.*;
+
+import java.awt.image.BufferedImage;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Test;
+
+import geometries.*;
+import primitives.*;
+import renderer.*;
+import renderer.Render.SUPERSAMPLING_TYPE;
+import scene.Scene;
+
+/**
+ * Testing rendering tiles on workers connected to a coordinator
+ *
+ * @author Jonah Lawrence
+ * @author Elad Harizy
+ */
+public class RenderCoordinatorTests {
+
+	/**
+	 * Test method for {@link renderer.RenderCoordinator#renderImage()}: two workers
+	 * render the image after a third one was lost with leased tiles
+	 */
+	@Test
+	public void testRenderImage() throws Exception {
+		// a floor under the spheres at coordinates floats cannot represent
+		Scene scene = TestScenes.twoSpheres("Coordinator test");
+		scene.geometries.add(
+				new Triangle(new Point3D(-200.1, -30.1, 0), new Point3D(200.1, -30.1, 0), new Point3D(0, -30.1, -300.1))
+						.setMaterial(new Material().setKD(0.8)));
+
+		ImageWriter imageWriter = new ImageWriter("coordinator test", 90, 70);
+		RenderCoordinator coordinator = new RenderCoordinator(scene, imageWriter).setTileSize(16)
+				.setSupersamplingType(SUPERSAMPLING_TYPE.ADAPTIVE).setAdaptiveMaxRecursionLevel(2);
+		int port = coordinator.listen(0);
+
+		// a worker that is lost after its first tiles are leased
+		try (Socket socket = new Socket("localhost", port)) {
+			DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+			DataInputStream in = new DataInputStream(socket.getInputStream());
+			out.writeInt(0x4A525457);
+			out.writeInt(1);
+			out.flush();
+			in.readFully(new byte[in.readInt()]);
+			in.readFully(new byte[in.readInt()]);
+			for (int i = 0; i < 7; ++i)
+				in.readInt();
+		}
+
+		int[] rendered = new int[2];
+		Thread[] workers = new Thread[2];
+		for (int i = 0; i < workers.length; ++i) {
+			final int worker = i;
+			workers[i] = new Thread(() -> {
+				try {
+					rendered[worker] = new RenderWorker(2).run("localhost", port);
+				} catch (IOException e) {
+					rendered[worker] = -1;
+				}
+			});
+			workers[i].start();
+		}
+		coordinator.renderImage();
+		for (Thread worker : workers)
+			worker.join();
+
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: the tiles of the lost worker are leased again
+		assertEquals("Bad number of workers", 3, coordinator.getWorkerCount());
+		assertEquals("Tiles were not leased again", 2, coordinator.getReissuedTiles());
+		assertEquals("Bad number of tiles", 6 * 5, rendered[0] + rendered[1]);
+
+		// TC02: the assembled image is the image rendered in one process
+		BufferedImage expected = TestScenes.render(new Render().setSupersamplingType(SUPERSAMPLING_TYPE.ADAPTIVE)
+				.setAdaptiveMaxRecursionLevel(2).setRayTracer(new BasicRayTracer(scene)), "coordinator expected", 90, 70);
+		TestScenes.assertSameImage(expected, ImageIO.read(imageWriter.writeToImage()), 0);
+	}
+
+	/**
+	 * Test method for {@link renderer.RenderCoordinator#setRayTracer(renderer.RayTracerBase)}:
+	 * the workers trace with the tracer, sampler and passes of the coordinator
+	 */
+	@Test
+	public void testRenderSettings() throws Exception {
+		Scene scene = TestScenes.twoSpheres("Settings test");
+
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: passes with a sampler and a tracer without reflections are averaged
+		// as in one process
+		ImageWriter imageWriter = new ImageWriter("coordinator settings", 40, 30);
+		RenderCoordinator coordinator = new RenderCoordinator(scene, imageWriter).setTileSize(16)
+				.setSupersamplingType(SUPERSAMPLING_TYPE.NONE).setSampler(new HaltonSampler()).setPasses(3)
+				.setRayTracer(new BasicRayTracer(scene).setFixedTermination(1, 0.05).setGlossySampleCount(16));
+		int port = coordinator.listen(0);
+		Thread worker = new Thread(() -> {
+			try {
+				new RenderWorker(2).run("localhost", port);
+			} catch (IOException e) {
+				// the coordinator does not finish
+			}
+		});
+		worker.start();
+		coordinator.renderImage();
+		worker.join();
+
+		BufferedImage expected = TestScenes.render(
+				new Render().setSupersamplingType(SUPERSAMPLING_TYPE.NONE).setSampler(new HaltonSampler()).setPasses(3)
+						.setRayTracer(new BasicRayTracer(scene).setFixedTermination(1, 0.05)),
+				"coordinator settings expected", 40, 30);
+		TestScenes.assertSameImage(expected, ImageIO.read(imageWriter.writeToImage()), 0);
+
+		// =============== Boundary Values Tests ==================
+		// TC11: tracers the workers cannot create are refused
+		assertThrows("Subclass of a tracer accepted", IllegalArgumentException.class,
+				() -> coordinator.setRayTracer(new BasicRayTracer(scene) {
+				}));
+
+		// TC12: no worker renders the image in time
+		RenderCoordinator timed = new RenderCoordinator(scene, new ImageWriter("coordinator timeout", 40, 30))
+				.setRenderTimeout(100);
+		timed.listen(0);
+		assertThrows("Render did not time out", IllegalStateException.class, timed::renderImage);
+
+		// TC13: the coordinator is closed while the image is rendered
+		RenderCoordinator closed = new RenderCoordinator(scene, new ImageWriter("coordinator closed", 40, 30));
+		closed.listen(0);
+		Thread closer = new Thread(() -> {
+			try {
+				Thread.sleep(100);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			closed.close();
+		});
+		closer.start();
+		assertThrows("Closed render finished", IllegalStateException.class, closed::renderImage);
+		closer.join();
+	}
+}
@@ -0,0 +1,99 @@
+package unittests.renderer;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.Test;
+
+import elements.*;
+import geometries.*;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import primitives.*;
+import renderer.*;
+import renderer.Render.SUPERSAMPLING_TYPE;
+import scene.Scene;
+import scene.SceneFile;
+
+/**
+ * Testing the flight recorder events of renders
+ *
+ * @author Jonah Lawrence
+ * @author Elad Harizy
+ */
+public class RenderEventsTests {
+
+	/**
+	 * Test method for {@link renderer.Render#renderImage()}.
+	 */
+	@Test
+	public void testEvents() throws IOException {
+		Scene scene = new Scene("Events test").setAmbientLight(new AmbientLight(new Color(255, 255, 255), 0.1))
+				.setCamera(new Camera(new Point3D(0, 0, 200), new Vector(0, 0, -1), new Vector(0, 1, 0)).setDistance(100)
+						.setViewPlaneSize(150, 150));
+		for (int i = 0; i < 4; ++i)
+			scene.geometries.add(new Sphere(new Point3D(40 * i - 60, 0, -100), 15).setEmission(new Color(java.awt.Color.BLUE)));
+		scene.lights.add(new PointLight(new Color(500, 500, 500), new Point3D(0, 100, 0)).setKL(0.001));
+
+		Path sceneFile = Files.createTempFile("events", ".scene");
+		Path recordingFile = Files.createTempFile("events", ".jfr");
+		try (Recording recording = new Recording()) {
+			for (String name : new String[] { "raytracer.Render", "raytracer.Tile", "raytracer.ImageEncode",
+					"raytracer.AccelerationBuild", "raytracer.SceneLoad" })
+				recording.enable(name).withoutThreshold();
+			recording.start();
+			SceneFile.write(scene, sceneFile);
+			Scene loaded = SceneFile.read(sceneFile);
+			Render render = new Render().setSupersamplingType(SUPERSAMPLING_TYPE.NONE).setMultithreading(2)
+					.setImageWriter(new ImageWriter("events test", 20, 10)).setRayTracer(new BasicRayTracer(loaded));
+			render.renderImage();
+			render.writeToImage();
+			recording.stop();
+			recording.dump(recordingFile);
+
+			List<RecordedEvent> events = RecordingFile.readAllEvents(recordingFile);
+
+			// ============ Equivalence Partitions Tests ==============
+			// TC01: one event of the render with its rays
+			List<RecordedEvent> renders = named(events, "raytracer.Render");
+			assertEquals("Bad render events", 1, renders.size());
+			assertEquals("Bad render rays", 200, renders.get(0).getLong("rays"));
+			assertEquals("Bad render scene", "Events test", renders.get(0).getString("scene"));
+
+			// TC02: the threads render whole rows, a tile each
+			List<RecordedEvent> tiles = named(events, "raytracer.Tile");
+			assertEquals("Bad tile events", 10, tiles.size());
+			assertEquals("Bad tiles", 10, render.getTiles());
+			boolean[] rows = new boolean[10];
+			for (RecordedEvent tile : tiles) {
+				assertEquals("Tile of part of a row", 20, tile.getLong("rays"));
+				assertEquals("Tile of part of a row", 0, tile.getInt("fromCol"));
+				assertEquals("Tile of part of a row", 20, tile.getInt("toCol"));
+				assertEquals("Tile of more than a row", tile.getInt("fromRow") + 1, tile.getInt("toRow"));
+				assertFalse("Row rendered twice", rows[tile.getInt("fromRow")]);
+				rows[tile.getInt("fromRow")] = true;
+			}
+
+			// TC03: the scene load, the hierarchy build and the image encode
+			List<RecordedEvent> loads = named(events, "raytracer.SceneLoad");
+			assertEquals("Bad scene load events", 1, loads.size());
+			assertEquals("Bad geometries", 4, loads.get(0).getInt("geometries"));
+			assertFalse("No hierarchy build", named(events, "raytracer.AccelerationBuild").isEmpty());
+			List<RecordedEvent> encodes = named(events, "raytracer.ImageEncode");
+			assertEquals("Bad encode events", 1, encodes.size());
+			assertTrue("Empty image", encodes.get(0).getLong("bytes") > 0);
+		} finally {
+			Files.deleteIfExists(sceneFile);
+			Files.deleteIfExists(recordingFile);
+		}
+	}
+
+	private static List<RecordedEvent> named(List<RecordedEvent> events, String name) {
+		return events.stream().filter(e -> e.getEventType().getName().equals(name)).toList();
+	}
+}
@@ -0,0 +1,124 @@
+package unittests.renderer;
+
+import static org.junit.Assert.*;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Test;
+
+import renderer.MetricsRegistry;
+import renderer.RenderService;
+import scene.Scene;
+
+/**
+ * Testing the render service
+ *
+ * @author Jonah Lawrence
+ * @author Elad Harizy
+ */
+public class RenderServiceTests {
+
+	/**
+	 * Test method for {@link renderer.RenderService#start(int)}.
+	 */
+	@Test
+	public void testService() throws Exception {
+		try (RenderService service = new RenderService(1, 1, 1, 1 << 20).registerMetrics(new MetricsRegistry())) {
+			String host = "http://localhost:" + service.start(0);
+			String jobs = host + "/jobs";
+
+			// a job that holds the only render thread until it is released
+			CountDownLatch release = new CountDownLatch(1);
+			Scene blocked = TestScenes.twoSpheres("blocked");
+			blocked.geometries.add((ray, maxDistance) -> {
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return null;
+			});
+			String blocker = jobs + "/" + service.submit(blocked, 10, 10, 0).getId();
+
+			// ============ Equivalence Partitions Tests ==============
+			// TC01: a job is queued behind the running one
+			HttpURLConnection first = post(jobs + "?width=120&height=100", TestScenes.TWO_SPHERES_XML);
+			assertEquals("Job not accepted", 202, first.getResponseCode());
+			String location = first.getHeaderField("Location");
+
+			// TC02: jobs beyond the running and queued ones are refused
+			assertEquals("Job not refused", 503,
+					post(jobs + "?width=40&height=40", TestScenes.TWO_SPHERES_XML).getResponseCode());
+
+			// TC03: progress streams of the running job do not hold up other requests
+			for (int i = 0; i < 9; ++i)
+				assertEquals("Progress not streamed", 200, get(blocker + "/progress").getResponseCode());
+			assertEquals("Request held up by progress streams", 200, get(host + location).getResponseCode());
+
+			// TC04: the queued job is rendered once the running one ends, and its image
+			// is returned
+			release.countDown();
+			HttpURLConnection progress = get(host + location + "/progress");
+			String lines = new String(progress.getInputStream().readAllBytes(), StandardCharsets.US_ASCII);
+			assertTrue("Bad progress: " + lines, lines.trim().endsWith("DONE 100.0%"));
+			HttpURLConnection image = get(host + location + "/image");
+			assertEquals("No image", 200, image.getResponseCode());
+			BufferedImage png = ImageIO.read(new ByteArrayInputStream(image.getInputStream().readAllBytes()));
+			assertEquals("Bad width", 120, png.getWidth());
+			assertEquals("Bad height", 100, png.getHeight());
+
+			// TC05: the metrics count the rays of every type and the tiles of the
+			// finished job
+			String metrics = new String(get(host + "/metrics").getInputStream().readAllBytes(),
+					StandardCharsets.UTF_8);
+			assertTrue("Too few rays: " + metrics,
+					value(metrics, "raytracer_rays_total{type=\"primary\"}") >= 120 * 100);
+			assertTrue("No shadow rays: " + metrics, value(metrics, "raytracer_rays_total{type=\"shadow\"}") > 0);
+			assertTrue("No reflected rays: " + metrics,
+					value(metrics, "raytracer_rays_total{type=\"reflection\"}") > 0);
+			assertTrue("Too few tiles: " + metrics, value(metrics, "raytracer_tiles_total") >= 100);
+			assertTrue("Bad jobs: " + metrics, value(metrics, "raytracer_jobs_active")
+					+ value(metrics, "raytracer_jobs_queued") <= 1);
+
+			// =============== Boundary Values Tests ==================
+			// TC11: an image larger than the memory budget is refused
+			assertEquals("Image not refused", 413,
+					post(jobs + "?width=1000&height=1000", TestScenes.TWO_SPHERES_XML).getResponseCode());
+			// TC12: a scene that is not valid is refused
+			assertEquals("Scene not refused", 400, post(jobs, "<scene><geometries><cube/></geometries></scene>")
+					.getResponseCode());
+			// TC13: an unknown job is not found
+			assertEquals("Job found", 404, get(jobs + "/999").getResponseCode());
+		}
+	}
+
+	private static HttpURLConnection post(String url, String body) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+		connection.setRequestMethod("POST");
+		connection.setDoOutput(true);
+		try (OutputStream out = connection.getOutputStream()) {
+			out.write(body.getBytes(StandardCharsets.UTF_8));
+		}
+		return connection;
+	}
+
+	private static HttpURLConnection get(String url) throws IOException {
+		return (HttpURLConnection) new URL(url).openConnection();
+	}
+
+	private static double value(String metrics, String name) {
+		for (String line : metrics.split("\n"))
+			if (line.startsWith(name + " "))
+				return Double.parseDouble(line.substring(name.length() + 1));
+		throw new AssertionError("No metric " + name);
+	}
+}
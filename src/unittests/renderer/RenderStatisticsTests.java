@@ -0,0 +1,107 @@
+package unittests.renderer;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import elements.*;
+import geometries.*;
+import primitives.*;
+import renderer.*;
+import renderer.Render.SUPERSAMPLING_TYPE;
+import renderer.RenderStatistics.RAY_TYPE;
+import scene.Scene;
+
+/**
+ * Testing the statistics of renders
+ *
+ * @author Jonah Lawrence
+ * @author Elad Harizy
+ */
+public class RenderStatisticsTests {
+
+	private static Scene scene() {
+		Scene scene = new Scene("Statistics test").setAmbientLight(new AmbientLight(new Color(255, 255, 255), 0.1))
+				.setCamera(new Camera(new Point3D(0, 0, 200), new Vector(0, 0, -1), new Vector(0, 1, 0)).setDistance(100)
+						.setViewPlaneSize(150, 150));
+		scene.geometries.add(new Sphere(new Point3D(-30, 0, -100), 25).setEmission(new Color(java.awt.Color.BLUE))
+				.setMaterial(new Material().setKD(0.5).setKS(0.5).setShininess(30).setKT(0.5)),
+				new Sphere(new Point3D(30, 0, -100), 25).setEmission(new Color(java.awt.Color.RED))
+						.setMaterial(new Material().setKD(0.3).setKR(0.5)),
+				new Sphere(new Point3D(-30, 40, -150), 10).setEmission(new Color(java.awt.Color.GREEN)),
+				new Sphere(new Point3D(30, -40, -150), 10).setEmission(new Color(java.awt.Color.GREEN)),
+				new Plane(new Point3D(0, -50, 0), new Vector(0, 1, 0)).setEmission(new Color(20, 20, 20)));
+		scene.lights.add(new PointLight(new Color(500, 500, 500), new Point3D(0, 100, 0)).setKL(0.001));
+		return scene;
+	}
+
+	/**
+	 * Test method for {@link renderer.Render#setStatistics(renderer.RenderStatistics)}.
+	 */
+	@Test
+	public void testStatistics() {
+		Scene scene = scene();
+		RenderStatistics statistics = new RenderStatistics();
+		Render render = new Render().setSupersamplingType(SUPERSAMPLING_TYPE.NONE).setStatistics(statistics)
+				.setImageWriter(new ImageWriter("statistics test", 40, 40)).setRayTracer(new BasicRayTracer(scene));
+		render.renderImage();
+
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: one primary ray per pixel and secondary rays of every type
+		assertEquals("Bad pixels", 1600, statistics.getPixels());
+		assertEquals("Bad primary rays", 1600, statistics.getRays(RAY_TYPE.PRIMARY));
+		assertTrue("No shadow rays", statistics.getRays(RAY_TYPE.SHADOW) > 0);
+		assertTrue("No reflection rays", statistics.getRays(RAY_TYPE.REFLECTION) > 0);
+		assertTrue("No refraction rays", statistics.getRays(RAY_TYPE.REFRACTION) > 0);
+		assertEquals("Bad total rays", statistics.getRays(RAY_TYPE.PRIMARY) + statistics.getRays(RAY_TYPE.SHADOW)
+				+ statistics.getRays(RAY_TYPE.REFLECTION) + statistics.getRays(RAY_TYPE.REFRACTION),
+				statistics.getTotalRays());
+
+		// TC02: every ray is tested against the unbounded plane, the spheres through
+		// the hierarchy
+		assertEquals("Bad plane tests", statistics.getTotalRays(), statistics.getIntersectionTests(Plane.class));
+		assertTrue("No sphere tests", statistics.getIntersectionTests(Sphere.class) > 0);
+		assertTrue("Spheres not culled", statistics.getIntersectionTests(Sphere.class) < 4 * statistics.getTotalRays());
+		assertTrue("No node visits", statistics.getNodeVisits() > 0);
+		assertEquals("Bad tests by name", Long.valueOf(statistics.getIntersectionTests(Sphere.class)),
+				statistics.getIntersectionTests().get("Sphere"));
+		assertTrue("No time", statistics.getSeconds() > 0);
+
+		// TC03: adaptive supersampling traces four rays per cell
+		render.setSupersamplingType(SUPERSAMPLING_TYPE.ADAPTIVE).setAdaptiveMaxRecursionLevel(3).renderImage();
+		assertEquals("Counters not reset", 1600, statistics.getPixels());
+		assertTrue("No subdivisions", statistics.getSubdivisions() > 0);
+		assertEquals("Bad primary rays", 4 * (statistics.getPixels() + 4 * statistics.getSubdivisions()),
+				statistics.getRays(RAY_TYPE.PRIMARY));
+		assertEquals("Bad subdivisions per pixel", statistics.getSubdivisions() / 1600.0,
+				statistics.getSubdivisionsPerPixel(), 1e-9);
+
+		// =============== Boundary Values Tests ==================
+		// TC11: a pixel is subdivided at most once per level above the last
+		assertEquals("Bad max subdivisions", 1 + 4, statistics.getMaxSubdivisions());
+	}
+
+	/**
+	 * Test method for {@link renderer.RenderStatistics#getRays(renderer.RenderStatistics.RAY_TYPE)}.
+	 */
+	@Test
+	public void testRealTime() {
+		RenderStatistics statistics = new RenderStatistics();
+		long[] seen = new long[1];
+		// the tracer reads the counters in the middle of the render
+		RayTracerBase tracer = new BasicRayTracer(scene()) {
+			@Override
+			public Color traceRay(Ray ray) {
+				seen[0] = Math.max(seen[0], statistics.getRays(RAY_TYPE.PRIMARY));
+				return super.traceRay(ray);
+			}
+		};
+		new Render().setSupersamplingType(SUPERSAMPLING_TYPE.NONE).setMultithreading(2).setStatistics(statistics)
+				.setImageWriter(new ImageWriter("statistics real time", 30, 30)).setRayTracer(tracer).renderImage();
+
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: the counters grow while the render runs
+		assertEquals("Bad primary rays", 900, statistics.getRays(RAY_TYPE.PRIMARY));
+		assertTrue("Counters not read during the render", seen[0] > 0 && seen[0] <= 900);
+	}
+}
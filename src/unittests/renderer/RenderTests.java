@@ -1,5 +1,10 @@
 package unittests.renderer;
 
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
 import org.junit.Test;
 
 import elements.*;
@@ -8,6 +13,7 @@ import primitives.*;
 import renderer.*;
 import renderer.Render.SUPERSAMPLING_TYPE;
 import scene.Scene;
+import scene.XmlSceneLoader;
 
 /**
  * Test rendering a basic image
@@ -55,10 +61,11 @@ public class RenderTests {
 	 * Test for XML based scene - for bonus
 	 */
 	@Test
-	public void basicRenderXml() {
-		Scene scene = new Scene("XML Test scene");
+	public void basicRenderXml() throws IOException {
 		// enter XML file name and parse from XML file into scene object
-		// ...
+		XmlSceneLoader loader = new XmlSceneLoader();
+		Scene scene = loader.load(Path.of("xml", "basicRenderTestTwoColors.xml"));
+		assertEquals("Bad number of geometries loaded", 5, loader.getStatistics().getGeometries());
 
 		scene.setCamera(camera);
 
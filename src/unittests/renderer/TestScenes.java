@@ -0,0 +1,98 @@
+package unittests.renderer;
+
+import static org.junit.Assert.*;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+import elements.*;
+import geometries.*;
+import primitives.*;
+import renderer.*;
+import scene.Scene;
+
+/**
+ * Scene and image checks shared by the tests that render an image in more than
+ * one way and compare the results
+ *
+ * @author Jonah Lawrence
+ * @author Elad Harizy
+ */
+final class TestScenes {
+
+	/**
+	 * The scene of {@link #twoSpheres(String)} in the XML of the scene loader
+	 */
+	static final String TWO_SPHERES_XML = "<scene>" //
+			+ "<ambient-light color='255 255 255' k='0.1'/>" //
+			+ "<camera p0='0 0 200' vTo='0 0 -1' vUp='0 1 0' distance='100' width='150' height='150'/>" //
+			+ "<geometries>" //
+			+ "<sphere center='-30 0 -100' radius='25' emission='0 0 255' kD='0.5' kS='0.5' shininess='30'/>" //
+			+ "<sphere center='30 0 -100' radius='25' emission='255 0 0' kD='0.3' kR='0.5'/>" //
+			+ "</geometries>" //
+			+ "<lights><point-light color='500 500 500' position='0 100 0' kL='0.001'/></lights>" //
+			+ "</scene>";
+
+	/**
+	 * Empty private ctor to hide the public one
+	 */
+	private TestScenes() {
+	}
+
+	/**
+	 * A shiny blue sphere and a reflecting red one side by side, lit by a point
+	 * light above them - small enough to render quickly, with background, shadow
+	 * and reflected rays in every image of it
+	 *
+	 * @param name name of the scene
+	 * @return the scene
+	 */
+	static Scene twoSpheres(String name) {
+		Scene scene = new Scene(name).setAmbientLight(new AmbientLight(new Color(255, 255, 255), 0.1))
+				.setCamera(new Camera(new Point3D(0, 0, 200), new Vector(0, 0, -1), new Vector(0, 1, 0)).setDistance(100)
+						.setViewPlaneSize(150, 150));
+		scene.geometries.add(new Sphere(new Point3D(-30, 0, -100), 25).setEmission(new Color(java.awt.Color.BLUE))
+				.setMaterial(new Material().setKD(0.5).setKS(0.5).setShininess(30)),
+				new Sphere(new Point3D(30, 0, -100), 25).setEmission(new Color(java.awt.Color.RED))
+						.setMaterial(new Material().setKD(0.3).setKR(0.5)));
+		scene.lights.add(new PointLight(new Color(500, 500, 500), new Point3D(0, 100, 0)).setKL(0.001));
+		return scene;
+	}
+
+	/**
+	 * Render an image to compare other renders of it to
+	 *
+	 * @param render    the render, with its ray tracer and settings
+	 * @param imageName name of the image
+	 * @param nX        width of the image
+	 * @param nY        height of the image
+	 * @return the image, as read back from its file
+	 * @throws IOException if the image cannot be read
+	 */
+	static BufferedImage render(Render render, String imageName, int nX, int nY) throws IOException {
+		ImageWriter imageWriter = new ImageWriter(imageName, nX, nY);
+		render.setImageWriter(imageWriter).renderImage();
+		return ImageIO.read(imageWriter.writeToImage());
+	}
+
+	/**
+	 * Compare images pixel by pixel
+	 *
+	 * @param expected  the expected image
+	 * @param actual    the image compared to it
+	 * @param tolerance difference allowed in every color component of a pixel
+	 */
+	static void assertSameImage(BufferedImage expected, BufferedImage actual, int tolerance) {
+		assertEquals("Bad width", expected.getWidth(), actual.getWidth());
+		assertEquals("Bad height", expected.getHeight(), actual.getHeight());
+		for (int y = 0; y < expected.getHeight(); ++y)
+			for (int x = 0; x < expected.getWidth(); ++x) {
+				int a = expected.getRGB(x, y);
+				int b = actual.getRGB(x, y);
+				for (int shift = 0; shift < 24; shift += 8)
+					assertEquals("Bad pixel at " + x + "," + y, (a >> shift) & 0xFF, (b >> shift) & 0xFF, tolerance);
+			}
+	}
+}
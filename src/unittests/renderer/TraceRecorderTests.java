@@ -0,0 +1,121 @@
+package unittests.renderer;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Test;
+
+import elements.*;
+import geometries.*;
+import primitives.*;
+import renderer.*;
+import renderer.Render.SUPERSAMPLING_TYPE;
+import scene.Scene;
+
+/**
+ * Testing timelines of renders in the trace format of Chrome
+ *
+ * @author Jonah Lawrence
+ * @author Elad Harizy
+ */
+public class TraceRecorderTests {
+
+	/**
+	 * Test method for {@link renderer.Render#setTracer(renderer.TraceRecorder)}.
+	 */
+	@Test
+	public void testRenderTrace() throws IOException {
+		Scene scene = new Scene("Trace test").setAmbientLight(new AmbientLight(new Color(255, 255, 255), 0.1))
+				.setCamera(new Camera(new Point3D(0, 0, 200), new Vector(0, 0, -1), new Vector(0, 1, 0)).setDistance(100)
+						.setViewPlaneSize(150, 150));
+		for (int i = 0; i < 4; ++i)
+			scene.geometries.add(new Sphere(new Point3D(40 * i - 60, 0, -100), 15).setEmission(new Color(java.awt.Color.BLUE)));
+		scene.lights.add(new PointLight(new Color(500, 500, 500), new Point3D(0, 100, 0)).setKL(0.001));
+
+		Path file = Files.createTempFile("trace", ".json");
+		TraceRecorder tracer = new TraceRecorder(1000).setFile(file);
+		try {
+			Render render = new Render().setSupersamplingType(SUPERSAMPLING_TYPE.NONE).setMultithreading(2)
+					.setTracer(tracer).setImageWriter(new ImageWriter("trace test", 20, 10))
+					.setRayTracer(new BasicRayTracer(scene));
+			render.renderImage();
+
+			// ============ Equivalence Partitions Tests ==============
+			// TC01: the timeline is written when the render ends, with the rows the
+			// threads took and the hierarchy they built
+			String json = Files.readString(file);
+			assertTrue("Not a trace",
+					json.startsWith("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[") && json.endsWith("]}\n"));
+			assertTrue("Too few tiles", count(json, "\"name\":\"tile\"") >= 10);
+			assertEquals("Bad render spans", 1, count(json, "\"name\":\"render\""));
+			assertTrue("No hierarchy build", json.contains("\"name\":\"hierarchy build\""));
+			assertTrue("Threads not named", count(json, "\"name\":\"thread_name\"") >= 2);
+
+			// TC02: the encode of the image is added to the timeline
+			render.writeToImage();
+			assertTrue("No encode", Files.readString(file).contains("\"name\":\"encode\""));
+
+			// TC03: the recorder is stopped after the render and the encode
+			long spans = tracer.getSpanCount();
+			new BasicRayTracer(scene).traceRay(new Ray(new Point3D(0, 0, 200), new Vector(0, 0, -1)));
+			assertEquals("Build recorded after the render", spans, tracer.getSpanCount());
+
+			// TC04: the recorder is stopped after a failed render
+			render.setRayTracer(new BasicRayTracer(scene) {
+				@Override
+				public Color traceRay(Ray ray) {
+					throw new IllegalStateException("Render stopped");
+				}
+			});
+			assertThrows("Render not stopped", IllegalStateException.class, render::renderImage);
+			spans = tracer.getSpanCount();
+			new BasicRayTracer(scene).traceRay(new Ray(new Point3D(0, 0, 200), new Vector(0, 0, -1)));
+			assertEquals("Build recorded after the failed render", spans, tracer.getSpanCount());
+		} finally {
+			tracer.stop();
+			Files.deleteIfExists(file);
+		}
+	}
+
+	/**
+	 * Test method for {@link renderer.TraceRecorder#record(String, String, long, long, String)}.
+	 */
+	@Test
+	public void testRingBuffer() throws IOException {
+		TraceRecorder tracer = new TraceRecorder(5);
+		long now = System.nanoTime();
+		for (int i = 0; i < 8; ++i)
+			tracer.record("span " + i, "test", now + i, now + i + 1, i == 7 ? "quote \" and \\" : null);
+
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: the latest spans are kept
+		assertEquals("Bad span count", 5, tracer.getSpanCount());
+		assertEquals("Bad dropped spans", 3, tracer.getDroppedSpans());
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		tracer.writeJson(out);
+		String json = out.toString(StandardCharsets.UTF_8);
+		assertFalse("Dropped span written", json.contains("\"span 2\""));
+		for (int i = 3; i < 8; ++i)
+			assertTrue("Span not written", json.contains("\"span " + i + "\""));
+		assertTrue("Oldest span not first", json.indexOf("\"span 3\"") < json.indexOf("\"span 7\""));
+
+		// TC02: details are escaped
+		assertTrue("Details not escaped", json.contains("\"quote \\\" and \\\\\""));
+
+		// =============== Boundary Values Tests ==================
+		// TC11: a ring buffer needs room
+		assertThrows("Empty ring buffer not refused", IllegalArgumentException.class, () -> new TraceRecorder(0));
+	}
+
+	private static int count(String text, String part) {
+		int count = 0;
+		for (int i = text.indexOf(part); i >= 0; i = text.indexOf(part, i + 1))
+			++count;
+		return count;
+	}
+}
@@ -0,0 +1,95 @@
+package unittests.scene;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import elements.*;
+import geometries.*;
+import geometries.Intersectable.GeoPoint;
+import primitives.*;
+import scene.CompiledScene;
+import scene.Scene;
+
+/**
+ * Testing compiling scenes into snapshots
+ * 
+ * @author Jonah Lawrence
+ * @author Elad Harizy
+ */
+public class CompiledSceneTests {
+
+	/**
+	 * Test method for {@link scene.Scene#compile()}.
+	 */
+	@Test
+	public void testCompile() {
+		Material shared = new Material().setKD(0.5).setKT(0.3);
+		Sphere sphere = (Sphere) new Sphere(new Point3D(0, 0, -100), 50).setMaterial(shared);
+		PointLight light = new PointLight(new Color(100, 100, 100), new Point3D(0, 100, 0));
+		Scene scene = new Scene("compiled").setBackground(new Color(1, 2, 3));
+		scene.geometries.add(sphere, new Geometries(
+				new Triangle(new Point3D(-1, -1, -200), new Point3D(1, -1, -200), new Point3D(0, 1, -200)).setMaterial(shared)));
+		scene.lights.add(light);
+		CompiledScene compiled = scene.compile();
+
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: composites are flattened and shared materials stay shared
+		assertEquals("Bad number of geometries", 2, compiled.getGeometryCount());
+		assertEquals("Bad number of materials", 1, compiled.getMaterialCount());
+		Ray ray = new Ray(new Point3D(0, 0, 0), new Vector(0, 0, -1));
+		GeoPoint closest = ray.findClosestGeoPoint(compiled.findGeoIntersections(ray));
+		assertEquals("Bad closest point", new Point3D(0, 0, -50), closest.point);
+		assertSame("Material was not shared", ((Geometry) compiled.getGeometry(1)).getMaterial(),
+				closest.geometry.getMaterial());
+
+		// TC02: later changes to the scene do not reach the snapshot
+		shared.setKD(0.9);
+		sphere.setEmission(new Color(255, 0, 0));
+		light.setKC(5);
+		scene.setBackground(Color.BLACK);
+		scene.geometries.add(new Sphere(new Point3D(0, 0, -10), 1));
+		assertEquals("Material changed", 0.5, closest.geometry.getMaterial().kD, 0);
+		assertEquals("Emission changed", Color.BLACK.getColor(), closest.geometry.getEmission().getColor());
+		assertEquals("Light changed", 1, ((PointLight) compiled.getLights()[0]).getKC(), 0);
+		assertEquals("Background changed", new Color(1, 2, 3).getColor(), compiled.getBackground().getColor());
+		assertEquals("Geometry added", 2, compiled.getGeometryCount());
+	}
+
+	/**
+	 * Test method for {@link scene.Scene#compile(scene.CompiledScene)}.
+	 */
+	@Test
+	public void testCompileFrame() {
+		Sphere sphere = new Sphere(Point3D.ZERO, 1);
+		Scene scene = new Scene("frames");
+		Instance[] instances = new Instance[20];
+		for (int i = 0; i < instances.length; ++i) {
+			instances[i] = new Instance(sphere, Transform.translation(new Vector(3 * i, 0, -10)));
+			scene.geometries.add(instances[i]);
+		}
+		CompiledScene first = scene.compile();
+		Ray ray = new Ray(new Point3D(0, 0, 0), new Vector(0, 0, -1));
+		assertEquals("Bad closest point", new Point3D(0, 0, -9),
+				ray.findClosestGeoPoint(first.findGeoIntersections(ray)).point);
+
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: next frame sees the moved instance, the earlier one does not
+		instances[0].setTransform(Transform.translation(new Vector(0, 0, -20)));
+		CompiledScene second = scene.compile(first);
+		assertEquals("Moved instance not found", new Point3D(0, 0, -19),
+				ray.findClosestGeoPoint(second.findGeoIntersections(ray)).point);
+		assertEquals("Earlier frame changed", new Point3D(0, 0, -9),
+				ray.findClosestGeoPoint(first.findGeoIntersections(ray)).point);
+
+		// TC02: the instanced geometry is copied once with its material
+		sphere.setMaterial(new Material().setKD(0.25));
+		CompiledScene third = scene.compile(second);
+		sphere.getMaterial().setKD(0.75);
+		sphere.setMaterial(new Material().setKD(1)).setEmission(new Color(255, 0, 0));
+		GeoPoint hit = ray.findClosestGeoPoint(third.findGeoIntersections(ray));
+		assertEquals("Material of instance changed", 0.25, hit.geometry.getMaterial().kD, 0);
+		assertEquals("Emission of instance changed", Color.BLACK.getColor(), hit.geometry.getEmission().getColor());
+		assertEquals("Bad number of materials", 1, third.getMaterialCount());
+	}
+}
@@ -0,0 +1,137 @@
+package unittests.scene;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Test;
+
+import geometries.Mesh;
+import primitives.*;
+import scene.MeshLoader;
+
+/**
+ * Testing loading meshes from OBJ and PLY files
+ * 
+ * @author Jonah Lawrence
+ * @author Elad Harizy
+ */
+public class MeshLoaderTests {
+
+	/**
+	 * Write a temporary file
+	 * 
+	 * @param suffix extension of the file
+	 * @param bytes  content of the file
+	 * @return the file
+	 */
+	private Path write(String suffix, byte[] bytes) throws IOException {
+		Path file = Files.createTempFile("mesh", suffix);
+		file.toFile().deleteOnExit();
+		return Files.write(file, bytes);
+	}
+
+	/**
+	 * Test method for {@link scene.MeshLoader#loadObj(java.nio.file.Path)}.
+	 */
+	@Test
+	public void testLoadObj() throws IOException {
+		MeshLoader loader = new MeshLoader();
+
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: quad with texture and normal indices, triangle with relative indices
+		Mesh mesh = loader.load(write(".obj", ("# square\n" //
+				+ "v 0 0 0\nv 1.5 0 0\r\nv 1.5 1e0 0\n\tv  0 1 -0.0\n" //
+				+ "vt 0 0\nvn 0 0 1\n" //
+				+ "f 1/1/1 2/1/1 3/1/1 4/1/1\n" //
+				+ "v 0 0 2.5E-1\n" //
+				+ "f -1 1 -3\n").getBytes(StandardCharsets.US_ASCII)));
+		assertEquals("Wrong vertex count", 5, mesh.getVertexCount());
+		assertEquals("Wrong triangle count", 3, mesh.getTriangleCount());
+		assertEquals("Wrong vertex", new Point3D(0, 0, 0.25), mesh.getVertex(findTriangle(mesh, 4), 0));
+		assertEquals("Wrong point", new Point3D(1, 0.5, 0),
+				mesh.findGeoIntersections(new Ray(new Point3D(1, 0.5, 1), new Vector(0, 0, -1))).get(0).point);
+
+		// TC02: chunks split across many lines keep the relative indices
+		StringBuilder text = new StringBuilder();
+		int strips = 40000;
+		for (int i = 0; i < strips; ++i)
+			text.append("v ").append(i).append(" 0 0\nv ").append(i).append(".5 1 0\nv ").append(i + 1)
+					.append(" 0 0\nf -3 -1 -2\n");
+		mesh = loader.loadObj(write(".obj", text.toString().getBytes(StandardCharsets.US_ASCII)));
+		assertEquals("Wrong triangle count", strips, mesh.getTriangleCount());
+		assertEquals("Wrong point", new Point3D(strips - 0.5, 0.1, 0),
+				mesh.findGeoIntersections(new Ray(new Point3D(strips - 0.5, 0.1, 1), new Vector(0, 0, -1))).get(0).point);
+
+		// =============== Boundary Values Tests ==================
+		// TC11: malformed number
+		assertThrows("Malformed number", IllegalArgumentException.class,
+				() -> loader.loadObj(write(".obj", "v 0 x 0\n".getBytes(StandardCharsets.US_ASCII))));
+
+		// TC12: index of a missing vertex
+		assertThrows("Missing vertex", IllegalArgumentException.class,
+				() -> loader.loadObj(write(".obj", "v 0 0 0\nf 1 2 3\n".getBytes(StandardCharsets.US_ASCII))));
+	}
+
+	/**
+	 * Test method for {@link scene.MeshLoader#loadPly(java.nio.file.Path)}.
+	 */
+	@Test
+	public void testLoadPly() throws IOException {
+		MeshLoader loader = new MeshLoader();
+
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: quad and triangle with an extra vertex property
+		byte[] header = ("ply\nformat binary_little_endian 1.0\ncomment test\n" //
+				+ "element vertex 5\nproperty float x\nproperty float y\nproperty float z\nproperty uchar red\n" //
+				+ "element face 2\nproperty list uchar int vertex_indices\nend_header\n")
+				.getBytes(StandardCharsets.US_ASCII);
+		ByteBuffer body = ByteBuffer.allocate(header.length + 5 * 13 + 17 + 13).order(ByteOrder.LITTLE_ENDIAN);
+		body.put(header);
+		float[][] vertices = { { 0, 0, 0 }, { 1, 0, 0 }, { 1, 1, 0 }, { 0, 1, 0 }, { 0, 0, 1 } };
+		for (float[] v : vertices)
+			body.putFloat(v[0]).putFloat(v[1]).putFloat(v[2]).put((byte) 255);
+		body.put((byte) 4).putInt(0).putInt(1).putInt(2).putInt(3);
+		body.put((byte) 3).putInt(0).putInt(1).putInt(4);
+		Mesh mesh = loader.load(write(".ply", body.array()));
+		assertEquals("Wrong vertex count", 5, mesh.getVertexCount());
+		assertEquals("Wrong triangle count", 3, mesh.getTriangleCount());
+		assertEquals("Wrong point", new Point3D(0.5, 0, 0.5),
+				mesh.findGeoIntersections(new Ray(new Point3D(0.5, 1, 0.5), new Vector(0, -1, 0))).get(0).point);
+
+		// TC02: the same file with CR LF line ends
+		byte[] crlfHeader = new String(header, StandardCharsets.US_ASCII).replace("\n", "\r\n")
+				.getBytes(StandardCharsets.US_ASCII);
+		ByteBuffer crlf = ByteBuffer.allocate(crlfHeader.length + body.capacity() - header.length);
+		crlf.put(crlfHeader).put(body.array(), header.length, body.capacity() - header.length);
+		Mesh crlfMesh = loader.load(write(".ply", crlf.array()));
+		assertEquals("Wrong vertex count", 5, crlfMesh.getVertexCount());
+		assertEquals("Wrong triangle count", 3, crlfMesh.getTriangleCount());
+		assertEquals("Wrong point", new Point3D(0.5, 0, 0.5),
+				crlfMesh.findGeoIntersections(new Ray(new Point3D(0.5, 1, 0.5), new Vector(0, -1, 0))).get(0).point);
+
+		// =============== Boundary Values Tests ==================
+		// TC11: ASCII PLY
+		assertThrows("ASCII PLY", IllegalArgumentException.class, () -> loader.loadPly(write(".ply",
+				"ply\nformat ascii 1.0\nelement vertex 0\nend_header\n".getBytes(StandardCharsets.US_ASCII))));
+	}
+
+	/**
+	 * Find a triangle of a mesh by its first vertex index
+	 * 
+	 * @param mesh  the mesh
+	 * @param index the vertex index
+	 * @return the triangle
+	 */
+	private int findTriangle(Mesh mesh, int index) {
+		for (int t = 0; t < mesh.getTriangleCount(); ++t)
+			if (mesh.getIndices().get(3 * t) == index)
+				return t;
+		return -1;
+	}
+}
@@ -0,0 +1,172 @@
+package unittests.scene;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import org.junit.Test;
+
+import elements.*;
+import geometries.*;
+import geometries.Intersectable.GeoPoint;
+import primitives.*;
+import scene.Scene;
+import scene.SceneFile;
+
+/**
+ * Testing writing and mapping compiled scene files
+ * 
+ * @author Jonah Lawrence
+ * @author Elad Harizy
+ */
+public class SceneFileTests {
+
+	/**
+	 * Test method for {@link scene.SceneFile#read(java.nio.file.Path)}.
+	 */
+	@Test
+	public void testWriteRead() throws IOException {
+		Material shiny = new Material().setKD(0.5).setKS(0.5).setShininess(60).setGlossiness(0.1);
+		Scene scene = new Scene("compiled").setBackground(new Color(1, 2, 3))
+				.setAmbientLight(new AmbientLight(new Color(255, 255, 255), 0.1))
+				.setCamera(new Camera(new Point3D(0, 0, 1000), new Vector(0, 0, -1), new Vector(0, 1, 0))
+						.setDistance(1000).setViewPlaneSize(200, 100));
+		scene.geometries.add(new Sphere(new Point3D(0, 0, -50), 50).setEmission(new Color(0, 0, 255)).setMaterial(shiny),
+				new Triangle(new Point3D(-100.1, -100, -100), new Point3D(100, -100, -100), new Point3D(0, 100.3, -100))
+						.setMaterial(shiny),
+				new Triangle(new Point3D(-100, -100, -200), new Point3D(100, -100, -200), new Point3D(0, 100, -200))
+						.setMaterial(shiny),
+				new Geometries(new Plane(new Point3D(0, 0, -300), new Vector(0, 0, 1)),
+						new Cylinder(new Ray(new Point3D(0, 0, 0), new Vector(0, 1, 0)), 1, 2)));
+		scene.lights.add(new DirectionalLight(new Color(100, 100, 100), new Vector(0, -1, 0)));
+		scene.lights.add(new PointLight(new Color(500, 500, 500), new Point3D(100, 0, -100), 1, 0.1, 0.01));
+		scene.lights.add(new SpotLight(new Color(500, 500, 500), new Point3D(0, 100, 0), new Vector(0, -1, 0), 1, 0, 0, 2));
+
+		Path file = Files.createTempFile("scene", ".jrts");
+		SceneFile.write(scene, file);
+		Scene read = SceneFile.read(file);
+
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: environment, camera and lights
+		assertEquals("Bad name", "compiled", read.getName());
+		assertEquals("Bad background", new Color(1, 2, 3).getColor(), read.background.getColor());
+		assertEquals("Bad ambient light", scene.ambientLight.getIntensity().getColor(),
+				read.ambientLight.getIntensity().getColor());
+		assertEquals("Bad camera distance", 1000, read.getCamera().getDistance(), 0);
+		assertEquals("Bad camera height", 100, read.getCamera().getHeight(), 0);
+		assertEquals("Bad number of lights", 3, read.lights.size());
+		assertEquals("Bad spot light", 2, ((SpotLight) read.lights.get(2)).getConcentration(), 0);
+
+		// TC02: the geometries keep their order, types and exact coordinates
+		List<Intersectable> geometries = read.geometries.getGeometryList();
+		assertEquals("Bad number of geometries", 5, geometries.size());
+		Triangle triangle = (Triangle) geometries.get(1);
+		assertEquals("Bad vertex", new Point3D(-100.1, -100, -100), triangle.getVertices().get(0));
+		assertEquals("Bad vertex", new Point3D(0, 100.3, -100), triangle.getVertices().get(2));
+		assertTrue("Bad order", geometries.get(2) instanceof Triangle && geometries.get(4) instanceof Cylinder);
+		assertSame("Material was not shared", ((Geometry) geometries.get(0)).getMaterial(), triangle.getMaterial());
+		assertEquals("Bad glossiness", 0.1, triangle.getMaterial().kGlossiness, 0);
+
+		// TC03: intersections are the same
+		Ray ray = new Ray(new Point3D(10, 10, 1000), new Vector(0, 0, -1));
+		List<GeoPoint> before = scene.geometries.findGeoIntersections(ray);
+		List<GeoPoint> after = read.geometries.findGeoIntersections(ray);
+		assertEquals("Bad number of intersections", before.size(), after.size());
+		assertEquals("Bad closest point", ray.findClosestGeoPoint(before).point, ray.findClosestGeoPoint(after).point);
+		assertEquals("Bad emission", new Color(0, 0, 255).getColor(),
+				ray.findClosestGeoPoint(after).geometry.getEmission().getColor());
+
+		// =============== Boundary Values Tests ==================
+		// TC11: file of a later version
+		ByteBuffer version = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(SceneFile.VERSION + 1).flip();
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+			channel.write(version, 8);
+		}
+		assertThrows("Later version", IllegalArgumentException.class, () -> SceneFile.read(file));
+
+		// TC12: not a scene file
+		Files.write(file, new byte[32]);
+		assertThrows("Not a scene file", IllegalArgumentException.class, () -> SceneFile.read(file));
+		Files.delete(file);
+	}
+
+	/**
+	 * Test method for
+	 * {@link scene.SceneFile#write(scene.Scene, java.nio.file.Path, boolean)}.
+	 */
+	@Test
+	public void testMergeTriangles() throws IOException {
+		Material matte = new Material().setKD(0.5);
+		Scene scene = new Scene("merged");
+		scene.geometries.add(
+				new Triangle(new Point3D(-100, -100, -100), new Point3D(100, -100, -100), new Point3D(0, 100, -100))
+						.setMaterial(matte),
+				new Sphere(new Point3D(0, 0, -50), 50).setMaterial(matte),
+				new Triangle(new Point3D(-100, -100, -200), new Point3D(100, -100, -200), new Point3D(0, 100, -200))
+						.setMaterial(matte));
+
+		Path file = Files.createTempFile("scene", ".jrts");
+		SceneFile.write(scene, file, true);
+		Scene read = SceneFile.read(file);
+		Files.delete(file);
+
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: the two triangles of one material become one mapped mesh in place of
+		// the first of them
+		List<Intersectable> geometries = read.geometries.getGeometryList();
+		assertEquals("Bad number of geometries", 2, geometries.size());
+		Mesh mesh = (Mesh) geometries.get(0);
+		assertEquals("Bad mesh", 2, mesh.getTriangleCount());
+		assertTrue("Mesh was copied", mesh.getVertices().isDirect());
+		assertSame("Material was not shared", ((Geometry) geometries.get(1)).getMaterial(), mesh.getMaterial());
+	}
+
+	/**
+	 * Test method for {@link scene.SceneFile#read(java.nio.file.Path)} of a scene
+	 * of instances.
+	 */
+	@Test
+	public void testInstances() throws IOException {
+		Mesh mesh = new Mesh(new float[] { -10, -10, 0, 10, -10, 0, 0, 10, 0 }, new int[] { 0, 1, 2 });
+		mesh.setEmission(new Color(0, 255, 0)).setMaterial(new Material().setKD(0.4));
+		Transform rotated = Transform.rotation(new Vector(0, 1, 1), 0.3)
+				.then(Transform.translation(new Vector(30.1, 0, -100)));
+		Scene scene = new Scene("instances");
+		scene.geometries.add(new Instance(mesh, Transform.translation(new Vector(-30.1, 0, -100))),
+				new Instance(mesh, rotated),
+				new Instance(new Geometries(new Sphere(Point3D.ZERO, 5)), Transform.scaling(2)));
+
+		Path file = Files.createTempFile("scene", ".jrts");
+		SceneFile.write(scene, file);
+		Scene read = SceneFile.read(file);
+		Files.delete(file);
+
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: the instances keep their exact transformations and share one mesh
+		List<Intersectable> geometries = read.geometries.getGeometryList();
+		assertEquals("Bad number of instances", 3, geometries.size());
+		Instance first = (Instance) geometries.get(0);
+		Instance second = (Instance) geometries.get(1);
+		assertArrayEquals("Bad transformation", rotated.getRows(), second.getTransform().getRows(), 0);
+		assertArrayEquals("Bad inverse", rotated.inverse().getRows(), second.getTransform().inverse().getRows(), 0);
+		assertSame("Mesh was not shared", first.getGeometry(), second.getGeometry());
+		assertEquals("Bad emission", new Color(0, 255, 0).getColor(),
+				((Mesh) first.getGeometry()).getEmission().getColor());
+
+		// TC02: intersections are the same
+		for (Ray ray : List.of(new Ray(new Point3D(-30.1, 0, 0), new Vector(0, 0, -1)),
+				new Ray(new Point3D(30.1, 0, 0), new Vector(0, 0, -1)),
+				new Ray(new Point3D(3, 0, 100), new Vector(0, 0, -1)))) {
+			GeoPoint before = ray.findClosestGeoPoint(scene.geometries.findGeoIntersections(ray));
+			GeoPoint after = ray.findClosestGeoPoint(read.geometries.findGeoIntersections(ray));
+			assertEquals("Bad closest point", before.point, after.point);
+		}
+	}
+}
@@ -0,0 +1,115 @@
+package unittests.scene;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Test;
+
+import geometries.Mesh;
+import geometries.Sphere;
+import primitives.*;
+import scene.Scene;
+import scene.XmlSceneLoader;
+
+/**
+ * Testing loading scenes from XML
+ * 
+ * @author Jonah Lawrence
+ * @author Elad Harizy
+ */
+public class XmlSceneLoaderTests {
+
+	/**
+	 * Load a scene from XML text
+	 * 
+	 * @param loader the loader
+	 * @param xml    the XML text
+	 * @return the scene
+	 */
+	private Scene load(XmlSceneLoader loader, String xml) {
+		return loader.load(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)), "test");
+	}
+
+	/**
+	 * Test method for
+	 * {@link scene.XmlSceneLoader#load(java.io.InputStream, String)}.
+	 */
+	@Test
+	public void testLoad() {
+		XmlSceneLoader loader = new XmlSceneLoader();
+
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: scene with every kind of element
+		Scene scene = load(loader, "<scene background-color='1 2 3'>" //
+				+ "<ambient-light color='255 255 255' k='0.1'/>" //
+				+ "<camera p0='0 0 1000' vTo='0 0 -1' vUp='0 1 0' distance='1000' width='200' height='100'/>" //
+				+ "<materials><material id='shiny' kD='0.5' kS='0.5' shininess='60'/></materials>" //
+				+ "<geometries>" //
+				+ "<sphere center='0 0 -50' radius='50' emission='0 0 255' material='shiny'/>" //
+				+ "<triangle p0='-100 0 -100' p1='0 100 -100' p2='-100 100 -100' kR='0.5'/>" //
+				+ "<plane p0='0 0 -200' normal='0 0 1'/>" //
+				+ "<polygon points='0 0 0, 1 0 0, 1 1 0, 0 1 0'/>" //
+				+ "</geometries>" //
+				+ "<lights>" //
+				+ "<directional-light color='100 100 100' direction='0 -1 0'/>" //
+				+ "<point-light color='500 500 500' position='100 0 -100' kQ='0.000001'/>" //
+				+ "<spot-light color='500 500 500' position='0 100 0' direction='0 -1 0' concentration='2'/>" //
+				+ "</lights></scene>");
+		assertEquals("Bad background", new Color(1, 2, 3).getColor(), scene.background.getColor());
+		assertEquals("Bad camera width", 200, scene.getCamera().getWidth(), 0);
+		assertEquals("Bad number of geometries", 4, scene.geometries.getGeometryList().size());
+		assertEquals("Bad number of lights", 3, scene.lights.size());
+		Sphere sphere = (Sphere) scene.geometries.getGeometryList().get(0);
+		assertEquals("Bad shared material", 60, sphere.getMaterial().nShininess);
+		assertEquals("Bad emission", java.awt.Color.BLUE, sphere.getEmission().getColor());
+
+		XmlSceneLoader.Statistics statistics = loader.getStatistics();
+		assertEquals("Bad geometries statistic", 4, statistics.getGeometries());
+		assertEquals("Bad lights statistic", 3, statistics.getLights());
+		assertEquals("Bad materials statistic", 1, statistics.getMaterials());
+
+		// TC02: unknown element
+		assertThrows("Loaded an unknown element", IllegalArgumentException.class,
+				() -> load(loader, "<scene><geometries><cube/></geometries></scene>"));
+
+		// TC03: missing attribute
+		assertThrows("Loaded a sphere without a center", IllegalArgumentException.class,
+				() -> load(loader, "<scene><geometries><sphere radius='1'/></geometries></scene>"));
+
+		// TC04: undefined material
+		assertThrows("Loaded an undefined material", IllegalArgumentException.class,
+				() -> load(loader, "<scene><geometries><sphere center='0 0 0' radius='1' material='x'/></geometries></scene>"));
+
+		// =============== Boundary Values Tests ==================
+		// TC11: empty scene
+		Scene empty = load(loader, "<scene/>");
+		assertNull("Empty scene has geometries", empty.geometries.getGeometryList());
+	}
+
+	/**
+	 * Test method for {@link scene.XmlSceneLoader#load(java.nio.file.Path)}.
+	 */
+	@Test
+	public void testLoadMesh() throws IOException {
+		Path directory = Files.createTempDirectory("scene");
+		Path obj = Files.writeString(directory.resolve("triangle.obj"), "v 0 0 0\nv 1 0 0\nv 0 1 0\nf 1 2 3\n");
+		Path xml = Files.writeString(directory.resolve("mesh.xml"),
+				"<scene><geometries><mesh file='triangle.obj' kD='0.5'/></geometries></scene>");
+
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: mesh file relative to the XML file
+		Scene scene = new XmlSceneLoader().load(xml);
+		Mesh mesh = (Mesh) scene.geometries.getGeometryList().get(0);
+		assertEquals("Wrong triangle count", 1, mesh.getTriangleCount());
+		assertEquals("Wrong material", 0.5, mesh.getMaterial().kD, 0);
+
+		Files.delete(xml);
+		Files.delete(obj);
+		Files.delete(directory);
+	}
+}